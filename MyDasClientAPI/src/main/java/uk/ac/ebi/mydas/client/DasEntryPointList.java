@@ -0,0 +1,46 @@
+package uk.ac.ebi.mydas.client;
+
+import uk.ac.ebi.mydas.model.DasEntryPoint;
+
+import java.util.List;
+
+/**
+ * The content of an entry_points response: the entry points it lists, with the
+ * version and total of the ENTRY_POINTS element.
+ */
+public class DasEntryPointList {
+
+    private final String version;
+
+    private final Integer total;
+
+    private final List<DasEntryPoint> entryPoints;
+
+    public DasEntryPointList(String version, Integer total, List<DasEntryPoint> entryPoints) {
+        this.version = version;
+        this.total = total;
+        this.entryPoints = entryPoints;
+    }
+
+    /**
+     * @return the /DASEP/ENTRY_POINTS/@version attribute, may be null.
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * @return the /DASEP/ENTRY_POINTS/@total attribute, i.e. the number of entry points of the data source
+     *         even if only a page of them is listed, or null if the element has no total.
+     */
+    public Integer getTotal() {
+        return total;
+    }
+
+    /**
+     * @return the entry points listed, in document order.
+     */
+    public List<DasEntryPoint> getEntryPoints() {
+        return entryPoints;
+    }
+}
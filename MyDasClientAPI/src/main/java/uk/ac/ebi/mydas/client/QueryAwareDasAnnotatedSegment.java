@@ -27,6 +27,12 @@ public class QueryAwareDasAnnotatedSegment extends DasAnnotatedSegment {
 
     private String dsnName;
 
+    /**
+     * The total attribute of the SEGMENT element, i.e. the number of features of the segment when the remote
+     * DAS server has returned a page of them.  Null if the element has no total.
+     */
+    private Integer reportedTotal;
+
     public QueryAwareDasAnnotatedSegment(String segmentId, Integer startCoordinate, Integer stopCoordinate, String version, String segmentLabel, Collection<DasFeature> features)
             throws DataSourceException {
         super(segmentId, startCoordinate, stopCoordinate, version, segmentLabel, features);
@@ -70,6 +76,14 @@ public class QueryAwareDasAnnotatedSegment extends DasAnnotatedSegment {
         }
     }
 
+    public Integer getReportedTotal() {
+        return reportedTotal;
+    }
+
+    public void setReportedTotal(Integer reportedTotal) {
+        this.reportedTotal = reportedTotal;
+    }
+
     public String getDsnName() {
         return dsnName;
     }
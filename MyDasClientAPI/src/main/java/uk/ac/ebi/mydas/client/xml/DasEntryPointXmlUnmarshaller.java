@@ -0,0 +1,158 @@
+package uk.ac.ebi.mydas.client.xml;
+
+import org.apache.log4j.Logger;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlPullParserFactory;
+import uk.ac.ebi.mydas.client.DasEntryPointList;
+import uk.ac.ebi.mydas.exceptions.DataSourceException;
+import uk.ac.ebi.mydas.extendedmodel.DasEntryPointE;
+import uk.ac.ebi.mydas.model.DasEntryPoint;
+import uk.ac.ebi.mydas.model.DasEntryPointOrientation;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p/>
+ * Unmarshaller for DAS 1.6 Entry Points XML.
+ * <p/>
+ * Format:
+ * <p/>
+ * <?xml version="1.0" standalone="no"?>
+ * <DASEP>
+ * <ENTRY_POINTS href="url" version="X.XX" total="total" start="start" end="end">
+ * <SEGMENT id="id" start="start" stop="stop" type="type" orientation="+|-|0" subparts="yes">description</SEGMENT>
+ * ...
+ * </ENTRY_POINTS>
+ * </DASEP>
+ */
+public class DasEntryPointXmlUnmarshaller extends AbstractXmlUnmarshaller {
+    /**
+     * Define a static LOGGER variable so that it references the
+     * Logger instance named "DasEntryPointXmlUnmarshaller".
+     */
+    private static Logger LOGGER = Logger.getLogger(DasEntryPointXmlUnmarshaller.class);
+
+    /**
+     * String defining the namespace for the entry points XML.  At present there is no namespace,
+     * so this is set to null.
+     */
+    private static final String NAMESPACE = null;
+    private static final String ELEMENT_DASEP = "DASEP";
+    private static final String ELEMENT_ENTRY_POINTS = "ENTRY_POINTS";
+    private static final String ELEMENT_SEGMENT = "SEGMENT";
+    private static final String ATTRIBUTE_VERSION = "version";
+    private static final String ATTRIBUTE_TOTAL = "total";
+    private static final String ATTRIBUTE_ID = "id";
+    private static final String ATTRIBUTE_START = "start";
+    private static final String ATTRIBUTE_STOP = "stop";
+    private static final String ATTRIBUTE_TYPE = "type";
+    private static final String ATTRIBUTE_ORIENTATION = "orientation";
+    private static final String ATTRIBUTE_SUBPARTS = "subparts";
+
+    public DasEntryPointXmlUnmarshaller() {
+        if (FACTORY == null) {
+            try {
+                FACTORY = XmlPullParserFactory.newInstance(System.getProperty(XmlPullParserFactory.PROPERTY_NAME), null);
+                FACTORY.setNamespaceAware(true);
+            } catch (XmlPullParserException xppe) {
+                LOGGER.warn(xppe.getMessage(), xppe);
+            }
+        }
+    }
+
+    /**
+     * This method unmarshalls an entry points document from the specified Reader.
+     *
+     * @param aReader Reader which reads from the XML file.
+     * @return the entry points, or null if the document has no DASEP element.
+     * @throws java.io.IOException when the reading or parsing failed.
+     * @throws uk.ac.ebi.mydas.exceptions.DataSourceException
+     *                             if there is a problem building a valid DasEntryPoint.
+     */
+    public DasEntryPointList unMarshall(Reader aReader) throws IOException, DataSourceException {
+        try {
+            XmlPullParser xpp = FACTORY.newPullParser();
+            xpp.setInput(aReader);
+            return unMarshall(xpp);
+        } catch (XmlPullParserException xppe) {
+            throw new IOException(xppe.getMessage());
+        }
+    }
+
+    /**
+     * This method unmarshalls an entry points document while it is read from the specified InputStream.
+     *
+     * @param anInputStream InputStream which reads the XML document.
+     * @param encoding the character encoding of the document, or null to detect it from the document.
+     * @return the entry points, or null if the document has no DASEP element.
+     * @throws java.io.IOException when the reading or parsing failed.
+     * @throws uk.ac.ebi.mydas.exceptions.DataSourceException
+     *                             if there is a problem building a valid DasEntryPoint.
+     */
+    public DasEntryPointList unMarshall(InputStream anInputStream, String encoding) throws IOException, DataSourceException {
+        try {
+            XmlPullParser xpp = FACTORY.newPullParser();
+            xpp.setInput(anInputStream, encoding);
+            return unMarshall(xpp);
+        } catch (XmlPullParserException xppe) {
+            throw new IOException(xppe.getMessage());
+        }
+    }
+
+    private DasEntryPointList unMarshall(XmlPullParser xpp) throws XmlPullParserException, IOException, DataSourceException {
+        DasEntryPointList entryPoints = null;
+        int eventType = xpp.getEventType();
+        while (eventType != XmlPullParser.END_DOCUMENT) {
+            if (eventType == XmlPullParser.START_TAG && ELEMENT_DASEP.equals(xpp.getName())) {
+                entryPoints = processDasEp(xpp);
+            }
+            eventType = xpp.next();
+        }
+        return entryPoints;
+    }
+
+    private DasEntryPointList processDasEp(XmlPullParser xpp) throws XmlPullParserException, IOException, DataSourceException {
+        String version = null;
+        Integer total = null;
+        List<DasEntryPoint> entryPoints = new ArrayList<DasEntryPoint>();
+        boolean foundEntryPoints = false;
+        while (!(xpp.next() == XmlPullParser.END_TAG && ELEMENT_DASEP.equals(xpp.getName()))) {
+            if (xpp.getEventType() == XmlPullParser.START_TAG) {
+                if (ELEMENT_ENTRY_POINTS.equals(xpp.getName())) {
+                    foundEntryPoints = true;
+                    version = trimmedStringOrNull(xpp.getAttributeValue(NAMESPACE, ATTRIBUTE_VERSION));
+                    total = parseStringToInt(xpp.getAttributeValue(NAMESPACE, ATTRIBUTE_TOTAL), false, null, xpp.getLineNumber(), "/DASEP/ENTRY_POINTS/@total");
+                } else if (ELEMENT_SEGMENT.equals(xpp.getName())) {
+                    entryPoints.add(processSegment(xpp));
+                }
+            }
+        }
+        if (!foundEntryPoints) {
+            throw new XmlPullParserException("No ENTRY_POINTS element has been returned from this remote DAS service");
+        }
+        return new DasEntryPointList(version, total, entryPoints);
+    }
+
+    private DasEntryPoint processSegment(XmlPullParser xpp) throws XmlPullParserException, IOException, DataSourceException {
+        String segmentId = failIfEmptyTrimmedString(xpp.getAttributeValue(NAMESPACE, ATTRIBUTE_ID), xpp.getLineNumber(), "/DASEP/ENTRY_POINTS/SEGMENT/@id");
+        Integer start = parseStringToInt(xpp.getAttributeValue(NAMESPACE, ATTRIBUTE_START), false, null, xpp.getLineNumber(), "/DASEP/ENTRY_POINTS/SEGMENT/@start");
+        Integer stop = parseStringToInt(xpp.getAttributeValue(NAMESPACE, ATTRIBUTE_STOP), false, null, xpp.getLineNumber(), "/DASEP/ENTRY_POINTS/SEGMENT/@stop");
+        String version = trimmedStringOrNull(xpp.getAttributeValue(NAMESPACE, ATTRIBUTE_VERSION));
+        String type = trimmedStringOrNull(xpp.getAttributeValue(NAMESPACE, ATTRIBUTE_TYPE));
+        String orientationString = trimmedStringOrNull(xpp.getAttributeValue(NAMESPACE, ATTRIBUTE_ORIENTATION));
+        boolean subparts = "yes".equalsIgnoreCase(trimmedStringOrNull(xpp.getAttributeValue(NAMESPACE, ATTRIBUTE_SUBPARTS)));
+        DasEntryPointOrientation orientation = DasEntryPointOrientation.NO_INTRINSIC_ORIENTATION;
+        if ("+".equals(orientationString)) {
+            orientation = DasEntryPointOrientation.POSITIVE_ORIENTATION;
+        } else if ("-".equals(orientationString) || "_".equals(orientationString)) {
+            orientation = DasEntryPointOrientation.NEGATIVE_ORIENTATION;
+        }
+        String description = getElementText(xpp, ELEMENT_SEGMENT);
+        return new DasEntryPointE(segmentId, start, stop, type, version, orientation, description, subparts);
+    }
+}
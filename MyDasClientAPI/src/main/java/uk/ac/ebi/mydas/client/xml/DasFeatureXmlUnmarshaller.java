@@ -13,6 +13,7 @@ import uk.ac.ebi.mydas.extendedmodel.DasTypeE;
 import uk.ac.ebi.mydas.model.*;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Reader;
 import java.net.URL;
 import java.util.ArrayList;
@@ -92,6 +93,7 @@ public class DasFeatureXmlUnmarshaller extends AbstractXmlUnmarshaller {
     private static final String ATTRIBUTE_STOP = "stop";
     private static final String ATTRIBUTE_LABEL = "label";
     private static final String ATTRIBUTE_CATEGORY = "category";
+    private static final String ATTRIBUTE_TOTAL = "total";
 //	private static final String ATTRIBUTE_REFERENCE = "reference";
 
     public DasFeatureXmlUnmarshaller() {
@@ -115,48 +117,76 @@ public class DasFeatureXmlUnmarshaller extends AbstractXmlUnmarshaller {
      *                             if there is a problem building a valid DasAnnotatedSegment.
      */
     public Collection<QueryAwareDasAnnotatedSegment> unMarshall(Reader aReader) throws IOException, DataSourceException {
-        Collection<QueryAwareDasAnnotatedSegment> dasAnnotatedSegments = null;
         try {
-
             XmlPullParser xpp = FACTORY.newPullParser();
             xpp.setInput(aReader);
-            int eventType = xpp.getEventType();
-            while (eventType != XmlPullParser.END_DOCUMENT) {
-                switch (eventType) {
-                    case XmlPullParser.START_DOCUMENT:
-                        if (LOGGER.isDebugEnabled()) {
-                            LOGGER.debug("Document start encountered.");
-                        }
-                        eventType = xpp.next();
-                        break;
-                    case XmlPullParser.START_TAG:
-                        String start = xpp.getName();
-                        // Note that we check the version here.
-                        if (ELEMENT_DASGFF.equals(start)) {
-                            dasAnnotatedSegments = processDasGff(xpp);
-                            eventType = xpp.getEventType();
-                        }
-                        break;
-                    case XmlPullParser.END_TAG:
-                        if (LOGGER.isDebugEnabled()) {
-                            LOGGER.debug("Found end tag " + xpp.getName() + " in namespace " + xpp.getName() + ".");
-                        }
-                        eventType = xpp.next();
-                        break;
-                    case XmlPullParser.TEXT:
-                        if (LOGGER.isDebugEnabled()) {
-                            LOGGER.debug("Found text '" + xpp.getText().trim() + "'.");
-                        }
-                        eventType = xpp.next();
-                        break;
-                    default:
-                        eventType = xpp.next();
-                        break;
-                }
-            }
+            return unMarshall(xpp);
         } catch (XmlPullParserException xppe) {
             throw new IOException(xppe.getMessage());
         }
+    }
+
+    /**
+     * This method unmarshalls an XML document while it is read from the specified InputStream,
+     * e.g. the body of an HTTP response, so the document itself is never held in memory.
+     * <p/>
+     * An IOException is thrown if the stream ends before the document is complete.
+     *
+     * @param anInputStream InputStream which reads the XML document.
+     * @param encoding the character encoding of the document, or null to detect it from the document.
+     * @return the segments of the document, or null if it has no DASGFF element.
+     * @throws java.io.IOException when the reading or parsing failed.
+     * @throws uk.ac.ebi.mydas.exceptions.DataSourceException
+     *                             if there is a problem building a valid DasAnnotatedSegment.
+     */
+    public Collection<QueryAwareDasAnnotatedSegment> unMarshall(InputStream anInputStream, String encoding) throws IOException, DataSourceException {
+        try {
+            XmlPullParser xpp = FACTORY.newPullParser();
+            xpp.setInput(anInputStream, encoding);
+            return unMarshall(xpp);
+        } catch (XmlPullParserException xppe) {
+            throw new IOException(xppe.getMessage());
+        }
+    }
+
+    private Collection<QueryAwareDasAnnotatedSegment> unMarshall(XmlPullParser xpp) throws XmlPullParserException, IOException, DataSourceException {
+        Collection<QueryAwareDasAnnotatedSegment> dasAnnotatedSegments = null;
+        int eventType = xpp.getEventType();
+        while (eventType != XmlPullParser.END_DOCUMENT) {
+            switch (eventType) {
+                case XmlPullParser.START_DOCUMENT:
+                    if (LOGGER.isDebugEnabled()) {
+                        LOGGER.debug("Document start encountered.");
+                    }
+                    eventType = xpp.next();
+                    break;
+                case XmlPullParser.START_TAG:
+                    String start = xpp.getName();
+                    // Note that we check the version here.
+                    if (ELEMENT_DASGFF.equals(start)) {
+                        dasAnnotatedSegments = processDasGff(xpp);
+                        eventType = xpp.getEventType();
+                    } else {
+                        eventType = xpp.next();
+                    }
+                    break;
+                case XmlPullParser.END_TAG:
+                    if (LOGGER.isDebugEnabled()) {
+                        LOGGER.debug("Found end tag " + xpp.getName() + " in namespace " + xpp.getName() + ".");
+                    }
+                    eventType = xpp.next();
+                    break;
+                case XmlPullParser.TEXT:
+                    if (LOGGER.isDebugEnabled()) {
+                        LOGGER.debug("Found text '" + xpp.getText().trim() + "'.");
+                    }
+                    eventType = xpp.next();
+                    break;
+                default:
+                    eventType = xpp.next();
+                    break;
+            }
+        }
         return dasAnnotatedSegments;
     }
 
@@ -193,6 +223,7 @@ public class DasFeatureXmlUnmarshaller extends AbstractXmlUnmarshaller {
         Integer stopCoordinate = parseStringToInt(xpp.getAttributeValue(NAMESPACE, ATTRIBUTE_STOP), false, null, xpp.getLineNumber(), "/DASGFF/GFF/SEGMENT/@stop");
         String version = failIfEmptyTrimmedString(xpp.getAttributeValue(NAMESPACE, ATTRIBUTE_VERSION), xpp.getLineNumber(), "/DASGFF/GFF/SEGMENT/@version");
         String segmentLabel = trimmedStringOrNull(xpp.getAttributeValue(NAMESPACE, ATTRIBUTE_LABEL));
+        Integer total = parseStringToInt(xpp.getAttributeValue(NAMESPACE, ATTRIBUTE_TOTAL), false, null, xpp.getLineNumber(), "/DASGFF/GFF/SEGMENT/@total");
         Collection<DasFeature> features = new ArrayList<DasFeature>();
 
         // Now parse any enclosed features (Allowed to be empty!?)
@@ -204,7 +235,9 @@ public class DasFeatureXmlUnmarshaller extends AbstractXmlUnmarshaller {
             }
         }
 
-        return new QueryAwareDasAnnotatedSegment(segmentId, startCoordinate, stopCoordinate, version, segmentLabel, features);
+        QueryAwareDasAnnotatedSegment segment = new QueryAwareDasAnnotatedSegment(segmentId, startCoordinate, stopCoordinate, version, segmentLabel, features);
+        segment.setReportedTotal(total);
+        return segment;
     }
 
 
@@ -0,0 +1,147 @@
+package uk.ac.ebi.mydas.client.xml;
+
+import org.apache.log4j.Logger;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlPullParserFactory;
+import uk.ac.ebi.mydas.exceptions.DataSourceException;
+import uk.ac.ebi.mydas.extendedmodel.DasTypeE;
+import uk.ac.ebi.mydas.model.DasType;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <p/>
+ * Unmarshaller for DAS 1.6 Types XML.
+ * <p/>
+ * Format:
+ * <p/>
+ * <?xml version="1.0" standalone="no"?>
+ * <DASTYPES>
+ * <GFF version="1.0" href="url">
+ * <SEGMENT id="id" start="start" stop="stop" version="X.XX" label="label">
+ * <TYPE id="id" category="category" cvId="cvId">count</TYPE>
+ * ...
+ * </SEGMENT>
+ * </GFF>
+ * </DASTYPES>
+ */
+public class DasTypesXmlUnmarshaller extends AbstractXmlUnmarshaller {
+    /**
+     * Define a static LOGGER variable so that it references the
+     * Logger instance named "DasTypesXmlUnmarshaller".
+     */
+    private static Logger LOGGER = Logger.getLogger(DasTypesXmlUnmarshaller.class);
+
+    /**
+     * String defining the namespace for the types XML.  At present there is no namespace,
+     * so this is set to null.
+     */
+    private static final String NAMESPACE = null;
+    private static final String ELEMENT_DASTYPES = "DASTYPES";
+    private static final String ELEMENT_TYPE = "TYPE";
+    private static final String ATTRIBUTE_ID = "id";
+    private static final String ATTRIBUTE_CATEGORY = "category";
+    private static final String ATTRIBUTE_CVID = "cvId";
+
+    public DasTypesXmlUnmarshaller() {
+        if (FACTORY == null) {
+            try {
+                FACTORY = XmlPullParserFactory.newInstance(System.getProperty(XmlPullParserFactory.PROPERTY_NAME), null);
+                FACTORY.setNamespaceAware(true);
+            } catch (XmlPullParserException xppe) {
+                LOGGER.warn(xppe.getMessage(), xppe);
+            }
+        }
+    }
+
+    /**
+     * This method unmarshalls a types document from the specified Reader.
+     *
+     * @param aReader Reader which reads from the XML file.
+     * @return the types in document order, each with its count (null if the document gives none;
+     *         summed if the type appears in several segments), or null if the document has no DASTYPES element.
+     * @throws java.io.IOException when the reading or parsing failed.
+     * @throws uk.ac.ebi.mydas.exceptions.DataSourceException
+     *                             if there is a problem building a valid DasType.
+     */
+    public Map<DasType, Integer> unMarshall(Reader aReader) throws IOException, DataSourceException {
+        try {
+            XmlPullParser xpp = FACTORY.newPullParser();
+            xpp.setInput(aReader);
+            return unMarshall(xpp);
+        } catch (XmlPullParserException xppe) {
+            throw new IOException(xppe.getMessage());
+        }
+    }
+
+    /**
+     * This method unmarshalls a types document while it is read from the specified InputStream.
+     *
+     * @param anInputStream InputStream which reads the XML document.
+     * @param encoding the character encoding of the document, or null to detect it from the document.
+     * @return the types in document order with their counts, as for {@link #unMarshall(java.io.Reader)}.
+     * @throws java.io.IOException when the reading or parsing failed.
+     * @throws uk.ac.ebi.mydas.exceptions.DataSourceException
+     *                             if there is a problem building a valid DasType.
+     */
+    public Map<DasType, Integer> unMarshall(InputStream anInputStream, String encoding) throws IOException, DataSourceException {
+        try {
+            XmlPullParser xpp = FACTORY.newPullParser();
+            xpp.setInput(anInputStream, encoding);
+            return unMarshall(xpp);
+        } catch (XmlPullParserException xppe) {
+            throw new IOException(xppe.getMessage());
+        }
+    }
+
+    private Map<DasType, Integer> unMarshall(XmlPullParser xpp) throws XmlPullParserException, IOException {
+        Map<DasType, Integer> types = null;
+        int eventType = xpp.getEventType();
+        while (eventType != XmlPullParser.END_DOCUMENT) {
+            if (eventType == XmlPullParser.START_TAG && ELEMENT_DASTYPES.equals(xpp.getName())) {
+                types = processDasTypes(xpp);
+            }
+            eventType = xpp.next();
+        }
+        return types;
+    }
+
+    private Map<DasType, Integer> processDasTypes(XmlPullParser xpp) throws XmlPullParserException, IOException {
+        Map<DasType, Integer> types = new LinkedHashMap<DasType, Integer>();
+        while (!(xpp.next() == XmlPullParser.END_TAG && ELEMENT_DASTYPES.equals(xpp.getName()))) {
+            if (xpp.getEventType() == XmlPullParser.START_TAG && ELEMENT_TYPE.equals(xpp.getName())) {
+                String id = failIfEmptyTrimmedString(xpp.getAttributeValue(NAMESPACE, ATTRIBUTE_ID), xpp.getLineNumber(), "/DASTYPES/GFF/SEGMENT/TYPE/@id");
+                String category = trimmedStringOrNull(xpp.getAttributeValue(NAMESPACE, ATTRIBUTE_CATEGORY));
+                String cvId = trimmedStringOrNull(xpp.getAttributeValue(NAMESPACE, ATTRIBUTE_CVID));
+                String countString = trimmedStringOrNull(getElementText(xpp, ELEMENT_TYPE));
+                // The count is optional, anything but an integer is ignored.
+                Integer count = null;
+                if (countString != null) {
+                    try {
+                        count = Integer.valueOf(countString);
+                    } catch (NumberFormatException nfe) {
+                        LOGGER.debug("Ignoring the count '" + countString + "' of type " + id);
+                    }
+                }
+                DasType type = new DasTypeE(id, category, cvId, null);
+                types.put(type, sum(types.get(type), count));
+            }
+        }
+        return types;
+    }
+
+    /**
+     * @return the sum of two optional counts, null if both are null.
+     */
+    public static Integer sum(Integer count, Integer other) {
+        if (count == null) {
+            return other;
+        }
+        return (other == null) ? count : count + other;
+    }
+}
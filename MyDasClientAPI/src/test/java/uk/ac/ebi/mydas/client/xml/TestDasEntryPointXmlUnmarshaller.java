@@ -0,0 +1,55 @@
+package uk.ac.ebi.mydas.client.xml;
+
+import junit.framework.TestCase;
+import uk.ac.ebi.mydas.client.DasEntryPointList;
+import uk.ac.ebi.mydas.exceptions.DataSourceException;
+import uk.ac.ebi.mydas.model.DasEntryPoint;
+import uk.ac.ebi.mydas.model.DasEntryPointOrientation;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+
+public class TestDasEntryPointXmlUnmarshaller extends TestCase {
+
+    private static final String TEST_FILE_NAME = "entry_points.xml";
+
+    public void testEntryPointUnmarshaller() throws IOException, DataSourceException {
+        InputStream stream = TestDasEntryPointXmlUnmarshaller.class.getClassLoader().getResourceAsStream(TEST_FILE_NAME);
+        try {
+            DasEntryPointXmlUnmarshaller unmarshaller = new DasEntryPointXmlUnmarshaller();
+            DasEntryPointList list = unmarshaller.unMarshall(stream, null);
+
+            assertNotNull("The returned entry points should not be null", list);
+            assertEquals("Incorrect version", "2.0", list.getVersion());
+            assertEquals("Incorrect total", new Integer(25), list.getTotal());
+            assertEquals("Incorrect number of entry points reported.", 2, list.getEntryPoints().size());
+
+            DasEntryPoint first = list.getEntryPoints().get(0);
+            assertEquals("Incorrect segment id", "P05067", first.getSegmentId());
+            assertEquals("Incorrect start", new Integer(1), first.getStartCoordinate());
+            assertEquals("Incorrect stop", new Integer(770), first.getStopCoordinate());
+            assertEquals("Incorrect type", "Protein", first.getType());
+            assertEquals("Incorrect orientation", DasEntryPointOrientation.POSITIVE_ORIENTATION, first.getOrientation());
+            assertEquals("Incorrect description", "A4_HUMAN", first.getDescription());
+            assertFalse("The first entry point has no subparts", first.hasSubparts());
+
+            DasEntryPoint second = list.getEntryPoints().get(1);
+            assertEquals("Incorrect segment id", "Q12345", second.getSegmentId());
+            assertEquals("Incorrect orientation", DasEntryPointOrientation.NEGATIVE_ORIENTATION, second.getOrientation());
+            assertNull("The second entry point has no description", second.getDescription());
+            assertTrue("The second entry point has subparts", second.hasSubparts());
+        } finally {
+            stream.close();
+        }
+    }
+
+    public void testMissingEntryPoints() throws DataSourceException {
+        try {
+            new DasEntryPointXmlUnmarshaller().unMarshall(new StringReader("<DASEP></DASEP>"));
+            fail("A DASEP document without ENTRY_POINTS should not be accepted");
+        } catch (IOException e) {
+            // Expected.
+        }
+    }
+}
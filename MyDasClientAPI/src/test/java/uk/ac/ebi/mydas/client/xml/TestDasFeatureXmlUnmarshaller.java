@@ -7,7 +7,10 @@ import uk.ac.ebi.mydas.model.DasAnnotatedSegment;
 import uk.ac.ebi.mydas.model.DasFeature;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.Arrays;
 import java.util.Collection;
@@ -95,4 +98,37 @@ public class TestDasFeatureXmlUnmarshaller extends TestCase {
             }
         }
     }
+
+    public void testUnmarshallerStream() throws IOException, DataSourceException {
+        InputStream stream = TestDasFeatureXmlUnmarshaller.class.getClassLoader().getResourceAsStream(TEST_FILE_NAME);
+        try {
+            Collection<QueryAwareDasAnnotatedSegment> segments = new DasFeatureXmlUnmarshaller().unMarshall(stream, null);
+            assertNotNull("The returned segments object should not be null", segments);
+            assertEquals("Incorrect number of DasAnnotatedSegment objects reported.", 2, segments.size());
+        } finally {
+            stream.close();
+        }
+    }
+
+    public void testUnmarshallerTruncatedStream() throws IOException, DataSourceException {
+        // Keep the first half of the document, which has a complete segment but no closing DASGFF element.
+        InputStream stream = TestDasFeatureXmlUnmarshaller.class.getClassLoader().getResourceAsStream(TEST_FILE_NAME);
+        ByteArrayOutputStream document = new ByteArrayOutputStream();
+        try {
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                document.write(buffer, 0, read);
+            }
+        } finally {
+            stream.close();
+        }
+        byte[] truncated = Arrays.copyOf(document.toByteArray(), document.size() / 2);
+        try {
+            new DasFeatureXmlUnmarshaller().unMarshall(new ByteArrayInputStream(truncated), "UTF-8");
+            fail("A truncated document should not be unmarshalled");
+        } catch (IOException e) {
+            // Expected.
+        }
+    }
 }
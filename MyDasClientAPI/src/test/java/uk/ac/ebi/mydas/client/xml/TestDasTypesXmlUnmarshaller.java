@@ -0,0 +1,39 @@
+package uk.ac.ebi.mydas.client.xml;
+
+import junit.framework.TestCase;
+import uk.ac.ebi.mydas.exceptions.DataSourceException;
+import uk.ac.ebi.mydas.extendedmodel.DasTypeE;
+import uk.ac.ebi.mydas.model.DasType;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+public class TestDasTypesXmlUnmarshaller extends TestCase {
+
+    private static final String TEST_FILE_NAME = "types.xml";
+
+    public void testTypesUnmarshaller() throws IOException, DataSourceException {
+        InputStream stream = TestDasTypesXmlUnmarshaller.class.getClassLoader().getResourceAsStream(TEST_FILE_NAME);
+        try {
+            DasTypesXmlUnmarshaller unmarshaller = new DasTypesXmlUnmarshaller();
+            Map<DasType, Integer> types = unmarshaller.unMarshall(stream, null);
+
+            assertNotNull("The returned types should not be null", types);
+            assertEquals("Incorrect number of types reported.", 3, types.size());
+            assertEquals("The counts of a type listed twice should be added up", new Integer(15), types.get(new DasTypeE("description", "Miscellaneous", null, null)));
+            assertEquals("Incorrect count", new Integer(30), types.get(new DasTypeE("SO:0000419", "Chain", "SO:0000419", null)));
+            assertTrue("A type without a count should be reported", types.containsKey(new DasTypeE("reference", "Publication", null, null)));
+            assertNull("A type without a count should have a null count", types.get(new DasTypeE("reference", "Publication", null, null)));
+        } finally {
+            stream.close();
+        }
+    }
+
+    public void testSum() {
+        assertNull(DasTypesXmlUnmarshaller.sum(null, null));
+        assertEquals(new Integer(2), DasTypesXmlUnmarshaller.sum(2, null));
+        assertEquals(new Integer(3), DasTypesXmlUnmarshaller.sum(null, 3));
+        assertEquals(new Integer(5), DasTypesXmlUnmarshaller.sum(2, 3));
+    }
+}
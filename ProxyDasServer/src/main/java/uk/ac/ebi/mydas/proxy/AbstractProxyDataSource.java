@@ -34,9 +34,11 @@ import org.apache.http.params.CoreConnectionPNames;
 import org.apache.http.params.HttpParams;
 import org.apache.http.util.EntityUtils;
 import org.apache.log4j.Logger;
+import uk.ac.ebi.mydas.client.DasEntryPointList;
 import uk.ac.ebi.mydas.client.QueryAwareDasAnnotatedSegment;
 import uk.ac.ebi.mydas.client.RegexPatterns;
-import uk.ac.ebi.mydas.client.xml.DasFeatureXmlUnmarshaller;
+import uk.ac.ebi.mydas.client.xml.DasEntryPointXmlUnmarshaller;
+import uk.ac.ebi.mydas.client.xml.DasTypesXmlUnmarshaller;
 import uk.ac.ebi.mydas.configuration.DataSourceConfiguration;
 import uk.ac.ebi.mydas.configuration.PropertyType;
 import uk.ac.ebi.mydas.datasource.AnnotationDataSource;
@@ -44,17 +46,31 @@ import uk.ac.ebi.mydas.exceptions.BadReferenceObjectException;
 import uk.ac.ebi.mydas.exceptions.DataSourceException;
 import uk.ac.ebi.mydas.exceptions.UnimplementedFeatureException;
 import uk.ac.ebi.mydas.model.DasAnnotatedSegment;
+import uk.ac.ebi.mydas.model.DasEntryPoint;
+import uk.ac.ebi.mydas.model.DasFeature;
 import uk.ac.ebi.mydas.model.DasType;
+import uk.ac.ebi.mydas.model.Range;
 
 import javax.servlet.ServletContext;
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.StringReader;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.net.URLEncoder;
 import java.util.*;
-import java.util.concurrent.Executor;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -87,11 +103,15 @@ public abstract class AbstractProxyDataSource implements AnnotationDataSource {
     private static final Logger LOGGER = Logger.getLogger(AbstractProxyDataSource.class);
 
     /**
-     * The CachedThreadPool will not restrict the maximum number of Threads
-     * but will allow their reuse and prevent creation of additional threads
-     * unless they are really needed.
+     * Runs the requests to the remote servers, with at most proxy.threads of them running at once.
+     * Created in init, one per proxy data source.
      */
-    private static final Executor EXEC = Executors.newCachedThreadPool();
+    private ThreadPoolExecutor executor = null;
+
+    /**
+     * Aborts the requests that have run for longer than proxy.remoteTimeout.
+     */
+    private ScheduledExecutorService timer = null;
 
     ServletContext svCon;
     Map<String, PropertyType> globalParameters;
@@ -102,6 +122,12 @@ public abstract class AbstractProxyDataSource implements AnnotationDataSource {
 
     // Connection timeout set to 4 seconds by default - can be overridden in the MydasServerConfig.xml file.
     int connectionTimeout = 4000;
+    // The number of remote servers queried at once, by default all of them.
+    int threads = 0;
+    // The time a request to a remote server may take, and the time the proxy waits for all of them,
+    // both set to the connection timeout by default.
+    int remoteTimeout = 0;
+    int deadline = 0;
     final Set<String> dasServers = new HashSet<String>();
 
     private static final String HTTP_PROXY_SET = "http.proxySet";
@@ -120,9 +146,45 @@ public abstract class AbstractProxyDataSource implements AnnotationDataSource {
      */
     private static final Pattern PATTERN_VALID_DAS_SERVER_URL = Pattern.compile("/das/([^/?]+)/?$");
     private static final String HTTP_TIMEOUT = "http.timeout";
+    private static final String PROXY_THREADS = "proxy.threads";
+    private static final String PROXY_REMOTE_TIMEOUT = "proxy.remoteTimeout";
+    private static final String PROXY_DEADLINE = "proxy.deadline";
+    private static final String PROXY_CACHE_SIZE = "proxy.cache.size";
+    private static final String PROXY_CACHE_TTL = "proxy.cache.ttl";
+    private static final String PROXY_HEALTH_WINDOW = "proxy.health.window";
+    private static final String PROXY_HEALTH_FAILURE_PERCENT = "proxy.health.failurePercent";
+    private static final String PROXY_HEALTH_SLOW_CALL = "proxy.health.slowCall";
+    private static final String PROXY_HEALTH_PROBE_INTERVAL = "proxy.health.probeInterval";
 
     private List<String> remoteDataSources = new ArrayList<String>();
 
+    /**
+     * The caches of the responses of the remote data sources, by remote data source URL.
+     * A remote data source without a cache is queried for each request.
+     */
+    private Map<String, RemoteResponseCache> remoteCaches = new HashMap<String, RemoteResponseCache>();
+
+    /**
+     * The health of the remote data sources, by remote data source URL, in the order of the remote data sources.
+     * Empty if health tracking is disabled.
+     */
+    private Map<String, RemoteHealth> remoteHealth = new LinkedHashMap<String, RemoteHealth>();
+
+    // The time in milliseconds between two probes of a remote server whose circuit is open.
+    int probeInterval = 30000;
+
+    /**
+     * The merged counts of the types of the remote data sources, as of the last types request.
+     */
+    private volatile Map<DasType, Integer> typeCounts = null;
+
+    /**
+     * The total and version of the entry points of the remote data sources, kept until entryPointSummaryExpires.
+     */
+    private volatile DasEntryPointList entryPointSummary = null;
+    private volatile long entryPointSummaryExpires = 0;
+    private static final long ENTRY_POINT_SUMMARY_TTL = 60000;
+
 
     /**
      * This method is called by the MydasServlet class at Servlet initialisation.
@@ -252,6 +314,65 @@ public abstract class AbstractProxyDataSource implements AnnotationDataSource {
             LOGGER.fatal("No remote DAS data sources have been successfully initialised.  Please check your settings in the MydasServerConfig.xml file.");
             throw new DataSourceException("No remote DAS data sources have been successfully initialised.  Please check your settings in the MydasServerConfig.xml file.");
         }
+
+        threads = getIntegerProperty(dataSourceProps, PROXY_THREADS, remoteDataSources.size());
+        remoteTimeout = getIntegerProperty(dataSourceProps, PROXY_REMOTE_TIMEOUT, connectionTimeout);
+        deadline = getIntegerProperty(dataSourceProps, PROXY_DEADLINE, connectionTimeout);
+        if (threads < 1) {
+            throw new DataSourceException("The " + PROXY_THREADS + " parameter in the MydasServerConfig.xml file must be at least 1.");
+        }
+        final String threadName = "mydas-proxy-" + dataSourceConfig.getId() + "-";
+        ThreadFactory threadFactory = new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, threadName + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), threadFactory);
+        executor.allowCoreThreadTimeOut(true);
+        timer = Executors.newSingleThreadScheduledExecutor(threadFactory);
+
+        // Cache the responses of the remote data sources, if configured.  proxy.cache.size and proxy.cache.ttl
+        // apply to all of them, and can be overridden for dasServerN with proxy.cache.sizeN and proxy.cache.ttlN.
+        int cacheSize = getIntegerProperty(dataSourceProps, PROXY_CACHE_SIZE, 0);
+        int cacheTimeToLive = getIntegerProperty(dataSourceProps, PROXY_CACHE_TTL, 0);
+        for (int i = 1; i <= remoteDataSources.size(); i++) {
+            int size = getIntegerProperty(dataSourceProps, PROXY_CACHE_SIZE + i, cacheSize);
+            int timeToLive = getIntegerProperty(dataSourceProps, PROXY_CACHE_TTL + i, cacheTimeToLive);
+            if (size > 0) {
+                remoteCaches.put(remoteDataSources.get(i - 1), new RemoteResponseCache(size, timeToLive * 1000L));
+            }
+        }
+
+        // Track the health of the remote data sources, unless proxy.health.window is 0.
+        int window = getIntegerProperty(dataSourceProps, PROXY_HEALTH_WINDOW, 20);
+        int failurePercent = getIntegerProperty(dataSourceProps, PROXY_HEALTH_FAILURE_PERCENT, 50);
+        int slowCall = getIntegerProperty(dataSourceProps, PROXY_HEALTH_SLOW_CALL, remoteTimeout);
+        probeInterval = getIntegerProperty(dataSourceProps, PROXY_HEALTH_PROBE_INTERVAL, probeInterval);
+        if (window > 0) {
+            for (String dsnUrlString : remoteDataSources) {
+                remoteHealth.put(dsnUrlString, new RemoteHealth(dsnUrlString, window, failurePercent / 100.0, slowCall));
+            }
+        }
+    }
+
+    /**
+     * @return the value of an optional integer property of the data source, or the default value if it is not set.
+     * @throws DataSourceException if the property is not an integer.
+     */
+    private int getIntegerProperty(Map<String, PropertyType> dataSourceProps, String propertyName, int defaultValue) throws DataSourceException {
+        PropertyType property = dataSourceProps.get(propertyName);
+        if (property == null) {
+            return defaultValue;
+        }
+        String value = property.getValue();
+        if (!RegexPatterns.INTEGER_PATTERN.matcher(value).matches()) {
+            throw new DataSourceException("The " + propertyName + " parameter in the MydasServerConfig.xml file must be a valid integer.  It is currently set to '" + value + "'");
+        }
+        return Integer.parseInt(value);
     }
 
     private void setSystemProperty(Properties sysProperties, Map<String, PropertyType> dataSourceProps, String propertyName) {
@@ -260,7 +381,62 @@ public abstract class AbstractProxyDataSource implements AnnotationDataSource {
         }
     }
 
-    private void checkServerRunning(HttpClient client, String urlString) {
+    /**
+     * @return the health of each remote data source, in the order of the remote data sources,
+     *         or an empty collection if health tracking is disabled.
+     */
+    public Collection<RemoteHealth> getRemoteHealth() {
+        return Collections.unmodifiableCollection(remoteHealth.values());
+    }
+
+    /**
+     * Records the outcome of a request to a remote data source, and starts probing it if its circuit opens.
+     */
+    private void recordOutcome(String dsnUrlString, long elapsed, boolean failed) {
+        RemoteHealth health = remoteHealth.get(dsnUrlString);
+        if (health != null && health.record(elapsed, failed)) {
+            LOGGER.warn("Remote DAS Service at '" + dsnUrlString + "' is failing, it will not be queried until it answers a probe: " + health);
+            scheduleProbe(health);
+        }
+    }
+
+    /**
+     * Probes a remote data source whose circuit is open with a types request after proxy.health.probeInterval,
+     * closing its circuit if it answers, otherwise probing it again later.
+     */
+    private void scheduleProbe(final RemoteHealth health) {
+        final Runnable probe = new Runnable() {
+            public void run() {
+                health.halfOpen();
+                boolean running = checkServerRunning(httpClient, health.getUrl());
+                health.probed(running);
+                if (running) {
+                    LOGGER.info("Remote DAS Service at '" + health.getUrl() + "' has recovered.");
+                } else {
+                    scheduleProbe(health);
+                }
+            }
+        };
+        try {
+            // The probe itself runs in the pool, so that it does not hold up the timeouts of the timer.
+            timer.schedule(new Runnable() {
+                public void run() {
+                    try {
+                        executor.execute(probe);
+                    } catch (RejectedExecutionException e) {
+                        LOGGER.debug("Not probing " + health.getUrl() + " as the proxy data source has been destroyed.");
+                    }
+                }
+            }, probeInterval, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            LOGGER.debug("Not probing " + health.getUrl() + " as the proxy data source has been destroyed.");
+        }
+    }
+
+    /**
+     * @return true if the types request to the remote data source returned a valid DASTYPES document.
+     */
+    private boolean checkServerRunning(HttpClient client, String urlString) {
         HttpGet method = null;
         // Query the types command
         urlString = urlString + "/types";
@@ -281,6 +457,7 @@ public abstract class AbstractProxyDataSource implements AnnotationDataSource {
                 // Check for a valid </DASTYPES> element.
                 if (responseString.contains("</DASTYPES>")) {
                     LOGGER.info("The types request\n\n" + urlString + "\n\nwas successful and returned the XML:\n\n" + responseString);
+                    return true;
                 } else {
                     LOGGER.warn("The types request\n\n" + urlString + "\n\nFAILED and returned:\n\n" + responseString);
                 }
@@ -294,6 +471,7 @@ public abstract class AbstractProxyDataSource implements AnnotationDataSource {
                 method.reset();
             }
         }
+        return false;
     }
 
     /**
@@ -301,6 +479,15 @@ public abstract class AbstractProxyDataSource implements AnnotationDataSource {
      * to clean up resources such as database connections as required.
      */
     public void destroy() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        if (timer != null) {
+            timer.shutdownNow();
+        }
+        for (RemoteResponseCache cache : remoteCaches.values()) {
+            cache.clear();
+        }
         if (httpClient != null && httpClient.getConnectionManager() != null) {
             httpClient.getConnectionManager().shutdown();
         }
@@ -341,81 +528,290 @@ public abstract class AbstractProxyDataSource implements AnnotationDataSource {
             throw new BadReferenceObjectException(segmentId, "The query has provided an empty segmentId");
         }
         Collection<QueryAwareDasAnnotatedSegment> annotatedSegments = new ArrayList<QueryAwareDasAnnotatedSegment>();
+        for (Collection<QueryAwareDasAnnotatedSegment> response : queryFeatures(buildFeaturesQuery("segment=" + segmentId, maxBins, null))) {
+            annotatedSegments.addAll(response);
+        }
+
+        // Delegate to the subclass method to work out how to coalesce multiple annotated segments.
+        if (annotatedSegments.size() == 0) {
+            throw new BadReferenceObjectException(segmentId, "None of the data sources queried by this proxy DAS service recognise this segment.");
+        }
+
+        return coalesceDasAnnotatedSegments(annotatedSegments);
+    }
+
+    /**
+     * Same as {@link #getFeatures(String, Integer)}, restricted to the requested rows of the coalesced features.
+     * <p/>
+     * Each remote data source is asked for its rows up to the last requested one, which are all the rows that can
+     * fall in the requested range.  See {@link #selectRows(java.util.List, uk.ac.ebi.mydas.model.Range)} for the
+     * rows and the total of the returned segment.
+     */
+    public DasAnnotatedSegment getFeatures(String segmentId, Integer maxbins, Range rows) throws BadReferenceObjectException, DataSourceException, UnimplementedFeatureException {
+        if (segmentId == null || "".equals(segmentId.trim())) {
+            throw new BadReferenceObjectException(segmentId, "The query has provided an empty segmentId");
+        }
+        List<Collection<QueryAwareDasAnnotatedSegment>> responses = queryFeatures(buildFeaturesQuery("segment=" + segmentId, maxbins, rows));
+        List<QueryAwareDasAnnotatedSegment> annotatedSegments = selectRows(responses, rows);
+        if (annotatedSegments.size() == 0) {
+            throw new BadReferenceObjectException(segmentId, "None of the data sources queried by this proxy DAS service recognise this segment.");
+        }
+        return annotatedSegments.get(0);
+    }
+
+    /**
+     * @return the query string of a features request to the remote data sources.
+     */
+    private String buildFeaturesQuery(String selection, Integer maxbins, Range rows) {
+        StringBuilder query = new StringBuilder(selection);
+        if (maxbins != null) {
+            query.append(";maxbins=").append(maxbins);
+        }
+        if (rows != null) {
+            // The rows before the requested ones are needed to place the rows of the following remote data sources.
+            query.append(";rows=1-").append(rows.getTo());
+        }
+        return query.toString();
+    }
+
+    /**
+     * Coalesces the segments returned by the remote data sources by segment id, then keeps the requested rows of
+     * the coalesced features, numbering the rows of the coalesced segments one after the other.  The features
+     * reported by several remote data sources are dropped by {@link #coalesceDasAnnotatedSegments(java.util.Collection)}
+     * before the rows are numbered, so they neither take a row nor shorten the page.
+     * <p/>
+     * The total of each segment is the sum of the totals reported by the remote data sources, less the features
+     * dropped while coalescing.  It is exact when the remote data sources have returned all of their features;
+     * otherwise the duplicates beyond the returned rows cannot be seen, and the total may count them.
+     *
+     * @param responses the segments returned by each remote data source, in the order of the remote data sources.
+     * @param rows the requested rows.
+     * @return the coalesced segments, in the order they were first returned, holding only their features in the requested rows.
+     */
+    List<QueryAwareDasAnnotatedSegment> selectRows(List<Collection<QueryAwareDasAnnotatedSegment>> responses, Range rows) throws DataSourceException {
+        Map<String, Collection<QueryAwareDasAnnotatedSegment>> segmentsById = groupBySegmentId(responses);
+        List<QueryAwareDasAnnotatedSegment> selected = new ArrayList<QueryAwareDasAnnotatedSegment>();
+        int row = 0;
+        for (Collection<QueryAwareDasAnnotatedSegment> segments : segmentsById.values()) {
+            int total = 0;
+            int returned = 0;
+            for (QueryAwareDasAnnotatedSegment segment : segments) {
+                total += (segment.getReportedTotal() == null) ? segment.getFeatures().size() : segment.getReportedTotal();
+                returned += segment.getFeatures().size();
+            }
+            QueryAwareDasAnnotatedSegment coalesced = coalesceDasAnnotatedSegments(segments);
+            List<DasFeature> features = new ArrayList<DasFeature>();
+            for (DasFeature feature : coalesced.getFeatures()) {
+                row++;
+                if (row >= rows.getFrom() && row <= rows.getTo()) {
+                    features.add(feature);
+                }
+            }
+            QueryAwareDasAnnotatedSegment copy = new QueryAwareDasAnnotatedSegment(coalesced.getSegmentId(), coalesced.getStartCoordinate(),
+                    coalesced.getStopCoordinate(), coalesced.getVersion(), coalesced.getSegmentLabel(), features);
+            if (coalesced.getQueryURL() != null) {
+                copy.setQueryURL(coalesced.getQueryURL());
+            }
+            copy.setTotalFeatures(total - (returned - coalesced.getFeatures().size()));
+            selected.add(copy);
+        }
+        return selected;
+    }
+
+    /**
+     * @return the segments returned by the remote data sources grouped by segment id, in the order they were first returned.
+     */
+    private static Map<String, Collection<QueryAwareDasAnnotatedSegment>> groupBySegmentId(List<Collection<QueryAwareDasAnnotatedSegment>> responses) {
+        Map<String, Collection<QueryAwareDasAnnotatedSegment>> segmentsById = new LinkedHashMap<String, Collection<QueryAwareDasAnnotatedSegment>>();
+        for (Collection<QueryAwareDasAnnotatedSegment> response : responses) {
+            for (QueryAwareDasAnnotatedSegment segment : response) {
+                Collection<QueryAwareDasAnnotatedSegment> segments = segmentsById.get(segment.getSegmentId());
+                if (segments == null) {
+                    segments = new ArrayList<QueryAwareDasAnnotatedSegment>();
+                    segmentsById.put(segment.getSegmentId(), segments);
+                }
+                segments.add(segment);
+            }
+        }
+        return segmentsById;
+    }
+
+    /**
+     * Queries the features of all the available remote data sources concurrently, and waits for their responses
+     * up to proxy.deadline.
+     *
+     * @param query the query string of the features request, e.g. segment=P12345.
+     * @return the segments of each remote data source that answered, in the order of the remote data sources.
+     * @throws DataSourceException if interrupted while waiting for the responses.
+     */
+    private List<Collection<QueryAwareDasAnnotatedSegment>> queryFeatures(String query) throws DataSourceException {
+        List<Collection<QueryAwareDasAnnotatedSegment>> responses = new ArrayList<Collection<QueryAwareDasAnnotatedSegment>>();
         LOGGER.debug("Data sources: " + remoteDataSources);
         List<DasQueryRunnerThread> proxies = new ArrayList<DasQueryRunnerThread>(remoteDataSources.size());
+        Map<String, DasQueryRunnerThread> runners = new HashMap<String, DasQueryRunnerThread>();
+        Map<String, Collection<QueryAwareDasAnnotatedSegment>> cachedResponses = new HashMap<String, Collection<QueryAwareDasAnnotatedSegment>>();
+        Map<DasQueryRunnerThread, Future<DasQueryRunnerThread>> futures = new HashMap<DasQueryRunnerThread, Future<DasQueryRunnerThread>>();
+        CompletionService<DasQueryRunnerThread> completionService = new ExecutorCompletionService<DasQueryRunnerThread>(executor);
         // Request features from all the attached DAS sources... then do something clever with them...
 
-        // Run all the queries in separate Threads...
+        // Run all the queries in the pool of the data source...
         for (String dsnUrlString : remoteDataSources) {
-            StringBuilder queryURL = new StringBuilder(dsnUrlString)
-                    .append("/features?segment=")
-                    .append(segmentId);
-            if (maxBins != null) {
-                queryURL.append(";maxbins=").append(maxBins);
+            String queryURL = dsnUrlString + "/features?" + query;
+            // Answer from the cache while the response is fresh, otherwise revalidate it if it is cached.
+            RemoteResponseCache cache = remoteCaches.get(dsnUrlString);
+            RemoteResponseCache.Entry cached = (cache == null) ? null : cache.get(queryURL);
+            if (cached != null && cached.isFresh()) {
+                cachedResponses.put(dsnUrlString, cached.copySegments());
+                continue;
+            }
+            if (!isAvailable(dsnUrlString)) {
+                continue;
             }
-            DasQueryRunnerThread runner = new DasQueryRunnerThread(httpClient, queryURL.toString());
+            DasQueryRunnerThread runner = new DasQueryRunnerThread(httpClient, queryURL, timer, remoteTimeout, cache, cached);
             proxies.add(runner);
-            EXEC.execute(runner);
+            runners.put(dsnUrlString, runner);
+            futures.put(runner, completionService.submit(runner, runner));
         }
 
-        // Loop until they have all completed. (Check every 20 milliseconds)
-        while (true) {
-            boolean allFinished = true;
+        // Wait for them to complete, up to the deadline; the responses received by then are used.
+        Set<DasQueryRunnerThread> completed = new HashSet<DasQueryRunnerThread>();
+        long end = System.currentTimeMillis() + deadline;
+        try {
+            while (completed.size() < proxies.size()) {
+                Future<DasQueryRunnerThread> future = completionService.poll(end - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+                if (future == null) {
+                    LOGGER.warn("Only " + completed.size() + " of the " + proxies.size() + " remote DAS sources have answered within " + deadline + "ms for " + query);
+                    break;
+                }
+                completed.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            LOGGER.error("The main thread has been interrupted while waiting for the worker threads to complete.");
+            throw new DataSourceException("The main thread has been interrupted while waiting for the worker threads to complete.", e);
+        } catch (ExecutionException e) {
+            throw new DataSourceException("Unexpected error querying a remote DAS source.", e.getCause());
+        } finally {
+            // Cancel the stragglers still queued first, so none of them runs in a thread freed by the others,
+            // then the running ones, closing their connections.
             for (DasQueryRunnerThread runner : proxies) {
-                if (!runner.isFinished()) {
-                    allFinished = false;
+                if (!completed.contains(runner) && !runner.isStarted()) {
+                    futures.get(runner).cancel(true);
                 }
             }
-            if (allFinished) break;
-            try {
-                Thread.sleep(20);
-            } catch (InterruptedException e) {
-                LOGGER.error("The main thread has been interrupted while waiting for the worker threads to complete.");
-                throw new DataSourceException("The main thread has been interrupted while waiting for the worker threads to complete.", e);
+            for (DasQueryRunnerThread runner : proxies) {
+                if (!completed.contains(runner)) {
+                    futures.get(runner).cancel(true);
+                    runner.abort();
+                }
             }
         }
 
-        // Request features from all the attached DAS sources... then do something clever with them...
-        for (DasQueryRunnerThread runner : proxies) {
+        // Collect the features in the order of the remote data sources... then do something clever with them...
+        for (String dsnUrlString : remoteDataSources) {
+            Collection<QueryAwareDasAnnotatedSegment> cachedSegments = cachedResponses.get(dsnUrlString);
+            if (cachedSegments != null) {
+                responses.add(cachedSegments);
+                continue;
+            }
+            DasQueryRunnerThread runner = runners.get(dsnUrlString);
+            if (runner == null) {
+                continue;
+            }
+            if (!completed.contains(runner)) {
+                // A request still queued in the pool at the deadline says nothing of the remote server.
+                if (runner.isStarted()) {
+                    recordOutcome(dsnUrlString, deadline, true);
+                }
+                continue;
+            }
+            recordOutcome(dsnUrlString, runner.getElapsed(), runner.isFailed());
             if (LOGGER.isDebugEnabled()) {
                 LOGGER.debug("Processing response from " + runner.getUrlQueryString());
             }
-            String responseString = runner.getResponseString();
-            // Check that this is a valid DASGFF containing a complete segment (not an errorsegment or unknownsegment)
-            // Do this the simple way for the moment...
-            if (runner.isSuccessful() && responseString != null && responseString.contains("</SEGMENT>") && responseString.contains("</DASGFF>")) {
-                // OK, looks like this is a good file and complete, so parse and collect the resulting DasAnnotatedSegments.
-                BufferedReader reader = null;
-                try {
-                    reader = new BufferedReader(new StringReader(responseString));
-                    DasFeatureXmlUnmarshaller unmarshaller = new DasFeatureXmlUnmarshaller();
-                    Collection<QueryAwareDasAnnotatedSegment> segments = unmarshaller.unMarshall(reader);
-                    for (QueryAwareDasAnnotatedSegment segment : segments) {
-                        segment.setQueryURL(runner.getUrlQueryString());
-                    }
-                    annotatedSegments.addAll(segments);
-                } catch (IOException e) {
-                    // Don't barf out here - the other proxy data sources may work.
-                    LOGGER.error("An IOException was thrown when attempting to xml the XML from " + runner.getUrlQueryString(), e);
-                } finally {
-                    if (reader != null) {
-                        try {
-                            reader.close();
-                        } catch (IOException e) {
-                            // Don't barf out here - the other proxy data sources may work.
-                            LOGGER.error("An IOException was thrown when attempting to close the StringReader for the response from " + runner.getUrlQueryString(), e);
-                        }
-                    }
+            // Only a valid DASGFF containing complete segments (not an errorsegment or unknownsegment) is successful.
+            if (runner.isSuccessful()) {
+                responses.add(runner.getSegments());
+            }
+        }
+        return responses;
+    }
+
+    /**
+     * Queries a document of all the available remote data sources concurrently, and waits for their responses
+     * up to proxy.deadline.
+     *
+     * @param queries the query of each remote data source, by remote data source URL.
+     * @return the documents returned, by remote data source URL, in the order of the remote data sources.
+     * @throws DataSourceException if interrupted while waiting for the responses.
+     */
+    private <T> Map<String, T> queryDocuments(Map<String, RemoteDocumentQuery<T>> queries) throws DataSourceException {
+        CompletionService<T> completionService = new ExecutorCompletionService<T>(executor);
+        Map<Future<T>, String> urls = new HashMap<Future<T>, String>();
+        for (Map.Entry<String, RemoteDocumentQuery<T>> query : queries.entrySet()) {
+            urls.put(completionService.submit(query.getValue()), query.getKey());
+        }
+
+        Map<String, T> answers = new HashMap<String, T>();
+        long end = System.currentTimeMillis() + deadline;
+        try {
+            while (answers.size() < queries.size()) {
+                Future<T> future = completionService.poll(end - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+                if (future == null) {
+                    LOGGER.warn("Only " + answers.size() + " of the " + queries.size() + " remote DAS sources have answered within " + deadline + "ms");
+                    break;
+                }
+                answers.put(urls.get(future), future.get());
+            }
+        } catch (InterruptedException e) {
+            LOGGER.error("The main thread has been interrupted while waiting for the worker threads to complete.");
+            throw new DataSourceException("The main thread has been interrupted while waiting for the worker threads to complete.", e);
+        } catch (ExecutionException e) {
+            throw new DataSourceException("Unexpected error querying a remote DAS source.", e.getCause());
+        } finally {
+            // Cancel the stragglers still queued first, so none of them runs in a thread freed by the others,
+            // then the running ones, closing their connections.
+            for (Map.Entry<Future<T>, String> url : urls.entrySet()) {
+                if (!answers.containsKey(url.getValue()) && !queries.get(url.getValue()).isStarted()) {
+                    url.getKey().cancel(true);
+                }
+            }
+            for (Map.Entry<Future<T>, String> url : urls.entrySet()) {
+                if (!answers.containsKey(url.getValue())) {
+                    url.getKey().cancel(true);
+                    queries.get(url.getValue()).abort();
                 }
             }
         }
 
-        // Delegate to the subclass method to work out how to coalesce multiple annotated segments.
-        if (annotatedSegments.size() == 0) {
-            throw new BadReferenceObjectException(segmentId, "None of the data sources queried by this proxy DAS service recognise this segment.");
+        Map<String, T> documents = new LinkedHashMap<String, T>();
+        for (Map.Entry<String, RemoteDocumentQuery<T>> query : queries.entrySet()) {
+            String dsnUrlString = query.getKey();
+            if (!answers.containsKey(dsnUrlString)) {
+                if (query.getValue().isStarted()) {
+                    recordOutcome(dsnUrlString, deadline, true);
+                }
+                continue;
+            }
+            recordOutcome(dsnUrlString, query.getValue().getElapsed(), query.getValue().isFailed());
+            if (answers.get(dsnUrlString) != null) {
+                documents.put(dsnUrlString, answers.get(dsnUrlString));
+            }
         }
+        return documents;
+    }
 
-        return coalesceDasAnnotatedSegments(annotatedSegments);
+    /**
+     * @return false if the circuit of the remote data source is open, so it should not be queried.
+     */
+    private boolean isAvailable(String dsnUrlString) {
+        RemoteHealth health = remoteHealth.get(dsnUrlString);
+        if (health != null && !health.isAvailable()) {
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Skipping " + health);
+            }
+            return false;
+        }
+        return true;
     }
 
     /**
@@ -461,7 +857,38 @@ public abstract class AbstractProxyDataSource implements AnnotationDataSource {
      */
     @Override
     public Collection<DasAnnotatedSegment> getFeatures(Collection<String> featureIdCollection, Integer maxbins) throws UnimplementedFeatureException, DataSourceException {
-        throw new UnimplementedFeatureException("This proxy DAS server cannot query by featureIdCollection.");
+        return getFeatures(featureIdCollection, maxbins, null);
+    }
+
+    /**
+     * Same as {@link #getFeatures(java.util.Collection, Integer)}, restricted to the requested rows of the features.
+     * The segments returned by the remote data sources are coalesced by segment id, before the rows are numbered.
+     *
+     * @param rows the requested rows of the features, may be null for all of them.
+     */
+    public Collection<DasAnnotatedSegment> getFeatures(Collection<String> featureIdCollection, Integer maxbins, Range rows) throws UnimplementedFeatureException, DataSourceException {
+        Collection<DasAnnotatedSegment> coalescedSegments = new ArrayList<DasAnnotatedSegment>();
+        if (featureIdCollection.isEmpty()) {
+            return coalescedSegments;
+        }
+        StringBuilder selection = new StringBuilder();
+        for (String featureId : featureIdCollection) {
+            if (selection.length() > 0) {
+                selection.append(';');
+            }
+            selection.append("feature_id=").append(encode(featureId));
+        }
+        List<Collection<QueryAwareDasAnnotatedSegment>> responses = queryFeatures(buildFeaturesQuery(selection.toString(), maxbins, rows));
+        if (rows != null) {
+            coalescedSegments.addAll(selectRows(responses, rows));
+            return coalescedSegments;
+        }
+
+        // Coalesce the segments with the same id, in the order they were first returned.
+        for (Collection<QueryAwareDasAnnotatedSegment> segments : groupBySegmentId(responses).values()) {
+            coalescedSegments.add(coalesceDasAnnotatedSegments(segments));
+        }
+        return coalescedSegments;
     }
 
     /**
@@ -489,8 +916,29 @@ public abstract class AbstractProxyDataSource implements AnnotationDataSource {
      *          and read a record.</bold>
      */
     public Collection<DasType> getTypes() throws DataSourceException {
-        // TODO: Implement this by returning the types for all the source DSNs?  (Will require a types unmarshaller).
-        return null;
+        Map<String, RemoteDocumentQuery<Map<DasType, Integer>>> queries = new LinkedHashMap<String, RemoteDocumentQuery<Map<DasType, Integer>>>();
+        for (String dsnUrlString : remoteDataSources) {
+            if (isAvailable(dsnUrlString)) {
+                queries.put(dsnUrlString, new RemoteDocumentQuery<Map<DasType, Integer>>(httpClient, dsnUrlString + "/types", timer, remoteTimeout) {
+                    protected Map<DasType, Integer> unMarshall(InputStream content, String encoding) throws IOException, DataSourceException {
+                        return new DasTypesXmlUnmarshaller().unMarshall(content, encoding);
+                    }
+                });
+            }
+        }
+        // Merge the types of all the remote data sources, adding up their counts.
+        Map<DasType, Integer> counts = new LinkedHashMap<DasType, Integer>();
+        for (Map<DasType, Integer> remoteCounts : queryDocuments(queries).values()) {
+            for (Map.Entry<DasType, Integer> count : remoteCounts.entrySet()) {
+                if (counts.containsKey(count.getKey())) {
+                    counts.put(count.getKey(), DasTypesXmlUnmarshaller.sum(counts.get(count.getKey()), count.getValue()));
+                } else {
+                    counts.put(count.getKey(), count.getValue());
+                }
+            }
+        }
+        typeCounts = counts;
+        return new ArrayList<DasType>(counts.keySet());
     }
 
     /**
@@ -559,7 +1007,9 @@ public abstract class AbstractProxyDataSource implements AnnotationDataSource {
      *          and read a record.</bold>
      */
     public Integer getTotalCountForType(DasType type) throws DataSourceException {
-        return null;
+        // The counts of the last types request, as the types command asks for the count of each type it has just listed.
+        Map<DasType, Integer> counts = typeCounts;
+        return (counts == null) ? null : counts.get(type);
     }
 
     /**
@@ -604,6 +1054,152 @@ public abstract class AbstractProxyDataSource implements AnnotationDataSource {
      *          and read a record.</bold>
      */
     public URL getLinkURL(String field, String id) throws UnimplementedFeatureException, DataSourceException {
-        throw new UnimplementedFeatureException("getLinkURL not implemented.");
+        // Redirect to the link command of the first available remote data source.
+        for (String dsnUrlString : remoteDataSources) {
+            if (isAvailable(dsnUrlString)) {
+                try {
+                    return new URL(dsnUrlString + "/link?field=" + encode(field) + ";id=" + encode(id));
+                } catch (MalformedURLException e) {
+                    throw new DataSourceException("Could not form a valid link URL for " + dsnUrlString, e);
+                }
+            }
+        }
+        throw new DataSourceException("None of the remote DAS sources of this proxy DAS service is available.");
+    }
+
+    /**
+     * Returns the requested rows of the entry points of all the remote data sources, taken in the order of the
+     * remote data sources and in the order each of them returns its entry points, an entry point returned by
+     * several remote data sources being returned once.  DAS does not require the entry points to be sorted,
+     * so the lists are concatenated rather than merged.  Each remote data source is asked for its entry points
+     * up to <code>stop</code>, which are all the ones that can fall in the requested rows.
+     *
+     * @param start Initial row position on the entry points collection for this server
+     * @param stop  Final row position ont the entry points collection for this server
+     * @return a Collection of DasEntryPoint objects
+     * @throws uk.ac.ebi.mydas.exceptions.DataSourceException
+     *          if none of the remote data sources has returned its entry points.
+     */
+    public Collection<DasEntryPoint> getEntryPoints(Integer start, Integer stop) throws UnimplementedFeatureException, DataSourceException {
+        return selectEntryPoints(queryEntryPoints("rows=1-" + stop).values(), start, stop);
+    }
+
+    /**
+     * @param lists the entry points of each remote data source, in the order of the remote data sources.
+     * @param start the first row, from 1.
+     * @param stop the last row, inclusive.
+     * @return the rows from start to stop of the entry points of all the lists, each segment id appearing once.
+     */
+    static List<DasEntryPoint> selectEntryPoints(Collection<DasEntryPointList> lists, int start, int stop) {
+        List<DasEntryPoint> entryPoints = new ArrayList<DasEntryPoint>();
+        Set<String> segmentIds = new HashSet<String>();
+        int row = 0;
+        for (DasEntryPointList list : lists) {
+            for (DasEntryPoint entryPoint : list.getEntryPoints()) {
+                if (row >= stop) {
+                    return entryPoints;
+                }
+                if (segmentIds.add(entryPoint.getSegmentId())) {
+                    row++;
+                    if (row >= start) {
+                        entryPoints.add(entryPoint);
+                    }
+                }
+            }
+        }
+        return entryPoints;
+    }
+
+    /**
+     * @param lists the first entry point of each remote data source, with the total it reports.
+     * @return the sum of the totals of the lists, the size of a list that reports no total being used instead,
+     * as the remote data source has then ignored the requested rows and returned all its entry points.
+     */
+    static int sumEntryPointTotals(Collection<DasEntryPointList> lists) {
+        int total = 0;
+        for (DasEntryPointList list : lists) {
+            total += (list.getTotal() == null) ? list.getEntryPoints().size() : list.getTotal();
+        }
+        return total;
+    }
+
+    /**
+     * @return the version of the entry points of the first remote data source that declares one.
+     * @throws uk.ac.ebi.mydas.exceptions.DataSourceException
+     *          if none of the remote data sources has returned its entry points.
+     */
+    public String getEntryPointVersion() throws UnimplementedFeatureException, DataSourceException {
+        return getEntryPointSummary().getVersion();
+    }
+
+    /**
+     * @return the number of entry points of the remote data sources, an entry point shared by several of them
+     * being counted for each, so getEntryPoints may return fewer rows.
+     * @throws uk.ac.ebi.mydas.exceptions.DataSourceException
+     *          if none of the remote data sources has returned its entry points.
+     */
+    public int getTotalEntryPoints() throws UnimplementedFeatureException, DataSourceException {
+        return getEntryPointSummary().getTotal();
+    }
+
+    /**
+     * The entry_points command asks several times for the total and the version of the entry points,
+     * so they are kept for ENTRY_POINT_SUMMARY_TTL rather than queried each time.  Only the first entry point of
+     * each remote data source is requested, with the total it reports: counting the entry points they share only
+     * once would take their complete lists.
+     */
+    private DasEntryPointList getEntryPointSummary() throws DataSourceException {
+        DasEntryPointList summary = entryPointSummary;
+        if (summary != null && entryPointSummaryExpires > System.currentTimeMillis()) {
+            return summary;
+        }
+        Map<String, DasEntryPointList> lists = queryEntryPoints("rows=1-1");
+        int total = sumEntryPointTotals(lists.values());
+        String version = null;
+        for (DasEntryPointList list : lists.values()) {
+            if (version == null) {
+                version = list.getVersion();
+            }
+        }
+        summary = new DasEntryPointList(version, total, Collections.<DasEntryPoint>emptyList());
+        entryPointSummary = summary;
+        entryPointSummaryExpires = System.currentTimeMillis() + ENTRY_POINT_SUMMARY_TTL;
+        return summary;
+    }
+
+    /**
+     * @param query the query string of the request, e.g. rows=1-10.
+     * @return the entry points returned by each available remote data source, in the order of the remote data sources.
+     * @throws DataSourceException if none of them has returned its entry points.
+     */
+    private Map<String, DasEntryPointList> queryEntryPoints(String query) throws DataSourceException {
+        Map<String, RemoteDocumentQuery<DasEntryPointList>> queries = new LinkedHashMap<String, RemoteDocumentQuery<DasEntryPointList>>();
+        String command = "/entry_points?" + query;
+        for (String dsnUrlString : remoteDataSources) {
+            if (isAvailable(dsnUrlString)) {
+                queries.put(dsnUrlString, new RemoteDocumentQuery<DasEntryPointList>(httpClient, dsnUrlString + command, timer, remoteTimeout) {
+                    protected DasEntryPointList unMarshall(InputStream content, String encoding) throws IOException, DataSourceException {
+                        return new DasEntryPointXmlUnmarshaller().unMarshall(content, encoding);
+                    }
+                });
+            }
+        }
+        Map<String, DasEntryPointList> lists = queryDocuments(queries);
+        if (lists.isEmpty()) {
+            throw new DataSourceException("None of the remote DAS sources queried by this proxy DAS service has returned its entry points.");
+        }
+        return lists;
+    }
+
+    /**
+     * @return the value URL encoded in UTF-8, to be added to the query string of a remote request.
+     */
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            // UTF-8 is always supported.
+            throw new IllegalStateException(e);
+        }
     }
 }
@@ -1,15 +1,26 @@
 package uk.ac.ebi.mydas.proxy;
 
+import org.apache.http.Header;
+import org.apache.http.HeaderElement;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
+import org.apache.http.NameValuePair;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpGet;
-import org.apache.http.util.EntityUtils;
 import org.apache.log4j.Logger;
+import uk.ac.ebi.mydas.client.QueryAwareDasAnnotatedSegment;
+import uk.ac.ebi.mydas.client.xml.DasFeatureXmlUnmarshaller;
+import uk.ac.ebi.mydas.exceptions.DataSourceException;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.MalformedURLException;
+import java.util.Collection;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
 
 /**
  * Created by IntelliJ IDEA.
@@ -17,6 +28,7 @@ import java.net.MalformedURLException;
  * Date: 30-Jun-2008
  * Time: 11:11:41
  * This Runnable class performs the query against the proxied DAS server.
+ * The response is parsed while it is received, so only the resulting segments are kept.
  */
 public class DasQueryRunnerThread implements Runnable {
 
@@ -30,15 +42,54 @@ public class DasQueryRunnerThread implements Runnable {
 
     private HttpClient httpClient;
 
-    private boolean finished = false;
+    private ScheduledExecutorService timer;
 
-    private boolean successful;
+    private long timeout;
 
-    private String responseBody;
+    private volatile HttpGet get;
+
+    private volatile boolean started = false;
+
+    private volatile boolean aborted = false;
+
+    private volatile boolean finished = false;
+
+    private volatile boolean successful;
+
+    private volatile boolean answered = false;
+
+    private volatile long elapsed = -1;
+
+    private RemoteResponseCache cache;
+
+    private RemoteResponseCache.Entry cached;
+
+    private volatile Collection<QueryAwareDasAnnotatedSegment> segments;
 
     public DasQueryRunnerThread(HttpClient client, String urlQueryString) {
+        this(client, urlQueryString, null, 0);
+    }
+
+    public DasQueryRunnerThread(HttpClient client, String urlQueryString, ScheduledExecutorService timer, long timeout) {
+        this(client, urlQueryString, timer, timeout, null, null);
+    }
+
+    /**
+     * @param client the client performing the request.
+     * @param urlQueryString the URL of the request.
+     * @param timer the executor that aborts the request once it has run for longer than the timeout, may be null.
+     * @param timeout the time in milliseconds the request may run, ignored if timer is null.
+     * @param cache the cache the response is stored in, may be null.
+     * @param cached the stale cached response, revalidated with a conditional GET, may be null.
+     */
+    public DasQueryRunnerThread(HttpClient client, String urlQueryString, ScheduledExecutorService timer, long timeout,
+                                RemoteResponseCache cache, RemoteResponseCache.Entry cached) {
         this.urlQueryString = urlQueryString;
         this.httpClient = client;
+        this.timer = timer;
+        this.timeout = timeout;
+        this.cache = cache;
+        this.cached = cached;
     }
 
     /**
@@ -53,7 +104,32 @@ public class DasQueryRunnerThread implements Runnable {
      * @see Thread#run()
      */
     public void run() {
-        final HttpGet get = new HttpGet(urlQueryString);
+        started = true;
+        get = new HttpGet(urlQueryString);
+        if (aborted) {
+            finished = true;
+            return;
+        }
+        ScheduledFuture<?> timeoutTask = null;
+        if (timer != null) {
+            timeoutTask = timer.schedule(new Runnable() {
+                public void run() {
+                    LOGGER.warn("Remote DAS Service at '" + urlQueryString + "' has not answered within " + timeout + "ms");
+                    abort();
+                }
+            }, timeout, TimeUnit.MILLISECONDS);
+        }
+        get.setHeader("Accept-Encoding", "gzip");
+        if (cached != null) {
+            if (cached.getETag() != null) {
+                get.setHeader("If-None-Match", cached.getETag());
+            }
+            if (cached.getLastModified() != null) {
+                get.setHeader("If-Modified-Since", cached.getLastModified());
+            }
+        }
+        InputStream content = null;
+        final long started = System.currentTimeMillis();
         try {
             if (LOGGER.isDebugEnabled()) {
                 LOGGER.debug("connecting to " + urlQueryString);
@@ -61,24 +137,115 @@ public class DasQueryRunnerThread implements Runnable {
 
             // Execute the get.
             final HttpResponse response = httpClient.execute(get);
-            if (response.getStatusLine().getStatusCode() != HttpStatus.SC_OK) {
+            final HttpEntity httpEntity = response.getEntity();
+            answered = response.getStatusLine().getStatusCode() < HttpStatus.SC_INTERNAL_SERVER_ERROR;
+            if (response.getStatusLine().getStatusCode() == HttpStatus.SC_NOT_MODIFIED && cached != null) {
+                cache.refresh(urlQueryString, cached, response);
+                segments = cached.copySegments();
+                successful = !aborted;
+            } else if (response.getStatusLine().getStatusCode() != HttpStatus.SC_OK || httpEntity == null) {
                 successful = false;
                 LOGGER.warn("Remote DAS Service at '" + urlQueryString + "' failed: Returned HTTP status code :" + response.getStatusLine().getStatusCode() + " with status :" + response.getStatusLine().getReasonPhrase());
             } else {
-                final HttpEntity httpEntity = response.getEntity();
-                responseBody = EntityUtils.toString(httpEntity);
-                successful = responseBody.length() > 0;
+                content = getContent(httpEntity);
+                // Parse the body as it arrives. The parser fails unless the document is complete and holds
+                // at least one SEGMENT, e.g. for an errorsegment or unknownsegment response.
+                Collection<QueryAwareDasAnnotatedSegment> parsed = null;
+                try {
+                    DasFeatureXmlUnmarshaller unmarshaller = new DasFeatureXmlUnmarshaller();
+                    parsed = unmarshaller.unMarshall(content, getCharset(httpEntity));
+                } catch (IOException e) {
+                    if (!aborted) {
+                        LOGGER.debug("Remote DAS Service at '" + urlQueryString + "' did not return a complete features document: " + e.getMessage());
+                    }
+                }
+                if (parsed != null) {
+                    for (QueryAwareDasAnnotatedSegment segment : parsed) {
+                        segment.setQueryURL(urlQueryString);
+                    }
+                    if (cache != null && !aborted) {
+                        cache.put(urlQueryString, response, parsed);
+                        parsed = RemoteResponseCache.copySegments(parsed);
+                    }
+                }
+                segments = parsed;
+                successful = !aborted && parsed != null;
             }
         } catch (MalformedURLException e) {
             LOGGER.error("Could not form a valid URL from " + urlQueryString, e);
+        } catch (DataSourceException e) {
+            LOGGER.error("Could not build the features returned by " + urlQueryString, e);
         } catch (IOException e) {
-            LOGGER.error("IOException thrown when requesting URL " + urlQueryString, e);
+            if (aborted) {
+                LOGGER.debug("Request to " + urlQueryString + " aborted");
+            } else {
+                LOGGER.error("IOException thrown when requesting URL " + urlQueryString, e);
+            }
         } finally {
+            if (timeoutTask != null) {
+                timeoutTask.cancel(false);
+            }
+            if (content != null) {
+                try {
+                    content.close();
+                } catch (IOException e) {
+                    LOGGER.debug("IOException thrown when closing the response from " + urlQueryString, e);
+                }
+            }
             get.reset();
+            elapsed = System.currentTimeMillis() - started;
             finished = true;
         }
     }
 
+    /**
+     * @return the content of the entity, decompressed if it is gzip encoded.
+     */
+    static InputStream getContent(HttpEntity httpEntity) throws IOException {
+        InputStream content = httpEntity.getContent();
+        final Header contentEncoding = httpEntity.getContentEncoding();
+        if (contentEncoding != null && contentEncoding.getValue().toLowerCase().contains("gzip")) {
+            content = new GZIPInputStream(content);
+        }
+        return content;
+    }
+
+    /**
+     * @return the charset declared in the Content-Type header of the entity, or null to let the parser
+     *         detect it from the XML declaration.
+     */
+    static String getCharset(HttpEntity httpEntity) {
+        final Header contentType = httpEntity.getContentType();
+        if (contentType != null) {
+            for (HeaderElement element : contentType.getElements()) {
+                NameValuePair charset = element.getParameterByName("charset");
+                if (charset != null) {
+                    return charset.getValue();
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Aborts the request, closing its connection, e.g. when the remote server is too slow to answer.
+     * The request is then not successful. It can be called from any thread, before the request starts or while it runs.
+     */
+    public void abort() {
+        aborted = true;
+        HttpGet request = get;
+        if (request != null) {
+            request.abort();
+        }
+    }
+
+    /**
+     * @return true once a thread of the pool has taken the request, false while it is still queued.
+     */
+    public boolean isStarted() {
+        return started;
+    }
+
     public boolean isFinished() {
         return finished;
     }
@@ -87,8 +254,27 @@ public class DasQueryRunnerThread implements Runnable {
         return successful;
     }
 
-    public String getResponseString() {
-        return responseBody;
+    /**
+     * @return true if the request has failed because of the remote server: it could not be reached,
+     *         answered with a server error, or was aborted.  An errorsegment or unknownsegment
+     *         response is not a failure.
+     */
+    public boolean isFailed() {
+        return aborted || !answered;
+    }
+
+    /**
+     * @return the time in milliseconds the request took, or -1 until it has finished.
+     */
+    public long getElapsed() {
+        return elapsed;
+    }
+
+    /**
+     * @return the segments of the response, or null if the request was not successful.
+     */
+    public Collection<QueryAwareDasAnnotatedSegment> getSegments() {
+        return segments;
     }
 
     public String getUrlQueryString() {
@@ -0,0 +1,161 @@
+package uk.ac.ebi.mydas.proxy;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.log4j.Logger;
+import uk.ac.ebi.mydas.exceptions.DataSourceException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Queries a remote DAS server for a document other than features, e.g. types or entry_points,
+ * and unmarshalls the response while it is received.
+ * <p/>
+ * Like a {@link DasQueryRunnerThread}, the request is aborted once it has run for longer than its timeout.
+ * The call returns null if the remote server could not answer; {@link #isFailed()} then tells
+ * whether the remote server itself failed, for its {@link RemoteHealth}.
+ *
+ * @param <T> the unmarshalled document.
+ */
+public abstract class RemoteDocumentQuery<T> implements Callable<T> {
+
+    private static final Logger LOGGER = Logger.getLogger(RemoteDocumentQuery.class);
+
+    private final HttpClient httpClient;
+
+    private final String urlQueryString;
+
+    private final HttpGet get;
+
+    private final ScheduledExecutorService timer;
+
+    private final long timeout;
+
+    private volatile boolean started = false;
+
+    private volatile boolean aborted = false;
+
+    private volatile boolean answered = false;
+
+    private volatile long elapsed = -1;
+
+    public RemoteDocumentQuery(HttpClient client, String urlQueryString) {
+        this(client, urlQueryString, null, 0);
+    }
+
+    /**
+     * @param client the client performing the request.
+     * @param urlQueryString the URL of the request.
+     * @param timer the executor that aborts the request once it has run for longer than the timeout, may be null.
+     * @param timeout the time in milliseconds the request may run, ignored if timer is null.
+     */
+    public RemoteDocumentQuery(HttpClient client, String urlQueryString, ScheduledExecutorService timer, long timeout) {
+        this.httpClient = client;
+        this.urlQueryString = urlQueryString;
+        this.get = new HttpGet(urlQueryString);
+        this.timer = timer;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Unmarshalls the body of the response.
+     *
+     * @param content the body, already decompressed.
+     * @param encoding the charset of the body, or null if the response does not declare one.
+     * @return the document, or null if the body does not hold one.
+     */
+    protected abstract T unMarshall(InputStream content, String encoding) throws IOException, DataSourceException;
+
+    public T call() {
+        started = true;
+        ScheduledFuture<?> timeoutTask = null;
+        if (timer != null) {
+            timeoutTask = timer.schedule(new Runnable() {
+                public void run() {
+                    LOGGER.warn("Remote DAS Service at '" + urlQueryString + "' has not answered within " + timeout + "ms");
+                    abort();
+                }
+            }, timeout, TimeUnit.MILLISECONDS);
+        }
+        get.setHeader("Accept-Encoding", "gzip");
+        InputStream content = null;
+        final long started = System.currentTimeMillis();
+        try {
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("connecting to " + urlQueryString);
+            }
+            final HttpResponse response = httpClient.execute(get);
+            final HttpEntity httpEntity = response.getEntity();
+            answered = response.getStatusLine().getStatusCode() < HttpStatus.SC_INTERNAL_SERVER_ERROR;
+            if (response.getStatusLine().getStatusCode() != HttpStatus.SC_OK || httpEntity == null) {
+                LOGGER.warn("Remote DAS Service at '" + urlQueryString + "' failed: Returned HTTP status code :" + response.getStatusLine().getStatusCode() + " with status :" + response.getStatusLine().getReasonPhrase());
+                return null;
+            }
+            content = DasQueryRunnerThread.getContent(httpEntity);
+            return unMarshall(content, DasQueryRunnerThread.getCharset(httpEntity));
+        } catch (DataSourceException e) {
+            LOGGER.error("Could not build the document returned by " + urlQueryString, e);
+        } catch (IOException e) {
+            if (aborted) {
+                LOGGER.debug("Request to " + urlQueryString + " aborted");
+            } else {
+                LOGGER.error("IOException thrown when requesting URL " + urlQueryString, e);
+            }
+        } finally {
+            if (timeoutTask != null) {
+                timeoutTask.cancel(false);
+            }
+            if (content != null) {
+                try {
+                    content.close();
+                } catch (IOException e) {
+                    LOGGER.debug("IOException thrown when closing the response from " + urlQueryString, e);
+                }
+            }
+            get.reset();
+            elapsed = System.currentTimeMillis() - started;
+        }
+        return null;
+    }
+
+    /**
+     * Aborts the request, closing its connection.
+     */
+    public void abort() {
+        aborted = true;
+        get.abort();
+    }
+
+    /**
+     * @return true once a thread of the pool has taken the request, false while it is still queued.
+     */
+    public boolean isStarted() {
+        return started;
+    }
+
+    /**
+     * @return true if the remote server could not be reached, answered with a server error, or was aborted.
+     */
+    public boolean isFailed() {
+        return aborted || !answered;
+    }
+
+    /**
+     * @return the time in milliseconds the request took, or -1 until it has finished.
+     */
+    public long getElapsed() {
+        return elapsed;
+    }
+
+    public String getUrlQueryString() {
+        return urlQueryString;
+    }
+}
@@ -0,0 +1,144 @@
+package uk.ac.ebi.mydas.proxy;
+
+/**
+ * Health of one remote DAS server, built from its most recent requests, acting as a circuit breaker.
+ * <p/>
+ * The outcomes of the last <code>windowSize</code> requests are kept in a ring.  A request fails if the remote
+ * server could not be reached, answered with a server error, or took longer than <code>slowCall</code>
+ * milliseconds.  Once at least half of the window has been recorded and the share of failures reaches
+ * <code>failureRatio</code>, the circuit opens: the proxy stops querying the remote server and probes it in
+ * the background instead (half open) until a probe succeeds, which closes the circuit again.
+ * <p/>
+ * The latency of the remote server is also tracked as an exponentially weighted moving average.
+ */
+public class RemoteHealth {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    /**
+     * Weight of the latest latency in the moving average.
+     */
+    private static final double EWMA_ALPHA = 0.2;
+
+    private final String url;
+
+    private final boolean[] failures;
+
+    private final double failureRatio;
+
+    private final long slowCall;
+
+    private int next = 0;
+
+    private int recorded = 0;
+
+    private int failureCount = 0;
+
+    private double latency = -1;
+
+    private State state = State.CLOSED;
+
+    /**
+     * @param url the URL of the remote data source.
+     * @param windowSize the number of requests the failure ratio is computed on.
+     * @param failureRatio the share of failed requests, between 0 and 1, that opens the circuit.
+     * @param slowCall the time in milliseconds after which a request counts as failed.
+     */
+    public RemoteHealth(String url, int windowSize, double failureRatio, long slowCall) {
+        this.url = url;
+        this.failures = new boolean[windowSize];
+        this.failureRatio = failureRatio;
+        this.slowCall = slowCall;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * @return true if requests should be sent to the remote server, i.e. the circuit is closed.
+     */
+    public synchronized boolean isAvailable() {
+        return state == State.CLOSED;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * @return the moving average of the latency in milliseconds, or -1 before the first request.
+     */
+    public synchronized double getLatency() {
+        return latency;
+    }
+
+    /**
+     * @return the share of failed requests in the window.
+     */
+    public synchronized double getFailureRate() {
+        return (recorded == 0) ? 0 : (double) failureCount / recorded;
+    }
+
+    /**
+     * Records the outcome of a request to the remote server.
+     *
+     * @param elapsed the time in milliseconds the request took.
+     * @param failed true if the remote server could not answer the request.
+     * @return true if this request opened the circuit.
+     */
+    public synchronized boolean record(long elapsed, boolean failed) {
+        latency = (latency < 0) ? elapsed : EWMA_ALPHA * elapsed + (1 - EWMA_ALPHA) * latency;
+        failed = failed || elapsed > slowCall;
+        if (recorded == failures.length) {
+            if (failures[next]) {
+                failureCount--;
+            }
+        } else {
+            recorded++;
+        }
+        failures[next] = failed;
+        if (failed) {
+            failureCount++;
+        }
+        next = (next + 1) % failures.length;
+
+        if (state == State.CLOSED && recorded * 2 >= failures.length && failureCount >= failureRatio * recorded) {
+            state = State.OPEN;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Called before a background probe of an open circuit.
+     */
+    public synchronized void halfOpen() {
+        if (state == State.OPEN) {
+            state = State.HALF_OPEN;
+        }
+    }
+
+    /**
+     * Records the outcome of a background probe: closes the circuit, with a fresh window, if it succeeded.
+     *
+     * @param succeeded true if the remote server answered the probe.
+     */
+    public synchronized void probed(boolean succeeded) {
+        if (succeeded) {
+            state = State.CLOSED;
+            next = 0;
+            recorded = 0;
+            failureCount = 0;
+        } else {
+            state = State.OPEN;
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return url + " " + state + " latency " + Math.round(latency) + "ms failures " + failureCount + "/" + recorded;
+    }
+}
@@ -0,0 +1,212 @@
+package uk.ac.ebi.mydas.proxy;
+
+import org.apache.http.Header;
+import org.apache.http.HeaderElement;
+import org.apache.http.HttpResponse;
+import uk.ac.ebi.mydas.client.QueryAwareDasAnnotatedSegment;
+import uk.ac.ebi.mydas.client.RegexPatterns;
+import uk.ac.ebi.mydas.exceptions.DataSourceException;
+import uk.ac.ebi.mydas.model.DasFeature;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least recently used cache of the parsed responses of one remote DAS server, keyed on the query URL
+ * and bounded by the number of responses it holds.
+ * <p/>
+ * A response is fresh for the max-age (or s-maxage) of its Cache-Control header, or for the default time to
+ * live of the cache if it has none. A stale response is kept while it has an ETag or a Last-Modified date,
+ * so that it can be revalidated with a conditional GET. Responses marked no-store or private are never cached.
+ */
+public class RemoteResponseCache {
+
+    private final int maxEntries;
+
+    private final long defaultTimeToLive;
+
+    /**
+     * Entries in access order, so the eldest is the least recently used.
+     */
+    private final LinkedHashMap<String, Entry> entries;
+
+    /**
+     * A cached response.  Its segments are never handed out, only copies of them, as the proxy
+     * coalesces the segments of a request by adding features to them.
+     */
+    public static class Entry {
+        private final Collection<QueryAwareDasAnnotatedSegment> segments;
+        private final String eTag;
+        private final String lastModified;
+        private volatile long expires;
+
+        Entry(Collection<QueryAwareDasAnnotatedSegment> segments, String eTag, String lastModified, long expires) {
+            this.segments = segments;
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+            this.expires = expires;
+        }
+
+        public boolean isFresh() {
+            return expires > System.currentTimeMillis();
+        }
+
+        /**
+         * @return the value for an If-None-Match header, may be null.
+         */
+        public String getETag() {
+            return eTag;
+        }
+
+        /**
+         * @return the value for an If-Modified-Since header, may be null.
+         */
+        public String getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * @return copies of the cached segments, sharing their features.
+         * @throws DataSourceException if a copy cannot be built.
+         */
+        public Collection<QueryAwareDasAnnotatedSegment> copySegments() throws DataSourceException {
+            return RemoteResponseCache.copySegments(segments);
+        }
+    }
+
+    /**
+     * @param maxEntries the number of responses held.
+     * @param defaultTimeToLive the time in milliseconds a response without Cache-Control max-age stays fresh.
+     */
+    public RemoteResponseCache(final int maxEntries, long defaultTimeToLive) {
+        this.maxEntries = maxEntries;
+        this.defaultTimeToLive = defaultTimeToLive;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @param url the query URL.
+     * @return the cached response, fresh or stale, or null.
+     */
+    public synchronized Entry get(String url) {
+        return entries.get(url);
+    }
+
+    /**
+     * Caches the response to a request, if its headers allow it.
+     *
+     * @param url the query URL.
+     * @param response the response, for its Cache-Control, ETag and Last-Modified headers.
+     * @param segments the parsed segments of the response.
+     */
+    public void put(String url, HttpResponse response, Collection<QueryAwareDasAnnotatedSegment> segments) {
+        long timeToLive = getTimeToLive(response);
+        String eTag = getHeaderValue(response, "ETag");
+        String lastModified = getHeaderValue(response, "Last-Modified");
+        if (timeToLive < 0 || (timeToLive == 0 && eTag == null && lastModified == null)) {
+            return;
+        }
+        Entry entry = new Entry(segments, eTag, lastModified, System.currentTimeMillis() + timeToLive);
+        synchronized (this) {
+            entries.put(url, entry);
+        }
+    }
+
+    /**
+     * Makes a cached response fresh again after the remote server has answered 304 Not Modified.
+     *
+     * @param url the query URL.
+     * @param entry the revalidated response.
+     * @param response the 304 response, for its Cache-Control header.
+     */
+    public void refresh(String url, Entry entry, HttpResponse response) {
+        long timeToLive = getTimeToLive(response);
+        if (timeToLive < 0) {
+            synchronized (this) {
+                entries.remove(url);
+            }
+            return;
+        }
+        entry.expires = System.currentTimeMillis() + timeToLive;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * @return the time in milliseconds the response stays fresh, 0 if it must be revalidated
+     *         on each request, or -1 if it must not be cached.
+     */
+    private long getTimeToLive(HttpResponse response) {
+        Long maxAge = null;
+        Long sharedMaxAge = null;
+        for (Header header : response.getHeaders("Cache-Control")) {
+            for (HeaderElement element : header.getElements()) {
+                String name = element.getName().toLowerCase();
+                if ("no-store".equals(name) || "private".equals(name)) {
+                    return -1;
+                } else if ("no-cache".equals(name)) {
+                    return 0;
+                } else if ("max-age".equals(name)) {
+                    maxAge = parseSeconds(element.getValue());
+                } else if ("s-maxage".equals(name)) {
+                    sharedMaxAge = parseSeconds(element.getValue());
+                }
+            }
+        }
+        if (sharedMaxAge != null) {
+            return sharedMaxAge;
+        }
+        if (maxAge != null) {
+            return maxAge;
+        }
+        return defaultTimeToLive;
+    }
+
+    /**
+     * @return copies of the segments, sharing their features.
+     * @throws DataSourceException if a copy cannot be built.
+     */
+    static Collection<QueryAwareDasAnnotatedSegment> copySegments(Collection<QueryAwareDasAnnotatedSegment> segments) throws DataSourceException {
+        Collection<QueryAwareDasAnnotatedSegment> copies = new ArrayList<QueryAwareDasAnnotatedSegment>(segments.size());
+        for (QueryAwareDasAnnotatedSegment segment : segments) {
+            QueryAwareDasAnnotatedSegment copy = new QueryAwareDasAnnotatedSegment(
+                    segment.getSegmentId(),
+                    segment.getStartCoordinate(),
+                    segment.getStopCoordinate(),
+                    segment.getVersion(),
+                    segment.getSegmentLabel(),
+                    new ArrayList<DasFeature>(segment.getFeatures()));
+            if (segment.getQueryURL() != null) {
+                copy.setQueryURL(segment.getQueryURL());
+            }
+            copy.setReportedTotal(segment.getReportedTotal());
+            copies.add(copy);
+        }
+        return copies;
+    }
+
+    private static Long parseSeconds(String seconds) {
+        if (seconds == null || !RegexPatterns.INTEGER_PATTERN.matcher(seconds.trim()).matches()) {
+            return null;
+        }
+        return Math.max(0, Long.parseLong(seconds.trim()) * 1000);
+    }
+
+    private static String getHeaderValue(HttpResponse response, String name) {
+        Header header = response.getFirstHeader(name);
+        return (header == null) ? null : header.getValue();
+    }
+}
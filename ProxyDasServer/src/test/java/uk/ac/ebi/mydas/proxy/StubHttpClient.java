@@ -0,0 +1,116 @@
+package uk.ac.ebi.mydas.proxy;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHttpResponse;
+import uk.ac.ebi.mydas.configuration.DataSourceConfiguration;
+import uk.ac.ebi.mydas.configuration.Mydasserver;
+import uk.ac.ebi.mydas.configuration.PropertyType;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Answers the requests of the proxy without a network, each remote server being simulated by
+ * {@link #respond(HttpGet)}.
+ */
+abstract class StubHttpClient implements InvocationHandler {
+
+    /**
+     * The URLs requested, in the order the requests were sent.
+     */
+    final List<String> requested = new CopyOnWriteArrayList<String>();
+
+    /**
+     * The URLs of the requests aborted while the stub was answering them.
+     */
+    final List<String> aborted = new CopyOnWriteArrayList<String>();
+
+    /**
+     * @return the response of the simulated remote server.
+     * @throws IOException if the remote server cannot be reached.
+     */
+    abstract HttpResponse respond(HttpGet get) throws IOException;
+
+    HttpClient create() {
+        return (HttpClient) Proxy.newProxyInstance(HttpClient.class.getClassLoader(), new Class[]{HttpClient.class}, this);
+    }
+
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if ("execute".equals(method.getName()) && args.length == 1 && args[0] instanceof HttpGet) {
+            HttpGet get = (HttpGet) args[0];
+            requested.add(get.getURI().toString());
+            return respond(get);
+        }
+        if ("equals".equals(method.getName())) {
+            return proxy == args[0];
+        }
+        if ("hashCode".equals(method.getName())) {
+            return System.identityHashCode(proxy);
+        }
+        return null;
+    }
+
+    /**
+     * Blocks as a remote server that does not answer, until the request is aborted.  Like a socket read,
+     * it is not stopped by an interrupt.
+     * @throws IOException once the request is aborted, as the connection of an aborted request is closed.
+     */
+    HttpResponse hang(HttpGet get) throws IOException {
+        long end = System.currentTimeMillis() + 10000;
+        while (!get.isAborted() && System.currentTimeMillis() < end) {
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                // Only closing the connection stops the read.
+            }
+        }
+        if (get.isAborted()) {
+            aborted.add(get.getURI().toString());
+        }
+        throw new InterruptedIOException("Connection closed");
+    }
+
+    /**
+     * @param status the HTTP status of the response.
+     * @param body the body of the response, may be null.
+     * @param headers the names and values of the headers of the response.
+     */
+    static HttpResponse response(int status, String body, String... headers) {
+        BasicHttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, status, "Status " + status);
+        for (int i = 0; i < headers.length; i += 2) {
+            response.addHeader(headers[i], headers[i + 1]);
+        }
+        if (body != null) {
+            response.setEntity(new StringEntity(body, ContentType.create("text/xml", "UTF-8")));
+        }
+        return response;
+    }
+
+    /**
+     * @param properties the names and values of the properties of the data source.
+     * @return the configuration of a proxy data source.
+     */
+    static DataSourceConfiguration configuration(String... properties) {
+        Mydasserver.Datasources.Datasource.Version version = new Mydasserver.Datasources.Datasource.Version();
+        version.setUri("proxy");
+        for (int i = 0; i < properties.length; i += 2) {
+            PropertyType property = new PropertyType();
+            property.setKey(properties[i]);
+            property.setValue(properties[i + 1]);
+            version.getProperty().add(property);
+        }
+        Mydasserver.Datasources.Datasource datasource = new Mydasserver.Datasources.Datasource();
+        datasource.getVersion().add(version);
+        return new DataSourceConfiguration(datasource, 0);
+    }
+}
@@ -0,0 +1,68 @@
+package uk.ac.ebi.mydas.proxy;
+
+import junit.framework.TestCase;
+import uk.ac.ebi.mydas.client.DasEntryPointList;
+import uk.ac.ebi.mydas.exceptions.DataSourceException;
+import uk.ac.ebi.mydas.model.DasEntryPoint;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The entry points of the remote data sources are not sorted, so they are taken in the order of the remote
+ * data sources, each segment id once.
+ */
+public class TestEntryPointSelection extends TestCase {
+
+    private static DasEntryPointList list(String... segmentIds) throws DataSourceException {
+        List<DasEntryPoint> entryPoints = new ArrayList<DasEntryPoint>();
+        for (String segmentId : segmentIds) {
+            entryPoints.add(new DasEntryPoint(segmentId, 1, 100, "Protein", null, null, null, false));
+        }
+        return new DasEntryPointList("1", segmentIds.length, entryPoints);
+    }
+
+    private static String select(Collection<DasEntryPointList> lists, int start, int stop) {
+        List<String> ids = new ArrayList<String>();
+        for (DasEntryPoint entryPoint : AbstractProxyDataSource.selectEntryPoints(lists, start, stop)) {
+            ids.add(entryPoint.getSegmentId());
+        }
+        return ids.toString();
+    }
+
+    public void testUnsortedListsKeepTheirOrder() throws DataSourceException {
+        List<DasEntryPointList> lists = Arrays.asList(list("Q2", "A1", "P3"), list("B9", "A1", "C0"));
+        assertEquals("[Q2, A1, P3, B9, C0]", select(lists, 1, 10));
+        assertEquals("A shared entry point only takes a row once", "[P3, B9, C0]", select(lists, 3, 5));
+        assertEquals("[Q2, A1]", select(lists, 1, 2));
+        assertEquals("[]", select(lists, 6, 10));
+    }
+
+    public void testDuplicatesAreDroppedWhereverTheyAre() throws DataSourceException {
+        List<DasEntryPointList> lists = Arrays.asList(list("A1", "B2", "A1"), list("C3", "B2", "D4", "C3"));
+        assertEquals("[A1, B2, C3, D4]", select(lists, 1, 10));
+    }
+
+    /**
+     * The total is counted from the first entry point of each remote data source, so the shared ones are counted
+     * for each of them, and the selection may have fewer rows.
+     */
+    public void testTotalsAreAdded() throws DataSourceException {
+        List<DasEntryPoint> first = list("A1").getEntryPoints();
+        List<DasEntryPointList> lists = Arrays.asList(new DasEntryPointList("1", 1500, first),
+                new DasEntryPointList("1", 20, first), new DasEntryPointList("1", 0, new ArrayList<DasEntryPoint>()));
+        assertEquals(1520, AbstractProxyDataSource.sumEntryPointTotals(lists));
+
+        lists = Arrays.asList(list("Q2", "A1"), list("A1", "Q2"), list("Z0"));
+        assertEquals(5, AbstractProxyDataSource.sumEntryPointTotals(lists));
+        assertTrue(AbstractProxyDataSource.selectEntryPoints(lists, 1, 100).size() <= AbstractProxyDataSource.sumEntryPointTotals(lists));
+    }
+
+    public void testListsWithoutTotalAreCounted() throws DataSourceException {
+        List<DasEntryPointList> lists = Arrays.asList(new DasEntryPointList("1", null, list("A1", "B2", "C3").getEntryPoints()),
+                new DasEntryPointList("1", 10, list("A1").getEntryPoints()));
+        assertEquals(13, AbstractProxyDataSource.sumEntryPointTotals(lists));
+    }
+}
@@ -0,0 +1,90 @@
+package uk.ac.ebi.mydas.proxy;
+
+import junit.framework.TestCase;
+import uk.ac.ebi.mydas.client.QueryAwareDasAnnotatedSegment;
+import uk.ac.ebi.mydas.exceptions.DataSourceException;
+import uk.ac.ebi.mydas.model.DasFeature;
+import uk.ac.ebi.mydas.model.DasMethod;
+import uk.ac.ebi.mydas.model.DasType;
+import uk.ac.ebi.mydas.model.Range;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The features reported by several remote data sources are dropped before the rows are numbered.
+ */
+public class TestFeatureRows extends TestCase {
+
+    private final ReportAllProxyDasServer proxy = new ReportAllProxyDasServer();
+
+    private static Collection<QueryAwareDasAnnotatedSegment> response(String segmentId, Integer reportedTotal, String... featureIds) throws DataSourceException {
+        List<DasFeature> features = new ArrayList<DasFeature>();
+        for (String featureId : featureIds) {
+            int start = Integer.parseInt(featureId.substring(1));
+            features.add(new DasFeature(featureId, null, new DasType("exon", null, null, null), new DasMethod("m", null, null),
+                    start, start + 10, null, null, null, null, null, null, null, null));
+        }
+        QueryAwareDasAnnotatedSegment segment = new QueryAwareDasAnnotatedSegment(segmentId, 1, 1000, "1", null, features);
+        segment.setReportedTotal(reportedTotal);
+        return Collections.singletonList(segment);
+    }
+
+    private static String ids(QueryAwareDasAnnotatedSegment segment) {
+        List<String> ids = new ArrayList<String>();
+        for (DasFeature feature : segment.getFeatures()) {
+            ids.add(feature.getFeatureId());
+        }
+        return ids.toString();
+    }
+
+    private List<QueryAwareDasAnnotatedSegment> select(int from, int to, Collection<QueryAwareDasAnnotatedSegment>... responses) throws DataSourceException {
+        List<Collection<QueryAwareDasAnnotatedSegment>> all = new ArrayList<Collection<QueryAwareDasAnnotatedSegment>>();
+        Collections.addAll(all, responses);
+        return proxy.selectRows(all, new Range(from, to));
+    }
+
+    public void testSharedFeaturesDoNotTakeARow() throws DataSourceException {
+        List<QueryAwareDasAnnotatedSegment> page = select(2, 4,
+                response("P1", 3, "a1", "b2", "c3"),
+                response("P1", 3, "a1", "c3", "d4"));
+        assertEquals(1, page.size());
+        assertEquals("The page is full and holds each feature once", "[b2, c3, d4]", ids(page.get(0)));
+        assertEquals("The total counts the shared features once", new Integer(4), page.get(0).getTotalFeatures());
+    }
+
+    public void testPageAfterTheDuplicates() throws DataSourceException {
+        List<QueryAwareDasAnnotatedSegment> page = select(4, 5,
+                response("P1", 3, "a1", "b2", "c3"),
+                response("P1", 4, "a1", "b2", "d4", "e5"));
+        assertEquals("[d4, e5]", ids(page.get(0)));
+        assertEquals(new Integer(5), page.get(0).getTotalFeatures());
+    }
+
+    /**
+     * A remote data source that has more features than it returned may hold duplicates beyond them.
+     */
+    public void testTotalOfTruncatedResponses() throws DataSourceException {
+        List<QueryAwareDasAnnotatedSegment> page = select(1, 2,
+                response("P1", 10, "a1", "b2"),
+                response("P1", 10, "a1", "c3"));
+        assertEquals("[a1, b2]", ids(page.get(0)));
+        assertEquals(new Integer(19), page.get(0).getTotalFeatures());
+    }
+
+    public void testRowsFollowEachOtherAcrossSegments() throws DataSourceException {
+        List<QueryAwareDasAnnotatedSegment> page = select(2, 3,
+                response("P1", null, "a1", "b2"),
+                response("P2", null, "x1", "y2"),
+                response("P1", null, "b2"));
+        assertEquals(2, page.size());
+        assertEquals("P1", page.get(0).getSegmentId());
+        assertEquals("[b2]", ids(page.get(0)));
+        assertEquals("P2", page.get(1).getSegmentId());
+        assertEquals("[x1]", ids(page.get(1)));
+        assertEquals(new Integer(2), page.get(0).getTotalFeatures());
+        assertEquals(new Integer(2), page.get(1).getTotalFeatures());
+    }
+}
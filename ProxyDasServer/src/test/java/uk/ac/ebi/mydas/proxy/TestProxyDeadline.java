@@ -0,0 +1,126 @@
+package uk.ac.ebi.mydas.proxy;
+
+import junit.framework.TestCase;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import uk.ac.ebi.mydas.exceptions.BadReferenceObjectException;
+import uk.ac.ebi.mydas.exceptions.DataSourceException;
+
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * The proxy waits for the remote servers up to proxy.deadline, then answers with the responses received
+ * and aborts the other requests; a single request is aborted after proxy.remoteTimeout.
+ */
+public class TestProxyDeadline extends TestCase {
+
+    private static final String FAST = "http://fast/das/source";
+
+    private static final String SLOW = "http://slow/das/source";
+
+    private ReportAllProxyDasServer proxy;
+
+    /**
+     * The fast remote server does not know the segment, the slow one never answers.
+     */
+    private final StubHttpClient client = new StubHttpClient() {
+        HttpResponse respond(HttpGet get) throws IOException {
+            if (get.getURI().toString().startsWith(SLOW)) {
+                return hang(get);
+            }
+            return response(404, "Not found");
+        }
+    };
+
+    private void init(int remoteTimeout, int deadline) throws DataSourceException {
+        proxy = new ReportAllProxyDasServer();
+        proxy.init(null, null, StubHttpClient.configuration("dasServer1", FAST, "dasServer2", SLOW,
+                "proxy.remoteTimeout", Integer.toString(remoteTimeout), "proxy.deadline", Integer.toString(deadline)));
+        proxy.httpClient = client.create();
+    }
+
+    @Override
+    protected void tearDown() {
+        if (proxy != null) {
+            proxy.destroy();
+        }
+    }
+
+    private long getFeatures() throws DataSourceException {
+        long started = System.currentTimeMillis();
+        try {
+            proxy.getFeatures("P12345", null);
+            fail("None of the remote servers knows the segment");
+        } catch (BadReferenceObjectException e) {
+            // expected
+        }
+        return System.currentTimeMillis() - started;
+    }
+
+    public void testStragglerIsAbortedAtTheDeadline() throws DataSourceException, InterruptedException {
+        init(60000, 300);
+        long elapsed = getFeatures();
+        assertTrue("The proxy should answer at the deadline, it took " + elapsed + "ms", elapsed >= 250 && elapsed < 3000);
+        assertEquals("Both remote servers should have been queried", 2, client.requested.size());
+        waitForAbort();
+        assertEquals("The straggler should have been aborted", 1, client.aborted.size());
+        assertTrue(client.aborted.get(0).startsWith(SLOW + "/features?segment=P12345"));
+
+        Iterator<RemoteHealth> health = proxy.getRemoteHealth().iterator();
+        assertEquals("An unknown segment is not a failure of the remote server", 0.0, health.next().getFailureRate());
+        assertEquals("A straggler is a failure of the remote server", 1.0, health.next().getFailureRate());
+    }
+
+    /**
+     * With a single thread, the request to the fast remote server waits behind the slow one until the deadline.
+     */
+    public void testQueuedRequestIsNotAFailure() throws DataSourceException, InterruptedException {
+        proxy = new ReportAllProxyDasServer();
+        proxy.init(null, null, StubHttpClient.configuration("dasServer1", SLOW, "dasServer2", FAST,
+                "proxy.remoteTimeout", "60000", "proxy.deadline", "300", "proxy.threads", "1"));
+        proxy.httpClient = client.create();
+        getFeatures();
+        waitForAbort();
+        assertEquals("The queued request should never have been sent", 1, client.requested.size());
+
+        Iterator<RemoteHealth> health = proxy.getRemoteHealth().iterator();
+        assertEquals("A straggler is a failure of the remote server", 1.0, health.next().getFailureRate());
+        RemoteHealth queued = health.next();
+        assertTrue("Nothing should have been recorded for the queued request", queued.getLatency() < 0);
+        assertEquals(0.0, queued.getFailureRate());
+    }
+
+    public void testSlowRequestIsAbortedAfterTheRemoteTimeout() throws DataSourceException, InterruptedException {
+        init(200, 60000);
+        long elapsed = getFeatures();
+        assertTrue("The proxy should answer once the slow request is aborted, it took " + elapsed + "ms", elapsed < 3000);
+        assertEquals(1, client.aborted.size());
+    }
+
+    public void testTypesRequestIsAbortedAfterTheRemoteTimeout() throws DataSourceException {
+        init(200, 60000);
+        long started = System.currentTimeMillis();
+        assertTrue(proxy.getTypes().isEmpty());
+        long elapsed = System.currentTimeMillis() - started;
+        assertTrue("The proxy should answer once the slow request is aborted, it took " + elapsed + "ms", elapsed < 3000);
+        assertEquals(1, client.aborted.size());
+        assertEquals(SLOW + "/types", client.aborted.get(0));
+    }
+
+    public void testProxyDoesNotWaitForTheDeadlineOnceAllHaveAnswered() throws DataSourceException {
+        init(60000, 60000);
+        proxy.httpClient = new StubHttpClient() {
+            HttpResponse respond(HttpGet get) {
+                return response(404, "Not found");
+            }
+        }.create();
+        assertTrue(getFeatures() < 3000);
+    }
+
+    private void waitForAbort() throws InterruptedException {
+        for (int i = 0; i < 200 && client.aborted.isEmpty(); i++) {
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package uk.ac.ebi.mydas.proxy;
+
+import junit.framework.TestCase;
+
+public class TestRemoteHealth extends TestCase {
+
+    private static final String URL = "http://remote/das/source";
+
+    public void testCircuitOpensOnlyOnceHalfTheWindowIsRecorded() {
+        RemoteHealth health = new RemoteHealth(URL, 10, 0.5, 1000);
+        for (int i = 0; i < 4; i++) {
+            assertFalse("Less than half of the window is not enough to judge", health.record(10, true));
+        }
+        assertTrue(health.isAvailable());
+        assertTrue("The fifth failure of ten opens the circuit", health.record(10, true));
+        assertEquals(RemoteHealth.State.OPEN, health.getState());
+        assertFalse(health.isAvailable());
+        assertFalse("An open circuit is not opened again", health.record(10, true));
+    }
+
+    public void testFailureRatio() {
+        RemoteHealth health = new RemoteHealth(URL, 4, 0.75, 1000);
+        health.record(10, true);
+        health.record(10, false);
+        assertEquals(0.5, health.getFailureRate(), 0);
+        assertFalse(health.record(10, false));
+        assertEquals(1.0 / 3, health.getFailureRate(), 1e-9);
+        assertFalse(health.record(10, true));
+        assertEquals(0.5, health.getFailureRate(), 0);
+        assertFalse("The failure replaces the oldest one", health.record(10, true));
+        assertEquals(RemoteHealth.State.CLOSED, health.getState());
+        assertTrue("Three failures out of four reach the ratio", health.record(10, true));
+    }
+
+    public void testRingForgetsTheOldestRequests() {
+        RemoteHealth health = new RemoteHealth(URL, 4, 1.0, 1000);
+        health.record(10, false);
+        health.record(10, true);
+        health.record(10, true);
+        assertFalse(health.record(10, true));
+        assertEquals(0.75, health.getFailureRate(), 0);
+        for (int i = 0; i < 4; i++) {
+            health.record(10, false);
+        }
+        assertEquals("The failures have left the window", 0.0, health.getFailureRate(), 0);
+        for (int i = 0; i < 3; i++) {
+            assertFalse(health.record(10, true));
+        }
+        assertEquals(0.75, health.getFailureRate(), 0);
+        assertTrue("The success has left the window", health.record(10, true));
+    }
+
+    public void testSlowCallsAreFailures() {
+        RemoteHealth health = new RemoteHealth(URL, 2, 1.0, 100);
+        assertFalse(health.record(100, false));
+        assertEquals("A call taking exactly the limit is not slow", 0.0, health.getFailureRate(), 0);
+        health.record(101, false);
+        assertEquals(0.5, health.getFailureRate(), 0);
+    }
+
+    public void testHalfOpenAndClose() {
+        RemoteHealth health = new RemoteHealth(URL, 2, 0.5, 1000);
+        health.halfOpen();
+        assertEquals("Only an open circuit can be half open", RemoteHealth.State.CLOSED, health.getState());
+        health.record(10, true);
+        assertEquals(RemoteHealth.State.OPEN, health.getState());
+
+        health.halfOpen();
+        assertEquals(RemoteHealth.State.HALF_OPEN, health.getState());
+        assertFalse(health.isAvailable());
+        health.probed(false);
+        assertEquals(RemoteHealth.State.OPEN, health.getState());
+
+        health.halfOpen();
+        health.probed(true);
+        assertEquals(RemoteHealth.State.CLOSED, health.getState());
+        assertTrue(health.isAvailable());
+        assertEquals("Closing starts a fresh window", 0.0, health.getFailureRate(), 0);
+        assertTrue(health.record(10, true));
+    }
+
+    public void testLatencyMovingAverage() {
+        RemoteHealth health = new RemoteHealth(URL, 10, 0.5, 10000);
+        assertEquals(-1.0, health.getLatency(), 0);
+        health.record(100, false);
+        assertEquals("The first request sets the latency", 100.0, health.getLatency(), 0);
+        health.record(200, false);
+        assertEquals(0.2 * 200 + 0.8 * 100, health.getLatency(), 1e-9);
+        health.record(0, true);
+        assertEquals(0.8 * 120, health.getLatency(), 1e-9);
+    }
+}
@@ -0,0 +1,128 @@
+package uk.ac.ebi.mydas.proxy;
+
+import junit.framework.TestCase;
+import org.apache.http.HttpResponse;
+import uk.ac.ebi.mydas.client.QueryAwareDasAnnotatedSegment;
+import uk.ac.ebi.mydas.exceptions.DataSourceException;
+import uk.ac.ebi.mydas.model.DasFeature;
+import uk.ac.ebi.mydas.model.DasMethod;
+import uk.ac.ebi.mydas.model.DasType;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+public class TestRemoteResponseCache extends TestCase {
+
+    private static final String URL = "http://remote/das/source/features?segment=P12345";
+
+    private static final long HOUR = 3600000;
+
+    private static Collection<QueryAwareDasAnnotatedSegment> segments() throws DataSourceException {
+        List<DasFeature> features = new ArrayList<DasFeature>();
+        features.add(new DasFeature("f1", null, new DasType("exon", null, null, null), new DasMethod("m", null, null),
+                1, 10, null, null, null, null, null, null, null, null));
+        QueryAwareDasAnnotatedSegment segment = new QueryAwareDasAnnotatedSegment("P12345", 1, 100, "1", null, features);
+        segment.setQueryURL(URL);
+        segment.setReportedTotal(1);
+        return Collections.singletonList(segment);
+    }
+
+    private static HttpResponse ok(String... headers) {
+        return StubHttpClient.response(200, null, headers);
+    }
+
+    public void testDefaultTimeToLive() throws DataSourceException {
+        RemoteResponseCache cache = new RemoteResponseCache(10, HOUR);
+        cache.put(URL, ok(), segments());
+        assertTrue("Without Cache-Control the default time to live applies", cache.get(URL).isFresh());
+
+        RemoteResponseCache uncached = new RemoteResponseCache(10, 0);
+        uncached.put(URL, ok(), segments());
+        assertNull("Without a time to live nor validators the response is not kept", uncached.get(URL));
+    }
+
+    public void testMaxAge() throws DataSourceException {
+        RemoteResponseCache cache = new RemoteResponseCache(10, HOUR);
+        cache.put(URL, ok("Cache-Control", "public, max-age=0", "ETag", "\"v1\""), segments());
+        assertFalse("max-age overrides the default time to live", cache.get(URL).isFresh());
+        assertEquals("\"v1\"", cache.get(URL).getETag());
+
+        cache.put(URL, ok("Cache-Control", "max-age=0, s-maxage=3600"), segments());
+        assertTrue("s-maxage overrides max-age for a shared cache", cache.get(URL).isFresh());
+
+        RemoteResponseCache noDefault = new RemoteResponseCache(10, 0);
+        noDefault.put(URL, ok("Cache-Control", "max-age=3600"), segments());
+        assertTrue(noDefault.get(URL).isFresh());
+    }
+
+    public void testNoStoreAndPrivateAreNotCached() throws DataSourceException {
+        RemoteResponseCache cache = new RemoteResponseCache(10, HOUR);
+        cache.put(URL, ok("Cache-Control", "no-store", "ETag", "\"v1\""), segments());
+        assertNull(cache.get(URL));
+        cache.put(URL, ok("Cache-Control", "private, max-age=3600"), segments());
+        assertNull(cache.get(URL));
+    }
+
+    public void testNoCacheIsKeptForRevalidation() throws DataSourceException {
+        RemoteResponseCache cache = new RemoteResponseCache(10, HOUR);
+        cache.put(URL, ok("Cache-Control", "no-cache", "Last-Modified", "Mon, 01 Jun 2026 10:00:00 GMT"), segments());
+        RemoteResponseCache.Entry entry = cache.get(URL);
+        assertNotNull("A response with a validator is kept", entry);
+        assertFalse("It must be revalidated on each request", entry.isFresh());
+        assertEquals("Mon, 01 Jun 2026 10:00:00 GMT", entry.getLastModified());
+        assertNull(entry.getETag());
+
+        cache.put(URL, ok("Cache-Control", "no-cache"), segments());
+        assertSame("Without a validator the response is not kept", entry, cache.get(URL));
+    }
+
+    public void testNotModifiedRefreshesTheEntry() throws DataSourceException {
+        RemoteResponseCache cache = new RemoteResponseCache(10, HOUR);
+        cache.put(URL, ok("Cache-Control", "max-age=0", "ETag", "\"v1\""), segments());
+        RemoteResponseCache.Entry entry = cache.get(URL);
+        assertFalse(entry.isFresh());
+
+        cache.refresh(URL, entry, StubHttpClient.response(304, null, "Cache-Control", "max-age=3600"));
+        assertTrue("A 304 makes the response fresh for its new max-age", entry.isFresh());
+        assertSame(entry, cache.get(URL));
+
+        cache.refresh(URL, entry, StubHttpClient.response(304, null));
+        assertTrue("A 304 without Cache-Control uses the default time to live", entry.isFresh());
+
+        cache.refresh(URL, entry, StubHttpClient.response(304, null, "Cache-Control", "no-store"));
+        assertNull("A 304 marked no-store drops the response", cache.get(URL));
+    }
+
+    public void testLeastRecentlyUsedIsEvicted() throws DataSourceException {
+        RemoteResponseCache cache = new RemoteResponseCache(2, HOUR);
+        cache.put(URL + "1", ok(), segments());
+        cache.put(URL + "2", ok(), segments());
+        assertNotNull(cache.get(URL + "1"));
+        cache.put(URL + "3", ok(), segments());
+        assertNull("The least recently used response is evicted", cache.get(URL + "2"));
+        assertNotNull(cache.get(URL + "1"));
+        assertNotNull(cache.get(URL + "3"));
+        assertEquals(2, cache.getMaxEntries());
+
+        cache.clear();
+        assertNull(cache.get(URL + "1"));
+    }
+
+    public void testCopiesShareTheFeaturesButNotTheSegments() throws DataSourceException {
+        RemoteResponseCache cache = new RemoteResponseCache(10, HOUR);
+        Collection<QueryAwareDasAnnotatedSegment> segments = segments();
+        cache.put(URL, ok(), segments);
+        QueryAwareDasAnnotatedSegment copy = cache.get(URL).copySegments().iterator().next();
+        QueryAwareDasAnnotatedSegment original = segments.iterator().next();
+        assertNotSame(original, copy);
+        assertEquals(URL, copy.getQueryURL());
+        assertEquals(new Integer(1), copy.getReportedTotal());
+        assertSame(original.getFeatures().iterator().next(), copy.getFeatures().iterator().next());
+
+        copy.getFeatures().clear();
+        assertEquals("Changing a copy leaves the cached response unchanged", 1,
+                cache.get(URL).copySegments().iterator().next().getFeatures().size());
+    }
+}
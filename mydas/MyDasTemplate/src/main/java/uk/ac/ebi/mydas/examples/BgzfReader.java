@@ -0,0 +1,138 @@
+package uk.ac.ebi.mydas.examples;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads the lines of a BGZF file (as written by bgzip) from a virtual offset, as given by a tabix index.
+ * A BGZF file is a series of gzip members of at most 64KB, each recording its compressed size in an extra field,
+ * and a virtual offset is the offset of a member in the file shifted left by 16 bits, plus the offset
+ * in its uncompressed data.  Only the members holding the lines read are decompressed.
+ * <p/>
+ * A reader is not thread safe.
+ */
+public class BgzfReader {
+
+	private static final int HEADER_SIZE = 18;
+
+	private final RandomAccessFile file;
+
+	private final Inflater inflater = new Inflater(true);
+
+	private final byte[] header = new byte[HEADER_SIZE];
+
+	private byte[] compressed = new byte[65536];
+
+	private final byte[] block = new byte[65536];
+
+	/**
+	 * Offset in the file of the current block, and of the next one.
+	 */
+	private long blockAddress = -1;
+	private long nextBlockAddress = 0;
+
+	private int blockLength = 0;
+
+	private int blockOffset = 0;
+
+	private final ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+
+	public BgzfReader(File bgzf) throws IOException {
+		this.file = new RandomAccessFile(bgzf, "r");
+	}
+
+	/**
+	 * Moves to a virtual offset, decompressing the block it points into.
+	 * @param virtualOffset the virtual offset.
+	 * @throws IOException if the file cannot be read or is not BGZF.
+	 */
+	public void seek(long virtualOffset) throws IOException {
+		long address = virtualOffset >>> 16;
+		if (address != blockAddress) {
+			readBlock(address);
+		}
+		blockOffset = (int) (virtualOffset & 0xFFFF);
+	}
+
+	/**
+	 * @return the virtual offset of the next line.
+	 */
+	public long getVirtualOffset() {
+		if (blockOffset == blockLength && blockLength > 0) {
+			// At the end of a block, the next line starts with the next block.
+			return nextBlockAddress << 16;
+		}
+		return (blockAddress << 16) | blockOffset;
+	}
+
+	/**
+	 * @return the next line, without its terminator, or null at the end of the file.
+	 * @throws IOException if the file cannot be read or is not BGZF.
+	 */
+	public String readLine() throws IOException {
+		line.reset();
+		while (true) {
+			if (blockOffset == blockLength) {
+				if (nextBlockAddress >= file.length()) {
+					return (line.size() == 0) ? null : toLine();
+				}
+				readBlock(nextBlockAddress);
+				continue;
+			}
+			int start = blockOffset;
+			while (blockOffset < blockLength && block[blockOffset] != '\n') {
+				blockOffset++;
+			}
+			line.write(block, start, blockOffset - start);
+			if (blockOffset < blockLength) {
+				blockOffset++;
+				return toLine();
+			}
+		}
+	}
+
+	public void close() throws IOException {
+		inflater.end();
+		file.close();
+	}
+
+	private String toLine() throws IOException {
+		int length = line.size();
+		byte[] bytes = line.toByteArray();
+		if (length > 0 && bytes[length - 1] == '\r') {
+			length--;
+		}
+		return new String(bytes, 0, length, "ISO-8859-1");
+	}
+
+	private void readBlock(long address) throws IOException {
+		file.seek(address);
+		file.readFully(header);
+		if ((header[0] & 0xFF) != 31 || (header[1] & 0xFF) != 139 || (header[3] & 4) == 0
+				|| header[12] != 'B' || header[13] != 'C') {
+			throw new IOException("The file is not BGZF compressed: no BGZF block at offset " + address);
+		}
+		int extraLength = (header[10] & 0xFF) | (header[11] & 0xFF) << 8;
+		int blockSize = ((header[16] & 0xFF) | (header[17] & 0xFF) << 8) + 1;
+		int compressedLength = blockSize - extraLength - 20;
+		if (compressed.length < compressedLength) {
+			compressed = new byte[compressedLength];
+		}
+		file.seek(address + 12 + extraLength);
+		file.readFully(compressed, 0, compressedLength);
+		inflater.reset();
+		inflater.setInput(compressed, 0, compressedLength);
+		try {
+			blockLength = inflater.inflate(block, 0, block.length);
+		} catch (DataFormatException e) {
+			throw new IOException("The BGZF block at offset " + address + " is corrupt: " + e.getMessage());
+		}
+		blockAddress = address;
+		nextBlockAddress = address + blockSize;
+		blockOffset = 0;
+	}
+}
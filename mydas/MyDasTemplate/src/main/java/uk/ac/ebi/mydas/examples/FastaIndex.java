@@ -0,0 +1,254 @@
+package uk.ac.ebi.mydas.examples;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import uk.ac.ebi.mydas.exceptions.DataSourceException;
+
+/**
+ * A samtools style index (.fai) of a FASTA file, giving for each sequence
+ * the byte offset of its first base and the layout of its lines, so that any
+ * base can be located in the file without reading the sequence.
+ * Each line of the .fai file holds, separated by tabs, the name of the sequence,
+ * its length, the offset of its first base, the number of bases per line and
+ * the number of bytes per line, including the line terminator.
+ */
+public class FastaIndex {
+
+	/**
+	 * The position of one sequence in the FASTA file.
+	 */
+	public static class Entry {
+		private final String name;
+		private final int length;
+		private final long offset;
+		private final int lineBases;
+		private final int lineWidth;
+
+		Entry(String name, int length, long offset, int lineBases, int lineWidth) {
+			this.name = name;
+			this.length = length;
+			this.offset = offset;
+			this.lineBases = lineBases;
+			this.lineWidth = lineWidth;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public int getLength() {
+			return length;
+		}
+
+		/**
+		 * @param position zero based position of a base in the sequence.
+		 * @return the offset of the base in the FASTA file.
+		 */
+		public long getOffset(int position) {
+			return offset + (long) (position / lineBases) * lineWidth + position % lineBases;
+		}
+
+		/**
+		 * @param position zero based position of a base in the sequence.
+		 * @return the number of bases from this one to the end of its line.
+		 */
+		public int getBasesToEndOfLine(int position) {
+			return lineBases - position % lineBases;
+		}
+	}
+
+	/**
+	 * Entries in the order of the FASTA file.
+	 */
+	private final Map<String, Entry> entries;
+
+	private final List<Entry> entryList;
+
+	private FastaIndex(Map<String, Entry> entries) {
+		this.entries = entries;
+		this.entryList = Collections.unmodifiableList(new ArrayList<Entry>(entries.values()));
+	}
+
+	/**
+	 * Reads the index of a FASTA file, or builds it if the index file does not
+	 * exist or is older than the FASTA file, in which case the index file is
+	 * written if possible.
+	 * @param fasta the FASTA file.
+	 * @param fai the index file.
+	 * @return the index.
+	 * @throws DataSourceException if the index cannot be read or the FASTA file is not
+	 * laid out in lines of the same length.
+	 */
+	public static FastaIndex load(File fasta, File fai) throws DataSourceException {
+		try {
+			if (fai.exists() && fai.lastModified() >= fasta.lastModified()) {
+				return read(fai);
+			}
+			FastaIndex index = build(fasta);
+			try {
+				index.write(fai);
+			} catch (IOException e) {
+				// The index is still usable, it is just rebuilt on the next start.
+			}
+			return index;
+		} catch (IOException e) {
+			throw new DataSourceException("The index of the fasta file " + fasta + " couldn't be loaded", e);
+		}
+	}
+
+	/**
+	 * @param name the name of a sequence.
+	 * @return its entry, or null if the FASTA file has no such sequence.
+	 */
+	public Entry getEntry(String name) {
+		return entries.get(name);
+	}
+
+	/**
+	 * @return the entries in the order of the FASTA file.
+	 */
+	public List<Entry> getEntries() {
+		return entryList;
+	}
+
+	private static FastaIndex read(File fai) throws IOException, DataSourceException {
+		Map<String, Entry> entries = new LinkedHashMap<String, Entry>();
+		BufferedReader reader = new BufferedReader(new FileReader(fai));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.length() == 0) {
+					continue;
+				}
+				String[] fields = line.split("\t");
+				if (fields.length < 5) {
+					throw new DataSourceException("The fasta index " + fai + " has a malformed line: " + line);
+				}
+				try {
+					entries.put(fields[0], new Entry(fields[0], Integer.parseInt(fields[1]), Long.parseLong(fields[2]),
+							Integer.parseInt(fields[3]), Integer.parseInt(fields[4])));
+				} catch (NumberFormatException e) {
+					throw new DataSourceException("The fasta index " + fai + " has a malformed line: " + line, e);
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return new FastaIndex(entries);
+	}
+
+	/**
+	 * Scans the FASTA file once, counting the bases and line lengths of each sequence.
+	 */
+	private static FastaIndex build(File fasta) throws IOException, DataSourceException {
+		Map<String, Entry> entries = new LinkedHashMap<String, Entry>();
+		InputStream in = new BufferedInputStream(new FileInputStream(fasta), 1 << 16);
+		try {
+			String name = null;
+			long sequenceOffset = 0;
+			long length = 0;
+			int lineBases = 0;
+			int lineWidth = 0;
+			boolean shortLine = false;
+
+			long offset = 0;
+			StringBuilder header = null;
+			int bases = 0;
+			int width = 0;
+			int b;
+			do {
+				b = in.read();
+				if (b != -1) {
+					offset++;
+					width++;
+				}
+				if (width == 1 && b == '>') {
+					header = new StringBuilder();
+					continue;
+				}
+				if (b != '\n' && b != -1) {
+					if (header != null) {
+						header.append((char) b);
+					} else if (b != '\r') {
+						bases++;
+					}
+					continue;
+				}
+				// End of a line
+				if (header != null) {
+					if (name != null) {
+						addEntry(entries, name, length, sequenceOffset, lineBases, lineWidth);
+					}
+					name = header.toString().trim().split("\\s")[0];
+					sequenceOffset = offset;
+					length = 0;
+					lineBases = 0;
+					lineWidth = 0;
+					shortLine = false;
+					header = null;
+				} else if (bases > 0) {
+					if (name == null) {
+						throw new DataSourceException("The fasta file " + fasta + " does not start with a header line");
+					}
+					if (shortLine || (lineBases > 0 && bases > lineBases)) {
+						throw new DataSourceException("The sequence " + name + " of the fasta file " + fasta + " has lines of different lengths");
+					}
+					// Only the last line may lack its line end, all the others must end as the first one does
+					if (lineBases > 0 && b != -1 && width - bases != lineWidth - lineBases) {
+						throw new DataSourceException("The sequence " + name + " of the fasta file " + fasta + " has lines of different widths");
+					}
+					if (lineBases == 0) {
+						lineBases = bases;
+						lineWidth = width;
+					} else if (bases < lineBases) {
+						shortLine = true;
+					}
+					length += bases;
+				} else if (width > 0) {
+					shortLine = true;
+				}
+				bases = 0;
+				width = 0;
+			} while (b != -1);
+			if (name != null) {
+				addEntry(entries, name, length, sequenceOffset, lineBases, lineWidth);
+			}
+		} finally {
+			in.close();
+		}
+		return new FastaIndex(entries);
+	}
+
+	private static void addEntry(Map<String, Entry> entries, String name, long length, long offset, int lineBases, int lineWidth)
+			throws DataSourceException {
+		if (length > Integer.MAX_VALUE) {
+			throw new DataSourceException("The sequence " + name + " is too long to be served");
+		}
+		entries.put(name, new Entry(name, (int) length, offset, Math.max(lineBases, 1), Math.max(lineWidth, 1)));
+	}
+
+	private void write(File fai) throws IOException {
+		Writer writer = new BufferedWriter(new FileWriter(fai));
+		try {
+			for (Entry entry : entryList) {
+				writer.write(entry.name + "\t" + entry.length + "\t" + entry.offset + "\t" + entry.lineBases + "\t" + entry.lineWidth + "\n");
+			}
+		} finally {
+			writer.close();
+		}
+	}
+}
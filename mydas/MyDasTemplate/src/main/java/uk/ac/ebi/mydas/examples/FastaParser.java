@@ -6,11 +6,12 @@ import java.util.HashMap;
 import java.util.Scanner;
 
 import uk.ac.ebi.mydas.model.DasSequence;
+import uk.ac.ebi.mydas.model.PackedDasSequence;
 
 public class FastaParser {
 	private Scanner scanner;
 	private Map<String,DasSequence> sequences;
-	private String currentSequence=null;
+	private StringBuilder currentSequence=null;
 	private String currentHeader=null;
 	private String fileName;
 
@@ -25,8 +26,7 @@ public class FastaParser {
 			while ( scanner.hasNextLine() ){
 				processLine( scanner.nextLine() );
 			}
-			String id=currentHeader.split(" ")[0];
-			sequences.put(id,new DasSequence(id, currentSequence, 1, fileName, currentHeader));
+			addSequence();
 		} finally {
 			//ensure the underlying stream is always closed
 			scanner.close();
@@ -35,15 +35,24 @@ public class FastaParser {
 	private void processLine(String aLine) throws Exception{
 		if (aLine.startsWith(">")){
 			if (currentSequence!=null){
-				String id=currentHeader.split(" ")[0];
-				sequences.put(id,new DasSequence(id, currentSequence, 1, fileName, currentHeader));
+				addSequence();
 			}
 			currentHeader=aLine.substring(1).trim();
-			currentSequence="";
+			currentSequence=new StringBuilder();
 		}else 
-			currentSequence+=aLine.trim();
+			currentSequence.append(aLine.trim());
 			
 	}
+	/**
+	 * Nucleotide sequences are packed in 2 bits per base, any other is kept as a String.
+	 */
+	private void addSequence() throws Exception{
+		String id=currentHeader.split(" ")[0];
+		if (PackedDasSequence.isNucleotide(currentSequence))
+			sequences.put(id,new PackedDasSequence(id, currentSequence, 1, fileName, currentHeader));
+		else
+			sequences.put(id,new DasSequence(id, currentSequence.toString(), 1, fileName, currentHeader));
+	}
 	public Map<String,DasSequence> parse() throws Exception{
 		this.processLineByLine();
 		return sequences;
@@ -61,6 +61,45 @@ public class GFF2Parser {
 		String[] parts = afeature.split("\t");
 		if (parts.length<8)
 			throw new Exception("Parsing Error: A feature doesn't have the right number of fields ["+afeature+"]");
+		DasFeature feature=parseFeature(parts,"GFF_feature_"+(featureid++),this.getType(parts[2]));
+		boolean added=false;
+		for (DasAnnotatedSegment segment:segments){
+			if (segment.getSegmentId().equals(parts[0])){
+				segment.getFeatures().add(feature);
+				
+				if (feature.getStartCoordinate()<segment.getStartCoordinate()){
+					DasAnnotatedSegment newSegment = new DasAnnotatedSegment(segment.getSegmentId(),feature.getStartCoordinate(),segment.getStopCoordinate(),segment.getVersion(),segment.getSegmentLabel(), segment.getFeatures());
+					segments.add(newSegment);
+					segments.remove(segment);
+					segment=newSegment;
+				}
+				if (feature.getStopCoordinate()>segment.getStopCoordinate()){
+					DasAnnotatedSegment newSegment = new DasAnnotatedSegment(segment.getSegmentId(),segment.getStartCoordinate(),feature.getStopCoordinate(),segment.getVersion(),segment.getSegmentLabel(), segment.getFeatures());
+					segments.add(newSegment);
+					segments.remove(segment);
+					segment=newSegment;
+				}
+					
+				
+				added=true;
+				break;
+			}
+		}
+		if(!added){
+			ArrayList<DasFeature> features=new ArrayList<DasFeature>();
+			features.add(feature);
+			segments.add(new DasAnnotatedSegment(parts[0],new Integer(parts[3]),new Integer(parts[4]),"FromFile",parts[0], features));
+		}
+	}
+	/**
+	 * Builds the feature described by the fields of a GFF line.
+	 * @param parts the tab separated fields of the line, at least 8 of them.
+	 * @param featureId the id given to the feature.
+	 * @param type the type of the feature, named by the third field.
+	 * @return the feature.
+	 * @throws Exception if the fields are not valid GFF.
+	 */
+	static DasFeature parseFeature(String[] parts, String featureId, DasType type) throws Exception{
 		Double score=null;
 		if (!parts[5].equals(".")){
 			try{
@@ -92,35 +131,7 @@ public class GFF2Parser {
 		else
 			throw new Exception("Parsing Error: the feature "+parts[2]+" has a bad orientation field ["+parts[7]+"]" );
 		
-		DasFeature feature=new DasFeature("GFF_feature_"+(featureid++),null,this.getType(parts[2]),new DasMethod(parts[1],parts[1],null),Integer.parseInt(parts[3]),Integer.parseInt(parts[4]),score,orientation,phase,null,null,null,null,null);
-		boolean added=false;
-		for (DasAnnotatedSegment segment:segments){
-			if (segment.getSegmentId().equals(parts[0])){
-				segment.getFeatures().add(feature);
-				
-				if (feature.getStartCoordinate()<segment.getStartCoordinate()){
-					DasAnnotatedSegment newSegment = new DasAnnotatedSegment(segment.getSegmentId(),feature.getStartCoordinate(),segment.getStopCoordinate(),segment.getVersion(),segment.getSegmentLabel(), segment.getFeatures());
-					segments.add(newSegment);
-					segments.remove(segment);
-					segment=newSegment;
-				}
-				if (feature.getStopCoordinate()>segment.getStopCoordinate()){
-					DasAnnotatedSegment newSegment = new DasAnnotatedSegment(segment.getSegmentId(),segment.getStartCoordinate(),feature.getStopCoordinate(),segment.getVersion(),segment.getSegmentLabel(), segment.getFeatures());
-					segments.add(newSegment);
-					segments.remove(segment);
-					segment=newSegment;
-				}
-					
-				
-				added=true;
-				break;
-			}
-		}
-		if(!added){
-			ArrayList<DasFeature> features=new ArrayList<DasFeature>();
-			features.add(feature);
-			segments.add(new DasAnnotatedSegment(parts[0],new Integer(parts[3]),new Integer(parts[4]),"FromFile",parts[0], features));
-		}
+		return new DasFeature(featureId,null,type,new DasMethod(parts[1],parts[1],null),Integer.parseInt(parts[3]),Integer.parseInt(parts[4]),score,orientation,phase,null,null,null,null,null);
 	}
 	private DasType getType(String type){
 		for(DasType t: types)
@@ -50,6 +50,9 @@ public class GFFFileDataSource implements AnnotationDataSource {
             segments.add(new DasAnnotatedSegment("my_segment_1", 1, 1, "version 1", "my segment label", lstFeatures, 1));
 			types = parser.getTypes();
             types.add(dasType);
+			// The segments are kept for all the requests, so they are worth indexing for range queries.
+			for (DasAnnotatedSegment segment : segments)
+				segment.indexFeatures();
                         System.out.println("Finished initialisation============================");
 		} catch (FileNotFoundException e) {
 			throw new DataSourceException("The data source cannot be loaded. The file couldn't be oppened",e);
@@ -50,6 +50,9 @@ public class GFFFileReferenceDataSource implements ReferenceDataSource {
 			GFF2Parser parser = new GFF2Parser(new FileInputStream(servletContext.getRealPath(path)));
 			segments = parser.parse();
 			types = parser.getTypes();
+			// The segments are kept for all the requests, so they are worth indexing for range queries.
+			for (DasAnnotatedSegment segment : segments)
+				segment.indexFeatures();
 		} catch (FileNotFoundException e) {
 			throw new DataSourceException("The data source cannot be loaded. The file couldn't be oppened",e);
 		} catch (Exception e) {
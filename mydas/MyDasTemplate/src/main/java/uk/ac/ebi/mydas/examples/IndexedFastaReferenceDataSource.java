@@ -0,0 +1,251 @@
+package uk.ac.ebi.mydas.examples;
+
+import uk.ac.ebi.mydas.configuration.DataSourceConfiguration;
+import uk.ac.ebi.mydas.configuration.PropertyType;
+import uk.ac.ebi.mydas.datasource.RangeHandlingReferenceDataSource;
+import uk.ac.ebi.mydas.exceptions.BadReferenceObjectException;
+import uk.ac.ebi.mydas.exceptions.CoordinateErrorException;
+import uk.ac.ebi.mydas.exceptions.DataSourceException;
+import uk.ac.ebi.mydas.exceptions.UnimplementedFeatureException;
+import uk.ac.ebi.mydas.extendedmodel.DasUnknownFeatureSegment;
+import uk.ac.ebi.mydas.model.*;
+
+import javax.servlet.ServletContext;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reference Data Source serving the sequences of a FASTA file, which path has been specified
+ * in the configuration file as the fasta_file property of the datasource element.
+ * <p/>
+ * The file is memory mapped and located with a samtools style .fai index, read from the
+ * fai_file property (by default the FASTA file name followed by .fai), or built on the first
+ * start and written there. A request for a range of a sequence only reads the bytes of that range,
+ * so neither the startup time nor the heap used depend on the size of the assembly.
+ * The data source does not have features.
+ */
+public class IndexedFastaReferenceDataSource implements RangeHandlingReferenceDataSource {
+
+	/**
+	 * The size of each mapped region of the file, as a single mapping cannot exceed 2GB.
+	 */
+	private static final int REGION_BITS = 30;
+
+	ServletContext svCon;
+	Map<String, PropertyType> globalParameters;
+	DataSourceConfiguration config;
+	String path;
+	private FastaIndex index;
+	private MappedByteBuffer[] regions;
+
+	/**
+	 * The FASTA file is mapped and its index loaded, the sequences are not read.
+	 */
+	public void init(ServletContext servletContext, Map<String, PropertyType> globalParameters, DataSourceConfiguration dataSourceConfig) throws DataSourceException {
+		this.svCon = servletContext;
+		this.globalParameters = globalParameters;
+		this.config = dataSourceConfig;
+		path = config.getDataSourceProperties().get("fasta_file").getValue();
+		File fasta = new File(servletContext.getRealPath(path));
+		PropertyType faiProperty = config.getDataSourceProperties().get("fai_file");
+		File fai = (faiProperty == null)
+				? new File(fasta.getPath() + ".fai")
+				: new File(servletContext.getRealPath(faiProperty.getValue()));
+		if (!fasta.exists()) {
+			throw new DataSourceException("The reference data source cannot be loaded. The fasta file couldn't be oppened");
+		}
+		index = FastaIndex.load(fasta, fai);
+		try {
+			RandomAccessFile file = new RandomAccessFile(fasta, "r");
+			try {
+				FileChannel channel = file.getChannel();
+				long size = channel.size();
+				regions = new MappedByteBuffer[(int) ((size + (1L << REGION_BITS) - 1) >>> REGION_BITS)];
+				for (int i = 0; i < regions.length; i++) {
+					long start = (long) i << REGION_BITS;
+					regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(1L << REGION_BITS, size - start));
+				}
+			} finally {
+				// The mappings stay valid once the file is closed.
+				file.close();
+			}
+		} catch (IOException e) {
+			throw new DataSourceException("The reference data source cannot be loaded. The fasta file couldn't be mapped", e);
+		}
+	}
+
+	/**
+	 * The mapped regions are released by the garbage collector.
+	 */
+	public void destroy() {
+		regions = null;
+	}
+
+	/**
+	 * Returns the requested range of the sequence, read from the mapped file.  A stop beyond the end
+	 * of the sequence is moved to its end.
+	 */
+	public DasRestrictedSequence getSequence(String segmentId, int start, int stop) throws CoordinateErrorException, BadReferenceObjectException, DataSourceException {
+		FastaIndex.Entry entry = getEntry(segmentId);
+		if (start < 1 || start > stop || start > entry.getLength()) {
+			throw new CoordinateErrorException(segmentId, start, stop);
+		}
+		stop = Math.min(stop, entry.getLength());
+		return new DasRestrictedSequence(segmentId, new String(read(entry, start - 1, stop - start + 1)), start, path, null);
+	}
+
+	/**
+	 * Returns the whole sequence.  Nucleotide sequences are packed in 2 bits per base, straight from the mapped file.
+	 */
+	public DasSequence getSequence(String segmentId) throws BadReferenceObjectException, DataSourceException {
+		FastaIndex.Entry entry = getEntry(segmentId);
+		CharSequence bases = new MappedSequence(entry);
+		if (PackedDasSequence.isNucleotide(bases)) {
+			return new PackedDasSequence(segmentId, bases, 1, path, null);
+		}
+		return new DasSequence(segmentId, new String(read(entry, 0, entry.getLength())), 1, path, null);
+	}
+
+	/**
+	 * The data source does not have features, it returns an empty segment.
+	 */
+	public DasAnnotatedSegment getFeatures(String segmentId, Integer maxbins) throws BadReferenceObjectException, DataSourceException {
+		FastaIndex.Entry entry = getEntry(segmentId);
+		return new DasAnnotatedSegment(segmentId, 1, entry.getLength(), path, segmentId, new ArrayList<DasFeature>());
+	}
+
+	public DasRestrictedAnnotatedSegment getFeatures(String segmentId, int start, int stop, Integer maxbins) throws CoordinateErrorException, BadReferenceObjectException, DataSourceException {
+		FastaIndex.Entry entry = getEntry(segmentId);
+		if (start < 1 || start > stop || start > entry.getLength()) {
+			throw new CoordinateErrorException(segmentId, start, stop);
+		}
+		return new DasRestrictedAnnotatedSegment(segmentId, start, Math.min(stop, entry.getLength()), path, segmentId, new ArrayList<DasFeature>());
+	}
+
+	public DasRestrictedAnnotatedSegment getFeatures(String segmentId, int start, int stop, Integer maxbins, Range rows) throws CoordinateErrorException, BadReferenceObjectException, DataSourceException, UnimplementedFeatureException {
+		throw new UnimplementedFeatureException("No implemented");
+	}
+
+	public DasAnnotatedSegment getFeatures(String segmentId, Integer maxbins, Range rows) throws BadReferenceObjectException, DataSourceException, UnimplementedFeatureException {
+		throw new UnimplementedFeatureException("No implemented");
+	}
+
+	public Collection<DasAnnotatedSegment> getFeatures(Collection<String> featureIdCollection, Integer maxbins) throws UnimplementedFeatureException, DataSourceException {
+		Collection<DasAnnotatedSegment> segmentsResponse = new ArrayList<DasAnnotatedSegment>();
+		for (String featureId : featureIdCollection) {
+			segmentsResponse.add(new DasUnknownFeatureSegment(featureId));
+		}
+		return segmentsResponse;
+	}
+
+	public Collection<DasAnnotatedSegment> getFeatures(Collection<String> featureIdCollection, Integer maxbins, Range rows) throws UnimplementedFeatureException, DataSourceException {
+		throw new UnimplementedFeatureException("No implemented");
+	}
+
+	public Collection<DasType> getTypes() throws DataSourceException {
+		return Collections.emptyList();
+	}
+
+	public Integer getTotalCountForType(DasType type) throws DataSourceException {
+		return 0;
+	}
+
+	public URL getLinkURL(String field, String id) throws UnimplementedFeatureException, DataSourceException {
+		throw new UnimplementedFeatureException("No implemented");
+	}
+
+	public String getEntryPointVersion() throws DataSourceException {
+		return path;
+	}
+
+	/**
+	 * The entry points are the sequences, in the order of the FASTA file.
+	 */
+	public Collection<DasEntryPoint> getEntryPoints(Integer start, Integer stop) throws DataSourceException {
+		List<FastaIndex.Entry> entries = index.getEntries();
+		int from = (start == null) ? 0 : Math.max(start - 1, 0);
+		int to = (stop == null) ? entries.size() : Math.min(stop, entries.size());
+		ArrayList<DasEntryPoint> entryPoints = new ArrayList<DasEntryPoint>();
+		for (int i = from; i < to; i++) {
+			FastaIndex.Entry entry = entries.get(i);
+			entryPoints.add(new DasEntryPoint(entry.getName(), 1, entry.getLength(), "DNA", path, null, null, false));
+		}
+		return entryPoints;
+	}
+
+	public int getTotalEntryPoints() throws DataSourceException {
+		return index.getEntries().size();
+	}
+
+	private FastaIndex.Entry getEntry(String segmentId) throws BadReferenceObjectException {
+		FastaIndex.Entry entry = index.getEntry(segmentId);
+		if (entry == null) {
+			throw new BadReferenceObjectException(segmentId, "The id is not in the file");
+		}
+		return entry;
+	}
+
+	/**
+	 * @return the byte at an offset of the file.
+	 */
+	private byte byteAt(long offset) {
+		return regions[(int) (offset >>> REGION_BITS)].get((int) (offset & ((1L << REGION_BITS) - 1)));
+	}
+
+	/**
+	 * Reads the bases of a sequence a line at a time, skipping the line terminators.
+	 * @param entry the sequence.
+	 * @param position zero based position of the first base.
+	 * @param length number of bases.
+	 * @return the bases.
+	 */
+	private char[] read(FastaIndex.Entry entry, int position, int length) {
+		char[] bases = new char[length];
+		int i = 0;
+		while (i < length) {
+			long offset = entry.getOffset(position + i);
+			int lineStop = i + Math.min(entry.getBasesToEndOfLine(position + i), length - i);
+			for (; i < lineStop; i++) {
+				bases[i] = (char) (byteAt(offset++) & 0xFF);
+			}
+		}
+		return bases;
+	}
+
+	/**
+	 * A view of a sequence of the mapped file, so that it can be packed without reading it into a String.
+	 */
+	private class MappedSequence implements CharSequence {
+		private final FastaIndex.Entry entry;
+
+		MappedSequence(FastaIndex.Entry entry) {
+			this.entry = entry;
+		}
+
+		public int length() {
+			return entry.getLength();
+		}
+
+		public char charAt(int index) {
+			return (char) (byteAt(entry.getOffset(index)) & 0xFF);
+		}
+
+		public CharSequence subSequence(int start, int end) {
+			return new String(read(entry, start, end - start));
+		}
+
+		@Override
+		public String toString() {
+			return new String(read(entry, 0, entry.getLength()));
+		}
+	}
+}
@@ -0,0 +1,375 @@
+package uk.ac.ebi.mydas.examples;
+
+import uk.ac.ebi.mydas.configuration.DataSourceConfiguration;
+import uk.ac.ebi.mydas.configuration.PropertyType;
+import uk.ac.ebi.mydas.datasource.FeatureSink;
+import uk.ac.ebi.mydas.datasource.RangeHandlingAnnotationDataSource;
+import uk.ac.ebi.mydas.datasource.StreamingAnnotationDataSource;
+import uk.ac.ebi.mydas.exceptions.BadReferenceObjectException;
+import uk.ac.ebi.mydas.exceptions.CoordinateErrorException;
+import uk.ac.ebi.mydas.exceptions.DataSourceException;
+import uk.ac.ebi.mydas.exceptions.UnimplementedFeatureException;
+import uk.ac.ebi.mydas.extendedmodel.DasUnknownFeatureSegment;
+import uk.ac.ebi.mydas.model.*;
+
+import javax.servlet.ServletContext;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Data Source serving the features of a GFF file compressed with bgzip and indexed with tabix
+ * (tabix -p gff), which paths have been specified in the configuration file as the gff_file
+ * property of the datasource element and, optionally, the tabix_index property (by default
+ * the GFF file name followed by .tbi).
+ * <p/>
+ * Only the index is kept in memory: a request for a range of a segment decompresses the few
+ * blocks of the file the index points to, so the file can be larger than the heap.
+ * The id of a feature is the position of its line in the file, so a feature is also read
+ * from its id without scanning the file.  The types and their counts need a scan of the whole
+ * file, which is done on the first types request and kept.
+ * <p/>
+ * The features of a request for a range of a segment are streamed to the response as they are
+ * read, so they are not kept in memory.  As the length of the sequences is not known, a whole
+ * sequence spans from the start of its first feature to the end of its last one, which is only
+ * known once all its features are read, so its features are read before they are pushed.
+ */
+public class TabixGFFDataSource implements RangeHandlingAnnotationDataSource, StreamingAnnotationDataSource {
+
+	/**
+	 * The largest coordinate indexed by tabix.
+	 */
+	private static final int MAX_COORDINATE = 1 << 29;
+
+	private static final String FEATURE_ID_PREFIX = "GFF_feature_";
+
+	ServletContext svCon;
+	Map<String, PropertyType> globalParameters;
+	DataSourceConfiguration config;
+	String path;
+	private File gff;
+	private TabixIndex index;
+	private Map<String, Integer> typeCounts;
+
+	/**
+	 * The index is loaded, the file is not read.
+	 */
+	public void init(ServletContext servletContext, Map<String, PropertyType> globalParameters, DataSourceConfiguration dataSourceConfig) throws DataSourceException {
+		this.svCon = servletContext;
+		this.globalParameters = globalParameters;
+		this.config = dataSourceConfig;
+		String gffPath = config.getDataSourceProperties().get("gff_file").getValue();
+		File gffFile = new File(servletContext.getRealPath(gffPath));
+		PropertyType tbiProperty = config.getDataSourceProperties().get("tabix_index");
+		File tbi = (tbiProperty == null)
+				? new File(gffFile.getPath() + ".tbi")
+				: new File(servletContext.getRealPath(tbiProperty.getValue()));
+		load(gffPath, gffFile, tbi);
+	}
+
+	/**
+	 * Loads the index of a file.
+	 * @param path the path of the file in the configuration, used as the version of the segments.
+	 * @param gff the BGZF compressed GFF file.
+	 * @param tbi its tabix index.
+	 * @throws DataSourceException if the file does not exist or the index cannot be read.
+	 */
+	void load(String path, File gff, File tbi) throws DataSourceException {
+		if (!gff.exists()) {
+			throw new DataSourceException("The data source cannot be loaded. The file couldn't be oppened");
+		}
+		this.path = path;
+		this.gff = gff;
+		this.index = TabixIndex.load(tbi);
+	}
+
+	/**
+	 * Nothing to destroy, the file is opened for each request.
+	 */
+	public void destroy() { }
+
+	/**
+	 * Returns the features overlapping the range, read from the blocks of the file given by the index.
+	 */
+	public DasRestrictedAnnotatedSegment getFeatures(String segmentId, int start, int stop, Integer maxbins) throws BadReferenceObjectException, CoordinateErrorException, DataSourceException {
+		checkSegment(segmentId);
+		if (start > stop) {
+			throw new CoordinateErrorException(segmentId, start, stop);
+		}
+		return new DasRestrictedAnnotatedSegment(segmentId, start, stop, path, segmentId, query(segmentId, start, stop));
+	}
+
+	/**
+	 * Returns all the features of the segment, which spans from the start of the first feature to the end of the last one.
+	 */
+	public DasAnnotatedSegment getFeatures(String segmentId, Integer maxbins) throws BadReferenceObjectException, DataSourceException {
+		checkSegment(segmentId);
+		List<DasFeature> features = query(segmentId, 1, MAX_COORDINATE);
+		int start = Integer.MAX_VALUE;
+		int stop = 1;
+		for (DasFeature feature : features) {
+			start = Math.min(start, feature.getStartCoordinate());
+			stop = Math.max(stop, feature.getStopCoordinate());
+		}
+		return new DasAnnotatedSegment(segmentId, Math.min(start, stop), stop, path, segmentId, features);
+	}
+
+	/**
+	 * Pushes the features overlapping the range as they are read from the blocks of the file given by
+	 * the index.  The features of a whole segment are read first, to report the extent of the segment
+	 * as {@link #getFeatures(String, Integer)} does.
+	 */
+	public void getFeatures(String segmentId, Integer start, Integer stop, Integer maxbins, FeatureSink sink) throws BadReferenceObjectException, CoordinateErrorException, DataSourceException {
+		if (start == null || stop == null) {
+			DasAnnotatedSegment segment = getFeatures(segmentId, maxbins);
+			if (sink.startSegment(new DasAnnotatedSegment(segmentId, segment.getStartCoordinate(), segment.getStopCoordinate(), path, segmentId, new ArrayList<DasFeature>()))) {
+				for (DasFeature feature : segment.getFeatures()) {
+					sink.addFeature(feature);
+				}
+			}
+			return;
+		}
+		checkSegment(segmentId);
+		if (start > stop) {
+			throw new CoordinateErrorException(segmentId, start, stop);
+		}
+		if (sink.startSegment(new DasAnnotatedSegment(segmentId, start, stop, path, segmentId, new ArrayList<DasFeature>()))) {
+			query(segmentId, start, stop, sink);
+		}
+	}
+
+	public DasAnnotatedSegment getFeatures(String segmentId, int start, int stop, Integer maxbins, Range rows) throws BadReferenceObjectException, CoordinateErrorException, DataSourceException, UnimplementedFeatureException {
+		throw new UnimplementedFeatureException("No implemented");
+	}
+
+	public DasAnnotatedSegment getFeatures(String segmentId, Integer maxbins, Range rows) throws BadReferenceObjectException, DataSourceException, UnimplementedFeatureException {
+		throw new UnimplementedFeatureException("No implemented");
+	}
+
+	/**
+	 * Each feature is read from the position in the file given by its id.
+	 */
+	public Collection<DasAnnotatedSegment> getFeatures(Collection<String> featureIdCollection, Integer maxbins) throws UnimplementedFeatureException, DataSourceException {
+		Collection<DasAnnotatedSegment> segmentsResponse = new ArrayList<DasAnnotatedSegment>();
+		BgzfReader reader = open();
+		try {
+			for (String featureId : featureIdCollection) {
+				DasFeature feature = null;
+				String[] parts = null;
+				long offset = parseFeatureId(featureId);
+				if (offset >= 0 && (offset >>> 16) < gff.length()) {
+					try {
+						reader.seek(offset);
+						parts = split(reader.readLine());
+						if (parts != null) {
+							feature = GFF2Parser.parseFeature(parts, featureId, new DasType(parts[2], null, null, null));
+						}
+					} catch (Exception e) {
+						// Not the offset of a line of the file.
+						feature = null;
+					}
+				}
+				if (feature == null) {
+					segmentsResponse.add(new DasUnknownFeatureSegment(featureId));
+				} else {
+					segmentsResponse.add(new DasAnnotatedSegment(parts[0], feature.getStartCoordinate(), feature.getStopCoordinate(), path, parts[0], Collections.singleton(feature)));
+				}
+			}
+		} finally {
+			close(reader);
+		}
+		return segmentsResponse;
+	}
+
+	public Collection<DasAnnotatedSegment> getFeatures(Collection<String> featureIdCollection, Integer maxbins, Range rows) throws UnimplementedFeatureException, DataSourceException {
+		throw new UnimplementedFeatureException("No implemented");
+	}
+
+	/**
+	 * The types are found by a scan of the whole file, done once.
+	 */
+	public Collection<DasType> getTypes() throws DataSourceException {
+		List<DasType> types = new ArrayList<DasType>();
+		for (String type : getTypeCounts().keySet()) {
+			types.add(new DasType(type, null, null, null));
+		}
+		return types;
+	}
+
+	public Integer getTotalCountForType(DasType type) throws DataSourceException {
+		Integer count = getTypeCounts().get(type.getId());
+		return (count == null) ? 0 : count;
+	}
+
+	public URL getLinkURL(String field, String id) throws UnimplementedFeatureException, DataSourceException {
+		throw new UnimplementedFeatureException("No implemented");
+	}
+
+	public String getEntryPointVersion() throws DataSourceException {
+		return path;
+	}
+
+	/**
+	 * The entry points are the sequences of the index, in the order of the file.  Their lengths are not known.
+	 */
+	public Collection<DasEntryPoint> getEntryPoints(Integer start, Integer stop) throws DataSourceException {
+		List<String> names = index.getNames();
+		int from = (start == null) ? 0 : Math.max(start - 1, 0);
+		int to = (stop == null) ? names.size() : Math.min(stop, names.size());
+		ArrayList<DasEntryPoint> entryPoints = new ArrayList<DasEntryPoint>();
+		for (int i = from; i < to; i++) {
+			entryPoints.add(new DasEntryPoint(names.get(i), null, null, null, path,
+					DasEntryPointOrientation.NO_INTRINSIC_ORIENTATION, null, false));
+		}
+		return entryPoints;
+	}
+
+	public int getTotalEntryPoints() throws DataSourceException {
+		return index.getNames().size();
+	}
+
+	private void checkSegment(String segmentId) throws BadReferenceObjectException {
+		if (!index.hasSequence(segmentId)) {
+			throw new BadReferenceObjectException(segmentId, "The id is not in the file");
+		}
+	}
+
+	/**
+	 * @return the features overlapping the range.
+	 */
+	private List<DasFeature> query(String segmentId, int start, int stop) throws DataSourceException {
+		final List<DasFeature> features = new ArrayList<DasFeature>();
+		query(segmentId, start, stop, new FeatureSink() {
+			public boolean startSegment(DasAnnotatedSegment segment) {
+				return true;
+			}
+
+			public void addFeature(DasFeature feature) {
+				features.add(feature);
+			}
+		});
+		return features;
+	}
+
+	/**
+	 * Reads the chunks of the file that may hold features overlapping the range, pushing those that do.
+	 * As the file is sorted, the reading stops at the first feature starting after the range.
+	 */
+	private void query(String segmentId, int start, int stop, FeatureSink sink) throws DataSourceException {
+		Map<String, DasType> types = new HashMap<String, DasType>();
+		BgzfReader reader = open();
+		try {
+			for (TabixIndex.Chunk chunk : index.getChunks(segmentId, start, stop)) {
+				reader.seek(chunk.getStart());
+				long offset;
+				while ((offset = reader.getVirtualOffset()) < chunk.getEnd()) {
+					String line = reader.readLine();
+					if (line == null) {
+						break;
+					}
+					String[] parts = split(line);
+					if (parts == null || !parts[0].equals(segmentId)) {
+						continue;
+					}
+					int featureStart = Integer.parseInt(parts[3]);
+					if (featureStart > stop) {
+						return;
+					}
+					if (Integer.parseInt(parts[4]) < start) {
+						continue;
+					}
+					DasType type = types.get(parts[2]);
+					if (type == null) {
+						type = new DasType(parts[2], null, null, null);
+						types.put(parts[2], type);
+					}
+					sink.addFeature(GFF2Parser.parseFeature(parts, FEATURE_ID_PREFIX + Long.toHexString(offset), type));
+				}
+			}
+		} catch (IOException e) {
+			throw new DataSourceException("The file " + path + " couldn't be read", e);
+		} catch (DataSourceException e) {
+			// Thrown by the sink.
+			throw e;
+		} catch (Exception e) {
+			throw new DataSourceException("The data source cannot be read because of parsing problems", e);
+		} finally {
+			close(reader);
+		}
+	}
+
+	/**
+	 * Counts the features of each type, reading the whole file the first time.
+	 */
+	private synchronized Map<String, Integer> getTypeCounts() throws DataSourceException {
+		if (typeCounts == null) {
+			Map<String, Integer> counts = new LinkedHashMap<String, Integer>();
+			BgzfReader reader = open();
+			try {
+				reader.seek(0);
+				String line;
+				while ((line = reader.readLine()) != null) {
+					String[] parts = split(line);
+					if (parts != null) {
+						Integer count = counts.get(parts[2]);
+						counts.put(parts[2], (count == null) ? 1 : count + 1);
+					}
+				}
+			} catch (IOException e) {
+				throw new DataSourceException("The file " + path + " couldn't be read", e);
+			} finally {
+				close(reader);
+			}
+			typeCounts = counts;
+		}
+		return typeCounts;
+	}
+
+	/**
+	 * @return the tab separated fields of a feature line, or null for a comment or malformed line.
+	 */
+	private String[] split(String line) {
+		if (line == null || line.length() == 0 || line.charAt(0) == index.getMeta()) {
+			return null;
+		}
+		String[] parts = line.split("\t");
+		return (parts.length < 8) ? null : parts;
+	}
+
+	/**
+	 * @return the virtual offset of the line of a feature, or -1 if the id is not one of this data source.
+	 */
+	private static long parseFeatureId(String featureId) {
+		if (!featureId.startsWith(FEATURE_ID_PREFIX)) {
+			return -1;
+		}
+		try {
+			return Long.parseLong(featureId.substring(FEATURE_ID_PREFIX.length()), 16);
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	private BgzfReader open() throws DataSourceException {
+		try {
+			return new BgzfReader(gff);
+		} catch (IOException e) {
+			throw new DataSourceException("The file " + path + " couldn't be oppened", e);
+		}
+	}
+
+	private void close(BgzfReader reader) {
+		try {
+			reader.close();
+		} catch (IOException e) {
+			// Nothing was written.
+		}
+	}
+}
@@ -0,0 +1,275 @@
+package uk.ac.ebi.mydas.examples;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import uk.ac.ebi.mydas.exceptions.DataSourceException;
+
+/**
+ * A tabix index (.tbi) of a BGZF compressed, coordinate sorted file, as written by tabix.
+ * For each sequence the index holds a binning index, assigning every line to the smallest of a
+ * hierarchy of bins (512Mb, 64Mb, 8Mb, 1Mb, 128Kb and 16Kb) that contains it and recording
+ * for each bin the chunks of the file holding its lines, and a linear index giving the first
+ * line overlapping each 16Kb window.  Together they give the few chunks that may hold lines
+ * overlapping a range, so that only those are decompressed.
+ */
+public class TabixIndex {
+
+	/**
+	 * A region of the BGZF file, between two virtual offsets.
+	 */
+	public static class Chunk {
+		private final long start;
+		private long end;
+
+		Chunk(long start, long end) {
+			this.start = start;
+			this.end = end;
+		}
+
+		/**
+		 * @return the virtual offset of the first line of the chunk.
+		 */
+		public long getStart() {
+			return start;
+		}
+
+		/**
+		 * @return the virtual offset following the last line of the chunk.
+		 */
+		public long getEnd() {
+			return end;
+		}
+	}
+
+	private static final int LINEAR_SHIFT = 14;
+
+	/**
+	 * The shift of the coordinates giving the bins of each level below the 512Mb bin, and the number of the first bin of the level.
+	 */
+	private static final int[] LEVEL_SHIFTS = {26, 23, 20, 17, 14};
+	private static final int[] LEVEL_FIRST_BINS = {1, 9, 73, 585, 4681};
+
+	/**
+	 * Bin numbers above this one are not bins, tabix uses them to store metadata.
+	 */
+	private static final int MAX_BIN = 37449;
+
+	private static final Comparator<Chunk> BY_START = new Comparator<Chunk>() {
+		public int compare(Chunk a, Chunk b) {
+			return (a.start < b.start) ? -1 : ((a.start == b.start) ? 0 : 1);
+		}
+	};
+
+	/**
+	 * The index of one sequence.
+	 */
+	private static class Reference {
+		private final Map<Integer, Chunk[]> bins;
+		private final long[] linear;
+
+		Reference(Map<Integer, Chunk[]> bins, long[] linear) {
+			this.bins = bins;
+			this.linear = linear;
+		}
+	}
+
+	private final char meta;
+
+	/**
+	 * References in the order of the file.
+	 */
+	private final Map<String, Reference> references;
+
+	private final List<String> names;
+
+	private TabixIndex(char meta, Map<String, Reference> references) {
+		this.meta = meta;
+		this.references = references;
+		this.names = Collections.unmodifiableList(new ArrayList<String>(references.keySet()));
+	}
+
+	/**
+	 * Reads a tabix index.
+	 * @param tbi the index file.
+	 * @return the index.
+	 * @throws DataSourceException if the file cannot be read or is not a tabix index.
+	 */
+	public static TabixIndex load(File tbi) throws DataSourceException {
+		try {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(tbi)), 1 << 16));
+			try {
+				return read(in);
+			} finally {
+				in.close();
+			}
+		} catch (EOFException e) {
+			throw new DataSourceException("The tabix index " + tbi + " is truncated", e);
+		} catch (IOException e) {
+			throw new DataSourceException("The tabix index " + tbi + " couldn't be read", e);
+		}
+	}
+
+	/**
+	 * @return the names of the sequences, in the order of the file.
+	 */
+	public List<String> getNames() {
+		return names;
+	}
+
+	/**
+	 * @param name the name of a sequence.
+	 * @return true if the file has lines on the sequence.
+	 */
+	public boolean hasSequence(String name) {
+		return references.containsKey(name);
+	}
+
+	/**
+	 * @return the character starting the comment lines.
+	 */
+	public char getMeta() {
+		return meta;
+	}
+
+	/**
+	 * Gives the chunks of the file that may hold lines overlapping a range, in the order of the file
+	 * and merged when they touch, so each block is only read once.  The chunks can hold other lines,
+	 * that have to be filtered out.
+	 * @param name the name of the sequence.
+	 * @param start one based start of the range.
+	 * @param stop one based end of the range, inclusive.
+	 * @return the chunks, empty if the sequence is not indexed.
+	 */
+	public List<Chunk> getChunks(String name, int start, int stop) {
+		Reference reference = references.get(name);
+		if (reference == null || stop < start) {
+			return Collections.emptyList();
+		}
+		int begin = Math.max(start - 1, 0);
+		int end = stop;
+		int window = begin >> LINEAR_SHIFT;
+		long minOffset = 0;
+		if (reference.linear.length > 0) {
+			minOffset = reference.linear[Math.min(window, reference.linear.length - 1)];
+		}
+
+		List<Chunk> chunks = new ArrayList<Chunk>();
+		for (int bin : regionToBins(begin, end)) {
+			Chunk[] binChunks = reference.bins.get(bin);
+			if (binChunks == null) {
+				continue;
+			}
+			for (Chunk chunk : binChunks) {
+				if (chunk.end > minOffset) {
+					chunks.add(new Chunk(Math.max(chunk.start, minOffset), chunk.end));
+				}
+			}
+		}
+		Collections.sort(chunks, BY_START);
+		List<Chunk> merged = new ArrayList<Chunk>();
+		for (Chunk chunk : chunks) {
+			Chunk last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+			if (last != null && chunk.start <= last.end) {
+				last.end = Math.max(last.end, chunk.end);
+			} else {
+				merged.add(chunk);
+			}
+		}
+		return merged;
+	}
+
+	/**
+	 * @param begin zero based start of a range.
+	 * @param end zero based end of the range, exclusive.
+	 * @return the bins that may hold lines overlapping the range.
+	 */
+	static int[] regionToBins(int begin, int end) {
+		end--;
+		int count = 1;
+		for (int shift : LEVEL_SHIFTS) {
+			count += Math.max(0, (end >> shift) - (begin >> shift) + 1);
+		}
+		int[] bins = new int[count];
+		int n = 0;
+		bins[n++] = 0;
+		for (int level = 0; level < LEVEL_SHIFTS.length; level++) {
+			int shift = LEVEL_SHIFTS[level];
+			for (int k = LEVEL_FIRST_BINS[level] + (begin >> shift); k <= LEVEL_FIRST_BINS[level] + (end >> shift); k++) {
+				bins[n++] = k;
+			}
+		}
+		return bins;
+	}
+
+	private static TabixIndex read(DataInputStream in) throws IOException, DataSourceException {
+		byte[] magic = new byte[4];
+		in.readFully(magic);
+		if (magic[0] != 'T' || magic[1] != 'B' || magic[2] != 'I' || magic[3] != 1) {
+			throw new DataSourceException("The file is not a tabix index");
+		}
+		int referenceCount = readInt(in);
+		// The format and the sequence, start and end columns, which are those of GFF for a GFF file.
+		for (int i = 0; i < 4; i++) {
+			readInt(in);
+		}
+		char meta = (char) readInt(in);
+		readInt(in); // the number of header lines, which GFF does not have
+		byte[] nameBytes = new byte[readInt(in)];
+		in.readFully(nameBytes);
+
+		List<String> names = new ArrayList<String>(referenceCount);
+		int nameStart = 0;
+		for (int i = 0; i < nameBytes.length; i++) {
+			if (nameBytes[i] == 0) {
+				names.add(new String(nameBytes, nameStart, i - nameStart, "ISO-8859-1"));
+				nameStart = i + 1;
+			}
+		}
+		if (names.size() != referenceCount) {
+			throw new DataSourceException("The tabix index has " + names.size() + " sequence names for " + referenceCount + " sequences");
+		}
+
+		Map<String, Reference> references = new LinkedHashMap<String, Reference>();
+		for (String name : names) {
+			int binCount = readInt(in);
+			Map<Integer, Chunk[]> bins = new HashMap<Integer, Chunk[]>(binCount * 2);
+			for (int i = 0; i < binCount; i++) {
+				int bin = readInt(in);
+				Chunk[] chunks = new Chunk[readInt(in)];
+				for (int j = 0; j < chunks.length; j++) {
+					chunks[j] = new Chunk(readLong(in), readLong(in));
+				}
+				if (bin <= MAX_BIN) {
+					bins.put(bin, chunks);
+				}
+			}
+			long[] linear = new long[readInt(in)];
+			for (int i = 0; i < linear.length; i++) {
+				linear[i] = readLong(in);
+			}
+			references.put(name, new Reference(bins, linear));
+		}
+		return new TabixIndex(meta, references);
+	}
+
+	private static int readInt(DataInputStream in) throws IOException {
+		return Integer.reverseBytes(in.readInt());
+	}
+
+	private static long readLong(DataInputStream in) throws IOException {
+		return Long.reverseBytes(in.readLong());
+	}
+}
@@ -0,0 +1,115 @@
+package uk.ac.ebi.mydas.examples;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Reads the lines of a generated BGZF file, whose small blocks end in the middle of lines and between them.
+ */
+public class BgzfReaderTest extends TestCase {
+
+	private TabixFixture fixture;
+
+	private BgzfReader reader;
+
+	@Override
+	protected void setUp() throws IOException {
+		Random random = new Random(3);
+		fixture = new TabixFixture(64);
+		int position = 1;
+		for (int i = 0; i < 500; i++) {
+			position += random.nextInt(100);
+			fixture.add("chr1", (random.nextBoolean() ? "exon" : "CDS"), position, position + random.nextInt(1000));
+		}
+		File gff = fixture.write();
+		reader = new BgzfReader(gff);
+	}
+
+	@Override
+	protected void tearDown() throws IOException {
+		reader.close();
+	}
+
+	private static String join(String[] fields) {
+		StringBuilder line = new StringBuilder();
+		for (String field : fields) {
+			if (line.length() > 0) {
+				line.append('\t');
+			}
+			line.append(field);
+		}
+		return line.toString();
+	}
+
+	public void testSequentialReadGivesTheVirtualOffsets() throws IOException {
+		List<String[]> lines = fixture.getLines();
+		List<Long> offsets = fixture.getOffsets();
+		reader.seek(0);
+		assertEquals("##gff-version 2", reader.readLine());
+		for (int i = 0; i < lines.size(); i++) {
+			assertEquals("Offset of line " + i, offsets.get(i).longValue(), reader.getVirtualOffset());
+			assertEquals(join(lines.get(i)), reader.readLine());
+		}
+		assertNull(reader.readLine());
+		assertNull("The end of the file is kept", reader.readLine());
+	}
+
+	/**
+	 * A line ending at the end of a block is followed by the first byte of the next block, which is the
+	 * virtual offset tabix records for the next line.
+	 */
+	public void testLinesStartingABlock() throws IOException {
+		List<Long> offsets = fixture.getOffsets();
+		List<Long> blockStarts = fixture.getBlockStarts();
+		int found = 0;
+		for (int i = 1; i < offsets.size(); i++) {
+			long offset = offsets.get(i);
+			if ((offset & 0xFFFF) != 0) {
+				continue;
+			}
+			found++;
+			long block = offset >>> 16;
+			long previous = blockStarts.get(blockStarts.indexOf(block) - 1);
+			reader.seek(offsets.get(i - 1));
+			reader.readLine();
+			assertEquals("The offset after a line ending a block is the start of the next block", offset, reader.getVirtualOffset());
+			reader.seek((previous << 16) | 64);
+			assertEquals("The end of a block is the start of the next one", join(fixture.getLines().get(i)), reader.readLine());
+		}
+		assertTrue("The fixture should have lines starting a block", found > 0);
+	}
+
+	public void testSeekToEachLine() throws IOException {
+		List<String[]> lines = fixture.getLines();
+		List<Long> offsets = fixture.getOffsets();
+		for (int i = lines.size() - 1; i >= 0; i -= 7) {
+			reader.seek(offsets.get(i));
+			assertEquals(join(lines.get(i)), reader.readLine());
+		}
+	}
+
+	public void testNotBgzf() throws IOException {
+		File text = File.createTempFile("bgzf", ".txt");
+		text.deleteOnExit();
+		FileOutputStream out = new FileOutputStream(text);
+		try {
+			out.write("chr1\tsrc\texon\t1\t10\t.\t+\t.\tid 1\n".getBytes("ISO-8859-1"));
+		} finally {
+			out.close();
+		}
+		BgzfReader plain = new BgzfReader(text);
+		try {
+			plain.seek(0);
+			fail("A text file is not BGZF");
+		} catch (IOException e) {
+			// expected
+		} finally {
+			plain.close();
+		}
+	}
+}
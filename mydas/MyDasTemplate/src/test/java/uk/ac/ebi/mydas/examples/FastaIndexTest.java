@@ -0,0 +1,121 @@
+package uk.ac.ebi.mydas.examples;
+
+import junit.framework.TestCase;
+import uk.ac.ebi.mydas.exceptions.DataSourceException;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Builds the .fai index of small FASTA files and locates each of their bases with it.
+ */
+public class FastaIndexTest extends TestCase {
+
+	private File fasta;
+
+	private File fai;
+
+	@Override
+	protected void setUp() throws IOException {
+		fasta = File.createTempFile("index", ".fa");
+		fasta.deleteOnExit();
+		fai = new File(fasta.getPath() + ".fai");
+		fai.deleteOnExit();
+	}
+
+	@Override
+	protected void tearDown() {
+		fasta.delete();
+		fai.delete();
+	}
+
+	private byte[] write(String content) throws IOException {
+		byte[] bytes = content.getBytes("ISO-8859-1");
+		OutputStream out = new FileOutputStream(fasta);
+		try {
+			out.write(bytes);
+		} finally {
+			out.close();
+		}
+		// The index must not be older than the fasta file, whatever the resolution of the file times.
+		fai.delete();
+		return bytes;
+	}
+
+	/**
+	 * Checks that each base of the sequence is found at its offset.
+	 */
+	private static void assertLocates(byte[] file, FastaIndex.Entry entry, String sequence) {
+		assertEquals(sequence.length(), entry.getLength());
+		for (int i = 0; i < sequence.length(); i++) {
+			assertEquals("Base " + i + " of " + entry.getName(), sequence.charAt(i), (char) file[(int) entry.getOffset(i)]);
+		}
+	}
+
+	public void testUnixLineEnds() throws IOException, DataSourceException {
+		byte[] file = write(">chr1 the first\nACGTA\nCCGTA\nGG\n>chr2\nTTTT\nA\n");
+		FastaIndex index = FastaIndex.load(fasta, fai);
+		assertEquals(2, index.getEntries().size());
+		assertEquals("chr1", index.getEntries().get(0).getName());
+		assertLocates(file, index.getEntry("chr1"), "ACGTACCGTAGG");
+		assertLocates(file, index.getEntry("chr2"), "TTTTA");
+		assertEquals(3, index.getEntry("chr1").getBasesToEndOfLine(2));
+		assertNull(index.getEntry("chr3"));
+	}
+
+	public void testWindowsLineEnds() throws IOException, DataSourceException {
+		byte[] file = write(">chr1\r\nACGT\r\nTTGC\r\nA\r\n>chr2\r\nGGGG\r\n");
+		FastaIndex index = FastaIndex.load(fasta, fai);
+		assertLocates(file, index.getEntry("chr1"), "ACGTTTGCA");
+		assertLocates(file, index.getEntry("chr2"), "GGGG");
+	}
+
+	/**
+	 * The last line of a sequence may be short, and the file may not end with a line terminator.
+	 */
+	public void testShortLastLine() throws IOException, DataSourceException {
+		byte[] file = write(">chr1\nACGTAC\nGT\n\n>chr2\nTTAACC\nTT");
+		FastaIndex index = FastaIndex.load(fasta, fai);
+		assertLocates(file, index.getEntry("chr1"), "ACGTACGT");
+		assertLocates(file, index.getEntry("chr2"), "TTAACCTT");
+	}
+
+	public void testRaggedLinesAreRejected() throws IOException {
+		assertRejected(">chr1\nACGT\nAC\nACGT\n");
+		assertRejected(">chr1\nACGT\nACGTA\n");
+		assertRejected(">chr1\nACGT\n\nACGT\n");
+		assertRejected("ACGT\n>chr1\nACGT\n");
+	}
+
+	public void testMixedLineEndsAreRejected() throws IOException {
+		assertRejected(">chr1\nACGT\r\nACGT\nACGT\n");
+		assertRejected(">chr1\nACGT\nACGT\r\nAC\n");
+		assertRejected(">chr1\nACGT\nACGT\nAC\r\n");
+	}
+
+	private void assertRejected(String content) throws IOException {
+		write(content);
+		try {
+			FastaIndex.load(fasta, fai);
+			fail("The fasta file should be rejected: " + content);
+		} catch (DataSourceException e) {
+			// expected
+		}
+		assertFalse("No index is written for a rejected file", fai.exists());
+	}
+
+	/**
+	 * The index written when it is built is read back as it was built.
+	 */
+	public void testIndexFileIsWrittenAndRead() throws IOException, DataSourceException {
+		byte[] file = write(">chr1\r\nACGTA\r\nCC\r\n>chr2\nTT\n");
+		FastaIndex built = FastaIndex.load(fasta, fai);
+		assertTrue(fai.exists());
+		FastaIndex read = FastaIndex.load(fasta, fai);
+		assertEquals(built.getEntries().size(), read.getEntries().size());
+		assertLocates(file, read.getEntry("chr1"), "ACGTACC");
+		assertLocates(file, read.getEntry("chr2"), "TT");
+	}
+}
@@ -0,0 +1,247 @@
+package uk.ac.ebi.mydas.examples;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes a coordinate sorted GFF file compressed as bgzip does, with small blocks so that lines span
+ * blocks, and its tabix index, keeping the virtual offset of each line.
+ */
+class TabixFixture {
+
+	/**
+	 * The bins holding the metadata of a sequence in a tabix index.
+	 */
+	private static final int META_BIN = 37450;
+
+	private final int blockSize;
+
+	private final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+
+	private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+
+	private final Map<String, TreeMap<Integer, List<long[]>>> bins = new LinkedHashMap<String, TreeMap<Integer, List<long[]>>>();
+
+	private final Map<String, long[]> linear = new LinkedHashMap<String, long[]>();
+
+	private final List<String[]> lines = new ArrayList<String[]>();
+
+	private final List<Long> offsets = new ArrayList<Long>();
+
+	private final List<Long> blockStarts = new ArrayList<Long>();
+
+	/**
+	 * @param blockSize the number of uncompressed bytes of each block.
+	 */
+	TabixFixture(int blockSize) throws IOException {
+		this.blockSize = blockSize;
+		write("##gff-version 2\n".getBytes("ISO-8859-1"));
+	}
+
+	/**
+	 * Adds a feature line, which must not start before the previous one on the same sequence.
+	 */
+	void add(String sequence, String type, int start, int stop) throws IOException {
+		String[] line = {sequence, "src", type, Integer.toString(start), Integer.toString(stop), ".", "+", ".", "id " + lines.size()};
+		StringBuilder text = new StringBuilder();
+		for (String field : line) {
+			text.append(field).append('\t');
+		}
+		text.setCharAt(text.length() - 1, '\n');
+
+		if (!bins.containsKey(sequence)) {
+			bins.put(sequence, new TreeMap<Integer, List<long[]>>());
+			long[] windows = new long[1 << 15];
+			Arrays.fill(windows, -1);
+			linear.put(sequence, windows);
+		}
+		long begin = virtualOffset();
+		write(text.toString().getBytes("ISO-8859-1"));
+		long end = virtualOffset();
+		lines.add(line);
+		offsets.add(begin);
+
+		TreeMap<Integer, List<long[]>> sequenceBins = bins.get(sequence);
+		int bin = regionToBin(start - 1, stop);
+		if (!sequenceBins.containsKey(bin)) {
+			sequenceBins.put(bin, new ArrayList<long[]>());
+		}
+		sequenceBins.get(bin).add(new long[]{begin, end});
+		long[] windows = linear.get(sequence);
+		for (int window = (start - 1) >> 14; window <= (stop - 1) >> 14; window++) {
+			if (windows[window] == -1) {
+				windows[window] = begin;
+			}
+		}
+	}
+
+	/**
+	 * @return the lines added, as their tab separated fields.
+	 */
+	List<String[]> getLines() {
+		return lines;
+	}
+
+	/**
+	 * @return the virtual offset of each line added.
+	 */
+	List<Long> getOffsets() {
+		return offsets;
+	}
+
+	/**
+	 * @return the offset in the file of each block written.
+	 */
+	List<Long> getBlockStarts() {
+		return blockStarts;
+	}
+
+	/**
+	 * Writes the compressed file, ending with the empty block of bgzip, and its index, named as the file followed by .tbi.
+	 * @return the compressed file.
+	 */
+	File write() throws IOException {
+		flush();
+		flush();
+		File gff = File.createTempFile("tabix", ".gff.gz");
+		gff.deleteOnExit();
+		FileOutputStream out = new FileOutputStream(gff);
+		try {
+			out.write(compressed.toByteArray());
+		} finally {
+			out.close();
+		}
+		File tbi = new File(gff.getPath() + ".tbi");
+		tbi.deleteOnExit();
+		DataOutputStream index = new DataOutputStream(new GZIPOutputStream(new FileOutputStream(tbi)));
+		try {
+			writeIndex(index);
+		} finally {
+			index.close();
+		}
+		return gff;
+	}
+
+	/**
+	 * The bin of the smallest level holding a zero based, end exclusive range, as computed by tabix.
+	 */
+	static int regionToBin(int begin, int end) {
+		--end;
+		if (begin >> 14 == end >> 14) return ((1 << 15) - 1) / 7 + (begin >> 14);
+		if (begin >> 17 == end >> 17) return ((1 << 12) - 1) / 7 + (begin >> 17);
+		if (begin >> 20 == end >> 20) return ((1 << 9) - 1) / 7 + (begin >> 20);
+		if (begin >> 23 == end >> 23) return ((1 << 6) - 1) / 7 + (begin >> 23);
+		if (begin >> 26 == end >> 26) return ((1 << 3) - 1) / 7 + (begin >> 26);
+		return 0;
+	}
+
+	private void writeIndex(DataOutputStream out) throws IOException {
+		out.write(new byte[]{'T', 'B', 'I', 1});
+		writeInt(out, bins.size());
+		// GFF format, sequence, start and end columns, comment character and skipped lines.
+		writeInt(out, 0);
+		writeInt(out, 1);
+		writeInt(out, 4);
+		writeInt(out, 5);
+		writeInt(out, '#');
+		writeInt(out, 0);
+		ByteArrayOutputStream names = new ByteArrayOutputStream();
+		for (String sequence : bins.keySet()) {
+			names.write(sequence.getBytes("ISO-8859-1"));
+			names.write(0);
+		}
+		writeInt(out, names.size());
+		out.write(names.toByteArray());
+
+		for (String sequence : bins.keySet()) {
+			TreeMap<Integer, List<long[]>> sequenceBins = bins.get(sequence);
+			writeInt(out, sequenceBins.size() + 1);
+			for (Map.Entry<Integer, List<long[]>> bin : sequenceBins.entrySet()) {
+				writeInt(out, bin.getKey());
+				writeInt(out, bin.getValue().size());
+				for (long[] chunk : bin.getValue()) {
+					writeLong(out, chunk[0]);
+					writeLong(out, chunk[1]);
+				}
+			}
+			// The metadata pseudo bin, which is not a bin.
+			writeInt(out, META_BIN);
+			writeInt(out, 2);
+			for (int i = 0; i < 4; i++) {
+				writeLong(out, 0);
+			}
+			long[] windows = linear.get(sequence);
+			int count = windows.length;
+			while (count > 0 && windows[count - 1] == -1) {
+				count--;
+			}
+			writeInt(out, count);
+			long previous = 0;
+			for (int i = 0; i < count; i++) {
+				if (windows[i] == -1) {
+					windows[i] = previous;
+				}
+				previous = windows[i];
+				writeLong(out, windows[i]);
+			}
+		}
+	}
+
+	private long virtualOffset() {
+		return ((long) compressed.size() << 16) | pending.size();
+	}
+
+	private void write(byte[] bytes) throws IOException {
+		for (byte b : bytes) {
+			pending.write(b);
+			if (pending.size() == blockSize) {
+				flush();
+			}
+		}
+	}
+
+	private void flush() throws IOException {
+		blockStarts.add((long) compressed.size());
+		byte[] data = pending.toByteArray();
+		pending.reset();
+		Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+		deflater.setInput(data);
+		deflater.finish();
+		byte[] deflated = new byte[data.length + 1024];
+		int length = deflater.deflate(deflated);
+		deflater.end();
+		int blockLength = 18 + length + 8 - 1;
+		compressed.write(new byte[]{31, (byte) 139, 8, 4, 0, 0, 0, 0, 0, (byte) 255, 6, 0, 'B', 'C', 2, 0,
+				(byte) (blockLength & 255), (byte) (blockLength >> 8)});
+		compressed.write(deflated, 0, length);
+		CRC32 crc = new CRC32();
+		crc.update(data);
+		writeInt(compressed, (int) crc.getValue());
+		writeInt(compressed, data.length);
+	}
+
+	private static void writeInt(OutputStream out, int value) throws IOException {
+		for (int i = 0; i < 4; i++) {
+			out.write(value >> (8 * i));
+		}
+	}
+
+	private static void writeLong(OutputStream out, long value) throws IOException {
+		for (int i = 0; i < 8; i++) {
+			out.write((int) (value >> (8 * i)));
+		}
+	}
+}
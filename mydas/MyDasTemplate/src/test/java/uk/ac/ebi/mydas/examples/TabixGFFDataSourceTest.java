@@ -0,0 +1,197 @@
+package uk.ac.ebi.mydas.examples;
+
+import junit.framework.TestCase;
+import uk.ac.ebi.mydas.datasource.FeatureSink;
+import uk.ac.ebi.mydas.exceptions.BadReferenceObjectException;
+import uk.ac.ebi.mydas.exceptions.CoordinateErrorException;
+import uk.ac.ebi.mydas.exceptions.DataSourceException;
+import uk.ac.ebi.mydas.exceptions.UnimplementedFeatureException;
+import uk.ac.ebi.mydas.model.DasAnnotatedSegment;
+import uk.ac.ebi.mydas.model.DasFeature;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Reads the features of a generated file through the tabix index, and checks them against a scan of its lines.
+ */
+public class TabixGFFDataSourceTest extends TestCase {
+
+	private static final String[] SEQUENCES = {"chrA", "chrB", "chrC"};
+
+	private static final String[] TYPES = {"exon", "gene", "CDS"};
+
+	private TabixFixture fixture;
+
+	private TabixGFFDataSource dataSource;
+
+	/**
+	 * Keeps the features pushed by the data source, describing them by id, coordinates and type.
+	 */
+	private static class CollectingSink implements FeatureSink {
+		private final boolean accept;
+		private DasAnnotatedSegment segment;
+		private final List<String> features = new ArrayList<String>();
+
+		CollectingSink(boolean accept) {
+			this.accept = accept;
+		}
+
+		public boolean startSegment(DasAnnotatedSegment segment) throws DataSourceException {
+			if (this.segment != null) {
+				throw new DataSourceException("The segment has been started twice");
+			}
+			this.segment = segment;
+			return accept;
+		}
+
+		public void addFeature(DasFeature feature) throws DataSourceException {
+			if (segment == null) {
+				throw new DataSourceException("A feature has been pushed before the segment");
+			}
+			features.add(describe(feature));
+		}
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		Random random = new Random(7);
+		fixture = new TabixFixture(3000);
+		for (String sequence : SEQUENCES) {
+			int position = 1;
+			for (int i = 0; i < 1000; i++) {
+				position += random.nextInt(3000);
+				int length = (random.nextInt(5) == 0) ? random.nextInt(400000) : random.nextInt(2000);
+				fixture.add(sequence, TYPES[random.nextInt(TYPES.length)], position, position + length);
+			}
+		}
+		File gff = fixture.write();
+		dataSource = new TabixGFFDataSource();
+		dataSource.load("test.gff.gz", gff, new File(gff.getPath() + ".tbi"));
+	}
+
+	private static String describe(DasFeature feature) {
+		return feature.getFeatureId() + " " + feature.getStartCoordinate() + " " + feature.getStopCoordinate() + " " + feature.getType().getId();
+	}
+
+	private static List<String> describe(DasAnnotatedSegment segment) {
+		List<String> features = new ArrayList<String>();
+		for (DasFeature feature : segment.getFeatures()) {
+			features.add(describe(feature));
+		}
+		return features;
+	}
+
+	/**
+	 * @return the features of the file overlapping the range, in the order of the file.
+	 */
+	private List<String> scan(String sequence, int start, int stop) {
+		List<String> features = new ArrayList<String>();
+		for (int i = 0; i < fixture.getLines().size(); i++) {
+			String[] line = fixture.getLines().get(i);
+			if (line[0].equals(sequence) && Integer.parseInt(line[3]) <= stop && Integer.parseInt(line[4]) >= start) {
+				features.add("GFF_feature_" + Long.toHexString(fixture.getOffsets().get(i)) + " " + line[3] + " " + line[4] + " " + line[2]);
+			}
+		}
+		return features;
+	}
+
+	public void testRangesMatchAScan() throws DataSourceException, BadReferenceObjectException, CoordinateErrorException {
+		Random random = new Random(11);
+		for (int query = 0; query < 200; query++) {
+			String sequence = SEQUENCES[random.nextInt(SEQUENCES.length)];
+			int start = 1 + random.nextInt(3000000);
+			int stop = start + random.nextInt((query % 10 == 0) ? 1000000 : 20000);
+			assertEquals(sequence + ":" + start + "," + stop, scan(sequence, start, stop),
+					describe(dataSource.getFeatures(sequence, start, stop, null)));
+		}
+	}
+
+	public void testStreamsTheRangeToTheSink() throws DataSourceException, BadReferenceObjectException, CoordinateErrorException {
+		CollectingSink sink = new CollectingSink(true);
+		dataSource.getFeatures("chrB", 100000, 300000, null, sink);
+		assertEquals("chrB", sink.segment.getSegmentId());
+		assertEquals(100000, (int) sink.segment.getStartCoordinate());
+		assertEquals(300000, (int) sink.segment.getStopCoordinate());
+		assertFalse(sink.features.isEmpty());
+		assertEquals(scan("chrB", 100000, 300000), sink.features);
+	}
+
+	public void testStreamsTheWholeSegmentToTheSink() throws DataSourceException, BadReferenceObjectException, CoordinateErrorException {
+		CollectingSink sink = new CollectingSink(true);
+		dataSource.getFeatures("chrC", null, null, null, sink);
+		assertEquals(1000, sink.features.size());
+		assertEquals(scan("chrC", 1, Integer.MAX_VALUE), sink.features);
+		DasAnnotatedSegment segment = dataSource.getFeatures("chrC", null);
+		assertEquals(describe(segment), sink.features);
+		assertEquals("The segment spans its features", segment.getStartCoordinate(), sink.segment.getStartCoordinate());
+		assertEquals(segment.getStopCoordinate(), sink.segment.getStopCoordinate());
+		int stop = 0;
+		for (String[] line : fixture.getLines()) {
+			if (line[0].equals("chrC")) {
+				stop = Math.max(stop, Integer.parseInt(line[4]));
+			}
+		}
+		assertEquals(stop, (int) sink.segment.getStopCoordinate());
+	}
+
+	public void testNothingIsPushedToARefusingSink() throws DataSourceException, BadReferenceObjectException, CoordinateErrorException {
+		CollectingSink sink = new CollectingSink(false);
+		dataSource.getFeatures("chrA", 1, 1000000, null, sink);
+		assertNotNull(sink.segment);
+		assertTrue(sink.features.isEmpty());
+	}
+
+	public void testErrorsAreThrownBeforeTheSinkIsCalled() throws DataSourceException, CoordinateErrorException {
+		CollectingSink sink = new CollectingSink(true);
+		try {
+			dataSource.getFeatures("chrZ", 1, 100, null, sink);
+			fail("An unknown segment must be rejected");
+		} catch (BadReferenceObjectException e) {
+			assertEquals("chrZ", e.getSegment());
+		}
+		try {
+			dataSource.getFeatures("chrA", 100, 1, null, sink);
+			fail("A start after the stop must be rejected");
+		} catch (BadReferenceObjectException e) {
+			fail("The segment is known");
+		} catch (CoordinateErrorException e) {
+			// expected
+		}
+		assertNull(sink.segment);
+	}
+
+	public void testSinkExceptionsAreNotWrapped() throws BadReferenceObjectException, CoordinateErrorException {
+		final DataSourceException closed = new DataSourceException("The response has been closed");
+		try {
+			dataSource.getFeatures("chrA", 1, 1000000, null, new FeatureSink() {
+				public boolean startSegment(DasAnnotatedSegment segment) {
+					return true;
+				}
+
+				public void addFeature(DasFeature feature) throws DataSourceException {
+					throw closed;
+				}
+			});
+			fail("The exception of the sink must be propagated");
+		} catch (DataSourceException e) {
+			assertSame(closed, e);
+		}
+	}
+
+	public void testFeaturesAreReadFromTheirIds() throws DataSourceException, UnimplementedFeatureException {
+		List<String> ids = new ArrayList<String>();
+		for (int i = 0; i < fixture.getOffsets().size(); i += 97) {
+			ids.add("GFF_feature_" + Long.toHexString(fixture.getOffsets().get(i)));
+		}
+		ids.add("GFF_feature_zz");
+		ids.add("other");
+		List<DasAnnotatedSegment> segments = new ArrayList<DasAnnotatedSegment>(dataSource.getFeatures(ids, null));
+		assertEquals(ids.size(), segments.size());
+		for (int i = 0; i < ids.size() - 2; i++) {
+			assertEquals(ids.get(i), segments.get(i).getFeatures().iterator().next().getFeatureId());
+		}
+	}
+}
@@ -0,0 +1,111 @@
+package uk.ac.ebi.mydas.examples;
+
+import junit.framework.TestCase;
+import uk.ac.ebi.mydas.exceptions.DataSourceException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Checks the bins of a range, and the chunks of a small index written by the fixture.
+ */
+public class TabixIndexTest extends TestCase {
+
+	public void testRegionToBins() {
+		assertEquals("[0, 1, 9, 73, 585, 4681]", Arrays.toString(TabixIndex.regionToBins(0, 1)));
+		assertEquals("[0, 1, 9, 73, 585, 4681]", Arrays.toString(TabixIndex.regionToBins(0, 1 << 14)));
+		assertEquals("[0, 1, 9, 73, 585, 4681, 4682]", Arrays.toString(TabixIndex.regionToBins(0, (1 << 14) + 1)));
+		assertEquals("[0, 1, 9, 73, 586, 4689]", Arrays.toString(TabixIndex.regionToBins(1 << 17, (1 << 17) + 100)));
+		assertEquals(1 + 1 + 1 + 2 + 9 + 65, TabixIndex.regionToBins(0, (1 << 20) + 1).length);
+	}
+
+	/**
+	 * The bin of any feature overlapping a range is one of the bins of the range.
+	 */
+	public void testBinsOfOverlappingFeatures() {
+		Random random = new Random(11);
+		for (int query = 0; query < 200; query++) {
+			int begin = random.nextInt(1 << 24);
+			int end = begin + 1 + random.nextInt((query % 10 == 0) ? 1 << 22 : 1 << 15);
+			int[] bins = TabixIndex.regionToBins(begin, end);
+			Set<Integer> binSet = new HashSet<Integer>();
+			for (int bin : bins) {
+				assertTrue("Bin " + bin + " is listed once", binSet.add(bin));
+			}
+			for (int feature = 0; feature < 200; feature++) {
+				int featureBegin = Math.max(0, begin - (1 << 16) + random.nextInt((end - begin) + (1 << 17)));
+				int featureEnd = featureBegin + 1 + random.nextInt((feature % 20 == 0) ? 1 << 21 : 1 << 12);
+				if (featureBegin < end && featureEnd > begin) {
+					assertTrue(binSet.contains(TabixFixture.regionToBin(featureBegin, featureEnd)));
+				}
+			}
+		}
+	}
+
+	public void testChunksHoldTheOverlappingLines() throws IOException, DataSourceException {
+		Random random = new Random(5);
+		TabixFixture fixture = new TabixFixture(200);
+		int position = 1;
+		for (int i = 0; i < 300; i++) {
+			position += random.nextInt(500);
+			fixture.add((i < 200) ? "chr1" : "chr2", "exon", position, position + random.nextInt((i % 25 == 0) ? 100000 : 300));
+			if (i == 199) {
+				position = 1;
+			}
+		}
+		File gff = fixture.write();
+		TabixIndex index = TabixIndex.load(new File(gff.getPath() + ".tbi"));
+		assertEquals("[chr1, chr2]", index.getNames().toString());
+		assertTrue(index.hasSequence("chr2"));
+		assertFalse(index.hasSequence("chr3"));
+		assertEquals('#', index.getMeta());
+		assertTrue(index.getChunks("chr3", 1, 100).isEmpty());
+		assertTrue(index.getChunks("chr1", 100, 99).isEmpty());
+
+		BgzfReader reader = new BgzfReader(gff);
+		try {
+			for (int query = 0; query < 100; query++) {
+				int start = 1 + random.nextInt(60000);
+				int stop = start + random.nextInt(2000);
+				String sequence = (query % 2 == 0) ? "chr1" : "chr2";
+				List<TabixIndex.Chunk> chunks = index.getChunks(sequence, start, stop);
+				Set<Long> read = new HashSet<Long>();
+				long previousEnd = -1;
+				for (TabixIndex.Chunk chunk : chunks) {
+					assertTrue("The chunks are sorted and merged", chunk.getStart() > previousEnd);
+					previousEnd = chunk.getEnd();
+					reader.seek(chunk.getStart());
+					while (reader.getVirtualOffset() < chunk.getEnd()) {
+						read.add(reader.getVirtualOffset());
+						reader.readLine();
+					}
+				}
+				for (int i = 0; i < fixture.getLines().size(); i++) {
+					String[] line = fixture.getLines().get(i);
+					if (line[0].equals(sequence) && Integer.parseInt(line[3]) <= stop && Integer.parseInt(line[4]) >= start) {
+						assertTrue("Line " + i + " overlaps " + sequence + ":" + start + "," + stop, read.contains(fixture.getOffsets().get(i)));
+					}
+				}
+			}
+		} finally {
+			reader.close();
+		}
+	}
+
+	public void testNotAnIndex() throws IOException {
+		TabixFixture fixture = new TabixFixture(100);
+		fixture.add("chr1", "exon", 1, 10);
+		File gff = fixture.write();
+		try {
+			TabixIndex.load(gff);
+			fail("A BGZF file is not a tabix index");
+		} catch (DataSourceException e) {
+			// expected
+		}
+	}
+}
@@ -0,0 +1,88 @@
+package uk.ac.ebi.mydas.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.ebi.mydas.controller.BenchmarkServer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole features requests, from the request URI to the bytes of the response, against the synthetic data sources
+ * of 1k, 100k and 1M features declared in the benchmark configuration.  The response cache is not enabled for those
+ * data sources, so every request is computed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g", "-Dlog4j.configuration=benchmark-log4j.properties"})
+public class FeaturesCommandBenchmark {
+
+    @Param({"1k", "100k", "1m"})
+    public String size;
+
+    @Param({"false", "true"})
+    public boolean gzip;
+
+    private BenchmarkServer server;
+
+    private String dsn;
+
+    /**
+     * A window of 10kb in the middle of the segment, which overlaps around 100 features.
+     */
+    private String windowQuery;
+
+    @Setup
+    public void setUp() throws Exception {
+        server = BenchmarkServer.getInstance();
+        dsn = "features" + size;
+        int segmentLength = featureCount(size) * 100;
+        windowQuery = "segment=chr1:" + (segmentLength / 2) + "," + (segmentLength / 2 + 10000);
+        // Generates the features before the measurements.
+        server.get(dsn, "features", windowQuery);
+    }
+
+    static int featureCount(String size) {
+        if ("1k".equals(size)) {
+            return 1000;
+        } else if ("100k".equals(size)) {
+            return 100000;
+        } else if ("1m".equals(size)) {
+            return 1000000;
+        }
+        throw new IllegalArgumentException("Unknown size " + size);
+    }
+
+    private long features(String query) throws Exception {
+        BenchmarkServer.CountingOutputStream body = new BenchmarkServer.CountingOutputStream();
+        server.get(dsn, "features", query, gzip, body);
+        return body.getCount();
+    }
+
+    @Benchmark
+    public long wholeSegment() throws Exception {
+        return features("segment=chr1");
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public long window() throws Exception {
+        return features(windowQuery);
+    }
+
+    @Benchmark
+    public long typeFilter() throws Exception {
+        return features("segment=chr1;type=SNP");
+    }
+}
@@ -0,0 +1,46 @@
+package uk.ac.ebi.mydas.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.ebi.mydas.client.xml.DasFeatureXmlUnmarshaller;
+import uk.ac.ebi.mydas.controller.BenchmarkServer;
+
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link DasFeatureXmlUnmarshaller#unMarshall(java.io.Reader)}, as used by the client API and the proxy servers,
+ * parsing the features response of a whole segment of the synthetic data sources.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g", "-Dlog4j.configuration=benchmark-log4j.properties"})
+public class FeaturesUnmarshallerBenchmark {
+
+    @Param({"1k", "100k"})
+    public String size;
+
+    private String response;
+
+    @Setup
+    public void setUp() throws Exception {
+        response = new String(BenchmarkServer.getInstance().get("features" + size, "features", "segment=chr1"), "UTF-8");
+    }
+
+    @Benchmark
+    public Object unMarshall() throws Exception {
+        return new DasFeatureXmlUnmarshaller().unMarshall(new StringReader(response));
+    }
+}
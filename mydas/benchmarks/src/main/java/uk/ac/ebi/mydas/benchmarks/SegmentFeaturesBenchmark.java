@@ -0,0 +1,63 @@
+package uk.ac.ebi.mydas.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.ebi.mydas.model.DasAnnotatedSegment;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link DasAnnotatedSegment#getFeatures(int, int)}, the restriction of the features of a segment to the requested
+ * coordinates, for windows of several sizes placed at random (but reproducible) positions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g", "-Dlog4j.configuration=benchmark-log4j.properties"})
+public class SegmentFeaturesBenchmark {
+
+    private static final int WINDOWS = 1024;
+
+    @Param({"1000", "100000", "1000000"})
+    public int features;
+
+    @Param({"100", "10000", "1000000"})
+    public int window;
+
+    private DasAnnotatedSegment segment;
+
+    private int[] starts;
+
+    private int next = 0;
+
+    @Setup
+    public void setUp() throws Exception {
+        int segmentLength = features * 100;
+        Random random = new Random(42);
+        segment = SyntheticDataSource.createSegment("chr1", features, segmentLength, 1, random);
+        starts = new int[WINDOWS];
+        for (int i = 0; i < WINDOWS; i++) {
+            starts[i] = 1 + random.nextInt(Math.max(1, segmentLength - window));
+        }
+        // Any index the segment keeps is built before the measurements.
+        segment.getFeatures(1, 1);
+    }
+
+    @Benchmark
+    public int getFeatures() {
+        int start = starts[next++ & (WINDOWS - 1)];
+        return segment.getFeatures(start, start + window - 1).size();
+    }
+}
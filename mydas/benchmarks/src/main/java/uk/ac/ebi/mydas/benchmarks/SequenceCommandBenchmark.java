@@ -0,0 +1,62 @@
+package uk.ac.ebi.mydas.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.ebi.mydas.controller.BenchmarkServer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole sequence and dna requests for ranges of increasing length of the 10Mb synthetic reference segment.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g", "-Dlog4j.configuration=benchmark-log4j.properties"})
+public class SequenceCommandBenchmark {
+
+    @Param({"1000", "100000", "10000000"})
+    public int length;
+
+    @Param({"false", "true"})
+    public boolean gzip;
+
+    private BenchmarkServer server;
+
+    private String query;
+
+    @Setup
+    public void setUp() throws Exception {
+        server = BenchmarkServer.getInstance();
+        query = "segment=chr1:1," + length;
+        // Generates the sequence before the measurements.
+        server.get("sequence", "sequence", "segment=chr1:1,10");
+    }
+
+    private long request(String command) throws Exception {
+        BenchmarkServer.CountingOutputStream body = new BenchmarkServer.CountingOutputStream();
+        server.get("sequence", command, query, gzip, body);
+        return body.getCount();
+    }
+
+    @Benchmark
+    public long sequence() throws Exception {
+        return request("sequence");
+    }
+
+    @Benchmark
+    public long dna() throws Exception {
+        return request("dna");
+    }
+}
@@ -0,0 +1,252 @@
+package uk.ac.ebi.mydas.benchmarks;
+
+import uk.ac.ebi.mydas.configuration.DataSourceConfiguration;
+import uk.ac.ebi.mydas.configuration.PropertyType;
+import uk.ac.ebi.mydas.datasource.ReferenceDataSource;
+import uk.ac.ebi.mydas.exceptions.BadReferenceObjectException;
+import uk.ac.ebi.mydas.exceptions.DataSourceException;
+import uk.ac.ebi.mydas.exceptions.UnimplementedFeatureException;
+import uk.ac.ebi.mydas.extendedmodel.DasUnknownFeatureSegment;
+import uk.ac.ebi.mydas.model.DasAnnotatedSegment;
+import uk.ac.ebi.mydas.model.DasEntryPoint;
+import uk.ac.ebi.mydas.model.DasEntryPointOrientation;
+import uk.ac.ebi.mydas.model.DasFeature;
+import uk.ac.ebi.mydas.model.DasFeatureOrientation;
+import uk.ac.ebi.mydas.model.DasMethod;
+import uk.ac.ebi.mydas.model.DasPhase;
+import uk.ac.ebi.mydas.model.DasSequence;
+import uk.ac.ebi.mydas.model.DasType;
+import uk.ac.ebi.mydas.model.Range;
+
+import javax.servlet.ServletContext;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Reference data source generating its segments, features and sequences from a fixed seed, so every run of
+ * the benchmarks works on exactly the same data.  Configured with the data source properties:
+ * <ul>
+ * <li><code>features</code>: total number of features, spread evenly over the segments (default 1000).</li>
+ * <li><code>segments</code>: number of segments, named chr1, chr2... (default 1).</li>
+ * <li><code>segment.length</code>: length of each segment and of its sequence (default 100 bases per feature).</li>
+ * <li><code>seed</code>: seed of the generator (default 42).</li>
+ * </ul>
+ * The data is generated on the first request rather than in init, so the data sources of a configuration
+ * that a benchmark does not use cost nothing.
+ */
+public class SyntheticDataSource implements ReferenceDataSource {
+
+    public static final String PROPERTY_FEATURES = "features";
+    public static final String PROPERTY_SEGMENTS = "segments";
+    public static final String PROPERTY_SEGMENT_LENGTH = "segment.length";
+    public static final String PROPERTY_SEED = "seed";
+
+    private static final String VERSION = "1.0";
+
+    private static final char[] BASES = {'a', 'c', 'g', 't'};
+
+    private int featureCount;
+    private int segmentCount;
+    private int segmentLength;
+    private long seed;
+
+    private Map<String, DasAnnotatedSegment> segments;
+    private final Map<String, DasSequence> sequences = new HashMap<String, DasSequence>();
+
+    public void init(ServletContext servletContext, Map<String, PropertyType> globalParameters, DataSourceConfiguration dataSourceConfig)
+            throws DataSourceException {
+        Map<String, PropertyType> properties = dataSourceConfig.getDataSourceProperties();
+        featureCount = getInt(properties, PROPERTY_FEATURES, 1000);
+        segmentCount = getInt(properties, PROPERTY_SEGMENTS, 1);
+        segmentLength = getInt(properties, PROPERTY_SEGMENT_LENGTH, Math.max(1000, featureCount / segmentCount * 100));
+        seed = getInt(properties, PROPERTY_SEED, 42);
+    }
+
+    private static int getInt(Map<String, PropertyType> properties, String key, int defaultValue) throws DataSourceException {
+        PropertyType property = (properties == null) ? null : properties.get(key);
+        if (property == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(property.getValue().trim());
+        } catch (NumberFormatException e) {
+            throw new DataSourceException("The property " + key + " is not a number: " + property.getValue(), e);
+        }
+    }
+
+    /**
+     * @return the segments of the data source, generating them on the first call.
+     */
+    private synchronized Map<String, DasAnnotatedSegment> getSegments() throws DataSourceException {
+        if (segments == null) {
+            Random random = new Random(seed);
+            Map<String, DasAnnotatedSegment> generated = new LinkedHashMap<String, DasAnnotatedSegment>();
+            int firstFeature = 1;
+            for (int s = 1; s <= segmentCount; s++) {
+                int perSegment = featureCount / segmentCount + ((s <= featureCount % segmentCount) ? 1 : 0);
+                generated.put("chr" + s, createSegment("chr" + s, perSegment, segmentLength, firstFeature, random));
+                firstFeature += perSegment;
+            }
+            segments = generated;
+        }
+        return segments;
+    }
+
+    /**
+     * Generates a segment starting at 1, with features of the types exon, intron, SNP and repeat_region
+     * placed at random positions.  Also used by the benchmarks working on the model directly.
+     * @param segmentId the id of the segment.
+     * @param featureCount the number of features of the segment.
+     * @param segmentLength the stop coordinate of the segment.
+     * @param firstFeature the number in the id of the first feature, the others being numbered sequentially.
+     * @param random the source of the positions and attributes of the features.
+     * @return the generated segment.
+     * @throws DataSourceException never, as the generated values are always valid.
+     */
+    public static DasAnnotatedSegment createSegment(String segmentId, int featureCount, int segmentLength, int firstFeature, Random random)
+            throws DataSourceException {
+        DasType[] types = {
+                new DasType("exon", "transcription", "SO:0000147", "Exon"),
+                new DasType("intron", "transcription", "SO:0000188", "Intron"),
+                new DasType("SNP", "variation", "SO:0000694", "SNP"),
+                new DasType("repeat_region", "repeat", "SO:0000657", "Repeat region")
+        };
+        DasMethod method = new DasMethod("synthetic", "Synthetic features", "ECO:0000000");
+        List<DasFeature> features = new ArrayList<DasFeature>(featureCount);
+        for (int number = firstFeature; number < firstFeature + featureCount; number++) {
+            DasType type = types[random.nextInt(types.length)];
+            int length = ("SNP".equals(type.getId())) ? 1 : 1 + random.nextInt(1000);
+            int start = 1 + random.nextInt(Math.max(1, segmentLength - length));
+            features.add(new DasFeature(
+                    "feature" + number,
+                    "Feature " + number,
+                    type,
+                    method,
+                    start,
+                    start + length - 1,
+                    Math.floor(random.nextDouble() * 10000) / 100,
+                    (random.nextBoolean()) ? DasFeatureOrientation.ORIENTATION_SENSE_STRAND : DasFeatureOrientation.ORIENTATION_ANTISENSE_STRAND,
+                    DasPhase.PHASE_NOT_APPLICABLE,
+                    Collections.singleton("Synthetic " + type.getLabel() + " number " + number),
+                    null,
+                    null,
+                    null,
+                    null));
+        }
+        return new DasAnnotatedSegment(segmentId, 1, segmentLength, VERSION, "Segment " + segmentId, features);
+    }
+
+    public void destroy() {
+    }
+
+    public DasAnnotatedSegment getFeatures(String segmentId, Integer maxbins) throws BadReferenceObjectException, DataSourceException {
+        DasAnnotatedSegment segment = getSegments().get(segmentId);
+        if (segment == null) {
+            throw new BadReferenceObjectException("Unknown segment", segmentId);
+        }
+        return segment;
+    }
+
+    public DasAnnotatedSegment getFeatures(String segmentId, Integer maxbins, Range rows)
+            throws BadReferenceObjectException, DataSourceException, UnimplementedFeatureException {
+        throw new UnimplementedFeatureException("The synthetic data source does not paginate features");
+    }
+
+    public Collection<DasAnnotatedSegment> getFeatures(Collection<String> featureIdCollection, Integer maxbins)
+            throws UnimplementedFeatureException, DataSourceException {
+        Collection<DasAnnotatedSegment> found = new ArrayList<DasAnnotatedSegment>(featureIdCollection.size());
+        for (String featureId : featureIdCollection) {
+            DasAnnotatedSegment match = null;
+            for (DasAnnotatedSegment segment : getSegments().values()) {
+                for (DasFeature feature : segment.getFeatures()) {
+                    if (feature.getFeatureId().equals(featureId)) {
+                        match = new DasAnnotatedSegment(segment.getSegmentId(), segment.getStartCoordinate(), segment.getStopCoordinate(),
+                                segment.getVersion(), segment.getSegmentLabel(), Collections.singleton(feature));
+                        break;
+                    }
+                }
+                if (match != null) {
+                    break;
+                }
+            }
+            found.add((match == null) ? new DasUnknownFeatureSegment(featureId) : match);
+        }
+        return found;
+    }
+
+    public Collection<DasAnnotatedSegment> getFeatures(Collection<String> featureIdCollection, Integer maxbins, Range rows)
+            throws UnimplementedFeatureException, DataSourceException {
+        throw new UnimplementedFeatureException("The synthetic data source does not paginate features");
+    }
+
+    public Collection<DasType> getTypes() throws DataSourceException {
+        Map<String, DasType> types = new LinkedHashMap<String, DasType>();
+        for (DasAnnotatedSegment segment : getSegments().values()) {
+            for (DasFeature feature : segment.getFeatures()) {
+                types.put(feature.getType().getId(), feature.getType());
+            }
+        }
+        return new ArrayList<DasType>(types.values());
+    }
+
+    public Integer getTotalCountForType(DasType type) throws DataSourceException {
+        int count = 0;
+        for (DasAnnotatedSegment segment : getSegments().values()) {
+            for (DasFeature feature : segment.getFeatures()) {
+                if (feature.getType().getId().equals(type.getId())) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    public URL getLinkURL(String field, String id) throws UnimplementedFeatureException, DataSourceException {
+        throw new UnimplementedFeatureException("The synthetic data source has no links");
+    }
+
+    public Collection<DasEntryPoint> getEntryPoints(Integer start, Integer stop) throws UnimplementedFeatureException, DataSourceException {
+        List<DasEntryPoint> entryPoints = new ArrayList<DasEntryPoint>(segmentCount);
+        for (DasAnnotatedSegment segment : getSegments().values()) {
+            entryPoints.add(new DasEntryPoint(segment.getSegmentId(), segment.getStartCoordinate(), segment.getStopCoordinate(), "Chromosome",
+                    VERSION, DasEntryPointOrientation.POSITIVE_ORIENTATION, segment.getSegmentLabel(), false));
+        }
+        int from = (start == null) ? 0 : Math.max(0, start - 1);
+        int to = (stop == null) ? entryPoints.size() : Math.min(stop, entryPoints.size());
+        return (from >= to) ? new ArrayList<DasEntryPoint>() : entryPoints.subList(from, to);
+    }
+
+    public String getEntryPointVersion() throws UnimplementedFeatureException, DataSourceException {
+        return VERSION;
+    }
+
+    public int getTotalEntryPoints() throws UnimplementedFeatureException, DataSourceException {
+        return segmentCount;
+    }
+
+    public DasSequence getSequence(String segmentId) throws BadReferenceObjectException, DataSourceException {
+        if (!getSegments().containsKey(segmentId)) {
+            throw new BadReferenceObjectException("Unknown segment", segmentId);
+        }
+        synchronized (sequences) {
+            DasSequence sequence = sequences.get(segmentId);
+            if (sequence == null) {
+                Random random = new Random(seed + segmentId.hashCode());
+                char[] bases = new char[segmentLength];
+                for (int i = 0; i < bases.length; i++) {
+                    bases[i] = BASES[random.nextInt(BASES.length)];
+                }
+                sequence = new DasSequence(segmentId, new String(bases), 1, VERSION, getSegments().get(segmentId).getSegmentLabel());
+                sequences.put(segmentId, sequence);
+            }
+            return sequence;
+        }
+    }
+}
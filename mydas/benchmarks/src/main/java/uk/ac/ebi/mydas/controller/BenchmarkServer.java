@@ -0,0 +1,211 @@
+package uk.ac.ebi.mydas.controller;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A {@link MydasServlet} running the benchmark configuration (<code>/MydasServerConfig.xml</code> in the classpath of
+ * the benchmarks), driven with minimal in-memory implementations of the servlet API, so whole DAS requests can be
+ * measured without a servlet container or network.
+ *
+ * The servlet keeps its data sources in static fields, so there is a single server per JVM.
+ */
+public final class BenchmarkServer {
+
+    private static final String DAS_STATUS_OK = XDasStatus.STATUS_200_OK.toString();
+
+    private static BenchmarkServer instance;
+
+    private final MydasServlet servlet;
+
+    private final ServletContext servletContext;
+
+    private DataSourceManager dataSourceManager;
+
+    private BenchmarkServer() throws ServletException {
+        servletContext = proxy(ServletContext.class, new Handler() {
+            Object invoke(String method, Object[] args) {
+                if ("getResourceAsStream".equals(method)) {
+                    return BenchmarkServer.class.getResourceAsStream((String) args[0]);
+                }
+                return null;
+            }
+        });
+        final ServletConfig servletConfig = proxy(ServletConfig.class, new Handler() {
+            Object invoke(String method, Object[] args) {
+                if ("getServletContext".equals(method)) {
+                    return servletContext;
+                }
+                if ("getServletName".equals(method)) {
+                    return "MydasServlet";
+                }
+                return null;
+            }
+        });
+        servlet = new MydasServlet();
+        servlet.init(servletConfig);
+    }
+
+    public static synchronized BenchmarkServer getInstance() throws ServletException {
+        if (instance == null) {
+            instance = new BenchmarkServer();
+        }
+        return instance;
+    }
+
+    /**
+     * @return a data source manager loaded with the benchmark configuration, for the benchmarks calling
+     * the server components directly.  It holds its own instances of the data sources.
+     */
+    public synchronized DataSourceManager getDataSourceManager() throws Exception {
+        if (dataSourceManager == null) {
+            DataSourceManager manager = new DataSourceManager(servletContext);
+            manager.init(MydasServlet.RESOURCE_FOLDER + "MydasServerConfig.xml");
+            dataSourceManager = manager;
+        }
+        return dataSourceManager;
+    }
+
+    /**
+     * Sends a GET request through the servlet.
+     * @param dsn the data source, as named in the request URI.
+     * @param command the DAS command, e.g. features.
+     * @param queryString the query string, e.g. segment=chr1:1,1000
+     * @param gzip true to declare that the client accepts gzipped responses.
+     * @param body the stream receiving the response body.
+     * @throws IllegalStateException if the response is not a successful one, so errors are not measured by mistake.
+     */
+    public void get(String dsn, String command, final String queryString, final boolean gzip, final OutputStream body)
+            throws ServletException, IOException {
+        final String requestUri = "/das/" + dsn + "/" + command;
+        HttpServletRequest request = proxy(HttpServletRequest.class, new Handler() {
+            Object invoke(String method, Object[] args) {
+                if ("getMethod".equals(method)) {
+                    return "GET";
+                }
+                if ("getRequestURI".equals(method)) {
+                    return requestUri;
+                }
+                if ("getRequestURL".equals(method)) {
+                    return new StringBuffer("http://localhost:8080").append(requestUri);
+                }
+                if ("getQueryString".equals(method)) {
+                    return queryString;
+                }
+                if ("getHeader".equals(method) && "Accept-Encoding".equalsIgnoreCase((String) args[0])) {
+                    return (gzip) ? "gzip" : null;
+                }
+                if ("getProtocol".equals(method)) {
+                    return "HTTP/1.1";
+                }
+                return null;
+            }
+        });
+        final Map<String, String> headers = new HashMap<String, String>();
+        final ServletOutputStream outputStream = new ServletOutputStream() {
+            public void write(int b) throws IOException {
+                body.write(b);
+            }
+
+            public void write(byte[] b, int off, int len) throws IOException {
+                body.write(b, off, len);
+            }
+        };
+        final PrintWriter writer = new PrintWriter(new OutputStreamWriter(outputStream, DasCommandManager.ENCODE));
+        HttpServletResponse response = proxy(HttpServletResponse.class, new Handler() {
+            Object invoke(String method, Object[] args) {
+                if ("setHeader".equals(method) || "addHeader".equals(method)) {
+                    headers.put((String) args[0], (String) args[1]);
+                } else if ("getOutputStream".equals(method)) {
+                    return outputStream;
+                } else if ("getWriter".equals(method)) {
+                    return writer;
+                } else if ("getCharacterEncoding".equals(method)) {
+                    return DasCommandManager.ENCODE;
+                }
+                return null;
+            }
+        });
+        servlet.service(request, response);
+        writer.flush();
+        String status = headers.get("X-DAS-Status");
+        if (!DAS_STATUS_OK.equals(status)) {
+            throw new IllegalStateException("The request " + requestUri + "?" + queryString + " failed with status " + status);
+        }
+    }
+
+    /**
+     * Sends a GET request through the servlet, without compression.
+     * @return the response body.
+     */
+    public byte[] get(String dsn, String command, String queryString) throws ServletException, IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        get(dsn, command, queryString, false, body);
+        return body.toByteArray();
+    }
+
+    /**
+     * Answers the calls to a mocked servlet interface; methods returning primitives get their default value.
+     */
+    private abstract static class Handler implements InvocationHandler {
+        abstract Object invoke(String method, Object[] args);
+
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            if ("hashCode".equals(method.getName())) {
+                return System.identityHashCode(proxy);
+            }
+            if ("equals".equals(method.getName())) {
+                return proxy == args[0];
+            }
+            Object result = invoke(method.getName(), args);
+            if (result == null && method.getReturnType().isPrimitive()) {
+                Class<?> type = method.getReturnType();
+                if (type == boolean.class) {
+                    return false;
+                } else if (type == long.class) {
+                    return -1L;
+                } else if (type == int.class) {
+                    return 0;
+                }
+            }
+            return result;
+        }
+    }
+
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(BenchmarkServer.class.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    /**
+     * Discards the response body, keeping only its size.
+     */
+    public static final class CountingOutputStream extends OutputStream {
+        private long count = 0;
+
+        public void write(int b) {
+            count++;
+        }
+
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+
+        public long getCount() {
+            return count;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package uk.ac.ebi.mydas.controller;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.ebi.mydas.benchmarks.SyntheticDataSource;
+import uk.ac.ebi.mydas.model.DasFeature;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link DasFeatureRequestFilter#featurePasses(DasFeature)} over the 100k features of a synthetic segment,
+ * with the type and category restrictions a features request can carry.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g", "-Dlog4j.configuration=benchmark-log4j.properties"})
+public class FeatureFilterBenchmark {
+
+    @Param({"none", "type", "category", "type+category", "feature_id"})
+    public String restriction;
+
+    private DasFeature[] features;
+
+    private DasFeatureRequestFilter filter;
+
+    @Setup
+    public void setUp() throws Exception {
+        features = SyntheticDataSource.createSegment("chr1", 100000, 10000000, 1, new Random(42))
+                .getFeatures().toArray(new DasFeature[0]);
+        filter = new DasFeatureRequestFilter();
+        if (restriction.contains("type")) {
+            filter.addTypeId("exon");
+            filter.addTypeId("SNP");
+        }
+        if (restriction.contains("category")) {
+            filter.addCategoryId("transcription");
+        }
+        if (restriction.contains("feature_id")) {
+            for (int i = 1; i <= 100; i++) {
+                filter.addFeatureId("feature" + (i * 1000));
+            }
+        }
+    }
+
+    @Benchmark
+    public int featurePasses() {
+        int passed = 0;
+        for (DasFeature feature : features) {
+            if (filter.featurePasses(feature)) {
+                passed++;
+            }
+        }
+        return passed;
+    }
+}
@@ -0,0 +1,114 @@
+package uk.ac.ebi.mydas.controller;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xmlpull.v1.XmlPullParserFactory;
+import org.xmlpull.v1.XmlSerializer;
+import uk.ac.ebi.mydas.extendedmodel.DasFeatureE;
+import uk.ac.ebi.mydas.extendedmodel.DasFeatureSerializer;
+import uk.ac.ebi.mydas.model.DasFeature;
+import uk.ac.ebi.mydas.model.DasFeatureOrientation;
+import uk.ac.ebi.mydas.model.DasMethod;
+import uk.ac.ebi.mydas.model.DasPhase;
+import uk.ac.ebi.mydas.model.DasTarget;
+import uk.ac.ebi.mydas.model.DasType;
+
+import java.io.BufferedWriter;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the serialization of the FEATURE elements through the {@link DasFeatureE} wrappers with
+ * {@link DasFeatureSerializer}, which writes them straight from the model.
+ * Run with <code>-prof gc</code> to compare the allocation rates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g", "-Dlog4j.configuration=benchmark-log4j.properties"})
+public class FeatureSerializationBenchmark {
+
+    private static final String DAS_XML_NAMESPACE = null;
+
+    @Param({"1000", "100000"})
+    public int featureCount;
+
+    private List<DasFeature> features;
+
+    private DasFeatureRequestFilter filter;
+
+    private XmlSerializer serializer;
+
+    private Writer writer;
+
+    @Setup
+    public void setUp() throws Exception {
+        DasType type = new DasType("exon", "transcription", "SO:0000147", "Exon");
+        DasMethod method = new DasMethod("ensembl", "Ensembl genebuild", "ECO:0000203");
+        Map<URL, String> links = new HashMap<URL, String>();
+        links.put(new URL("http://www.ensembl.org/"), "Ensembl");
+        features = new ArrayList<DasFeature>(featureCount);
+        for (int i = 0; i < featureCount; i++) {
+            int start = 1 + i * 100;
+            features.add(new DasFeature("feature" + i, "Feature " + i, type, method, start, start + 250,
+                    (i % 2 == 0) ? (double) (i % 1000) : i / 7.0,
+                    DasFeatureOrientation.ORIENTATION_SENSE_STRAND, DasPhase.PHASE_READING_FRAME_0,
+                    Collections.singleton("A note"), links,
+                    Collections.singleton(new DasTarget("target" + i, 1, 250, null)), null, null));
+        }
+        filter = new DasFeatureRequestFilter();
+        serializer = XmlPullParserFactory.newInstance().newSerializer();
+        // Buffered, as the response writer of the features command.
+        writer = new BufferedWriter(new OutputStreamWriter(NullOutputStream.INSTANCE, DasCommandManager.ENCODE));
+    }
+
+    @Benchmark
+    public void extendedModel() throws Exception {
+        serializer.setOutput(writer);
+        for (DasFeature feature : features) {
+            new DasFeatureE(feature).serialize(DAS_XML_NAMESPACE, serializer, filter, false, false, false, false, false);
+        }
+        serializer.flush();
+    }
+
+    @Benchmark
+    public void directSerializer() throws Exception {
+        serializer.setOutput(writer);
+        for (DasFeature feature : features) {
+            DasFeatureSerializer.serialize(DAS_XML_NAMESPACE, serializer, feature, filter, false, false, false, false, false);
+        }
+        serializer.flush();
+    }
+
+    /**
+     * Discards the response, so only the serialization is measured.
+     */
+    static final class NullOutputStream extends OutputStream {
+        static final NullOutputStream INSTANCE = new NullOutputStream();
+
+        public void write(int b) {
+        }
+
+        public void write(byte[] b, int off, int len) {
+        }
+    }
+}
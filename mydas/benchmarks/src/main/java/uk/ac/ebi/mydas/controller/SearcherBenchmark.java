@@ -0,0 +1,83 @@
+package uk.ac.ebi.mydas.controller;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.ebi.mydas.model.Range;
+import uk.ac.ebi.mydas.search.Indexer;
+import uk.ac.ebi.mydas.search.Searcher;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Searcher#search(DasFeatureRequestFilter)}, the advanced search, over the index of the 10k features of the
+ * <code>search</code> synthetic data source.  The index is generated in a temporary folder before the measurements.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g", "-Dlog4j.configuration=benchmark-log4j.properties"})
+public class SearcherBenchmark {
+
+    private static final String DSN = "search";
+
+    /**
+     * A single hit, the features of a segment (around 1,000 hits) and those of a type (around 2,500 hits).
+     */
+    @Param({"featureId:feature4242", "segmentId:chr3", "typeId:SNP", "segmentId:chr3 AND start:[20000 TO 30000]"})
+    public String query;
+
+    @Param({"all", "1-100"})
+    public String rows;
+
+    private File indexDirectory;
+
+    @Setup
+    public void setUp() throws Exception {
+        indexDirectory = File.createTempFile("mydas-benchmark", "");
+        if (!indexDirectory.delete() || !indexDirectory.mkdir()) {
+            throw new IOException("Unable to create the folder of the index " + indexDirectory);
+        }
+        new Indexer(indexDirectory.getPath(), BenchmarkServer.getInstance().getDataSourceManager().getServerConfiguration())
+                .generateIndexes();
+    }
+
+    @TearDown
+    public void tearDown() {
+        delete(indexDirectory);
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    @Benchmark
+    public Object search() throws Exception {
+        DasFeatureRequestFilter filter = new DasFeatureRequestFilter();
+        filter.setAdvanceQuery(query);
+        if (!"all".equals(rows)) {
+            String[] range = rows.split("-");
+            filter.setRows(new Range(Integer.parseInt(range[0]), Integer.parseInt(range[1])));
+        }
+        return new Searcher(indexDirectory.getPath(), DSN).search(filter);
+    }
+}
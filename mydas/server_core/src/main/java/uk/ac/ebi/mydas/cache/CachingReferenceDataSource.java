@@ -0,0 +1,331 @@
+package uk.ac.ebi.mydas.cache;
+
+import org.apache.log4j.Logger;
+import uk.ac.ebi.mydas.configuration.DataSourceConfiguration;
+import uk.ac.ebi.mydas.configuration.PropertyType;
+import uk.ac.ebi.mydas.datasource.RangeHandlingReferenceDataSource;
+import uk.ac.ebi.mydas.datasource.ReferenceDataSource;
+import uk.ac.ebi.mydas.exceptions.BadReferenceObjectException;
+import uk.ac.ebi.mydas.exceptions.CoordinateErrorException;
+import uk.ac.ebi.mydas.exceptions.DataSourceException;
+import uk.ac.ebi.mydas.exceptions.UnimplementedFeatureException;
+import uk.ac.ebi.mydas.model.DasAnnotatedSegment;
+import uk.ac.ebi.mydas.model.DasEntryPoint;
+import uk.ac.ebi.mydas.model.DasRestrictedSequence;
+import uk.ac.ebi.mydas.model.DasSequence;
+import uk.ac.ebi.mydas.model.DasType;
+import uk.ac.ebi.mydas.model.Range;
+
+import javax.servlet.ServletContext;
+import java.net.URL;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Decorates a {@link ReferenceDataSource} that cannot restrict its sequences by coordinates, i.e. that
+ * is not a {@link RangeHandlingReferenceDataSource}, so that requests for
+ * a range of a sequence are served from memory.
+ * <p/>
+ * The sequences are split in blocks of a fixed number of bases, held in a least recently used cache
+ * bounded by the total size of the blocks.  A request for a range reads the whole sequence from the
+ * data source only if one of the blocks covering the range is not cached, and then caches those blocks.
+ * Requests for a whole sequence and all the other methods are passed to the data source.
+ * <p/>
+ * The DasCommandManager uses it for the sequence and dna commands of a data source whose configuration
+ * includes the property <code>sequence.cache.maxbytes</code>.
+ */
+public class CachingReferenceDataSource implements ReferenceDataSource {
+
+    private static final Logger logger = Logger.getLogger(CachingReferenceDataSource.class);
+
+    /**
+     * Data source property giving the maximum number of bytes held by the cache of sequence blocks.
+     */
+    public static final String PROPERTY_MAX_BYTES = "sequence.cache.maxbytes";
+
+    /**
+     * Data source property giving the number of bases of a block.
+     */
+    public static final String PROPERTY_BLOCK_SIZE = "sequence.cache.blocksize";
+
+    public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+
+    /**
+     * The number of sequences whose coordinates, version and label are remembered.
+     */
+    private static final int MAX_SEGMENTS = 10000;
+
+    private final ReferenceDataSource dataSource;
+
+    private final int blockSize;
+
+    private final long maxBytes;
+
+    private long currentBytes = 0;
+
+    /**
+     * Blocks in access order, so the eldest is the least recently used.
+     */
+    private final LinkedHashMap<BlockKey, byte[]> blocks = new LinkedHashMap<BlockKey, byte[]>(64, 0.75f, true);
+
+    private final LinkedHashMap<String, SegmentInfo> segments = new LinkedHashMap<String, SegmentInfo>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, SegmentInfo> eldest) {
+            return size() > MAX_SEGMENTS;
+        }
+    };
+
+    private static class BlockKey {
+        final String segmentId;
+        final int index;
+
+        BlockKey(String segmentId, int index) {
+            this.segmentId = segmentId;
+            this.index = index;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof BlockKey)) return false;
+            BlockKey that = (BlockKey) o;
+            return index == that.index && segmentId.equals(that.segmentId);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * segmentId.hashCode() + index;
+        }
+    }
+
+    /**
+     * What is needed of a sequence to check a range and build the restricted sequence.
+     */
+    private static class SegmentInfo {
+        final int startCoordinate;
+        final int stopCoordinate;
+        final String version;
+        final String label;
+
+        SegmentInfo(DasSequence sequence) {
+            this.startCoordinate = sequence.getStartCoordinate();
+            this.stopCoordinate = sequence.getStopCoordinate();
+            this.version = sequence.getVersion();
+            this.label = sequence.getLabel();
+        }
+    }
+
+    /**
+     * @param dataSource the decorated data source.
+     * @param blockSize the number of bases of a block.
+     * @param maxBytes the maximum number of bytes held by the cache.
+     */
+    public CachingReferenceDataSource(ReferenceDataSource dataSource, int blockSize, long maxBytes) {
+        this.dataSource = dataSource;
+        this.blockSize = Math.max(1, blockSize);
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Decorates the data source of a configuration if it needs it.
+     * @param dsnConfig the configuration of a loaded data source.
+     * @param dataSource its data source.
+     * @return the decorated data source, or null if it is not a reference data source, already handles
+     *         ranges, or its configuration does not include the property {@link #PROPERTY_MAX_BYTES}.
+     */
+    public static CachingReferenceDataSource decorate(DataSourceConfiguration dsnConfig, ReferenceDataSource dataSource) {
+        if (dataSource == null || dataSource instanceof RangeHandlingReferenceDataSource) {
+            return null;
+        }
+        long maxBytes = parse(dsnConfig, PROPERTY_MAX_BYTES, 0);
+        if (maxBytes <= 0) {
+            return null;
+        }
+        return new CachingReferenceDataSource(dataSource, (int) parse(dsnConfig, PROPERTY_BLOCK_SIZE, DEFAULT_BLOCK_SIZE), maxBytes);
+    }
+
+    private static long parse(DataSourceConfiguration dsnConfig, String key, long defaultValue) {
+        PropertyType property = dsnConfig.getDataSourceProperties().get(key);
+        if (property != null) {
+            try {
+                return Long.parseLong(property.getValue().trim());
+            } catch (NumberFormatException nfe) {
+                logger.error("The property " + key + " of " + dsnConfig.getId() + " is not a number, using " + defaultValue, nfe);
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Returns the range of a sequence, from the cached blocks if they are all there, otherwise
+     * from the whole sequence read from the data source.  A stop beyond the end of the sequence
+     * is moved to its end.
+     * @param segmentId being the id of the requested segment.
+     * @param start being the requested start coordinate of the segment
+     * @param stop being the requested stop coordinate of the segment
+     * @return the restricted sequence.
+     * @throws BadReferenceObjectException if the data source does not have the segment, or the range starts
+     *         out of the segment, which the sequence and dna commands report as an ERRORSEGMENT.
+     * @throws CoordinateErrorException if the data source cannot restrict its sequence to the range.
+     * @throws DataSourceException to wrap any exception of the data source.
+     */
+    public DasRestrictedSequence getSequence(String segmentId, int start, int stop)
+            throws BadReferenceObjectException, CoordinateErrorException, DataSourceException {
+        SegmentInfo info;
+        synchronized (this) {
+            info = segments.get(segmentId);
+        }
+        if (info != null) {
+            char[] bases = read(segmentId, info, start, stop);
+            if (bases != null) {
+                return new DasRestrictedSequence(segmentId, new String(bases), start, info.version, info.label);
+            }
+        }
+        DasSequence sequence = dataSource.getSequence(segmentId);
+        if (sequence == null) {
+            throw new BadReferenceObjectException(segmentId, "The sequence is not in the data source");
+        }
+        info = new SegmentInfo(sequence);
+        check(segmentId, info, start, stop);
+        int offset = Math.min(stop, info.stopCoordinate) - info.startCoordinate;
+        char[] block = new char[blockSize];
+        synchronized (this) {
+            segments.put(segmentId, info);
+            for (int index = (start - info.startCoordinate) / blockSize; index <= offset / blockSize; index++) {
+                BlockKey key = new BlockKey(segmentId, index);
+                if (!blocks.containsKey(key)) {
+                    int blockStart = info.startCoordinate + index * blockSize;
+                    int blockStop = Math.min(info.stopCoordinate, blockStart + blockSize - 1);
+                    sequence.getChars(blockStart, blockStop, block, 0);
+                    byte[] bytes = new byte[blockStop - blockStart + 1];
+                    for (int i = 0; i < bytes.length; i++) {
+                        bytes[i] = (byte) block[i];
+                    }
+                    put(key, bytes);
+                }
+            }
+        }
+        return new DasRestrictedSequence(segmentId,
+                sequence.getRestrictedSequenceString(start, Math.min(stop, info.stopCoordinate)), start, info.version, info.label);
+    }
+
+    /**
+     * @return the bases of the range, or null if one of its blocks is not cached.
+     */
+    private char[] read(String segmentId, SegmentInfo info, int start, int stop) throws BadReferenceObjectException {
+        check(segmentId, info, start, stop);
+        int from = start - info.startCoordinate;
+        int to = Math.min(stop, info.stopCoordinate) - info.startCoordinate;
+        char[] bases = new char[to - from + 1];
+        synchronized (this) {
+            for (int index = from / blockSize; index <= to / blockSize; index++) {
+                byte[] bytes = blocks.get(new BlockKey(segmentId, index));
+                if (bytes == null) {
+                    return null;
+                }
+                int blockFrom = Math.max(from, index * blockSize);
+                int blockTo = Math.min(to, index * blockSize + bytes.length - 1);
+                for (int i = blockFrom; i <= blockTo; i++) {
+                    bases[i - from] = (char) (bytes[i - index * blockSize] & 0xFF);
+                }
+            }
+        }
+        return bases;
+    }
+
+    /**
+     * Rejects the ranges that the sequence and dna commands report as out of the segment bounds.
+     */
+    private static void check(String segmentId, SegmentInfo info, int start, int stop) throws BadReferenceObjectException {
+        if (start <= 0 || stop <= 0 || start > stop || start < info.startCoordinate || start > info.stopCoordinate) {
+            throw new BadReferenceObjectException(segmentId, "start and stop out of segment bounds", new IndexOutOfBoundsException("start and stop out of segment bounds"));
+        }
+    }
+
+    private void put(BlockKey key, byte[] bytes) {
+        if (bytes.length > maxBytes) {
+            return;
+        }
+        blocks.put(key, bytes);
+        currentBytes += bytes.length;
+        Iterator<byte[]> iterator = blocks.values().iterator();
+        while (currentBytes > maxBytes && iterator.hasNext()) {
+            currentBytes -= iterator.next().length;
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Empties the cache, e.g. when the sequences of the data source have changed.
+     */
+    public synchronized void clear() {
+        blocks.clear();
+        segments.clear();
+        currentBytes = 0;
+    }
+
+    /**
+     * @return the total size of the cached blocks.
+     */
+    public synchronized long getCurrentBytes() {
+        return currentBytes;
+    }
+
+    public ReferenceDataSource getDataSource() {
+        return dataSource;
+    }
+
+    public DasSequence getSequence(String segmentId) throws BadReferenceObjectException, DataSourceException {
+        return dataSource.getSequence(segmentId);
+    }
+
+    public void init(ServletContext servletContext, Map<String, PropertyType> globalParameters, DataSourceConfiguration dataSourceConfig) throws DataSourceException {
+        dataSource.init(servletContext, globalParameters, dataSourceConfig);
+    }
+
+    public void destroy() {
+        clear();
+        dataSource.destroy();
+    }
+
+    public DasAnnotatedSegment getFeatures(String segmentId, Integer maxbins) throws BadReferenceObjectException, DataSourceException {
+        return dataSource.getFeatures(segmentId, maxbins);
+    }
+
+    public Collection<DasType> getTypes() throws DataSourceException {
+        return dataSource.getTypes();
+    }
+
+    public Collection<DasAnnotatedSegment> getFeatures(Collection<String> featureIdCollection, Integer maxbins) throws UnimplementedFeatureException, DataSourceException {
+        return dataSource.getFeatures(featureIdCollection, maxbins);
+    }
+
+    public Integer getTotalCountForType(DasType type) throws DataSourceException {
+        return dataSource.getTotalCountForType(type);
+    }
+
+    public URL getLinkURL(String field, String id) throws UnimplementedFeatureException, DataSourceException {
+        return dataSource.getLinkURL(field, id);
+    }
+
+    public Collection<DasEntryPoint> getEntryPoints(Integer start, Integer stop) throws UnimplementedFeatureException, DataSourceException {
+        return dataSource.getEntryPoints(start, stop);
+    }
+
+    public String getEntryPointVersion() throws UnimplementedFeatureException, DataSourceException {
+        return dataSource.getEntryPointVersion();
+    }
+
+    public int getTotalEntryPoints() throws UnimplementedFeatureException, DataSourceException {
+        return dataSource.getTotalEntryPoints();
+    }
+
+    public DasAnnotatedSegment getFeatures(String segmentId, Integer maxbins, Range rows) throws BadReferenceObjectException, DataSourceException, UnimplementedFeatureException {
+        return dataSource.getFeatures(segmentId, maxbins, rows);
+    }
+
+    public Collection<DasAnnotatedSegment> getFeatures(Collection<String> featureIdCollection, Integer maxbins, Range rows) throws UnimplementedFeatureException, DataSourceException {
+        return dataSource.getFeatures(featureIdCollection, maxbins, rows);
+    }
+}
@@ -0,0 +1,58 @@
+package uk.ac.ebi.mydas.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes through to another stream while keeping a copy of the bytes written, so that a response can be
+ * sent to the client as it is built and still be put in the {@link ResponseCache}.  The copy is dropped
+ * as soon as it grows beyond a limit, so a response too large to be cached is not held in memory.
+ */
+public class CopyingOutputStream extends FilterOutputStream {
+
+    private final long maxBytes;
+
+    private ByteArrayOutputStream copy = new ByteArrayOutputStream();
+
+    /**
+     * @param out the stream written to.
+     * @param maxBytes the largest number of bytes to copy.
+     */
+    public CopyingOutputStream(OutputStream out, long maxBytes) {
+        super(out);
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        if (copy != null) {
+            copy.write(b);
+            checkSize();
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        if (copy != null) {
+            copy.write(b, off, len);
+            checkSize();
+        }
+    }
+
+    /**
+     * @return the bytes written, or null if there were more than the limit.
+     */
+    public byte[] getCopy() {
+        return (copy == null) ? null : copy.toByteArray();
+    }
+
+    private void checkSize() {
+        if (copy.size() > maxBytes) {
+            copy = null;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package uk.ac.ebi.mydas.cache;
+
+import org.apache.log4j.Logger;
+import uk.ac.ebi.mydas.configuration.PropertyType;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Default {@link ResponseCache}: a least recently used cache bounded by the total size of the
+ * bodies it holds (64MB unless the global property <code>responsecache.maxbytes</code> says otherwise).
+ * Bodies larger than a quarter of that size are never cached.
+ */
+public class LRUResponseCache implements ResponseCache {
+
+    private static final Logger logger = Logger.getLogger(LRUResponseCache.class);
+
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+    private long maxBytes = DEFAULT_MAX_BYTES;
+
+    private long currentBytes = 0;
+
+    /**
+     * Entries in access order, so the eldest is the least recently used.
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(64, 0.75f, true);
+
+    private static class Entry {
+        final String dsn;
+        final byte[] body;
+        final long expires;
+
+        Entry(String dsn, byte[] body, long expires) {
+            this.dsn = dsn;
+            this.body = body;
+            this.expires = expires;
+        }
+    }
+
+    public void init(Map<String, PropertyType> globalParameters) {
+        PropertyType max = (globalParameters == null) ? null : globalParameters.get(PROPERTY_MAX_BYTES);
+        if (max != null) {
+            try {
+                setMaxBytes(Long.parseLong(max.getValue().trim()));
+            } catch (NumberFormatException nfe) {
+                logger.error("The global property " + PROPERTY_MAX_BYTES + " is not a number, using " + DEFAULT_MAX_BYTES, nfe);
+            }
+        }
+    }
+
+    public synchronized void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        evict();
+    }
+
+    public synchronized byte[] get(String dsn, String key) {
+        String fullKey = dsn + '\n' + key;
+        Entry entry = entries.get(fullKey);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expires < System.currentTimeMillis()) {
+            remove(fullKey);
+            return null;
+        }
+        return entry.body;
+    }
+
+    public synchronized void put(String dsn, String key, byte[] body, long timeToLive) {
+        if (timeToLive <= 0 || body.length > getMaxBodySize()) {
+            return;
+        }
+        String fullKey = dsn + '\n' + key;
+        remove(fullKey);
+        entries.put(fullKey, new Entry(dsn, body, System.currentTimeMillis() + timeToLive));
+        currentBytes += body.length;
+        evict();
+    }
+
+    public synchronized long getMaxBodySize() {
+        return maxBytes / 4;
+    }
+
+    public synchronized void invalidate(String dsn) {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.dsn.equals(dsn)) {
+                currentBytes -= entry.body.length;
+                iterator.remove();
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        currentBytes = 0;
+    }
+
+    /**
+     * @return the total size of the cached bodies.
+     */
+    public synchronized long getCurrentBytes() {
+        return currentBytes;
+    }
+
+    private void remove(String fullKey) {
+        Entry old = entries.remove(fullKey);
+        if (old != null) {
+            currentBytes -= old.body.length;
+        }
+    }
+
+    private void evict() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (currentBytes > maxBytes && iterator.hasNext()) {
+            currentBytes -= iterator.next().body.length;
+            iterator.remove();
+        }
+    }
+}
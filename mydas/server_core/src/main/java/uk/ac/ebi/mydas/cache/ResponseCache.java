@@ -0,0 +1,72 @@
+package uk.ac.ebi.mydas.cache;
+
+import uk.ac.ebi.mydas.configuration.PropertyType;
+
+import java.util.Map;
+
+/**
+ * A cache of serialized DAS responses, shared by all the data sources of the server.
+ *
+ * The server uses {@link LRUResponseCache} unless the global property <code>responsecache.class</code>
+ * in MydasServerConfig.xml names another implementation, which must have a public no-argument constructor.
+ * Responses of a data source are only cached if its configuration includes the property
+ * <code>responsecache.ttl</code>, being the number of seconds a cached response stays valid.
+ *
+ * Implementations must be thread safe, as they are called concurrently by all the requests.
+ */
+public interface ResponseCache {
+
+    /**
+     * Global property naming the implementation class.
+     */
+    public static final String PROPERTY_CLASS = "responsecache.class";
+
+    /**
+     * Global property giving the maximum number of bytes held by the cache.
+     */
+    public static final String PROPERTY_MAX_BYTES = "responsecache.maxbytes";
+
+    /**
+     * Data source property giving the time to live of the cached responses, in seconds.
+     */
+    public static final String PROPERTY_TTL = "responsecache.ttl";
+
+    /**
+     * Called once, before the cache is used.
+     * @param globalParameters the global properties defined in MydasServerConfig.xml.
+     */
+    public void init(Map<String, PropertyType> globalParameters);
+
+    /**
+     * @param dsn the id of the data source the response belongs to.
+     * @param key the normalized request.
+     * @return the cached response body, or null if there is none or it has expired.
+     */
+    public byte[] get(String dsn, String key);
+
+    /**
+     * Stores a response body.  The cache may decide not to keep it (e.g. if it is too large).
+     * @param dsn the id of the data source the response belongs to.
+     * @param key the normalized request.
+     * @param body the uncompressed response body.
+     * @param timeToLive the number of milliseconds the body stays valid.
+     */
+    public void put(String dsn, String key, byte[] body, long timeToLive);
+
+    /**
+     * @return the size of the largest body the cache keeps, so that the server does not hold a copy of
+     * larger responses while writing them.
+     */
+    public long getMaxBodySize();
+
+    /**
+     * Drops all the responses of a data source, e.g. because its content has been modified.
+     * @param dsn the id of the data source.
+     */
+    public void invalidate(String dsn);
+
+    /**
+     * Drops all the cached responses.
+     */
+    public void clear();
+}
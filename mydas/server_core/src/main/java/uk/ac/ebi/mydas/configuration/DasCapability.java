@@ -0,0 +1,80 @@
+/*
+ * Copyright 2007 Philip Jones, EMBL-European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ * For further details of the mydas project, including source code,
+ * downloads and documentation, please see:
+ *
+ * http://code.google.com/p/mydas/
+ *
+ */
+package uk.ac.ebi.mydas.configuration;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The DAS capabilities a data source can declare in the MydasServerConfig.xml file, as
+ * <code>&lt;capability type="das1:<i>name</i>"/&gt;</code>.
+ */
+public enum DasCapability {
+
+    SOURCES ("sources"),
+    TYPES ("types"),
+    FEATURES ("features"),
+    FEATURE_BY_ID ("feature-by-id"),
+    GROUP_BY_ID ("group-by-id"),
+    STYLESHEET ("stylesheet"),
+    ENTRY_POINTS ("entry_points"),
+    SEQUENCE ("sequence"),
+    DNA ("dna"),
+    LINK ("link"),
+    STRUCTURE ("structure"),
+    ALIGNMENT ("alignment"),
+    UNKNOWN_SEGMENT ("unknown-segment"),
+    UNKNOWN_FEATURE ("unknown-feature"),
+    ERROR_SEGMENT ("error-segment"),
+    MAXBINS ("maxbins"),
+    FORMAT ("format"),
+    ADVANCED_SEARCH ("advanced-search"),
+    ROWS_FOR_FEATURE ("rows-for-feature"),
+    WRITEBACK ("writeback");
+
+    private static final Map<String, DasCapability> BY_NAME = new HashMap<String, DasCapability>();
+
+    static {
+        for (DasCapability capability : values()) {
+            BY_NAME.put(capability.capabilityName, capability);
+        }
+    }
+
+    private final String capabilityName;
+
+    private DasCapability(String capabilityName) {
+        this.capabilityName = capabilityName;
+    }
+
+    /**
+     * @param capabilityName the name of the capability, without the das1: prefix.
+     * @return the capability, or null if it is not a known capability.
+     */
+    public static DasCapability forName(String capabilityName) {
+        return BY_NAME.get(capabilityName);
+    }
+
+    public String toString() {
+        return capabilityName;
+    }
+}
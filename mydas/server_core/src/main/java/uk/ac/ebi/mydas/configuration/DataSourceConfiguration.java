@@ -25,12 +25,17 @@ package uk.ac.ebi.mydas.configuration;
 
 import org.apache.log4j.Logger;
 import uk.ac.ebi.mydas.configuration.Mydasserver.Datasources.Datasource.Version.Capability;
+import uk.ac.ebi.mydas.cache.CachingReferenceDataSource;
+import uk.ac.ebi.mydas.cache.ResponseCache;
 import uk.ac.ebi.mydas.datasource.AnnotationDataSource;
+import uk.ac.ebi.mydas.datasource.ReferenceDataSource;
 import uk.ac.ebi.mydas.exceptions.DataSourceException;
 
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -73,9 +78,39 @@ public class DataSourceConfiguration {
     private final Mydasserver.Datasources.Datasource config;
     private int versionPosition;
 
+    private Long responseCacheTimeToLive;
+
+    /**
+     * What the commands need to know about this data source, rebuilt once the data source is loaded.
+     */
+    private volatile RequestPlan requestPlan;
+
+    /**
+     * Caches blocks of the sequences of a reference data source that does not handle ranges, null if it is not used.
+     */
+    private volatile CachingReferenceDataSource sequenceCache;
+
+    /**
+     * Data source property giving the number of threads used to retrieve concurrently the segments of
+     * a features request, and to index them for the advanced search.  The data source must be thread safe to use it.
+     */
+    public static final String PROPERTY_SEGMENT_THREADS = "features.threads";
+
+    /**
+     * Data source property giving the number of bases per line of the sequences returned by the dna and
+     * sequence commands.  The sequences are written on a single line if it is not set.
+     */
+    public static final String PROPERTY_SEQUENCE_LINE_WIDTH = "sequence.linewidth";
+
+    /**
+     * Data source property giving the largest number of bases that a single dna or sequence request may return.
+     */
+    public static final String PROPERTY_SEQUENCE_MAX_LENGTH = "sequence.maxlength";
+
     public DataSourceConfiguration(Mydasserver.Datasources.Datasource config, int versionPosition) {
         this.config = config;
         this.versionPosition = versionPosition;
+        this.requestPlan = new RequestPlan(getCapabilityTypes(), null, null, getSequenceLineWidth(), getMaxSequenceLength());
         if (logger.isDebugEnabled()) {
             logger.debug("New DataSourceConfiguration instantiated: \n" + this.toString());
         }
@@ -205,6 +240,82 @@ public class DataSourceConfiguration {
         return config.getIncludeTypesWithZeroCount().value;
     }
 
+    /**
+     * Returns the time to live of the cached features responses of this data source, as given in seconds
+     * by the property {@link uk.ac.ebi.mydas.cache.ResponseCache#PROPERTY_TTL}.
+     *
+     * @return the time to live in milliseconds, or 0 if the responses of this data source are not cached.
+     */
+    public long getResponseCacheTimeToLive() {
+        if (responseCacheTimeToLive == null) {
+            long ttl = 0;
+            PropertyType property = this.getDataSourceProperties().get(ResponseCache.PROPERTY_TTL);
+            if (property != null) {
+                try {
+                    ttl = Math.max(0, Long.parseLong(property.getValue().trim()) * 1000);
+                } catch (NumberFormatException nfe) {
+                    logger.error("The property " + ResponseCache.PROPERTY_TTL + " of " + this.getId() + " is not a number, responses will not be cached.", nfe);
+                }
+            }
+            responseCacheTimeToLive = ttl;
+        }
+        return responseCacheTimeToLive;
+    }
+
+    /**
+     * Returns the number of threads to use to retrieve concurrently the segments requested in a features command,
+     * as given by the property {@link #PROPERTY_SEGMENT_THREADS}.
+     *
+     * @return the number of threads, 1 (i.e. the segments are retrieved one after another) if the property is not set.
+     */
+    public int getSegmentThreads() {
+        PropertyType property = this.getDataSourceProperties().get(PROPERTY_SEGMENT_THREADS);
+        if (property != null) {
+            try {
+                return Math.max(1, Integer.parseInt(property.getValue().trim()));
+            } catch (NumberFormatException nfe) {
+                logger.error("The property " + PROPERTY_SEGMENT_THREADS + " of " + this.getId() + " is not a number, segments will be retrieved sequentially.", nfe);
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * Returns the number of bases per line of the sequences returned by the dna and sequence commands,
+     * as given by the property {@link #PROPERTY_SEQUENCE_LINE_WIDTH}.
+     *
+     * @return the number of bases per line, 0 (i.e. a single line) if the property is not set.
+     */
+    public int getSequenceLineWidth() {
+        PropertyType property = this.getDataSourceProperties().get(PROPERTY_SEQUENCE_LINE_WIDTH);
+        if (property != null) {
+            try {
+                return Math.max(0, Integer.parseInt(property.getValue().trim()));
+            } catch (NumberFormatException nfe) {
+                logger.error("The property " + PROPERTY_SEQUENCE_LINE_WIDTH + " of " + this.getId() + " is not a number, sequences will be written on a single line.", nfe);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the largest number of bases that a single dna or sequence request may return,
+     * as given by the property {@link #PROPERTY_SEQUENCE_MAX_LENGTH}.
+     *
+     * @return the number of bases, or null if the length of the requests is not limited.
+     */
+    public Long getMaxSequenceLength() {
+        PropertyType property = this.getDataSourceProperties().get(PROPERTY_SEQUENCE_MAX_LENGTH);
+        if (property != null) {
+            try {
+                return Math.max(0, Long.parseLong(property.getValue().trim()));
+            } catch (NumberFormatException nfe) {
+                logger.error("The property " + PROPERTY_SEQUENCE_MAX_LENGTH + " of " + this.getId() + " is not a number, the length of the sequence requests will not be limited.", nfe);
+            }
+        }
+        return null;
+    }
+
 
     /**
      * This method is called by the DataSourceManager to load
@@ -334,19 +445,50 @@ public class DataSourceConfiguration {
      * Capabilities are reported according to DAS 1.6 spec:
      * error-segment/1.0; unknown-segment/1.0; unknown-feature/1.0; ...
      *
-     * @return
+     * @return the value of the X-DAS-Capabilities header.
      */
     public String getCapabilities() {
-        String capabilities = "";
-        for (Capability cap : config.getVersion().get(this.versionPosition).getCapability()) {
-            try {
-                String[] caps = cap.getType().split(":");  //das1:sources
-                capabilities += " " + caps[1] + "/1.0;";
-            } catch (Exception e) {
-                //Just do not include that capability
-            }
+        return requestPlan.getCapabilitiesHeader();
+    }
 
+    /**
+     * Returns the capabilities, XSLTs and interfaces of the data source, as used by the commands on each request.
+     *
+     * @return the plan built when the data source was loaded.
+     */
+    public RequestPlan getRequestPlan() {
+        return requestPlan;
+    }
+
+    /**
+     * Called by the DataSourceManager once the data source has been loaded and initialised, so that
+     * the plan knows the interfaces it implements.
+     *
+     * @param globalConfiguration the global configuration, holding the XSLT URLs.
+     */
+    public void buildRequestPlan(GlobalConfiguration globalConfiguration) {
+        requestPlan = new RequestPlan(getCapabilityTypes(), globalConfiguration, datasourceOK ? dataSource : null,
+                getSequenceLineWidth(), getMaxSequenceLength());
+        sequenceCache = (datasourceOK && dataSource instanceof ReferenceDataSource)
+                ? CachingReferenceDataSource.decorate(this, (ReferenceDataSource) dataSource)
+                : null;
+    }
+
+    /**
+     * Returns the decorated data source serving the ranges of the sequences from a cache of blocks,
+     * as configured by the property {@link CachingReferenceDataSource#PROPERTY_MAX_BYTES}.
+     *
+     * @return the decorated data source, or null if the sequences of this data source are not cached.
+     */
+    public CachingReferenceDataSource getSequenceCache() {
+        return sequenceCache;
+    }
+
+    private List<String> getCapabilityTypes() {
+        List<String> types = new ArrayList<String>();
+        for (Capability cap : config.getVersion().get(this.versionPosition).getCapability()) {
+            types.add(cap.getType());  //das1:sources
         }
-        return capabilities.substring(0, capabilities.length() - 1);
+        return types;
     }
 }
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2007 Philip Jones, EMBL-European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ * For further details of the mydas project, including source code,
+ * downloads and documentation, please see:
+ *
+ * http://code.google.com/p/mydas/
+ *
+ */
+package uk.ac.ebi.mydas.configuration;
+
+import uk.ac.ebi.mydas.datasource.AlignmentDataSource;
+import uk.ac.ebi.mydas.datasource.AnnotationDataSource;
+import uk.ac.ebi.mydas.datasource.CommandExtender;
+import uk.ac.ebi.mydas.datasource.RangeHandlingAnnotationDataSource;
+import uk.ac.ebi.mydas.datasource.RangeHandlingReferenceDataSource;
+import uk.ac.ebi.mydas.datasource.ReferenceDataSource;
+import uk.ac.ebi.mydas.datasource.StreamingAnnotationDataSource;
+import uk.ac.ebi.mydas.datasource.StructureDataSource;
+import uk.ac.ebi.mydas.datasource.WritebackDataSource;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * What the commands need to know about a data source on each request, worked out once from its
+ * configuration and its class: the declared capabilities, the X-DAS-Capabilities header, the
+ * XSLT processing instructions of the responses, the layout and limit of the sequence responses
+ * and the interfaces the data source implements.
+ * <p/>
+ * A plan is immutable; a new one is built when the data source is (re)loaded.
+ */
+public final class RequestPlan {
+
+    private final Set<DasCapability> capabilities;
+
+    private final String capabilitiesHeader;
+
+    private final String dnaXSLT;
+    private final String entryPointsXSLT;
+    private final String sequenceXSLT;
+    private final String featuresXSLT;
+    private final String typesXSLT;
+
+    private final int sequenceLineWidth;
+    private final Long maxSequenceLength;
+
+    private final boolean referenceSource;
+    private final boolean rangeHandlingAnnotationSource;
+    private final boolean rangeHandlingReferenceSource;
+    private final boolean streamingSource;
+    private final boolean structureSource;
+    private final boolean alignmentSource;
+    private final boolean commandExtender;
+    private final boolean writebackSource;
+
+    /**
+     * @param capabilityTypes the type of each capability in the configuration, e.g. das1:features.
+     * @param globalConfiguration the global configuration holding the XSLT URLs, may be null.
+     * @param dataSource the loaded data source, may be null if it has failed to load.
+     * @param sequenceLineWidth the number of bases per line of the sequence responses, 0 for a single line.
+     * @param maxSequenceLength the largest number of bases of a sequence request, null if it is not limited.
+     */
+    public RequestPlan(Collection<String> capabilityTypes, GlobalConfiguration globalConfiguration, AnnotationDataSource dataSource,
+                       int sequenceLineWidth, Long maxSequenceLength) {
+        EnumSet<DasCapability> declared = EnumSet.noneOf(DasCapability.class);
+        // Reported according to the DAS 1.6 spec: error-segment/1.0; unknown-segment/1.0; unknown-feature/1.0; ...
+        StringBuilder header = new StringBuilder();
+        for (String type : capabilityTypes) {
+            int colon = (type == null) ? -1 : type.indexOf(':');
+            if (colon < 0) {
+                // Just do not include that capability
+                continue;
+            }
+            String name = type.substring(colon + 1);
+            DasCapability capability = DasCapability.forName(name);
+            if (capability != null) {
+                declared.add(capability);
+            }
+            if (header.length() > 0) {
+                header.append(';');
+            }
+            header.append(' ').append(name).append("/1.0");
+        }
+        this.capabilities = Collections.unmodifiableSet(declared);
+        this.capabilitiesHeader = header.toString();
+
+        this.dnaXSLT = (globalConfiguration == null) ? null : globalConfiguration.getDnaXSLT();
+        this.entryPointsXSLT = (globalConfiguration == null) ? null : globalConfiguration.getEntryPointsXSLT();
+        this.sequenceXSLT = (globalConfiguration == null) ? null : globalConfiguration.getSequenceXSLT();
+        this.featuresXSLT = (globalConfiguration == null) ? null : globalConfiguration.getFeaturesXSLT();
+        this.typesXSLT = (globalConfiguration == null) ? null : globalConfiguration.getTypesXSLT();
+
+        this.sequenceLineWidth = sequenceLineWidth;
+        this.maxSequenceLength = maxSequenceLength;
+
+        this.referenceSource = dataSource instanceof ReferenceDataSource;
+        this.rangeHandlingAnnotationSource = dataSource instanceof RangeHandlingAnnotationDataSource;
+        this.rangeHandlingReferenceSource = dataSource instanceof RangeHandlingReferenceDataSource;
+        this.streamingSource = dataSource instanceof StreamingAnnotationDataSource;
+        this.structureSource = dataSource instanceof StructureDataSource;
+        this.alignmentSource = dataSource instanceof AlignmentDataSource;
+        this.commandExtender = dataSource instanceof CommandExtender;
+        this.writebackSource = dataSource instanceof WritebackDataSource;
+    }
+
+    /**
+     * @return true if the data source has declared the capability.
+     */
+    public boolean has(DasCapability capability) {
+        return capabilities.contains(capability);
+    }
+
+    public Set<DasCapability> getCapabilities() {
+        return capabilities;
+    }
+
+    /**
+     * @return the value of the X-DAS-Capabilities header, e.g. " features/1.0; types/1.0".
+     */
+    public String getCapabilitiesHeader() {
+        return capabilitiesHeader;
+    }
+
+    public String getDnaXSLT() {
+        return dnaXSLT;
+    }
+
+    public String getEntryPointsXSLT() {
+        return entryPointsXSLT;
+    }
+
+    public String getSequenceXSLT() {
+        return sequenceXSLT;
+    }
+
+    public String getFeaturesXSLT() {
+        return featuresXSLT;
+    }
+
+    public String getTypesXSLT() {
+        return typesXSLT;
+    }
+
+    /**
+     * @return the number of bases per line of the sequences returned by the dna and sequence commands,
+     *         0 for a single line.
+     */
+    public int getSequenceLineWidth() {
+        return sequenceLineWidth;
+    }
+
+    /**
+     * @return the largest number of bases that a single dna or sequence request may return, or null if
+     *         the length of the requests is not limited.
+     */
+    public Long getMaxSequenceLength() {
+        return maxSequenceLength;
+    }
+
+    public boolean isReferenceSource() {
+        return referenceSource;
+    }
+
+    public boolean isRangeHandlingAnnotationSource() {
+        return rangeHandlingAnnotationSource;
+    }
+
+    public boolean isRangeHandlingReferenceSource() {
+        return rangeHandlingReferenceSource;
+    }
+
+    public boolean isStreamingSource() {
+        return streamingSource;
+    }
+
+    public boolean isStructureSource() {
+        return structureSource;
+    }
+
+    public boolean isAlignmentSource() {
+        return alignmentSource;
+    }
+
+    public boolean isCommandExtender() {
+        return commandExtender;
+    }
+
+    public boolean isWritebackSource() {
+        return writebackSource;
+    }
+}
@@ -0,0 +1,148 @@
+package uk.ac.ebi.mydas.controller;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Builds the keys of the features responses kept in the {@link uk.ac.ebi.mydas.cache.ResponseCache}
+ * and writes a cached response back to a client.
+ *
+ * A cached response is the body written for the first of the equivalent requests, so its GFF/@href
+ * is replaced by the href of the request it is sent to.
+ */
+final class CachedFeaturesResponse {
+
+    /**
+     * Query parameters whose order is the order of the response, e.g. the order of the segments.
+     */
+    private static final String[] ORDERED_PARAMETERS = {"segment", "feature_id"};
+
+    private static final byte[] GFF_TAG = ascii("<GFF");
+
+    private static final byte[] HREF_ATTRIBUTE = ascii(" href=\"");
+
+    /**
+     * Orders the parts of a query by name, then by value unless the parameter is ordered, in which case
+     * the parts keep the order of the query (the sort is stable).
+     */
+    private static final Comparator<String> QUERY_PART_ORDER = new Comparator<String>() {
+        public int compare(String a, String b) {
+            String nameA = name(a);
+            int byName = nameA.compareTo(name(b));
+            if (byName != 0) {
+                return byName;
+            }
+            return isOrdered(nameA) ? 0 : a.compareTo(b);
+        }
+    };
+
+    private CachedFeaturesResponse() {
+    }
+
+    /**
+     * Builds the part of the response cache key that identifies a query: the parts of the query string
+     * are URL decoded and sorted, so that equivalent requests share the same cached response.  The segments
+     * and feature ids keep their order, as they are reported in that order.
+     *
+     * @param queryString the query string of the request.
+     * @return the normalized query.
+     */
+    static String normalizeQuery(String queryString) {
+        String[] queryParts = queryString.split(";");
+        for (int i = 0; i < queryParts.length; i++) {
+            try {
+                // Escapes any decoded separator so it cannot be confused with a real one.
+                queryParts[i] = URLDecoder.decode(queryParts[i], DasCommandManager.ENCODE).replace("\\", "\\\\").replace(";", "\\;");
+            } catch (IllegalArgumentException iae) {
+                // Not properly encoded, so it is used as it is.
+            } catch (UnsupportedEncodingException uee) {
+                // UTF-8 is always supported.
+            }
+        }
+        Arrays.sort(queryParts, QUERY_PART_ORDER);
+        StringBuilder normalized = new StringBuilder(queryString.length());
+        for (String queryPart : queryParts) {
+            if (queryPart.length() > 0) {
+                normalized.append(queryPart).append(';');
+            }
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * Writes a cached response, with the href of the GFF element replaced.
+     *
+     * @param out     the stream to write to.
+     * @param body    the cached body.
+     * @param href    the href of the request being answered.
+     * @param charset the encoding of the body.
+     * @throws IOException if the response cannot be written.
+     */
+    static void write(OutputStream out, byte[] body, String href, String charset) throws IOException {
+        int gff = indexOf(body, GFF_TAG, 0);
+        int start = (gff < 0) ? -1 : indexOf(body, HREF_ATTRIBUTE, gff);
+        int end = (start < 0) ? -1 : indexOf(body, new byte[]{'"'}, start + HREF_ATTRIBUTE.length);
+        if (end < 0) {
+            out.write(body);
+            return;
+        }
+        start += HREF_ATTRIBUTE.length;
+        out.write(body, 0, start);
+        out.write(escapeAttribute(href).getBytes(charset));
+        out.write(body, end, body.length - end);
+    }
+
+    private static String name(String queryPart) {
+        int equals = queryPart.indexOf('=');
+        return (equals < 0) ? queryPart : queryPart.substring(0, equals);
+    }
+
+    private static boolean isOrdered(String name) {
+        for (String ordered : ORDERED_PARAMETERS) {
+            if (ordered.equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String escapeAttribute(String value) {
+        StringBuilder escaped = new StringBuilder(value.length() + 16);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '&': escaped.append("&amp;"); break;
+                case '<': escaped.append("&lt;"); break;
+                case '>': escaped.append("&gt;"); break;
+                case '"': escaped.append("&quot;"); break;
+                default: escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    private static int indexOf(byte[] bytes, byte[] pattern, int from) {
+        for (int i = from; i <= bytes.length - pattern.length; i++) {
+            int j = 0;
+            while (j < pattern.length && bytes[i + j] == pattern[j]) {
+                j++;
+            }
+            if (j == pattern.length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static byte[] ascii(String s) {
+        byte[] bytes = new byte[s.length()];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) s.charAt(i);
+        }
+        return bytes;
+    }
+}
@@ -4,6 +4,9 @@ import org.apache.log4j.Logger;
 import org.xmlpull.v1.XmlPullParserException;
 import org.xmlpull.v1.XmlPullParserFactory;
 import org.xmlpull.v1.XmlSerializer;
+import uk.ac.ebi.mydas.cache.CopyingOutputStream;
+import uk.ac.ebi.mydas.cache.ResponseCache;
+import uk.ac.ebi.mydas.configuration.DasCapability;
 import uk.ac.ebi.mydas.configuration.DataSourceConfiguration;
 import uk.ac.ebi.mydas.configuration.Mydasserver.Datasources.Datasource;
 import uk.ac.ebi.mydas.configuration.Mydasserver.Datasources.Datasource.Version;
@@ -19,6 +22,7 @@ import uk.ac.ebi.mydas.model.*;
 import uk.ac.ebi.mydas.model.alignment.DasAlignment;
 import uk.ac.ebi.mydas.model.structure.DasStructure;
 import uk.ac.ebi.mydas.search.Indexer;
+import uk.ac.ebi.mydas.search.IndexingJob;
 import uk.ac.ebi.mydas.search.Searcher;
 import uk.ac.ebi.mydas.writeback.MyDasParser;
 
@@ -27,7 +31,12 @@ import javax.servlet.http.HttpServletResponse;
 import java.io.*;
 import java.net.URL;
 import java.net.URLDecoder;
+import java.nio.charset.Charset;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.zip.GZIPOutputStream;
@@ -194,7 +203,7 @@ public class DasCommandManager {
         //	Is the dna command enabled?
         if (dsnConfig.isDnaCommandEnabled()) {
             // Is this a reference source?
-            if (dsnConfig.getDataSource() instanceof ReferenceDataSource) {
+            if (dsnConfig.getRequestPlan().isReferenceSource()) {
                 // All good - process command.
                 Collection<SequenceReporter> sequences = getSequences(dsnConfig, queryString, true);
                 // Got some sequences, so all is OK.
@@ -209,8 +218,8 @@ public class DasCommandManager {
                     serializer.setProperty(INDENTATION_PROPERTY, INDENTATION_PROPERTY_VALUE);
                     serializer.startDocument(null, false);
                     serializer.text("\n");
-                    if (DATA_SOURCE_MANAGER.getServerConfiguration().getGlobalConfiguration().getDnaXSLT() != null) {
-                        serializer.processingInstruction(DATA_SOURCE_MANAGER.getServerConfiguration().getGlobalConfiguration().getDnaXSLT());
+                    if (dsnConfig.getRequestPlan().getDnaXSLT() != null) {
+                        serializer.processingInstruction(dsnConfig.getRequestPlan().getDnaXSLT());
                         serializer.text("\n");
                     }
                     serializer.docdecl(" DASDNA SYSTEM \"http://www.biodas.org/dtd/dasdna.dtd\"");
@@ -220,7 +229,7 @@ public class DasCommandManager {
                     for (SequenceReporter sequenceReporter : sequences) {
                         if (sequenceReporter instanceof FoundSequenceReporter) {
                             FoundSequenceReporter foundSequenceReporter = (FoundSequenceReporter) sequenceReporter;
-                            foundSequenceReporter.serialize(DAS_XML_NAMESPACE, serializer, true);
+                            foundSequenceReporter.serialize(DAS_XML_NAMESPACE, serializer, true, dsnConfig.getRequestPlan().getSequenceLineWidth());
                         } else if (sequenceReporter instanceof ErrorSequenceReporter) {
                             ErrorSequenceReporter errorSequenceReporter = (ErrorSequenceReporter) sequenceReporter;
                             errorSequenceReporter.serialize(DAS_XML_NAMESPACE, serializer);
@@ -255,7 +264,8 @@ public class DasCommandManager {
      *         to provide additional functionality that is hidden (for simplicity) from the dsn developer.
      * @throws CoordinateErrorException     if the requested coordinates fall outside those of the requested segment id
      * @throws DataSourceException          to capture any error returned from the data source.
-     * @throws BadCommandArgumentsException if the arguments to the command are not recognised.
+     * @throws BadCommandArgumentsException if the arguments to the command are not recognised, or the request
+     *                                      is for more bases than the data source returns at once.
      * @throws BadReferenceObjectException  if the segments to the command are not recognised.
      */
     private Collection<SequenceReporter> getSequences(DataSourceConfiguration dsnConfig, String queryString, boolean unknownSegmentsHandled) throws DataSourceException, BadCommandArgumentsException, BadReferenceObjectException, CoordinateErrorException {
@@ -270,81 +280,120 @@ public class DasCommandManager {
         }
         // Split on the ; (delineates separate references in the query string)
         String[] referenceStrings = queryString.split(";");
+        List<SegmentQuery> segmentQueries = new ArrayList<SegmentQuery>(referenceStrings.length);
         for (String referenceString : referenceStrings) {
             Matcher referenceStringMatcher = SEGMENT_RANGE_PATTERN.matcher(referenceString);
             if (referenceStringMatcher.find()) {
-                SegmentQuery segmentQuery = new SegmentQuery(referenceStringMatcher);
-                DasSequence sequence;
-                try {
-                    if (segmentQuery.getStartCoordinate() == null) {
-                        // Request for a complete sequenceString
-                        sequence = refDsn.getSequence(segmentQuery.getSegmentId());
+                segmentQueries.add(new SegmentQuery(referenceStringMatcher));
+            }
+            // MyDas is being made less fussy about parameters that it does not recognise as new
+            // DAS features are added, e.g. to DAS 1.53E, hence any parameters that do not match are just ignored.
+        }
+        Long maxLength = dsnConfig.getRequestPlan().getMaxSequenceLength();
+        if (maxLength != null) {
+            // The ranges are checked before any sequence is fetched, the complete sequences once they are known.
+            long length = 0;
+            for (SegmentQuery segmentQuery : segmentQueries) {
+                if (segmentQuery.getStartCoordinate() != null && segmentQuery.getStopCoordinate() != null) {
+                    length += Math.max(0, segmentQuery.getStopCoordinate() - segmentQuery.getStartCoordinate() + 1);
+                }
+            }
+            checkSequenceLength(length, maxLength);
+        }
+        for (SegmentQuery segmentQuery : segmentQueries) {
+            DasSequence sequence;
+            try {
+                if (segmentQuery.getStartCoordinate() == null) {
+                    // Request for a complete sequenceString
+                    sequence = refDsn.getSequence(segmentQuery.getSegmentId());
+                } else {
+                    // Getting a restricted sequenceString - and the data source will handle the restriction.
+                    if (refDsn instanceof RangeHandlingReferenceDataSource) {
+                        sequence = ((RangeHandlingReferenceDataSource) refDsn).getSequence(
+                                segmentQuery.getSegmentId(),
+                                segmentQuery.getStartCoordinate(),
+                                segmentQuery.getStopCoordinate()
+                        );
+                    } else if (dsnConfig.getSequenceCache() != null) {
+                        // The range is served from the cached blocks of the sequence.
+                        sequence = dsnConfig.getSequenceCache().getSequence(
+                                segmentQuery.getSegmentId(),
+                                segmentQuery.getStartCoordinate(),
+                                segmentQuery.getStopCoordinate()
+                        );
                     } else {
-                        // Getting a restricted sequenceString - and the data source will handle the restriction.
-                        if (refDsn instanceof RangeHandlingReferenceDataSource) {
-                            sequence = ((RangeHandlingReferenceDataSource) refDsn).getSequence(
-                                    segmentQuery.getSegmentId(),
-                                    segmentQuery.getStartCoordinate(),
-                                    segmentQuery.getStopCoordinate()
-                            );
-                        } else {
-                            sequence = refDsn.getSequence(segmentQuery.getSegmentId());
-                        }
+                        sequence = refDsn.getSequence(segmentQuery.getSegmentId());
                     }
+                }
 
-                    //If segment query start < sequence start or  query stop > sequence stop an ERRORSEGMENT should be reported (since 1.6.1)
+                //If segment query start < sequence start or  query stop > sequence stop an ERRORSEGMENT should be reported (since 1.6.1)
+                if ((segmentQuery.getStartCoordinate() != null) && (segmentQuery.getStopCoordinate() != null)) {
+                    boolean error = false;
                     if ((segmentQuery.getStartCoordinate() != null) && (segmentQuery.getStopCoordinate() != null)) {
-                        boolean error = false;
-                        if ((segmentQuery.getStartCoordinate() != null) && (segmentQuery.getStopCoordinate() != null)) {
-                            if ((segmentQuery.getStartCoordinate() <= 0) || (segmentQuery.getStopCoordinate() <= 0)) {
-                                //0 or negative values in range are not allowed: ERROR
-                                error = true;
-                            } else if (segmentQuery.getStartCoordinate() > segmentQuery.getStopCoordinate()) {
-                                //start cannot be greater that stop: ERROR
-                                error = true;
-                            } else if (((sequence.getStartCoordinate() <= segmentQuery.getStartCoordinate()) &&
-                                    (segmentQuery.getStartCoordinate() <= sequence.getStopCoordinate()))
-                                    && (sequence.getStartCoordinate() <= segmentQuery.getStopCoordinate())) {
-                                //start is completely bounded, stop is greater or equal to real init: OK
-                                error = false;
-                            } else {
-                                error = true;
-                            }
-                        }
-                        if (error) {
-                            if (logger.isDebugEnabled()) {
-                                logger.debug("SEGMENT START & STOP OUT OF BOUNDS: " +
-                                        "query(" + segmentQuery.getStartCoordinate() + ", " + segmentQuery.getStopCoordinate() + ") " +
-                                        "vs bounds(" + sequence.getStartCoordinate() + ", " + sequence.getStopCoordinate() + ")");
-                            }
-                            throw new BadReferenceObjectException(segmentQuery.getSegmentId(), "start and stop out of segment bounds", new IndexOutOfBoundsException("start and stop out of segment bounds"));
+                        if ((segmentQuery.getStartCoordinate() <= 0) || (segmentQuery.getStopCoordinate() <= 0)) {
+                            //0 or negative values in range are not allowed: ERROR
+                            error = true;
+                        } else if (segmentQuery.getStartCoordinate() > segmentQuery.getStopCoordinate()) {
+                            //start cannot be greater that stop: ERROR
+                            error = true;
+                        } else if (((sequence.getStartCoordinate() <= segmentQuery.getStartCoordinate()) &&
+                                (segmentQuery.getStartCoordinate() <= sequence.getStopCoordinate()))
+                                && (sequence.getStartCoordinate() <= segmentQuery.getStopCoordinate())) {
+                            //start is completely bounded, stop is greater or equal to real init: OK
+                            error = false;
+                        } else {
+                            error = true;
                         }
                     }
-                    sequenceCollection.add(new FoundSequenceReporter(sequence, segmentQuery));
-                } catch (BadReferenceObjectException broe) {
-                    if (unknownSegmentsHandled) { //Sequences are handled only by reference servers, so report an ERRORSEGEMENT
-                        sequenceCollection.add(new ErrorSequenceReporter(segmentQuery));
-                    } else {
-                        throw broe;
-                    }
-                } catch (CoordinateErrorException cee) {
-                    if (unknownSegmentsHandled) {  //Sequences are handled only by reference servers, so report an ERRORSEGEMENT
-                        sequenceCollection.add(new ErrorSequenceReporter(segmentQuery));
-                    } else {
-                        throw cee;
+                    if (error) {
+                        if (logger.isDebugEnabled()) {
+                            logger.debug("SEGMENT START & STOP OUT OF BOUNDS: " +
+                                    "query(" + segmentQuery.getStartCoordinate() + ", " + segmentQuery.getStopCoordinate() + ") " +
+                                    "vs bounds(" + sequence.getStartCoordinate() + ", " + sequence.getStopCoordinate() + ")");
+                        }
+                        throw new BadReferenceObjectException(segmentQuery.getSegmentId(), "start and stop out of segment bounds", new IndexOutOfBoundsException("start and stop out of segment bounds"));
                     }
                 }
+                sequenceCollection.add(new FoundSequenceReporter(sequence, segmentQuery));
+            } catch (BadReferenceObjectException broe) {
+                if (unknownSegmentsHandled) { //Sequences are handled only by reference servers, so report an ERRORSEGEMENT
+                    sequenceCollection.add(new ErrorSequenceReporter(segmentQuery));
+                } else {
+                    throw broe;
+                }
+            } catch (CoordinateErrorException cee) {
+                if (unknownSegmentsHandled) {  //Sequences are handled only by reference servers, so report an ERRORSEGEMENT
+                    sequenceCollection.add(new ErrorSequenceReporter(segmentQuery));
+                } else {
+                    throw cee;
+                }
             }
-            // MyDas is being made less fussy about parameters that it does not recognise as new
-            // DAS features are added, e.g. to DAS 1.53E, hence any parameters that do not match are just ignored.
         }
         if (sequenceCollection.size() == 0) {
             // The query string did not include any segment references.
             throw new BadCommandArgumentsException("The query string did not include any segments, so no sequence can be returned.");
         }
+        if (maxLength != null) {
+            long length = 0;
+            for (SequenceReporter sequenceReporter : sequenceCollection) {
+                if (sequenceReporter instanceof FoundSequenceReporter) {
+                    length += ((FoundSequenceReporter) sequenceReporter).getSequenceLength();
+                }
+            }
+            checkSequenceLength(length, maxLength);
+        }
         return sequenceCollection;
     }
 
+    /**
+     * @throws BadCommandArgumentsException if the request is for more bases than the data source returns at once.
+     */
+    private static void checkSequenceLength(long length, long maxLength) throws BadCommandArgumentsException {
+        if (length > maxLength) {
+            throw new BadCommandArgumentsException("The request is for " + length + " bases, but this data source returns at most " + maxLength + " bases per request.");
+        }
+    }
+
     @SuppressWarnings("unchecked")
     private Collection<DasType> getAllTypes(DataSourceConfiguration dsnConfig) throws DataSourceException {
         Collection<DasType> allTypes = dsnConfig.getDataSource().getTypes();
@@ -393,8 +442,8 @@ public class DasCommandManager {
             serializer.setProperty(INDENTATION_PROPERTY, INDENTATION_PROPERTY_VALUE);
             serializer.startDocument(null, false);
             serializer.text("\n");
-            if (DATA_SOURCE_MANAGER.getServerConfiguration().getGlobalConfiguration().getTypesXSLT() != null) {
-                serializer.processingInstruction(DATA_SOURCE_MANAGER.getServerConfiguration().getGlobalConfiguration().getTypesXSLT());
+            if (dsnConfig.getRequestPlan().getTypesXSLT() != null) {
+                serializer.processingInstruction(dsnConfig.getRequestPlan().getTypesXSLT());
                 serializer.text("\n");
             }
 //			serializer.docdecl(" DASTYPES SYSTEM \"http://www.biodas.org/dtd/dastypes.dtd\"");
@@ -492,8 +541,8 @@ public class DasCommandManager {
             serializer.setProperty(INDENTATION_PROPERTY, INDENTATION_PROPERTY_VALUE);
             serializer.startDocument(null, false);
             serializer.text("\n");
-            if (DATA_SOURCE_MANAGER.getServerConfiguration().getGlobalConfiguration().getTypesXSLT() != null) {
-                serializer.processingInstruction(DATA_SOURCE_MANAGER.getServerConfiguration().getGlobalConfiguration().getTypesXSLT());
+            if (dsnConfig.getRequestPlan().getTypesXSLT() != null) {
+                serializer.processingInstruction(dsnConfig.getRequestPlan().getTypesXSLT());
                 serializer.text("\n");
             }
             serializer.docdecl(" DASTYPES SYSTEM \"http://www.biodas.org/dtd/dastypes.dtd\"");
@@ -505,7 +554,7 @@ public class DasCommandManager {
             serializer.attribute(DAS_XML_NAMESPACE, "href", this.buildRequestHref(request));
             for (SegmentReporter segmentReporter : typesReport.keySet()) {
                 if (segmentReporter instanceof UnknownSegmentReporter) {
-                    boolean referenceSource = dsnConfig.getDataSource() instanceof ReferenceDataSource;
+                    boolean referenceSource = dsnConfig.getRequestPlan().isReferenceSource();
                     ((UnknownSegmentReporter) segmentReporter).serialize(DAS_XML_NAMESPACE, serializer, referenceSource);
                 } else if (segmentReporter instanceof ErrorSegmentReporter) { //since 1.6.1
                     ((ErrorSegmentReporter) segmentReporter).serialize(DAS_XML_NAMESPACE, serializer);
@@ -633,6 +682,24 @@ public class DasCommandManager {
             throw new BadCommandArgumentsException("Expecting at least one reference in the query string, but found nothing.");
         }
 
+        // Serve the response from the cache if this data source allows it and the same request has been seen.
+        ResponseCache responseCache = DATA_SOURCE_MANAGER.getResponseCache();
+        String cacheKey = null;
+        if (responseCache != null && dsnConfig.getResponseCacheTimeToLive() > 0) {
+            cacheKey = (this.mydasServlet.compressResponse(request) ? "gzip:" : "plain:") + CachedFeaturesResponse.normalizeQuery(queryString);
+            byte[] cached = responseCache.get(dsnConfig.getId(), cacheKey);
+            if (cached != null) {
+                writeHeader(request, response, XDasStatus.STATUS_200_OK, true, dsnConfig.getCapabilities());
+                OutputStream out = getResponseStream(request, response);
+                try {
+                    CachedFeaturesResponse.write(out, cached, buildRequestHref(request), getResponseCharset(request, response));
+                } finally {
+                    out.close();
+                }
+                return;
+            }
+        }
+
         List<SegmentQuery> requestedSegments = new ArrayList<SegmentQuery>();
         /************************************************************************\
          * Parse the query string                                               *
@@ -720,8 +787,18 @@ public class DasCommandManager {
 
         Collection<DasAnnotatedSegment> merged = null;
 
+        // A streaming data source pushes the features of each segment while the response is written,
+        // as long as nothing in the request needs the complete result set first.
+        boolean streaming = dsnConfig.getRequestPlan().isStreamingSource()
+                && requestedSegments.size() > 0
+                && filter.getAdvanceQuery() == null
+                && !filter.containsFeatureIds()
+                && filter.getRows() == null;
+
         //If the advanced search is supported and the query attribute is included then the request will be done using it
-        if (dsnConfig.getCapabilities().contains("advanced-search") && filter.getAdvanceQuery() != null) {
+        if (streaming) {
+            // Nothing to query yet, the features are fetched by streamFeatures.
+        } else if (dsnConfig.getRequestPlan().has(DasCapability.ADVANCED_SEARCH) && filter.getAdvanceQuery() != null) {
 
             Map<String, PropertyType> properties = DATA_SOURCE_MANAGER.getServerConfiguration().getGlobalConfiguration().getGlobalParameters();
             Searcher searcher = new Searcher(properties.get("indexerpath").getValue(), dsnConfig.getName());
@@ -739,9 +816,9 @@ public class DasCommandManager {
             // No segments have been requested, so instead check for either feature_id or group_id filters.
             // (If neither of these are present, then throw a BadCommandArgumentsException)
 
-            if (dsnConfig.getCapabilities().contains("feature-by-id") && filter.containsFeatureIds()) {
+            if (dsnConfig.getRequestPlan().has(DasCapability.FEATURE_BY_ID) && filter.containsFeatureIds()) {
                 try {
-                    if (dsnConfig.getCapabilities().contains("rows-for-feature")) {
+                    if (dsnConfig.getRequestPlan().has(DasCapability.ROWS_FOR_FEATURE)) {
                         segmentsByFeatureId = dsnConfig.getDataSource().getFeatures(filter.getFeatureIds(), filter.getMaxbins(), filter.getRows());
                         filter.setPaginated(true);
                     } else throw new UnimplementedFeatureException("rows-for-feature capability no declared");
@@ -760,7 +837,7 @@ public class DasCommandManager {
             } else
                 throw new BadCommandArgumentsException("Bad command arguments to the features command: " + queryString);
             Integer totalFeatures = null;
-            if (!filter.isPaginated() && filter.getRows() != null && dsnConfig.getCapabilities().contains("rows-for-feature")) {
+            if (!filter.isPaginated() && filter.getRows() != null && dsnConfig.getRequestPlan().has(DasCapability.ROWS_FOR_FEATURE)) {
                 totalFeatures = 0;
                 Integer included = 0;
                 Collection<DasAnnotatedSegment> paged = new ArrayList<DasAnnotatedSegment>();
@@ -771,7 +848,10 @@ public class DasCommandManager {
                             paged.add(segmentAux);
                             included += segmentAux.getFeatures().size();
                         } else {
-                            Collection<DasFeature> featuresAux = ((ArrayList<DasFeature>) segmentAux.getFeatures()).subList(filter.getRows().getFrom() - 1 - included, filter.getRows().getTo() - included);
+                            List<DasFeature> segmentFeatures = (segmentAux.getFeatures() instanceof List)
+                                    ? (List<DasFeature>) segmentAux.getFeatures()
+                                    : new ArrayList<DasFeature>(segmentAux.getFeatures());
+                            Collection<DasFeature> featuresAux = segmentFeatures.subList(filter.getRows().getFrom() - 1 - included, filter.getRows().getTo() - included);
                             paged.add(new DasAnnotatedSegment(segmentAux.getSegmentId(), segmentAux.getStartCoordinate(), segmentAux.getStopCoordinate(), segmentAux.getVersion(), segmentAux.getSegmentLabel(), featuresAux, segmentAux.getFeatures().size()));
                         }
                 }
@@ -781,7 +861,9 @@ public class DasCommandManager {
             }
         }
         // OK - got a Collection of FoundFeaturesReporter objects, so get on with marshalling them out.
-        segmentReporterCollections = this.features2reporters(merged, requestedSegments);
+        if (!streaming) {
+            segmentReporterCollections = this.features2reporters(merged, requestedSegments);
+        }
 
         writeHeader(request, response, XDasStatus.STATUS_200_OK, true, dsnConfig.getCapabilities());
 
@@ -792,15 +874,22 @@ public class DasCommandManager {
         XmlSerializer serializer;
         serializer = PULL_PARSER_FACTORY.newSerializer();
         BufferedWriter out = null;
+        // When caching, the uncompressed response is copied as it is written, unless it is too large to be cached.
+        CopyingOutputStream copy = null;
         try {
-            boolean referenceSource = dsnConfig.getDataSource() instanceof ReferenceDataSource;
-            out = getResponseWriter(request, response);
+            boolean referenceSource = dsnConfig.getRequestPlan().isReferenceSource();
+            if (cacheKey == null) {
+                out = getResponseWriter(request, response);
+            } else {
+                copy = new CopyingOutputStream(getResponseStream(request, response), responseCache.getMaxBodySize());
+                out = new BufferedWriter(new OutputStreamWriter(copy, getResponseCharset(request, response)));
+            }
             serializer.setOutput(out);
             serializer.setProperty(INDENTATION_PROPERTY, INDENTATION_PROPERTY_VALUE);
             serializer.startDocument(null, false);
             serializer.text("\n");
-            if (DATA_SOURCE_MANAGER.getServerConfiguration().getGlobalConfiguration().getFeaturesXSLT() != null) {
-                serializer.processingInstruction(DATA_SOURCE_MANAGER.getServerConfiguration().getGlobalConfiguration().getFeaturesXSLT());
+            if (dsnConfig.getRequestPlan().getFeaturesXSLT() != null) {
+                serializer.processingInstruction(dsnConfig.getRequestPlan().getFeaturesXSLT());
                 serializer.text("\n");
             }
 //			serializer.docdecl(" DASGFF SYSTEM \"http://www.biodas.org/dtd/dasgff.dtd\"");
@@ -814,18 +903,11 @@ public class DasCommandManager {
             if (filter.isPaginated() && filter.getTotalFeatures() != null)
                 serializer.attribute(DAS_XML_NAMESPACE, "total", "" + filter.getTotalFeatures());
 
-            for (SegmentReporter segmentReporter : segmentReporterCollections) {
-                if (segmentReporter instanceof UnknownSegmentReporter) {
-                    ((UnknownSegmentReporter) segmentReporter).serialize(DAS_XML_NAMESPACE, serializer, referenceSource);
-                } else if (segmentReporter instanceof ErrorSegmentReporter) { //since 1.6.1
-                    ((ErrorSegmentReporter) segmentReporter).serialize(DAS_XML_NAMESPACE, serializer);
-                } else if (segmentReporter instanceof UnknownFeatureSegmentReporter) {
-                    ((UnknownFeatureSegmentReporter) segmentReporter).serialize(DAS_XML_NAMESPACE, serializer);
-                } else {
-                    //Overlaps are always allowed (since 1.6.1, according to DAS spec 1.6, draft 6)
-                    //featuresStrictlyEnclosed set to false means that overlaps are allowed
-                    ((FoundFeaturesReporter) segmentReporter).serialize(DAS_XML_NAMESPACE, serializer, filter, categorize, false, dsnConfig.isUseFeatureIdForFeatureLabel());
-                    //((FoundFeaturesReporter) segmentReporter).serialize(DAS_XML_NAMESPACE, serializer, filter, categorize, dsnConfig.isFeaturesStrictlyEnclosed(), dsnConfig.isUseFeatureIdForFeatureLabel());
+            if (streaming) {
+                streamFeatures(serializer, dsnConfig, requestedSegments, filter, categorize);
+            } else {
+                for (SegmentReporter segmentReporter : segmentReporterCollections) {
+                    serializeSegmentReporter(serializer, segmentReporter, referenceSource, filter, categorize, dsnConfig);
                 }
             }
             serializer.endTag(DAS_XML_NAMESPACE, "GFF");
@@ -837,6 +919,75 @@ public class DasCommandManager {
                 out.close();
             }
         }
+        byte[] body = (copy == null) ? null : copy.getCopy();
+        if (body != null) {
+            responseCache.put(dsnConfig.getId(), cacheKey, body, dsnConfig.getResponseCacheTimeToLive());
+        }
+    }
+
+    /**
+     * Writes one segment of the features command response, according to the kind of reporter.
+     */
+    private void serializeSegmentReporter(XmlSerializer serializer, SegmentReporter segmentReporter, boolean referenceSource,
+                                          DasFeatureRequestFilter filter, boolean categorize, DataSourceConfiguration dsnConfig)
+            throws IOException, DataSourceException {
+        if (segmentReporter instanceof UnknownSegmentReporter) {
+            ((UnknownSegmentReporter) segmentReporter).serialize(DAS_XML_NAMESPACE, serializer, referenceSource);
+        } else if (segmentReporter instanceof ErrorSegmentReporter) { //since 1.6.1
+            ((ErrorSegmentReporter) segmentReporter).serialize(DAS_XML_NAMESPACE, serializer);
+        } else if (segmentReporter instanceof UnknownFeatureSegmentReporter) {
+            ((UnknownFeatureSegmentReporter) segmentReporter).serialize(DAS_XML_NAMESPACE, serializer);
+        } else {
+            //Overlaps are always allowed (since 1.6.1, according to DAS spec 1.6, draft 6)
+            //featuresStrictlyEnclosed set to false means that overlaps are allowed
+            ((FoundFeaturesReporter) segmentReporter).serialize(DAS_XML_NAMESPACE, serializer, filter, categorize, false, dsnConfig.isUseFeatureIdForFeatureLabel());
+            //((FoundFeaturesReporter) segmentReporter).serialize(DAS_XML_NAMESPACE, serializer, filter, categorize, dsnConfig.isFeaturesStrictlyEnclosed(), dsnConfig.isUseFeatureIdForFeatureLabel());
+        }
+    }
+
+    /**
+     * Writes the segments of a features request served by a {@link StreamingAnnotationDataSource}.  Each feature
+     * is serialized as soon as the data source pushes it, so they are never held together in memory.
+     * Unknown segments and coordinates out of bounds are reported as in
+     * {@link #getFeatureCollection(DataSourceConfiguration, List, boolean, DasFeatureRequestFilter)}.
+     *
+     * @param serializer        where the GFF content is written.
+     * @param dsnConfig         holding configuration of the dsn and the data source object itself.
+     * @param requestedSegments the segments of the request.
+     * @param filter            to accept or reject each feature.
+     * @param categorize        indicates if the categories will be included in the type of the features.
+     * @throws IOException         If the XML writer have an error
+     * @throws DataSourceException to handle problems from the DSN.
+     */
+    private void streamFeatures(XmlSerializer serializer, DataSourceConfiguration dsnConfig, List<SegmentQuery> requestedSegments,
+                                DasFeatureRequestFilter filter, boolean categorize)
+            throws IOException, DataSourceException {
+        StreamingAnnotationDataSource dataSource = (StreamingAnnotationDataSource) dsnConfig.getDataSource();
+        boolean referenceSource = dataSource instanceof ReferenceDataSource;
+        for (SegmentQuery segmentQuery : requestedSegments) {
+            StreamingFeaturesReporter sink = new StreamingFeaturesReporter(DAS_XML_NAMESPACE, serializer, segmentQuery,
+                    filter, categorize, dsnConfig.isUseFeatureIdForFeatureLabel());
+            SegmentReporter failed = null;
+            try {
+                dataSource.getFeatures(segmentQuery.getSegmentId(), segmentQuery.getStartCoordinate(),
+                        segmentQuery.getStopCoordinate(), filter.getMaxbins(), sink);
+                if (!sink.isStarted()) {
+                    if (!sink.isOutOfBounds()) {
+                        logger.warn("The data source " + dsnConfig.getId() + " has not described the segment " + segmentQuery.getSegmentId());
+                    }
+                    failed = referenceSource ? new ErrorSegmentReporter(segmentQuery) : new UnknownSegmentReporter(segmentQuery);
+                }
+            } catch (BadReferenceObjectException broe) {
+                failed = referenceSource ? new ErrorSegmentReporter(segmentQuery) : new UnknownSegmentReporter(segmentQuery);
+            } catch (CoordinateErrorException cee) {
+                failed = new UnknownSegmentReporter(segmentQuery);
+            } finally {
+                sink.endSegment();
+            }
+            if (failed != null && !sink.isStarted()) {
+                serializeSegmentReporter(serializer, failed, referenceSource, filter, categorize, dsnConfig);
+            }
+        }
     }
 
     /**
@@ -917,139 +1068,210 @@ public class DasCommandManager {
                                                                  boolean unknownSegmentsHandled, DasFeatureRequestFilter filter//,String[] featureIds
     ) throws DataSourceException, BadReferenceObjectException, CoordinateErrorException {
 
+        boolean rowsRequested = filter != null && dsnConfig.getRequestPlan().has(DasCapability.ROWS_FOR_FEATURE) && filter.getRows() != null;
+        ExecutorService executor = DATA_SOURCE_MANAGER.getSegmentExecutor(dsnConfig);
+        // The rows offsets of a segment depend on the totals of the previous ones, so paginated requests stay sequential.
+        if (executor != null && !rowsRequested && requestedSegments.size() > 1) {
+            return getFeatureCollectionConcurrently(executor, dsnConfig, requestedSegments, unknownSegmentsHandled, filter);
+        }
         List<DasAnnotatedSegment> segments = new ArrayList<DasAnnotatedSegment>(requestedSegments.size());
-        AnnotationDataSource dataSource = dsnConfig.getDataSource();
-        Integer maxbins = null;
-        if (filter != null)
-            maxbins = filter.getMaxbins();
         Integer current = 0;
         for (SegmentQuery segmentQuery : requestedSegments) {
             try {
-                DasAnnotatedSegment annotatedSegment;
-
                 Range currentFeatureRange = null;
-                if (filter != null && dsnConfig.getCapabilities().contains("rows-for-feature") && filter.getRows() != null) {
+                if (rowsRequested) {
                     currentFeatureRange = new Range(filter.getRows().getFrom() - current, filter.getRows().getTo() - current);
                 }
-                if (segmentQuery.getStartCoordinate() == null) {
-                    // Easy request - just want all the features on the segment.
-                    try {
-                        if (currentFeatureRange == null)
-                            throw new UnimplementedFeatureException("if is null is because there is not necessity for pagination");
-                        //trying to use the user implementation of its pagination.
-                        annotatedSegment = dataSource.getFeatures(segmentQuery.getSegmentId(), maxbins, currentFeatureRange);
-                        filter.setPaginated(true);
-                    } catch (UnimplementedFeatureException ufe) {
-                        annotatedSegment = dataSource.getFeatures(segmentQuery.getSegmentId(), maxbins);
-                    }
-                } else {
-
-                    // Restricted to coordinates.
-                    if (dataSource instanceof RangeHandlingAnnotationDataSource) {
-                        try {
-                            if (currentFeatureRange == null)
-                                throw new UnimplementedFeatureException("if is null is because there is not necesity for pagination");
-                            //trying to use the user implementation of its pagination.
-                            annotatedSegment = ((RangeHandlingAnnotationDataSource) dataSource).getFeatures(
-                                    segmentQuery.getSegmentId(),
-                                    segmentQuery.getStartCoordinate(),
-                                    segmentQuery.getStopCoordinate(),
-                                    maxbins, currentFeatureRange);
-                            filter.setPaginated(true);
-                        } catch (UnimplementedFeatureException ufe) {
-                            annotatedSegment = ((RangeHandlingAnnotationDataSource) dataSource).getFeatures(
-                                    segmentQuery.getSegmentId(),
-                                    segmentQuery.getStartCoordinate(),
-                                    segmentQuery.getStopCoordinate(),
-                                    maxbins);
-                        }
-                    } else if (dataSource instanceof RangeHandlingReferenceDataSource) {
-                        try {
-                            if (currentFeatureRange == null)
-                                throw new UnimplementedFeatureException("if is null is because there is not necesity for pagination");
-                            //trying to use the user implementation of its pagination.
-                            annotatedSegment = ((RangeHandlingReferenceDataSource) dataSource).getFeatures(
-                                    segmentQuery.getSegmentId(),
-                                    segmentQuery.getStartCoordinate(),
-                                    segmentQuery.getStopCoordinate(),
-                                    maxbins, currentFeatureRange);
-                            filter.setPaginated(true);
-                        } catch (UnimplementedFeatureException ufe) {
-                            annotatedSegment = ((RangeHandlingReferenceDataSource) dataSource).getFeatures(
-                                    segmentQuery.getSegmentId(),
-                                    segmentQuery.getStartCoordinate(),
-                                    segmentQuery.getStopCoordinate(),
-                                    maxbins);
-                        }
-                    } else {
-                        try {
-                            if (currentFeatureRange == null)
-                                throw new UnimplementedFeatureException("if is null is because there is not necesity for pagination");
-                            //trying to use the user implementation of its pagination.
-                            annotatedSegment = dataSource.getFeatures(segmentQuery.getSegmentId(), maxbins, currentFeatureRange);
-                            filter.setPaginated(true);
-                        } catch (UnimplementedFeatureException ufe) {
-                            annotatedSegment = dataSource.getFeatures(segmentQuery.getSegmentId(), maxbins);
-                        }
-                    }
-                }
-
-                //If segment query start and stop are completely out of limits an ERRORSEGMENT should be reported (since 1.6.1)
-                boolean error = false;
-                if ((segmentQuery.getStartCoordinate() != null) && (segmentQuery.getStopCoordinate() != null)) {
-                    if ((segmentQuery.getStartCoordinate() <= 0) || (segmentQuery.getStopCoordinate() <= 0)) {
-                        //0 or negative values in range are not allowed: ERROR
-                        error = true;
-                    } else if (segmentQuery.getStartCoordinate() > segmentQuery.getStopCoordinate()) {
-                        //start cannot be greater that stop: ERROR
-                        error = true;
-                    } else if (((annotatedSegment.getStartCoordinate() <= segmentQuery.getStartCoordinate()) &&
-                            (segmentQuery.getStartCoordinate() <= annotatedSegment.getStopCoordinate()))
-                            && (annotatedSegment.getStartCoordinate() <= segmentQuery.getStopCoordinate())) {
-                        //start is completely bounded, stop is greater or equal to real init: OK
-                        error = false;
-                    } else {
-                        error = true;
-                    }
-                }
-                if (error) {
-                    if (logger.isDebugEnabled()) {
-                        logger.debug("SEGMENT START & STOP OUT OF BOUNDS: " +
-                                "query(" + segmentQuery.getStartCoordinate() + ", " + segmentQuery.getStopCoordinate() + ") " +
-                                "vs bounds(" + annotatedSegment.getStartCoordinate() + ", " + annotatedSegment.getStopCoordinate() + ")");
-                    }
-                    throw new BadReferenceObjectException(segmentQuery.getSegmentId(), "start and stop out of segment bounds", new IndexOutOfBoundsException("start and stop out of segment bounds"));
-                }
-
+                DasAnnotatedSegment annotatedSegment = getSegmentFeatures(dsnConfig, segmentQuery, filter, currentFeatureRange);
                 segments.add(annotatedSegment);
                 current += annotatedSegment.getTotalFeatures();
 //				segmentReporterLists.add(new FoundFeaturesReporter(annotatedSegment, segmentQuery));
             } catch (BadReferenceObjectException broe) {
-                if (unknownSegmentsHandled) { //For annotation limits out of bounds should report an UNKNOWNSEGMENT and for reference servers it should be ERRORSEGEMENT (since 1.6.1)
-                    if (dataSource instanceof ReferenceDataSource) { //reference servers are also annotation ones, ask for reference first
-                        segments.add(new ErrorSegment(segmentQuery));
+                segments.add(getMissingSegment(dsnConfig, segmentQuery, broe, unknownSegmentsHandled));
+            } catch (CoordinateErrorException cee) {
+                segments.add(getMissingSegment(dsnConfig, segmentQuery, cee, unknownSegmentsHandled));
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * Same as {@link #getFeatureCollection(DataSourceConfiguration, List, boolean, DasFeatureRequestFilter)} for a
+     * data source configured to fetch the segments of a request concurrently (without rows pagination).
+     * The segments are returned in the requested order and, as in the sequential version, the first failing segment
+     * (in the requested order) determines the exception thrown.
+     */
+    private Collection<DasAnnotatedSegment> getFeatureCollectionConcurrently(ExecutorService executor,
+                                                                             final DataSourceConfiguration dsnConfig,
+                                                                             List<SegmentQuery> requestedSegments,
+                                                                             boolean unknownSegmentsHandled,
+                                                                             final DasFeatureRequestFilter filter)
+            throws DataSourceException, BadReferenceObjectException, CoordinateErrorException {
+        List<Future<DasAnnotatedSegment>> futures = new ArrayList<Future<DasAnnotatedSegment>>(requestedSegments.size());
+        for (final SegmentQuery segmentQuery : requestedSegments) {
+            futures.add(executor.submit(new Callable<DasAnnotatedSegment>() {
+                public DasAnnotatedSegment call() throws Exception {
+                    return getSegmentFeatures(dsnConfig, segmentQuery, filter, null);
+                }
+            }));
+        }
+        List<DasAnnotatedSegment> segments = new ArrayList<DasAnnotatedSegment>(requestedSegments.size());
+        try {
+            for (int i = 0; i < futures.size(); i++) {
+                SegmentQuery segmentQuery = requestedSegments.get(i);
+                try {
+                    segments.add(futures.get(i).get());
+                } catch (ExecutionException ee) {
+                    Throwable cause = ee.getCause();
+                    if (cause instanceof BadReferenceObjectException) {
+                        segments.add(getMissingSegment(dsnConfig, segmentQuery, (BadReferenceObjectException) cause, unknownSegmentsHandled));
+                    } else if (cause instanceof CoordinateErrorException) {
+                        segments.add(getMissingSegment(dsnConfig, segmentQuery, (CoordinateErrorException) cause, unknownSegmentsHandled));
+                    } else if (cause instanceof DataSourceException) {
+                        throw (DataSourceException) cause;
+                    } else if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    } else if (cause instanceof Error) {
+                        throw (Error) cause;
                     } else {
-                        segments.add(new DasUnknownFeatureSegment(segmentQuery));
+                        throw new DataSourceException("Unexpected exception retrieving the segment " + segmentQuery.getSegmentId(), cause);
                     }
-                } else {
-                    throw broe;
-                }
-            } catch (CoordinateErrorException cee) {
-                if (unknownSegmentsHandled) {
-                    segments.add(new DasUnknownFeatureSegment(segmentQuery));
-                } else {
-                    throw cee;
                 }
             }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new DataSourceException("Interrupted while retrieving the requested segments", ie);
+        } finally {
+            // Only has an effect if a segment has failed, stopping the ones not needed anymore.
+            for (Future<DasAnnotatedSegment> future : futures) {
+                future.cancel(true);
+            }
         }
         return segments;
     }
 
+    /**
+     * Retrieves the features of a single requested segment from the data source, checking the requested
+     * coordinates against the bounds of the segment.
+     *
+     * @param dsnConfig           holding configuration of the dsn and the data source object itself.
+     * @param segmentQuery        the requested segment, with optional coordinates.
+     * @param filter              the filter of the request, may be null.
+     * @param currentFeatureRange the rows of this segment to retrieve, null if the request is not paginated.
+     * @return the annotated segment returned by the data source.
+     * @throws DataSourceException         to capture any error returned from the data source.
+     * @throws BadReferenceObjectException if the segment does not exist or the coordinates are out of its bounds.
+     * @throws CoordinateErrorException    if the data source rejects the requested coordinates.
+     */
+    private DasAnnotatedSegment getSegmentFeatures(DataSourceConfiguration dsnConfig, SegmentQuery segmentQuery,
+                                                   DasFeatureRequestFilter filter, Range currentFeatureRange)
+            throws DataSourceException, BadReferenceObjectException, CoordinateErrorException {
+        AnnotationDataSource dataSource = dsnConfig.getDataSource();
+        Integer maxbins = null;
+        if (filter != null)
+            maxbins = filter.getMaxbins();
+        DasAnnotatedSegment annotatedSegment;
+
+        if (segmentQuery.getStartCoordinate() == null) {
+            // Easy request - just want all the features on the segment.
+            try {
+                if (currentFeatureRange == null)
+                    throw new UnimplementedFeatureException("if is null is because there is not necessity for pagination");
+                //trying to use the user implementation of its pagination.
+                annotatedSegment = dataSource.getFeatures(segmentQuery.getSegmentId(), maxbins, currentFeatureRange);
+                filter.setPaginated(true);
+            } catch (UnimplementedFeatureException ufe) {
+                annotatedSegment = dataSource.getFeatures(segmentQuery.getSegmentId(), maxbins);
+            }
+        } else {
+
+            // Restricted to coordinates.
+            if (dataSource instanceof RangeHandlingAnnotationDataSource) {
+                try {
+                    if (currentFeatureRange == null)
+                        throw new UnimplementedFeatureException("if is null is because there is not necesity for pagination");
+                    //trying to use the user implementation of its pagination.
+                    annotatedSegment = ((RangeHandlingAnnotationDataSource) dataSource).getFeatures(
+                            segmentQuery.getSegmentId(),
+                            segmentQuery.getStartCoordinate(),
+                            segmentQuery.getStopCoordinate(),
+                            maxbins, currentFeatureRange);
+                    filter.setPaginated(true);
+                } catch (UnimplementedFeatureException ufe) {
+                    annotatedSegment = ((RangeHandlingAnnotationDataSource) dataSource).getFeatures(
+                            segmentQuery.getSegmentId(),
+                            segmentQuery.getStartCoordinate(),
+                            segmentQuery.getStopCoordinate(),
+                            maxbins);
+                }
+            } else if (dataSource instanceof RangeHandlingReferenceDataSource) {
+                try {
+                    if (currentFeatureRange == null)
+                        throw new UnimplementedFeatureException("if is null is because there is not necesity for pagination");
+                    //trying to use the user implementation of its pagination.
+                    annotatedSegment = ((RangeHandlingReferenceDataSource) dataSource).getFeatures(
+                            segmentQuery.getSegmentId(),
+                            segmentQuery.getStartCoordinate(),
+                            segmentQuery.getStopCoordinate(),
+                            maxbins, currentFeatureRange);
+                    filter.setPaginated(true);
+                } catch (UnimplementedFeatureException ufe) {
+                    annotatedSegment = ((RangeHandlingReferenceDataSource) dataSource).getFeatures(
+                            segmentQuery.getSegmentId(),
+                            segmentQuery.getStartCoordinate(),
+                            segmentQuery.getStopCoordinate(),
+                            maxbins);
+                }
+            } else {
+                try {
+                    if (currentFeatureRange == null)
+                        throw new UnimplementedFeatureException("if is null is because there is not necesity for pagination");
+                    //trying to use the user implementation of its pagination.
+                    annotatedSegment = dataSource.getFeatures(segmentQuery.getSegmentId(), maxbins, currentFeatureRange);
+                    filter.setPaginated(true);
+                } catch (UnimplementedFeatureException ufe) {
+                    annotatedSegment = dataSource.getFeatures(segmentQuery.getSegmentId(), maxbins);
+                }
+            }
+        }
+
+        //If segment query start and stop are completely out of limits an ERRORSEGMENT should be reported (since 1.6.1)
+        boolean error = segmentQuery.isOutOfBounds(annotatedSegment);
+        if (error) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("SEGMENT START & STOP OUT OF BOUNDS: " +
+                        "query(" + segmentQuery.getStartCoordinate() + ", " + segmentQuery.getStopCoordinate() + ") " +
+                        "vs bounds(" + annotatedSegment.getStartCoordinate() + ", " + annotatedSegment.getStopCoordinate() + ")");
+            }
+            throw new BadReferenceObjectException(segmentQuery.getSegmentId(), "start and stop out of segment bounds", new IndexOutOfBoundsException("start and stop out of segment bounds"));
+        }
+        return annotatedSegment;
+    }
+
+    /**
+     * Builds the segment reported in place of a segment that could not be retrieved: for annotation limits out of
+     * bounds an UNKNOWNSEGMENT, and for reference servers an ERRORSEGMENT (since 1.6.1).
+     *
+     * @param unknownSegmentsHandled if false the exception is rethrown instead.
+     */
+    private <E extends Exception> DasAnnotatedSegment getMissingSegment(DataSourceConfiguration dsnConfig, SegmentQuery segmentQuery,
+                                                                        E exception, boolean unknownSegmentsHandled) throws E, DataSourceException {
+        if (!unknownSegmentsHandled) {
+            throw exception;
+        }
+        if (exception instanceof BadReferenceObjectException && dsnConfig.getRequestPlan().isReferenceSource()) {
+            //reference servers are also annotation ones, ask for reference first
+            return new ErrorSegment(segmentQuery);
+        }
+        return new DasUnknownFeatureSegment(segmentQuery);
+    }
+
     private Collection<SegmentReporter> features2reporters(Collection<DasAnnotatedSegment> segments, Collection<SegmentQuery> segmentQueries) {
         List<SegmentReporter> segmentReporterLists = new ArrayList<SegmentReporter>(segments.size());
 
+        Map<String, SegmentQuery> segmentQueriesById = getSegmentQueriesById(segmentQueries);
         for (DasSegment segment : segments) {
-            SegmentQuery segmentQuery = getSegmentQueryById(segmentQueries, segment.getSegmentId());
+            SegmentQuery segmentQuery = segmentQueriesById.get(foldCase(segment.getSegmentId()));
             segmentReporterLists.add(segment2SegmentReporter(segment, segmentQuery));
         }
         return segmentReporterLists;
@@ -1076,12 +1298,31 @@ public class DasCommandManager {
 
     }
 
-    private SegmentQuery getSegmentQueryById(Collection<SegmentQuery> segmentQueries, String segmentId) {
+    /**
+     * @return the first segment query of each segment id, keyed on the case folded segment id.
+     */
+    private Map<String, SegmentQuery> getSegmentQueriesById(Collection<SegmentQuery> segmentQueries) {
+        Map<String, SegmentQuery> segmentQueriesById = new HashMap<String, SegmentQuery>();
         if (segmentQueries != null)
-            for (SegmentQuery segment : segmentQueries)
-                if (segment.getSegmentId().equalsIgnoreCase(segmentId))
-                    return segment;
-        return null;
+            for (SegmentQuery segment : segmentQueries) {
+                String key = foldCase(segment.getSegmentId());
+                if (!segmentQueriesById.containsKey(key))
+                    segmentQueriesById.put(key, segment);
+            }
+        return segmentQueriesById;
+    }
+
+    /**
+     * Folds the case of a segment id the way String.equalsIgnoreCase compares characters, so that two ids
+     * are equal ignoring case if and only if their folded ids are equal.
+     */
+    private static String foldCase(String segmentId) {
+        if (segmentId == null)
+            return null;
+        char[] folded = new char[segmentId.length()];
+        for (int i = 0; i < folded.length; i++)
+            folded[i] = Character.toLowerCase(Character.toUpperCase(segmentId.charAt(i)));
+        return new String(folded);
     }
 
     protected Collection<SegmentReporter> getFeatureCollectionOld(DataSourceConfiguration dsnConfig,
@@ -1135,23 +1376,7 @@ public class DasCommandManager {
 //								annotatedSegment.getFeatures().remove(feature);
 //						}
                 //If segment query start and stop are completely out of limits an ERRORSEGMENT should be reported (since 1.6.1)
-                boolean error = false;
-                if ((segmentQuery.getStartCoordinate() != null) && (segmentQuery.getStopCoordinate() != null)) {
-                    if ((segmentQuery.getStartCoordinate() <= 0) || (segmentQuery.getStopCoordinate() <= 0)) {
-                        //0 or negative values in range are not allowed: ERROR
-                        error = true;
-                    } else if (segmentQuery.getStartCoordinate() > segmentQuery.getStopCoordinate()) {
-                        //start cannot be greater that stop: ERROR
-                        error = true;
-                    } else if (((annotatedSegment.getStartCoordinate() <= segmentQuery.getStartCoordinate()) &&
-                            (segmentQuery.getStartCoordinate() <= annotatedSegment.getStopCoordinate()))
-                            && (annotatedSegment.getStartCoordinate() <= segmentQuery.getStopCoordinate())) {
-                        //start is completely bounded, stop is greater or equal to real init: OK
-                        error = false;
-                    } else {
-                        error = true;
-                    }
-                }
+                boolean error = segmentQuery.isOutOfBounds(annotatedSegment);
                 if (error) {
                     if (logger.isDebugEnabled()) {
                         logger.debug("SEGMENT START & STOP OUT OF BOUNDS: " +
@@ -1224,6 +1449,61 @@ public class DasCommandManager {
         }
     }
 
+    /**
+     * Returns the OutputStream for the response, wrapped in a GZIPOutputStream if the output should / can be
+     * gzipped.
+     *
+     * @param request  the HttpServletRequest, needed to check the capabilities of the
+     *                 client.
+     * @param response from which the OutputStream is obtained
+     * @return a stream that will either produce plain or gzipped output.
+     * @throws IOException due to a problem with initiating the output stream.
+     */
+    private OutputStream getResponseStream(HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        if (this.mydasServlet.compressResponse(request)) {
+            return new GZIPOutputStream(response.getOutputStream());
+        } else {
+            return response.getOutputStream();
+        }
+    }
+
+    /**
+     * @return the encoding of the text written by {@link #getResponseWriter(HttpServletRequest, HttpServletResponse)},
+     * for a response written to {@link #getResponseStream(HttpServletRequest, HttpServletResponse)} instead.
+     */
+    private String getResponseCharset(HttpServletRequest request, HttpServletResponse response) {
+        return this.mydasServlet.compressResponse(request)
+                ? Charset.defaultCharset().name()
+                : response.getCharacterEncoding();
+    }
+
+    /**
+     * Drops the cached responses of a data source after its content has been modified.
+     *
+     * @param dsnConfig the configuration of the modified data source.
+     */
+    private void invalidateResponseCache(DataSourceConfiguration dsnConfig) {
+        ResponseCache responseCache = DATA_SOURCE_MANAGER.getResponseCache();
+        if (responseCache != null && dsnConfig != null) {
+            responseCache.invalidate(dsnConfig.getId());
+        }
+    }
+
+    /**
+     * Called after a segment of a data source has been modified through writeback: drops the cached responses of the
+     * data source and records the segment to be indexed again.
+     *
+     * @param dsnConfig the configuration of the modified data source.
+     * @param segmentId the id of the modified segment, null if it is unknown.
+     */
+    private void contentModified(DataSourceConfiguration dsnConfig, String segmentId) {
+        invalidateResponseCache(dsnConfig);
+        if (dsnConfig.getRequestPlan().has(DasCapability.ADVANCED_SEARCH)) {
+            Indexer.segmentModified(dsnConfig.getId(), segmentId);
+        }
+    }
+
     /**
      * Writes the response header with the additional DAS Http headers.
      *
@@ -1445,8 +1725,8 @@ public class DasCommandManager {
                 serializer.setProperty(INDENTATION_PROPERTY, INDENTATION_PROPERTY_VALUE);
                 serializer.startDocument(null, false);
                 serializer.text("\n");
-                if (DATA_SOURCE_MANAGER.getServerConfiguration().getGlobalConfiguration().getEntryPointsXSLT() != null) {
-                    serializer.processingInstruction(DATA_SOURCE_MANAGER.getServerConfiguration().getGlobalConfiguration().getEntryPointsXSLT());
+                if (dsnConfig.getRequestPlan().getEntryPointsXSLT() != null) {
+                    serializer.processingInstruction(dsnConfig.getRequestPlan().getEntryPointsXSLT());
                     serializer.text("\n");
                 }
 //				serializer.docdecl(" DASEP SYSTEM \"http://www.biodas.org/dtd/dasep.dtd\"");
@@ -1550,7 +1830,7 @@ public class DasCommandManager {
             throws XmlPullParserException, IOException, DataSourceException, UnimplementedFeatureException, BadReferenceObjectException, BadCommandArgumentsException, CoordinateErrorException {
 
         // Is this a reference source?
-        if (dsnConfig.getDataSource() instanceof ReferenceDataSource) {
+        if (dsnConfig.getRequestPlan().isReferenceSource()) {
             // Fine - process command.
             //Always handle unknown segments (since 1.6.1)
             Collection<SequenceReporter> sequences = getSequences(dsnConfig, queryString, true);
@@ -1566,8 +1846,8 @@ public class DasCommandManager {
                 serializer.setProperty(INDENTATION_PROPERTY, INDENTATION_PROPERTY_VALUE);
                 serializer.startDocument(null, false);
                 serializer.text("\n");
-                if (DATA_SOURCE_MANAGER.getServerConfiguration().getGlobalConfiguration().getSequenceXSLT() != null) {
-                    serializer.processingInstruction(DATA_SOURCE_MANAGER.getServerConfiguration().getGlobalConfiguration().getSequenceXSLT());
+                if (dsnConfig.getRequestPlan().getSequenceXSLT() != null) {
+                    serializer.processingInstruction(dsnConfig.getRequestPlan().getSequenceXSLT());
                     serializer.text("\n");
                 }
 
@@ -1576,7 +1856,7 @@ public class DasCommandManager {
                 for (SequenceReporter sequenceReporter : sequences) {
                     if (sequenceReporter instanceof FoundSequenceReporter) {
                         FoundSequenceReporter foundSequenceReporter = (FoundSequenceReporter) sequenceReporter;
-                        foundSequenceReporter.serialize(DAS_XML_NAMESPACE, serializer);
+                        foundSequenceReporter.serialize(DAS_XML_NAMESPACE, serializer, false, dsnConfig.getRequestPlan().getSequenceLineWidth());
                     } else if (sequenceReporter instanceof ErrorSequenceReporter) {
                         ErrorSequenceReporter errorSequenceReporter = (ErrorSequenceReporter) sequenceReporter;
                         errorSequenceReporter.serialize(DAS_XML_NAMESPACE, serializer);
@@ -1661,7 +1941,7 @@ public class DasCommandManager {
                           HttpServletResponse response,
                           DataSourceConfiguration dsnConfig, String queryString) throws DataSourceException, UnimplementedFeatureException, BadCommandArgumentsException, XmlPullParserException, IOException, BadReferenceObjectException {
         // Is this a structure source?
-        if (dsnConfig.getDataSource() instanceof StructureDataSource) {
+        if (dsnConfig.getRequestPlan().isStructureSource()) {
             List<String> chains = null;
             List<String> models = new ArrayList<String>();
             String query = null;
@@ -1743,7 +2023,7 @@ public class DasCommandManager {
                           HttpServletResponse response,
                           DataSourceConfiguration dsnConfig, String queryString) throws DataSourceException, UnimplementedFeatureException, BadCommandArgumentsException, XmlPullParserException, IOException, BadReferenceObjectException {
         // Is this an alignment source?
-        if (dsnConfig.getDataSource() instanceof AlignmentDataSource) {
+        if (dsnConfig.getRequestPlan().isAlignmentSource()) {
             List<String> subjects = null;
             String query = null;
             String subjectcoordsys = null;
@@ -1847,7 +2127,7 @@ public class DasCommandManager {
             throws BadCommandException {
 
         try {
-            if (dataSourceConfig.getDataSource() instanceof CommandExtender) {
+            if (dataSourceConfig.getRequestPlan().isCommandExtender()) {
                 ((CommandExtender) dataSourceConfig.getDataSource()).executeOtherCommand(request, response, dataSourceConfig, command, queryString);
             } else {
                 throw new BadCommandException("The command is not recognised.");
@@ -1864,6 +2144,7 @@ public class DasCommandManager {
         DasAnnotatedSegment segment = parser.parse2MyDasModel(request.getParameter("_content"));
         try {
             DasAnnotatedSegment segmentRes = ((WritebackDataSource) dataSourceConfig.getDataSource()).create(segment);
+            contentModified(dataSourceConfig, segment.getSegmentId());
             writeHeader(request, response, XDasStatus.STATUS_200_OK, true, dataSourceConfig.getCapabilities());
             serialize(request, response, dataSourceConfig, segmentRes);
         } catch (DataSourceException e) {
@@ -1881,7 +2162,7 @@ public class DasCommandManager {
     }
 
     private void serialize(HttpServletRequest request, HttpServletResponse response, DataSourceConfiguration dataSourceConfig, DasAnnotatedSegment segment) throws IllegalArgumentException, IllegalStateException, DataSourceException, XmlPullParserException, IOException {
-        if (dataSourceConfig.getDataSource() instanceof WritebackDataSource) {
+        if (dataSourceConfig.getRequestPlan().isWritebackSource()) {
             if (PULL_PARSER_FACTORY == null) {
                 try {
                     PULL_PARSER_FACTORY = XmlPullParserFactory.newInstance(System.getProperty(XmlPullParserFactory.PROPERTY_NAME), null);
@@ -1904,8 +2185,8 @@ public class DasCommandManager {
                 serializer.setProperty(INDENTATION_PROPERTY, INDENTATION_PROPERTY_VALUE);
                 serializer.startDocument(null, false);
                 serializer.text("\n");
-                if (DATA_SOURCE_MANAGER.getServerConfiguration().getGlobalConfiguration().getFeaturesXSLT() != null) {
-                    serializer.processingInstruction(DATA_SOURCE_MANAGER.getServerConfiguration().getGlobalConfiguration().getFeaturesXSLT());
+                if (dataSourceConfig.getRequestPlan().getFeaturesXSLT() != null) {
+                    serializer.processingInstruction(dataSourceConfig.getRequestPlan().getFeaturesXSLT());
                     serializer.text("\n");
                 }
 
@@ -1950,6 +2231,7 @@ public class DasCommandManager {
         }
         try {
             DasAnnotatedSegment segmentRes = ((WritebackDataSource) dataSourceConfig.getDataSource()).delete(segmentid, featureid, parameters2);
+            contentModified(dataSourceConfig, segmentid);
             writeHeader(request, response, XDasStatus.STATUS_200_OK, true, dataSourceConfig.getCapabilities());
             serialize(request, response, dataSourceConfig, segmentRes);
         } catch (DataSourceException e) {
@@ -1982,6 +2264,7 @@ public class DasCommandManager {
         DasAnnotatedSegment segment = parser.parse2MyDasModel(content);
         try {
             DasAnnotatedSegment segmentRes = ((WritebackDataSource) dataSourceConfig.getDataSource()).update(segment);
+            contentModified(dataSourceConfig, segment.getSegmentId());
             writeHeader(request, response, XDasStatus.STATUS_200_OK, true, dataSourceConfig.getCapabilities());
             serialize(request, response, dataSourceConfig, segmentRes);
         } catch (DataSourceException e) {
@@ -2020,15 +2303,17 @@ public class DasCommandManager {
 
 
     /**
-     * Implements the source command.  Only reports sources that have initialized successfully.
+     * Implements the indexer command, which starts generating the indexes of the advanced-search data sources in the
+     * background and reports the progress of the indexing.  The indexes are generated again from scratch if the
+     * parameter rebuild=true is given; otherwise only the segments that have changed are indexed again.  With the
+     * parameter status, the progress of the last indexing is reported without starting a new one.
      *
      * @param request  to allow writing of the HTTP header
-     * @param response to which the HTTP header and DASDSN XML are written
+     * @param response to which the HTTP header and INDEXER XML are written
      * @throws XmlPullParserException in the event of an error being thrown when writing out the XML
      * @throws IOException            in the event of an error being thrown when writing out the XML
-     * @throws SearcherException      in case the indexes are not crated
      */
-    void indexerCommand(HttpServletRequest request, HttpServletResponse response) throws IOException, SearcherException {
+    void indexerCommand(HttpServletRequest request, HttpServletResponse response) throws XmlPullParserException, IOException {
         // Check the configuration has been loaded successfully
         if (DATA_SOURCE_MANAGER.getServerConfiguration() == null) {
             //No configuration, just report the default capabilities
@@ -2049,8 +2334,15 @@ public class DasCommandManager {
         }
         String keyphrase = request.getParameter("keyphrase");
         if (properties.get("keyphrase").getValue().equals(keyphrase)) {
-            Indexer indexer = new Indexer(properties.get("indexerpath").getValue(), DATA_SOURCE_MANAGER.getServerConfiguration());
-            indexer.generateIndexes();
+            IndexingJob job;
+            if (request.getParameter("status") != null) {
+                job = DATA_SOURCE_MANAGER.getIndexingJob();
+            } else {
+                job = DATA_SOURCE_MANAGER.startIndexing(properties.get("indexerpath").getValue(),
+                        "true".equalsIgnoreCase(request.getParameter("rebuild")));
+            }
+            writeHeader(request, response, XDasStatus.STATUS_200_OK, true, null);
+            writeIndexingStatus(request, response, job);
         } else {
             writeHeader(request, response, XDasStatus.STATUS_500_SERVER_ERROR, false, null);
             logger.error("The indexer keyphrase does not match with the one in the Config file");
@@ -2058,27 +2350,89 @@ public class DasCommandManager {
         }
     }
 
-    private Collection<DasAnnotatedSegment> merge(Collection<DasAnnotatedSegment> a, Collection<DasAnnotatedSegment> b, int type) throws DataSourceException {
+    /**
+     * Writes the progress of an indexing job as an INDEXER element.
+     *
+     * @param job the job, null if the indexes have not been generated since the server started.
+     */
+    private void writeIndexingStatus(HttpServletRequest request, HttpServletResponse response, IndexingJob job)
+            throws XmlPullParserException, IOException {
+        XmlSerializer serializer = PULL_PARSER_FACTORY.newSerializer();
+        BufferedWriter out = null;
+        try {
+            out = getResponseWriter(request, response);
+            serializer.setOutput(out);
+            serializer.setProperty(INDENTATION_PROPERTY, INDENTATION_PROPERTY_VALUE);
+            serializer.startDocument(null, false);
+            serializer.text("\n");
+            serializer.startTag(DAS_XML_NAMESPACE, "INDEXER");
+            if (job == null) {
+                serializer.attribute(DAS_XML_NAMESPACE, "state", "NONE");
+            } else {
+                Indexer indexer = job.getIndexer();
+                serializer.attribute(DAS_XML_NAMESPACE, "state", job.getState().toString());
+                serializer.attribute(DAS_XML_NAMESPACE, "rebuild", Boolean.toString(job.isRebuild()));
+                if (indexer.getCurrentDataSource() != null) {
+                    serializer.attribute(DAS_XML_NAMESPACE, "dsn", indexer.getCurrentDataSource());
+                }
+                serializer.attribute(DAS_XML_NAMESPACE, "entry_points", Integer.toString(indexer.getSegmentsTotal()));
+                serializer.attribute(DAS_XML_NAMESPACE, "indexed", Integer.toString(indexer.getSegmentsIndexed()));
+                serializer.attribute(DAS_XML_NAMESPACE, "skipped", Integer.toString(indexer.getSegmentsSkipped()));
+                serializer.attribute(DAS_XML_NAMESPACE, "removed", Integer.toString(indexer.getSegmentsRemoved()));
+                serializer.attribute(DAS_XML_NAMESPACE, "ignored", Integer.toString(indexer.getSegmentsIgnored()));
+                if (job.getStartTime() > 0) {
+                    long end = (job.getEndTime() > 0) ? job.getEndTime() : System.currentTimeMillis();
+                    serializer.attribute(DAS_XML_NAMESPACE, "elapsed_ms", Long.toString(end - job.getStartTime()));
+                }
+                if (job.getError() != null) {
+                    serializer.attribute(DAS_XML_NAMESPACE, "error", job.getError());
+                }
+            }
+            serializer.endTag(DAS_XML_NAMESPACE, "INDEXER");
+            serializer.flush();
+        } finally {
+            if (out != null) {
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * Merges two collections of segments, matching the segments on their id through a hash index of the
+     * second collection.  The merged segments are in the order of the first collection, followed for an OR
+     * merge by the segments of the second collection that are not in the first one.
+     */
+    static Collection<DasAnnotatedSegment> merge(Collection<DasAnnotatedSegment> a, Collection<DasAnnotatedSegment> b, int type) throws DataSourceException {
         Collection<DasAnnotatedSegment> merged = new ArrayList<DasAnnotatedSegment>();
+        Map<String, List<DasAnnotatedSegment>> segmentsOfB = new HashMap<String, List<DasAnnotatedSegment>>();
+        for (DasAnnotatedSegment segB : b) {
+            List<DasAnnotatedSegment> sameId = segmentsOfB.get(segB.getSegmentId());
+            if (sameId == null) {
+                sameId = new ArrayList<DasAnnotatedSegment>(1);
+                segmentsOfB.put(segB.getSegmentId(), sameId);
+            }
+            sameId.add(segB);
+        }
         switch (type) {
             case MERGE_TYPE_AND:
-                for (DasAnnotatedSegment segA : a)
-                    for (DasAnnotatedSegment segB : b)
-                        if (segA.getSegmentId().equals(segB.getSegmentId()))
+                for (DasAnnotatedSegment segA : a) {
+                    List<DasAnnotatedSegment> sameId = segmentsOfB.get(segA.getSegmentId());
+                    if (sameId != null)
+                        for (DasAnnotatedSegment segB : sameId)
                             merged.add(merge(segA, segB, type));
+                }
                 break;
             case MERGE_TYPE_OR:
-                Collection<String> idsAdded = new ArrayList<String>();
+                Set<String> idsAdded = new HashSet<String>();
                 for (DasAnnotatedSegment segA : a) {
-                    boolean added = false;
-                    for (DasAnnotatedSegment segB : b)
-                        if (segA.getSegmentId().equals(segB.getSegmentId())) {
-                            merged.add(merge(segA, segB, type));
-                            idsAdded.add(segA.getSegmentId());
-                            added = true;
-                        }
-                    if (!added)
+                    List<DasAnnotatedSegment> sameId = segmentsOfB.get(segA.getSegmentId());
+                    if (sameId == null) {
                         merged.add(segA);
+                    } else {
+                        for (DasAnnotatedSegment segB : sameId)
+                            merged.add(merge(segA, segB, type));
+                        idsAdded.add(segA.getSegmentId());
+                    }
                 }
                 for (DasAnnotatedSegment segB : b)
                     if (!idsAdded.contains(segB.getSegmentId()))
@@ -2088,7 +2442,7 @@ public class DasCommandManager {
         return merged;
     }
 
-    private DasAnnotatedSegment merge(DasAnnotatedSegment a, DasAnnotatedSegment b, int type) throws DataSourceException {
+    private static DasAnnotatedSegment merge(DasAnnotatedSegment a, DasAnnotatedSegment b, int type) throws DataSourceException {
         if (!a.getSegmentId().equals(b.getSegmentId()))
             throw new DataSourceException("trying to merge two segments with different id");
         DasAnnotatedSegment merged;
@@ -2102,26 +2456,30 @@ public class DasCommandManager {
             merged = new DasAnnotatedSegment(a.getSegmentId(), null, null, a.getVersion(), a.getSegmentLabel(), new ArrayList<DasFeature>());
         switch (type) {
             case MERGE_TYPE_AND:
-                for (DasFeature fa : a.getFeatures())
-                    for (DasFeature fb : b.getFeatures())
-                        if (fa.getFeatureId().equals(fb.getFeatureId()))
+                // A feature of a is kept once for each feature of b with the same id.
+                Map<String, Integer> idCountsOfB = new HashMap<String, Integer>();
+                for (DasFeature fb : b.getFeatures()) {
+                    Integer count = idCountsOfB.get(fb.getFeatureId());
+                    idCountsOfB.put(fb.getFeatureId(), (count == null) ? 1 : count + 1);
+                }
+                for (DasFeature fa : a.getFeatures()) {
+                    Integer count = idCountsOfB.get(fa.getFeatureId());
+                    if (count != null)
+                        for (int i = 0; i < count; i++)
                             merged.getFeatures().add(fa);
+                }
                 break;
             case MERGE_TYPE_OR:
-                for (DasFeature fa : a.getFeatures())
+                Set<String> idsOfA = new HashSet<String>();
+                for (DasFeature fa : a.getFeatures()) {
                     merged.getFeatures().add(fa);
+                    idsOfA.add(fa.getFeatureId());
+                }
                 for (DasFeature fb : b.getFeatures())
-                    if (!containsFeature(a.getFeatures(), fb))
+                    if (!idsOfA.contains(fb.getFeatureId()))
                         merged.getFeatures().add(fb);
                 break;
         }
         return merged;
     }
-
-    private boolean containsFeature(Collection<DasFeature> features, DasFeature feature) {
-        for (DasFeature f : features)
-            if (f.getFeatureId().equals(feature.getFeatureId()))
-                return true;
-        return false;
-    }
 }
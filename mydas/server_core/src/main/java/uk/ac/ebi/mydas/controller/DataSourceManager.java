@@ -24,15 +24,27 @@
 package uk.ac.ebi.mydas.controller;
 
 import org.apache.log4j.Logger;
+import uk.ac.ebi.mydas.cache.LRUResponseCache;
+import uk.ac.ebi.mydas.cache.ResponseCache;
 import uk.ac.ebi.mydas.configuration.ConfigurationManager;
 import uk.ac.ebi.mydas.configuration.DataSourceConfiguration;
+import uk.ac.ebi.mydas.configuration.PropertyType;
 import uk.ac.ebi.mydas.configuration.ServerConfiguration;
 import uk.ac.ebi.mydas.exceptions.ConfigurationException;
 import uk.ac.ebi.mydas.exceptions.DataSourceException;
+import uk.ac.ebi.mydas.search.IndexSearcherManager;
+import uk.ac.ebi.mydas.search.Indexer;
+import uk.ac.ebi.mydas.search.IndexingJob;
 
 import javax.servlet.ServletContext;
 import javax.xml.bind.JAXBException;
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Created Using IntelliJ IDEA.
@@ -53,6 +65,10 @@ public class DataSourceManager {
 
     private ServerConfiguration serverConfiguration;
     private ConfigurationManager configManager;
+    private ResponseCache responseCache;
+    private final Map<String, ExecutorService> segmentExecutors = new HashMap<String, ExecutorService>();
+    private ExecutorService indexingExecutor;
+    private IndexingJob indexingJob;
 
     protected DataSourceManager(ServletContext servletContext) {
         this.svCon = servletContext;
@@ -61,6 +77,7 @@ public class DataSourceManager {
     public void init(String configurationFileName) throws IOException, ConfigurationException {
         loadConfiguration(configurationFileName);
         initialiseDataSources();
+        initialiseResponseCache();
     }
 
     /**
@@ -106,8 +123,11 @@ public class DataSourceManager {
                 if (dsnConfig.loadDataSource()) {
                     dsnConfig.getDataSource().init(svCon, serverConfiguration.getGlobalConfiguration().getGlobalParameters(), dsnConfig);
                 }
+                dsnConfig.buildRequestPlan(serverConfiguration.getGlobalConfiguration());
                 if (!dsnConfig.isOK()) {
                     LOGGER.error("Data Source Failed to Load and Initialise: " + dsnConfig.toString());
+                } else if (dsnConfig.getSegmentThreads() > 1) {
+                    segmentExecutors.put(dsnConfig.getId(), createSegmentExecutor(dsnConfig));
                 }
                 // Register the
             } catch (DataSourceException e) {
@@ -117,6 +137,46 @@ public class DataSourceManager {
         }
     }
 
+    /**
+     * Creates the pool of threads used to retrieve concurrently the segments of a features request.
+     *
+     * @param dsnConfig the configuration of a data source with more than one segment thread.
+     * @return a fixed size pool of daemon threads.
+     */
+    private ExecutorService createSegmentExecutor(final DataSourceConfiguration dsnConfig) {
+        return Executors.newFixedThreadPool(dsnConfig.getSegmentThreads(), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "mydas-segments-" + dsnConfig.getName() + "-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Creates the cache of serialized responses, using the class given by the global property
+     * {@link ResponseCache#PROPERTY_CLASS} or {@link LRUResponseCache} by default.
+     *
+     * @throws uk.ac.ebi.mydas.exceptions.ConfigurationException
+     *          if the configured class cannot be instantiated.
+     */
+    private void initialiseResponseCache() throws ConfigurationException {
+        Map<String, PropertyType> globalParameters = serverConfiguration.getGlobalConfiguration().getGlobalParameters();
+        PropertyType cacheClass = globalParameters.get(ResponseCache.PROPERTY_CLASS);
+        if (cacheClass == null) {
+            responseCache = new LRUResponseCache();
+        } else {
+            try {
+                responseCache = (ResponseCache) Class.forName(cacheClass.getValue().trim()).newInstance();
+            } catch (Exception e) {
+                throw new ConfigurationException("Unable to instantiate the response cache " + cacheClass.getValue(), e);
+            }
+        }
+        responseCache.init(globalParameters);
+    }
+
     /**
      * Calls the destroy method on all of the registered
      * DataSources.
@@ -125,6 +185,18 @@ public class DataSourceManager {
      * on to the rest.
      */
     public void destroy() {
+        for (ExecutorService executor : segmentExecutors.values()) {
+            executor.shutdownNow();
+        }
+        segmentExecutors.clear();
+        synchronized (this) {
+            if (indexingExecutor != null) {
+                // The running job rolls back its uncommitted changes.
+                indexingExecutor.shutdownNow();
+                indexingExecutor = null;
+            }
+        }
+        IndexSearcherManager.closeAll();
         for (DataSourceConfiguration dataSourceConfiguration : serverConfiguration.getDataSourceConfigMap().values()) {
             try {
                 if (dataSourceConfiguration.isOK()) {
@@ -148,6 +220,57 @@ public class DataSourceManager {
         return serverConfiguration;
     }
 
+    /**
+     * Getter for the cache of serialized responses.
+     *
+     * @return the cache of serialized responses, null if the server has not been initialised.
+     */
+    public ResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    /**
+     * Returns the pool of threads used to retrieve concurrently the segments of a features request.
+     *
+     * @param dsnConfig the configuration of the data source.
+     * @return the pool of threads of the data source, or null if its segments are retrieved sequentially.
+     */
+    public ExecutorService getSegmentExecutor(DataSourceConfiguration dsnConfig) {
+        return segmentExecutors.get(dsnConfig.getId());
+    }
+
+    /**
+     * Starts generating the indexes of the advanced-search data sources in a background thread, unless
+     * they are already being generated.
+     *
+     * @param indexerPath the folder holding the indexes.
+     * @param rebuild     true to index all the segments again, instead of only the ones that have changed.
+     * @return the running job, which may have been started by a previous request.
+     */
+    public synchronized IndexingJob startIndexing(String indexerPath, boolean rebuild) {
+        if (indexingJob == null || indexingJob.isDone()) {
+            if (indexingExecutor == null) {
+                indexingExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "mydas-indexer");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+            }
+            indexingJob = new IndexingJob(new Indexer(indexerPath, serverConfiguration), rebuild);
+            indexingExecutor.execute(indexingJob);
+        }
+        return indexingJob;
+    }
+
+    /**
+     * @return the last indexing job started, null if there is none.
+     */
+    public synchronized IndexingJob getIndexingJob() {
+        return indexingJob;
+    }
+
     public ConfigurationManager getConfigManager() {
         return configManager;
     }
@@ -121,6 +121,23 @@ public class FoundFeaturesReporter implements SegmentReporter {
 	void serialize(String DAS_XML_NAMESPACE,XmlSerializer serializer,DasFeatureRequestFilter filter,boolean categorize,boolean isFeaturesStrictlyEnclosed, boolean isUseFeatureIdForFeatureLabel) 
 		throws IllegalArgumentException, IllegalStateException, IOException, DataSourceException {
 		
+		serializeStart(DAS_XML_NAMESPACE, serializer, true);
+		for (DasFeature feature : this.getFeatures()){
+			serializeFeature(DAS_XML_NAMESPACE, serializer, feature, filter, categorize, isUseFeatureIdForFeatureLabel);
+		}
+		serializer.endTag(DAS_XML_NAMESPACE, "SEGMENT");
+
+	}
+
+	/**
+	 * Opens the SEGMENT element and writes its attributes.  The caller is responsible for closing it.
+	 * @param DAS_XML_NAMESPACE XML namespace to link with the elements to create
+	 * @param serializer Object where the XML is been written 
+	 * @param includeTotal indicates if the total attribute should be written, i.e. if the total number of features is known
+	 * @throws IOException If the XML writer have an error
+	 */
+	void serializeStart(String DAS_XML_NAMESPACE,XmlSerializer serializer,boolean includeTotal)
+		throws IllegalArgumentException, IllegalStateException, IOException {
 		serializer.startTag(DAS_XML_NAMESPACE, "SEGMENT");
 		serializer.attribute(DAS_XML_NAMESPACE, "id", this.getSegmentId());
         //start and stop are an optional group
@@ -128,7 +145,7 @@ public class FoundFeaturesReporter implements SegmentReporter {
             serializer.attribute(DAS_XML_NAMESPACE, "start", Integer.toString(this.getStart()));
             serializer.attribute(DAS_XML_NAMESPACE, "stop", Integer.toString(this.getStop()));
         }
-        if (this.getTotalFeatures()!=null)	serializer.attribute(DAS_XML_NAMESPACE, "total", Integer.toString(this.getTotalFeatures()));
+        if (includeTotal && this.getTotalFeatures()!=null)	serializer.attribute(DAS_XML_NAMESPACE, "total", Integer.toString(this.getTotalFeatures()));
 		
 		if (this.getType() != null && this.getType().length() > 0){
 			serializer.attribute(DAS_XML_NAMESPACE, "type", this.getType());
@@ -140,18 +157,29 @@ public class FoundFeaturesReporter implements SegmentReporter {
 		if (this.getSegmentLabel() != null && this.getSegmentLabel().length() > 0){
 			serializer.attribute(DAS_XML_NAMESPACE, "label", this.getSegmentLabel());
 		}
-		for (DasFeature feature : this.getFeatures()){
-            boolean hasSuperParts=false;
-            boolean hasSubParts=false;
-            if (feature instanceof DasComponentFeature){
-                DasComponentFeature refFeature = (DasComponentFeature)(DasFeature)feature;
-                hasSuperParts=refFeature.hasSuperParts();
-                hasSubParts=refFeature.hasSubParts();
-            }
-			(new DasFeatureE(feature)).serialize(DAS_XML_NAMESPACE, serializer, filter, categorize, isUseFeatureIdForFeatureLabel,feature instanceof DasComponentFeature,hasSuperParts,hasSubParts);
-		}
-		serializer.endTag(DAS_XML_NAMESPACE, "SEGMENT");
+	}
 
+	/**
+	 * Generates the piece of XML describing a single feature of the segment
+	 * @param DAS_XML_NAMESPACE XML namespace to link with the elements to create
+	 * @param serializer Object where the XML is been written 
+	 * @param feature the feature to write
+	 * @param filter Set of the query specifications to accept/reject the feature
+	 * @param categorize indicates if the categories will be included in the type of the feature
+	 * @param isUseFeatureIdForFeatureLabel indicates if a feature should use the Id as a label in case that a label is null
+	 * @throws IOException If the XML writer have an error
+	 * @throws DataSourceException indicate that there is something wrong with the data source
+	 */
+	static void serializeFeature(String DAS_XML_NAMESPACE,XmlSerializer serializer,DasFeature feature,DasFeatureRequestFilter filter,boolean categorize,boolean isUseFeatureIdForFeatureLabel)
+		throws IllegalArgumentException, IllegalStateException, IOException, DataSourceException {
+        boolean hasSuperParts=false;
+        boolean hasSubParts=false;
+        if (feature instanceof DasComponentFeature){
+            DasComponentFeature refFeature = (DasComponentFeature)(DasFeature)feature;
+            hasSuperParts=refFeature.hasSuperParts();
+            hasSubParts=refFeature.hasSubParts();
+        }
+		DasFeatureSerializer.serialize(DAS_XML_NAMESPACE, serializer, feature, filter, categorize, isUseFeatureIdForFeatureLabel,feature instanceof DasComponentFeature,hasSuperParts,hasSubParts);
 	}
 
 }
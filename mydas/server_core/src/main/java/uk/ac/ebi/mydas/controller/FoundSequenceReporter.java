@@ -27,6 +27,7 @@ import java.io.IOException;
 
 import uk.ac.ebi.mydas.exceptions.CoordinateErrorException;
 import uk.ac.ebi.mydas.exceptions.DataSourceException;
+import uk.ac.ebi.mydas.model.DasRestrictedSequence;
 import uk.ac.ebi.mydas.model.DasSequence;
 
 import org.xmlpull.v1.XmlSerializer;
@@ -40,6 +41,11 @@ import org.xmlpull.v1.XmlSerializer;
  */
 class FoundSequenceReporter implements SequenceReporter{
 
+    /**
+     * The number of bases copied from the sequence and written at a time.
+     */
+    private static final int BLOCK_SIZE = 8192;
+
     private final boolean restricted;
 
     private int requestedStart;
@@ -118,7 +124,7 @@ class FoundSequenceReporter implements SequenceReporter{
      * @throws CoordinateErrorException indicating that a request for sequenceString of features over a particular range of coordinates is out of range of the segment itself
      */
     void serialize(String DAS_XML_NAMESPACE,XmlSerializer serializer) throws java.io.IOException, IllegalArgumentException, IllegalStateException, CoordinateErrorException{
-    	this.serialize(DAS_XML_NAMESPACE, serializer,false);
+    	this.serialize(DAS_XML_NAMESPACE, serializer,false,0);
     }
     
     /**
@@ -127,12 +133,13 @@ class FoundSequenceReporter implements SequenceReporter{
      * @param DAS_XML_NAMESPACE XML namespace to link with the elements to create
      * @param serializer Object where the XML is been written
      * @param dna indicates if should have the format of the command dna(true) or the format of the sequence command(false)
+     * @param lineWidth the number of bases written per line, or 0 to write the sequence on a single line
 	 * @throws IOException If the XML writer have an error
 	 * @throws IllegalStateException a method has been invoked at an illegal or inappropriate time.
 	 * @throws IllegalArgumentException indicate that a method has been passed an illegal or inappropriate argument.
      * @throws CoordinateErrorException indicating that a request for sequenceString of features over a particular range of coordinates is out of range of the segment itself
      */
-    void serialize(String DAS_XML_NAMESPACE,XmlSerializer serializer,boolean dna) 
+    void serialize(String DAS_XML_NAMESPACE,XmlSerializer serializer,boolean dna,int lineWidth) 
     	throws java.io.IOException, IllegalArgumentException, IllegalStateException, CoordinateErrorException{
         serializer.startTag(DAS_XML_NAMESPACE, "SEQUENCE");
         serializer.attribute(DAS_XML_NAMESPACE, "id", this.getSegmentName());
@@ -145,10 +152,10 @@ class FoundSequenceReporter implements SequenceReporter{
 
         if (dna){
         	serializer.startTag(DAS_XML_NAMESPACE, "DNA");
-        	serializer.attribute(DAS_XML_NAMESPACE, "length", Integer.toString(this.getSequenceString().length()));
+        	serializer.attribute(DAS_XML_NAMESPACE, "length", Integer.toString(this.getSequenceLength()));
         } 
         
-        serializer.text(this.getSequenceString());
+        this.serializeSequence(serializer, lineWidth);
 
         if (dna){
         	serializer.endTag(DAS_XML_NAMESPACE, "DNA");
@@ -157,4 +164,52 @@ class FoundSequenceReporter implements SequenceReporter{
         
     	
     }
+
+    /**
+     * @return the number of bases written for this sequence.
+     */
+    int getSequenceLength(){
+        return Math.max(0, this.getSequenceStop() - this.getSequenceStart() + 1);
+    }
+
+    /**
+     * A DasRestrictedSequence only holds the range restricted by the data source, which is written
+     * as a whole, otherwise the requested range of the sequence is written.
+     */
+    private int getSequenceStart(){
+        return (sequence instanceof DasRestrictedSequence) ? sequence.getStartCoordinate() : this.getStart();
+    }
+
+    private int getSequenceStop(){
+        return (sequence instanceof DasRestrictedSequence) ? sequence.getStopCoordinate() : this.getStop();
+    }
+
+    /**
+     * Writes the sequence a block at a time, straight from the DasSequence, so that a long
+     * sequence is never copied into a String.
+     * @param serializer Object where the XML is been written
+     * @param lineWidth the number of bases written per line, or 0 to write the sequence on a single line
+     * @throws IOException If the XML writer have an error
+     * @throws CoordinateErrorException if the requested range is out of the segment
+     */
+    private void serializeSequence(XmlSerializer serializer, int lineWidth) throws IOException, CoordinateErrorException {
+        int stop = this.getSequenceStop();
+        int blockSize = (lineWidth > 0) ? lineWidth * Math.max(1, BLOCK_SIZE / lineWidth) : BLOCK_SIZE;
+        char[] block = new char[Math.min(blockSize, Math.max(1, this.getSequenceLength()))];
+        for (int start = this.getSequenceStart(); start <= stop; start += block.length){
+            int length = Math.min(stop, start + block.length - 1) - start + 1;
+            sequence.getChars(start, start + length - 1, block, 0);
+            if (lineWidth > 0){
+                for (int line = 0; line < length; line += lineWidth){
+                    serializer.text("\n");
+                    serializer.text(block, line, Math.min(lineWidth, length - line));
+                }
+            } else {
+                serializer.text(block, 0, length);
+            }
+        }
+        if (lineWidth > 0){
+            serializer.text("\n");
+        }
+    }
 }
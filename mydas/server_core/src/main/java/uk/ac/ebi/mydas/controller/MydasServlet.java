@@ -471,10 +471,6 @@ public class MydasServlet extends HttpServlet {
             logger.error("WritebackException thrown", e);
             writeHeader(request, response, XDasStatus.STATUS_500_SERVER_ERROR, false, null);
             reportError(XDasStatus.STATUS_500_SERVER_ERROR, "Writeback error creating a feature.", request, response);
-        } catch (SearcherException e) {
-            logger.error("Searching/indexing thrown", e);
-            writeHeader(request, response, XDasStatus.STATUS_500_SERVER_ERROR, false, null);
-            reportError(XDasStatus.STATUS_500_SERVER_ERROR, "Problem executing one of the Searching functions.", request, response);
         }
 
     }
@@ -23,6 +23,8 @@
 
 package uk.ac.ebi.mydas.controller;
 
+import uk.ac.ebi.mydas.model.DasSegment;
+
 import java.util.regex.Matcher;
 
 /**
@@ -70,6 +72,29 @@ public class SegmentQuery {
         return stopCoordinate;
     }
 
+    /**
+     * Checks the requested coordinates against the bounds of the segment found by the data source.
+     * If they are completely out of bounds an ERRORSEGMENT should be reported (since 1.6.1).
+     * @param segment the segment returned by the data source for this query.
+     * @return true if the query includes coordinates that are invalid or out of the bounds of the segment.
+     */
+    boolean isOutOfBounds(DasSegment segment) {
+        if ((startCoordinate == null) || (stopCoordinate == null)) {
+            return false;
+        }
+        if ((startCoordinate <= 0) || (stopCoordinate <= 0)) {
+            //0 or negative values in range are not allowed: ERROR
+            return true;
+        } else if (startCoordinate > stopCoordinate) {
+            //start cannot be greater that stop: ERROR
+            return true;
+        }
+        //start is completely bounded, stop is greater or equal to real init: OK
+        return !((segment.getStartCoordinate() <= startCoordinate)
+                && (startCoordinate <= segment.getStopCoordinate())
+                && (segment.getStartCoordinate() <= stopCoordinate));
+    }
+
     public String toString(){
         StringBuffer buf = new StringBuffer(segmentId);
         if (startCoordinate != null){
@@ -0,0 +1,102 @@
+package uk.ac.ebi.mydas.controller;
+
+import org.apache.log4j.Logger;
+import org.xmlpull.v1.XmlSerializer;
+import uk.ac.ebi.mydas.datasource.FeatureSink;
+import uk.ac.ebi.mydas.exceptions.DataSourceException;
+import uk.ac.ebi.mydas.model.DasAnnotatedSegment;
+import uk.ac.ebi.mydas.model.DasFeature;
+
+import java.io.IOException;
+
+/**
+ * {@link FeatureSink} used by the features command for a
+ * {@link uk.ac.ebi.mydas.datasource.StreamingAnnotationDataSource}: writes the SEGMENT element of one requested
+ * segment, and each feature as soon as it is pushed, so no feature is kept after it has been serialized.
+ */
+class StreamingFeaturesReporter implements FeatureSink {
+
+    private static final Logger logger = Logger.getLogger(StreamingFeaturesReporter.class);
+
+    private final String namespace;
+    private final XmlSerializer serializer;
+    private final SegmentQuery segmentQuery;
+    private final DasFeatureRequestFilter filter;
+    private final boolean categorize;
+    private final boolean useFeatureIdForFeatureLabel;
+
+    private boolean started = false;
+    private boolean outOfBounds = false;
+
+    StreamingFeaturesReporter(String namespace, XmlSerializer serializer, SegmentQuery segmentQuery,
+                              DasFeatureRequestFilter filter, boolean categorize, boolean useFeatureIdForFeatureLabel) {
+        this.namespace = namespace;
+        this.serializer = serializer;
+        this.segmentQuery = segmentQuery;
+        this.filter = filter;
+        this.categorize = categorize;
+        this.useFeatureIdForFeatureLabel = useFeatureIdForFeatureLabel;
+    }
+
+    public boolean startSegment(DasAnnotatedSegment segment) throws DataSourceException {
+        if (started || outOfBounds) {
+            throw new DataSourceException("The segment " + segmentQuery.getSegmentId() + " has already been started.");
+        }
+        if (segmentQuery.isOutOfBounds(segment)) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("SEGMENT START & STOP OUT OF BOUNDS: " +
+                        "query(" + segmentQuery.getStartCoordinate() + ", " + segmentQuery.getStopCoordinate() + ") " +
+                        "vs bounds(" + segment.getStartCoordinate() + ", " + segment.getStopCoordinate() + ")");
+            }
+            outOfBounds = true;
+            return false;
+        }
+        try {
+            // The total number of features is not known until the end of the stream, so it is not reported.
+            new FoundFeaturesReporter(segment, segmentQuery).serializeStart(namespace, serializer, false);
+        } catch (IOException e) {
+            throw new DataSourceException("Unable to write the segment " + segmentQuery.getSegmentId(), e);
+        }
+        started = true;
+        return true;
+    }
+
+    public void addFeature(DasFeature feature) throws DataSourceException {
+        if (!started) {
+            if (outOfBounds) {
+                // The data source has ignored the return value of startSegment.
+                return;
+            }
+            throw new DataSourceException("A feature has been pushed before the segment " + segmentQuery.getSegmentId() + " was started.");
+        }
+        try {
+            FoundFeaturesReporter.serializeFeature(namespace, serializer, feature, filter, categorize, useFeatureIdForFeatureLabel);
+        } catch (IOException e) {
+            throw new DataSourceException("Unable to write the feature " + feature.getFeatureId(), e);
+        }
+    }
+
+    /**
+     * Closes the SEGMENT element, if it has been opened.
+     * @throws IOException If the XML writer have an error
+     */
+    void endSegment() throws IOException {
+        if (started) {
+            serializer.endTag(namespace, "SEGMENT");
+        }
+    }
+
+    /**
+     * @return true if the data source has described the segment, and its features have been accepted.
+     */
+    boolean isStarted() {
+        return started;
+    }
+
+    /**
+     * @return true if the requested coordinates are out of the bounds of the segment described by the data source.
+     */
+    boolean isOutOfBounds() {
+        return outOfBounds;
+    }
+}
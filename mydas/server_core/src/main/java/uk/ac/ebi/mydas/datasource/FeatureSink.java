@@ -0,0 +1,34 @@
+package uk.ac.ebi.mydas.datasource;
+
+import uk.ac.ebi.mydas.exceptions.DataSourceException;
+import uk.ac.ebi.mydas.model.DasAnnotatedSegment;
+import uk.ac.ebi.mydas.model.DasFeature;
+
+/**
+ * Receives the features pushed by a {@link StreamingAnnotationDataSource}.  The implementation provided
+ * by MyDas writes each feature to the response as soon as it is received, so the data source should
+ * not keep references to the features it has already pushed.
+ */
+public interface FeatureSink {
+
+    /**
+     * Describes the segment whose features are about to be pushed.  Must be called once, before any call
+     * to {@link #addFeature(uk.ac.ebi.mydas.model.DasFeature)}.
+     *
+     * @param segment describes the annotated segment, limited to the information required for the
+     *                /DASGFF/GFF/SEGMENT element.  Its collection of features is ignored (it may be empty).
+     * @return false if the features of this segment are not wanted (e.g. the requested coordinates are
+     *         out of its bounds), in which case the data source should return without pushing any of them.
+     * @throws DataSourceException if the segment cannot be written to the response.
+     */
+    public boolean startSegment(DasAnnotatedSegment segment) throws DataSourceException;
+
+    /**
+     * Receives one feature of the segment described by the last call to
+     * {@link #startSegment(uk.ac.ebi.mydas.model.DasAnnotatedSegment)}.
+     *
+     * @param feature a feature of the segment.
+     * @throws DataSourceException if the feature cannot be written to the response.
+     */
+    public void addFeature(DasFeature feature) throws DataSourceException;
+}
@@ -0,0 +1,47 @@
+package uk.ac.ebi.mydas.datasource;
+
+import uk.ac.ebi.mydas.exceptions.BadReferenceObjectException;
+import uk.ac.ebi.mydas.exceptions.CoordinateErrorException;
+import uk.ac.ebi.mydas.exceptions.DataSourceException;
+
+/**
+ * If you implement this interface, the features command will not ask your data source for a complete
+ * {@link uk.ac.ebi.mydas.model.DasAnnotatedSegment} for each requested segment.  Instead the features are
+ * pushed one by one to a {@link FeatureSink}, which writes them to the response as they arrive, so that the
+ * memory needed by a request does not depend on the number of features it returns.
+ *
+ * This is useful for data sources with very large segments (e.g. genome wide requests).  The streaming
+ * method is used for requests by segment; requests using feature_id, query or rows still use the methods
+ * of {@link AnnotationDataSource}, as they need the complete result before writing the response.
+ *
+ * Note that once the features start to be written the HTTP header has already been sent, so a
+ * DataSourceException thrown in the middle of the stream results in a truncated document rather than
+ * an X-DAS-Status error.
+ */
+public interface StreamingAnnotationDataSource extends AnnotationDataSource {
+
+    /**
+     * Pushes the features of a segment to the sink: first a description of the segment through
+     * {@link FeatureSink#startSegment(uk.ac.ebi.mydas.model.DasAnnotatedSegment)} and then every feature through
+     * {@link FeatureSink#addFeature(uk.ac.ebi.mydas.model.DasFeature)}.
+     *
+     * Like a {@link RangeHandlingAnnotationDataSource}, when start and stop are given it is the responsibility of
+     * the data source to push only the features overlapping them (plus any non-positional ones).
+     *
+     * @param segmentId being the reference of the segment requested in the DAS request (not including
+     *                  start and stop coordinates)
+     * @param start     the requested start coordinate, null if the whole segment has been requested.
+     * @param stop      the requested stop coordinate, null if the whole segment has been requested.
+     * @param maxbins   (optional) the available rendering space of the client. It may be null.
+     * @param sink      to which the segment and its features are pushed.
+     * @throws BadReferenceObjectException should be thrown, before calling the sink, if the segment
+     *                                     requested does not exist in this data source.
+     * @throws CoordinateErrorException    should be thrown, before calling the sink, if the requested
+     *                                     coordinates fall outside the bounds of the requested segment.
+     * @throws DataSourceException         to wrap any other types of exception that may be
+     *                                     generated by your data source, such as SQLExceptions or IOExceptions,
+     *                                     and to propagate the exceptions thrown by the sink.
+     */
+    public void getFeatures(String segmentId, Integer start, Integer stop, Integer maxbins, FeatureSink sink)
+            throws BadReferenceObjectException, CoordinateErrorException, DataSourceException;
+}
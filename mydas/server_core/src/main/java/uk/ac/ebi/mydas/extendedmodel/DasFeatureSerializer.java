@@ -0,0 +1,234 @@
+package uk.ac.ebi.mydas.extendedmodel;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.Map;
+
+import org.xmlpull.v1.XmlSerializer;
+
+import uk.ac.ebi.mydas.controller.DasFeatureRequestFilter;
+import uk.ac.ebi.mydas.exceptions.DataSourceException;
+import uk.ac.ebi.mydas.model.DasFeature;
+import uk.ac.ebi.mydas.model.DasFeatureOrientation;
+import uk.ac.ebi.mydas.model.DasMethod;
+import uk.ac.ebi.mydas.model.DasPhase;
+import uk.ac.ebi.mydas.model.DasTarget;
+import uk.ac.ebi.mydas.model.DasType;
+
+/**
+ * Writes the FEATURE element of a {@link DasFeature} directly from the model.
+ * Produces the same XML as {@link DasFeatureE#serialize(String, XmlSerializer, DasFeatureRequestFilter, boolean, boolean, boolean, boolean, boolean)},
+ * without copying the feature into a DasFeatureE nor wrapping its type, method, links and targets, and writing
+ * the coordinates through a per thread character buffer instead of creating a String for each number.
+ * Used by the features command, where the number of serialized features can be very large.
+ */
+public final class DasFeatureSerializer {
+
+	/**
+	 * Large enough for any int, and for a double with an integral value below 10^15 followed by ".0".
+	 */
+	private static final int BUFFER_SIZE = 24;
+
+	private static final ThreadLocal<char[]> BUFFER = new ThreadLocal<char[]>() {
+		protected char[] initialValue() {
+			return new char[BUFFER_SIZE];
+		}
+	};
+
+	/**
+	 * Values of a score up to which the integral scores are formatted without creating a String.
+	 * Double.toString switches to the computerized scientific notation from 10^7.
+	 */
+	private static final double MAX_PLAIN_SCORE = 1.0E7;
+
+	private DasFeatureSerializer() {
+	}
+
+	/**
+	 * Generates the FEATURE element for a feature, if it passes the filter.
+	 * @param DAS_XML_NAMESPACE XML namespace to link with the elements to create
+	 * @param serializer Object where the XML is been written
+	 * @param feature the feature to write
+	 * @param filter Set of the query specifications to accept/reject the feature
+	 * @param categorize indicates if the categories will be included in the type of the feature (unused since 1.6.1)
+	 * @param isUseFeatureIdForFeatureLabel indicates if a feature should use the Id as a label in case that a label is null
+	 * @param hasReferences indicates if the feature is a component feature
+	 * @param hasSuperParts indicates if the component feature has super parts
+	 * @param hasSubParts indicates if the component feature has sub parts
+	 * @throws IOException If the XML writer have an error
+	 * @throws DataSourceException indicate that there is something wrong with the data source
+	 */
+	public static void serialize(String DAS_XML_NAMESPACE, XmlSerializer serializer, DasFeature feature, DasFeatureRequestFilter filter,
+			boolean categorize, boolean isUseFeatureIdForFeatureLabel, boolean hasReferences, boolean hasSuperParts, boolean hasSubParts)
+			throws IllegalArgumentException, IllegalStateException, IOException, DataSourceException {
+		if (!filter.featurePasses(feature)) {
+			return;
+		}
+		serializer.startTag(DAS_XML_NAMESPACE, "FEATURE");
+		serializer.attribute(DAS_XML_NAMESPACE, "id", feature.getFeatureId());
+		String label = feature.getFeatureLabel();
+		if (label != null && label.length() > 0) {
+			serializer.attribute(DAS_XML_NAMESPACE, "label", label);
+		} else if (isUseFeatureIdForFeatureLabel) {
+			serializer.attribute(DAS_XML_NAMESPACE, "label", feature.getFeatureId());
+		}
+
+		// TYPE element
+		DasType type = feature.getType();
+		serializer.startTag(DAS_XML_NAMESPACE, "TYPE");
+		serializer.attribute(DAS_XML_NAMESPACE, "id", type.getId());
+		if (type.getCvId() != null && type.getCvId().length() > 0) {
+			serializer.attribute(DAS_XML_NAMESPACE, "cvId", type.getCvId());
+		}
+		if (hasReferences) {
+			serializer.attribute(DAS_XML_NAMESPACE, "reference", "yes");
+			serializer.attribute(DAS_XML_NAMESPACE, "superparts", (hasSuperParts) ? "yes" : "no");
+			serializer.attribute(DAS_XML_NAMESPACE, "subparts", (hasSubParts) ? "yes" : "no");
+		}
+		if (type.getCategory() != null && type.getCategory().length() > 0) {
+			serializer.attribute(DAS_XML_NAMESPACE, "category", type.getCategory());
+		}
+		if (type.getLabel() != null && type.getLabel().length() > 0) {
+			serializer.text(type.getLabel());
+		}
+		serializer.endTag(DAS_XML_NAMESPACE, "TYPE");
+
+		// METHOD element
+		DasMethod method = feature.getMethod();
+		serializer.startTag(DAS_XML_NAMESPACE, "METHOD");
+		if (method.getId() != null && method.getId().length() > 0) {
+			serializer.attribute(DAS_XML_NAMESPACE, "id", method.getId());
+		}
+		if (method.getCvId() != null && method.getCvId().length() > 0) {
+			serializer.attribute(DAS_XML_NAMESPACE, "cvId", method.getCvId());
+		}
+		if (method.getLabel() != null && method.getLabel().length() > 0) {
+			serializer.text(method.getLabel());
+		}
+		serializer.endTag(DAS_XML_NAMESPACE, "METHOD");
+
+		//start and stop are an optional group (non positional features)
+		if ((feature.getStartCoordinate() != 0) && (feature.getStopCoordinate() != 0)) {
+			char[] buffer = BUFFER.get();
+			serializer.startTag(DAS_XML_NAMESPACE, "START");
+			int length = formatInt(feature.getStartCoordinate(), buffer);
+			serializer.text(buffer, BUFFER_SIZE - length, length);
+			serializer.endTag(DAS_XML_NAMESPACE, "START");
+
+			serializer.startTag(DAS_XML_NAMESPACE, "END");
+			length = formatInt(feature.getStopCoordinate(), buffer);
+			serializer.text(buffer, BUFFER_SIZE - length, length);
+			serializer.endTag(DAS_XML_NAMESPACE, "END");
+		}
+
+		// SCORE element, optional: "-" is assumed if omitted.
+		Double score = feature.getScore();
+		if (score != null) {
+			serializer.startTag(DAS_XML_NAMESPACE, "SCORE");
+			double value = score;
+			if (value == Math.rint(value) && Math.abs(value) < MAX_PLAIN_SCORE && !(value == 0 && 1 / value < 0)) {
+				// Same as Double.toString for integral values, e.g. "12.0"
+				char[] buffer = BUFFER.get();
+				buffer[BUFFER_SIZE - 2] = '.';
+				buffer[BUFFER_SIZE - 1] = '0';
+				int length = formatInt((int) value, buffer, BUFFER_SIZE - 2) + 2;
+				serializer.text(buffer, BUFFER_SIZE - length, length);
+			} else {
+				serializer.text(Double.toString(value));
+			}
+			serializer.endTag(DAS_XML_NAMESPACE, "SCORE");
+		}
+		// ORIENTATION element, optional: "0" is assumed if omitted.
+		if ((feature.getOrientation() != null) && (feature.getOrientation() != DasFeatureOrientation.ORIENTATION_NOT_APPLICABLE)) {
+			serializer.startTag(DAS_XML_NAMESPACE, "ORIENTATION");
+			serializer.text(feature.getOrientation().toString());
+			serializer.endTag(DAS_XML_NAMESPACE, "ORIENTATION");
+		}
+		// PHASE element, optional: "-" is assumed if omitted.
+		if ((feature.getPhase() != null) && (feature.getPhase() != DasPhase.PHASE_NOT_APPLICABLE)) {
+			serializer.startTag(DAS_XML_NAMESPACE, "PHASE");
+			serializer.text(feature.getPhase().toString());
+			serializer.endTag(DAS_XML_NAMESPACE, "PHASE");
+		}
+
+		// NOTE elements
+		if (feature.getNotes() != null) {
+			for (String note : feature.getNotes()) {
+				serializer.startTag(DAS_XML_NAMESPACE, "NOTE");
+				serializer.text(note);
+				serializer.endTag(DAS_XML_NAMESPACE, "NOTE");
+			}
+		}
+
+		// LINK elements
+		if (feature.getLinks() != null) {
+			for (Map.Entry<URL, String> link : feature.getLinks().entrySet()) {
+				if (link.getKey() != null) {
+					serializer.startTag(DAS_XML_NAMESPACE, "LINK");
+					serializer.attribute(DAS_XML_NAMESPACE, "href", link.getKey().toString());
+					if (link.getValue() != null && link.getValue().length() > 0) {
+						serializer.text(link.getValue());
+					}
+					serializer.endTag(DAS_XML_NAMESPACE, "LINK");
+				}
+			}
+		}
+
+		// TARGET elements
+		if (feature.getTargets() != null) {
+			for (DasTarget target : feature.getTargets()) {
+				serializer.startTag(DAS_XML_NAMESPACE, "TARGET");
+				serializer.attribute(DAS_XML_NAMESPACE, "id", target.getTargetId());
+				serializer.attribute(DAS_XML_NAMESPACE, "start", Integer.toString(target.getStartCoordinate()));
+				serializer.attribute(DAS_XML_NAMESPACE, "stop", Integer.toString(target.getStopCoordinate()));
+				if (target.getTargetName() != null && target.getTargetName().length() > 0) {
+					serializer.text(target.getTargetName());
+				}
+				serializer.endTag(DAS_XML_NAMESPACE, "TARGET");
+			}
+		}
+
+		if (feature.getParents() != null) {
+			for (String parent : feature.getParents()) {
+				serializer.startTag(DAS_XML_NAMESPACE, "PARENT");
+				serializer.attribute(DAS_XML_NAMESPACE, "id", parent);
+				serializer.endTag(DAS_XML_NAMESPACE, "PARENT");
+			}
+		}
+		if (feature.getParts() != null) {
+			for (String part : feature.getParts()) {
+				serializer.startTag(DAS_XML_NAMESPACE, "PART");
+				serializer.attribute(DAS_XML_NAMESPACE, "id", part);
+				serializer.endTag(DAS_XML_NAMESPACE, "PART");
+			}
+		}
+
+		serializer.endTag(DAS_XML_NAMESPACE, "FEATURE");
+	}
+
+	/**
+	 * Writes the decimal representation of a number at the end of the buffer.
+	 * @return the number of characters written.
+	 */
+	static int formatInt(int value, char[] buffer) {
+		return formatInt(value, buffer, buffer.length);
+	}
+
+	/**
+	 * Writes the decimal representation of a number in the buffer, ending just before position end.
+	 * @return the number of characters written.
+	 */
+	static int formatInt(int value, char[] buffer, int end) {
+		int position = end;
+		// Works on the negative value, as Integer.MIN_VALUE has no positive counterpart.
+		int remaining = (value < 0) ? value : -value;
+		do {
+			buffer[--position] = (char) ('0' - (remaining % 10));
+			remaining /= 10;
+		} while (remaining != 0);
+		if (value < 0) {
+			buffer[--position] = '-';
+		}
+		return end - position;
+	}
+}
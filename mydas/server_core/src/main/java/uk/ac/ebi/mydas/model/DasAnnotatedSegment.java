@@ -26,8 +26,10 @@ package uk.ac.ebi.mydas.model;
 import org.apache.log4j.Logger;
 import uk.ac.ebi.mydas.exceptions.DataSourceException;
 
+import java.util.AbstractCollection;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
 import java.io.Serializable;
 
 /**
@@ -84,6 +86,20 @@ public class DasAnnotatedSegment extends DasSegment implements Serializable {
     String type;
 
     Integer totalFeatures;
+
+    /**
+     * Overlap index over the features, only kept once {@link #indexFeatures()} has been called.
+     * It is dropped whenever the features are modified through {@link #getFeatures()} and rebuilt
+     * by the next range restricted query.
+     */
+    private transient volatile FeatureIntervalIndex featureIndex;
+
+    /**
+     * The view of the features returned by {@link #getFeatures()} once the features are indexed,
+     * dropping the index when they are modified.  Null if the features are not indexed.
+     */
+    private transient volatile Collection<DasFeature> indexedFeatures;
+
     /**
      * Constructor for a DasAnnotatedSegment object that ensures that the object is valid.
      * See the documentation of the various getters to find out where in DAS XML these fields may be used.
@@ -140,7 +156,8 @@ public class DasAnnotatedSegment extends DasSegment implements Serializable {
      */
     public Collection<DasFeature> getFeatures() {
         if (selfComponent == null){
-            return features;
+            Collection<DasFeature> indexed = indexedFeatures;
+            return (indexed == null) ? features : indexed;
         }
         else {
             Collection<DasFeature> allFeatures = new ArrayList<DasFeature>(features);
@@ -165,41 +182,44 @@ public class DasAnnotatedSegment extends DasSegment implements Serializable {
         if (logger.isDebugEnabled()){
             logger.debug("DasAnnotatedSegment.getFeatures (start, stop) called.  StrictlyEnclosed = false");
         }
+        if (features == null){
+            return new ArrayList<DasFeature>(0);
+        }
+        if (indexedFeatures != null && selfComponent == null){
+            FeatureIntervalIndex index = featureIndex;
+            if (index == null){
+                index = new FeatureIntervalIndex(features);
+                featureIndex = index;
+            }
+            // Overlapping features, plus the non-positional ones that are always returned.
+            return index.overlapping(requestedStart, requestedStop);
+        }
         Collection<DasFeature> allFeatures = this.getFeatures();
-        Collection<DasFeature> restrictedFeatures = new ArrayList<DasFeature>(allFeatures.size());
-        if (features != null){
-            for (DasFeature feature : allFeatures){
-                /*if (strictlyEnclosed && requestedStart <= feature.getStartCoordinate() && requestedStop >= feature.getStopCoordinate()){
-
-                    if (logger.isDebugEnabled()){
-                        logger.debug("Strictly enclosed.  Feature passed: Requested start: " + requestedStart + ". Requested stop: " +
-                        requestedStop + ". Feature start: " + feature.getStartCoordinate() + ". Feature stop: " + feature.getStopCoordinate());
-                    }
-                    
-                    restrictedFeatures.add (feature);
-                } else if ((! strictlyEnclosed) &&
-                */
-                 if ((requestedStop >= feature.getStartCoordinate() && requestedStop <= feature.getStopCoordinate())
-                        || (requestedStart >= feature.getStartCoordinate() && requestedStart <= feature.getStopCoordinate())
-                        || (requestedStart <= feature.getStartCoordinate() && requestedStop >= feature.getStopCoordinate())){
-
-                    if (logger.isDebugEnabled()){
-                        logger.debug("Overlap.  Feature passed: Requested start: " + requestedStart + ". Requested stop: " +
-                        requestedStop + ". Feature start: " + feature.getStartCoordinate() + ". Feature stop: " + feature.getStopCoordinate());
-                    }
-                    restrictedFeatures.add (feature);
-                }
-                if ( (feature.getStartCoordinate() == 0) && (feature.getStopCoordinate() == 0)) {
-                    /*if (logger.isDebugEnabled()){
-                        logger.debug("Non-positional always returned");
-                    } */
-                    restrictedFeatures.add (feature);
-                }
+        Collection<DasFeature> restrictedFeatures = new ArrayList<DasFeature>();
+        for (DasFeature feature : allFeatures){
+            if (FeatureIntervalIndex.matches(feature, requestedStart, requestedStop)){
+                restrictedFeatures.add(feature);
             }
         }
         return restrictedFeatures;
     }
 
+    /**
+     * Indexes the features by their coordinates, so that {@link #getFeatures(int, int)} finds the features
+     * overlapping a range in O(log n + k) rather than scanning them all.  Building the index costs
+     * O(n log n), so it only pays off for a segment that a data source keeps and serves for many requests,
+     * e.g. the segments of a file loaded at start up; a segment built for a single request is better scanned.
+     * <p/>
+     * Once indexed, the features must only be modified through the collection returned by
+     * {@link #getFeatures()}, so that the index is rebuilt.  The index is not used for a segment holding
+     * component features, as these can change on their own.
+     */
+    public void indexFeatures(){
+        if (features != null && indexedFeatures == null){
+            indexedFeatures = new IndexedFeatures();
+        }
+    }
+
     /**
      * Returns the label for this segment.  Used for the features command for attribute
      * /DASGFF/GFF/SEGMENT/@label
@@ -267,4 +287,44 @@ public class DasAnnotatedSegment extends DasSegment implements Serializable {
     public void setTotalFeatures(Integer total){
     	totalFeatures=total;
     }
+
+    /**
+     * The features of an indexed segment, dropping the index whenever they are modified.
+     */
+    private class IndexedFeatures extends AbstractCollection<DasFeature> {
+
+        public Iterator<DasFeature> iterator() {
+            final Iterator<DasFeature> iterator = features.iterator();
+            return new Iterator<DasFeature>() {
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                public DasFeature next() {
+                    return iterator.next();
+                }
+
+                public void remove() {
+                    iterator.remove();
+                    featureIndex = null;
+                }
+            };
+        }
+
+        public int size() {
+            return features.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return features.contains(o);
+        }
+
+        @Override
+        public boolean add(DasFeature feature) {
+            boolean added = features.add(feature);
+            featureIndex = null;
+            return added;
+        }
+    }
 }
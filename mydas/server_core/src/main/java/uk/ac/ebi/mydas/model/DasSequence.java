@@ -142,6 +142,26 @@ public class DasSequence extends DasSegment implements Serializable {
         this.label=label;
     }
 
+    /**
+     * Constructor for subclasses that hold the sequence in another form than a String,
+     * in which case sequenceString is null and the subclass must override
+     * getSequenceString and getRestrictedSequenceString.
+     * @param segmentId <b>Mandatory</b> id of the segment.
+     * @param length <b>Mandatory</b> length of the sequence.
+     * @param startCoordinate <b>Mandatory</b> start coordinate of the sequence.
+     * @param version  <b>Mandatory</b> version of the sequence.
+     * @param label The label attribute (optional).
+     * @throws uk.ac.ebi.mydas.exceptions.DataSourceException if the sequence is empty.
+     */
+    protected DasSequence(String segmentId, int length, int startCoordinate, String version, String label)
+            throws DataSourceException {
+        super(startCoordinate, startCoordinate + length - 1, segmentId, version);
+        if (length <= 0){
+            throw new DataSourceException ("An attempt has been made to instantiate a DasSequence object that has no sequenceString");
+        }
+        this.label=label;
+    }
+
 
     public String getSequenceString() {
         return sequenceString;
@@ -152,6 +172,28 @@ public class DasSequence extends DasSegment implements Serializable {
         return sequenceString.substring(requestedStart - startCoordinate, requestedStop - startCoordinate + 1);
     }
 
+    /**
+     * Copies the sequence between two coordinates, inclusive, into a char array, so that
+     * a long sequence can be written a block at a time without copying it into a new String.
+     * Subclasses that do not hold the sequence as a String should override this method.
+     * @param requestedStart requested start coordinate on the segment.
+     * @param requestedStop  requested stop coordinate on the segment.
+     * @param destination the array to copy the sequence into.
+     * @param destinationBegin the offset in the array.
+     * @throws CoordinateErrorException if the coordinates are out of the segment.
+     */
+    public void getChars(int requestedStart, int requestedStop, char[] destination, int destinationBegin)
+            throws CoordinateErrorException {
+        if (requestedStart < startCoordinate || requestedStop > stopCoordinate || requestedStart > requestedStop + 1) {
+            throw new CoordinateErrorException(segmentId, requestedStart, requestedStop);
+        }
+        if (sequenceString == null){
+            getRestrictedSequenceString(requestedStart, requestedStop).getChars(0, requestedStop - requestedStart + 1, destination, destinationBegin);
+        } else {
+            sequenceString.getChars(requestedStart - startCoordinate, requestedStop - startCoordinate + 1, destination, destinationBegin);
+        }
+    }
+
     /**
      * @deprecated
      */
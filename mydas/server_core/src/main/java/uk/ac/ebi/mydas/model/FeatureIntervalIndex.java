@@ -0,0 +1,203 @@
+/*
+ * Copyright 2007 Philip Jones, EMBL-European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ * For further details of the mydas project, including source code,
+ * downloads and documentation, please see:
+ *
+ * http://code.google.com/p/mydas/
+ *
+ */
+
+package uk.ac.ebi.mydas.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Immutable overlap index over the features of a {@link DasAnnotatedSegment}.
+ *
+ * The positional features are held in an array sorted by start coordinate, which is read as an implicit
+ * balanced binary tree (the middle element of any range being the root of that range).  Each node is
+ * augmented with the maximum stop coordinate found in its subtree, so that whole subtrees that end before
+ * the requested start can be skipped.  An overlap query therefore costs O(log n + k) for k matches.
+ *
+ * Non-positional features (start and stop both 0) are kept in a side list and are always reported.
+ * Features with a start coordinate greater than their stop coordinate cannot be placed on the tree and are
+ * checked one by one with the same test used historically by {@link DasAnnotatedSegment}.
+ *
+ * Matches are returned in the order in which the features appear in the segment.
+ *
+ * @author Phil Jones, EMBL-EBI, pjones@ebi.ac.uk
+ */
+class FeatureIntervalIndex {
+
+    /**
+     * The features in the order of the original collection.
+     */
+    private final DasFeature[] all;
+
+    /**
+     * Positions (in {@link #all}) of the positional features, ordered by start coordinate.
+     */
+    private final int[] sorted;
+
+    private final int[] starts;
+
+    private final int[] stops;
+
+    /**
+     * For each node of the implicit tree, the highest stop coordinate of its subtree.
+     */
+    private final int[] maxStops;
+
+    /**
+     * Positions of the non-positional features.
+     */
+    private final int[] nonPositional;
+
+    /**
+     * Positions of the features whose start is greater than their stop.
+     */
+    private final int[] irregular;
+
+    FeatureIntervalIndex(Collection<DasFeature> features) {
+        all = features.toArray(new DasFeature[features.size()]);
+        // Positional features as (start, position) pairs packed in a long, so that sorting the longs orders
+        // them by start and, for equal starts, keeps their original order.
+        long[] positional = new long[all.length];
+        int positionalCount = 0;
+        int[] nonPositionalList = new int[all.length];
+        int nonPositionalCount = 0;
+        int[] irregularList = new int[all.length];
+        int irregularCount = 0;
+        for (int i = 0; i < all.length; i++) {
+            DasFeature feature = all[i];
+            if (feature.getStartCoordinate() == 0 && feature.getStopCoordinate() == 0) {
+                nonPositionalList[nonPositionalCount++] = i;
+            } else if (feature.getStartCoordinate() > feature.getStopCoordinate()) {
+                irregularList[irregularCount++] = i;
+            } else {
+                positional[positionalCount++] = ((long) feature.getStartCoordinate() << 32) | i;
+            }
+        }
+        Arrays.sort(positional, 0, positionalCount);
+        nonPositional = Arrays.copyOf(nonPositionalList, nonPositionalCount);
+        irregular = Arrays.copyOf(irregularList, irregularCount);
+        sorted = new int[positionalCount];
+        starts = new int[positionalCount];
+        stops = new int[positionalCount];
+        maxStops = new int[positionalCount];
+        for (int i = 0; i < positionalCount; i++) {
+            sorted[i] = (int) positional[i];
+            starts[i] = all[sorted[i]].getStartCoordinate();
+            stops[i] = all[sorted[i]].getStopCoordinate();
+        }
+        augment(0, sorted.length - 1);
+    }
+
+    /**
+     * The test applied by the index, for a segment scanning its features instead.
+     * @param feature a feature of the segment.
+     * @param requestedStart being the start coordinate requested by the client.
+     * @param requestedStop being the stop coordinate requested by the client.
+     * @return true if the feature overlaps the requested coordinates or is non-positional.
+     */
+    static boolean matches(DasFeature feature, int requestedStart, int requestedStop) {
+        int start = feature.getStartCoordinate();
+        int stop = feature.getStopCoordinate();
+        if (start == 0 && stop == 0) {
+            return true;
+        }
+        if (start > stop) {
+            return requestedStart <= start && requestedStop >= stop;
+        }
+        return start <= requestedStop && stop >= requestedStart;
+    }
+
+    /**
+     * Fills {@link #maxStops} for the subtree rooted at the middle of [low, high].
+     * @return the highest stop coordinate of the subtree.
+     */
+    private int augment(int low, int high) {
+        if (low > high) {
+            return Integer.MIN_VALUE;
+        }
+        int mid = (low + high) >>> 1;
+        int max = Math.max(stops[mid], Math.max(augment(low, mid - 1), augment(mid + 1, high)));
+        maxStops[mid] = max;
+        return max;
+    }
+
+    /**
+     * Returns the features overlapping the requested coordinates, plus all the non-positional features.
+     * @param requestedStart being the start coordinate requested by the client.
+     * @param requestedStop being the stop coordinate requested by the client.
+     * @return the matching features, in the order of the original collection.
+     */
+    Collection<DasFeature> overlapping(int requestedStart, int requestedStop) {
+        int[] hits = new int[Math.min(all.length, 16)];
+        int count = collect(0, sorted.length - 1, requestedStart, requestedStop, hits, 0);
+        if (count > hits.length) {
+            // First pass only counted; fill a right-sized array.
+            hits = new int[count];
+            collect(0, sorted.length - 1, requestedStart, requestedStop, hits, 0);
+        }
+        int[] matched = new int[count + irregular.length + nonPositional.length];
+        System.arraycopy(hits, 0, matched, 0, count);
+        for (int position : irregular) {
+            if (matches(all[position], requestedStart, requestedStop)) {
+                matched[count++] = position;
+            }
+        }
+        System.arraycopy(nonPositional, 0, matched, count, nonPositional.length);
+        count += nonPositional.length;
+        Arrays.sort(matched, 0, count);
+        Collection<DasFeature> result = new ArrayList<DasFeature>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(all[matched[i]]);
+        }
+        return result;
+    }
+
+    /**
+     * Walks the subtree rooted at the middle of [low, high], storing in <code>hits</code> (while there is
+     * room) the original positions of the features overlapping the requested range.
+     * @return the updated number of hits, which may exceed the length of <code>hits</code>.
+     */
+    private int collect(int low, int high, int requestedStart, int requestedStop, int[] hits, int count) {
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (maxStops[mid] < requestedStart) {
+                // Nothing in this subtree reaches the requested start.
+                return count;
+            }
+            count = collect(low, mid - 1, requestedStart, requestedStop, hits, count);
+            if (starts[mid] > requestedStop) {
+                // This node and its right subtree start after the requested stop.
+                return count;
+            }
+            if (stops[mid] >= requestedStart) {
+                if (count < hits.length) {
+                    hits[count] = sorted[mid];
+                }
+                count++;
+            }
+            low = mid + 1;
+        }
+        return count;
+    }
+}
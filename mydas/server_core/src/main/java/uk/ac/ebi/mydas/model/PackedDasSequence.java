@@ -0,0 +1,266 @@
+/*
+ * Copyright 2007 Philip Jones, EMBL-European Bioinformatics Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *
+ * For further details of the mydas project, including source code,
+ * downloads and documentation, please see:
+ *
+ * http://code.google.com/p/mydas/
+ *
+ */
+
+package uk.ac.ebi.mydas.model;
+
+import uk.ac.ebi.mydas.exceptions.CoordinateErrorException;
+import uk.ac.ebi.mydas.exceptions.DataSourceException;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A DasSequence holding a nucleotide sequence in 2 bits per base, rather than
+ * the 2 bytes per base of a String, so that large reference sequences can be kept in memory.
+ * <p/>
+ * The bases A, C, G and T are packed four to a byte.  Any other character, typically
+ * runs of N, is kept in a side table of runs of the same character, and lower case
+ * (soft masked) regions in a side table of masked runs, as in the UCSC 2bit format.
+ * The sequence is decoded on request, only over the requested range.
+ */
+@SuppressWarnings("serial")
+public class PackedDasSequence extends DasSequence implements Serializable {
+
+    private static final char[] BASES = {'A', 'C', 'G', 'T'};
+
+    /**
+     * The four bases packed in each byte value, first base in the high bits.
+     */
+    private static final char[][] DECODED = new char[256][4];
+
+    static {
+        for (int b = 0; b < 256; b++) {
+            for (int i = 0; i < 4; i++) {
+                DECODED[b][i] = BASES[(b >> (6 - 2 * i)) & 3];
+            }
+        }
+    }
+
+    private final int length;
+
+    private final byte[] packed;
+
+    /**
+     * Runs of characters other than A, C, G and T: offset of the first character, length, and character (upper case).
+     */
+    private final int[] otherStarts;
+    private final int[] otherLengths;
+    private final char[] otherChars;
+
+    /**
+     * Runs of lower case characters: offset of the first character and length.
+     */
+    private final int[] maskStarts;
+    private final int[] maskLengths;
+
+    /**
+     * @param segmentId <b>Mandatory</b> id of the segment.
+     * @param sequence <b>Mandatory</b> nucleotide sequence, which may contain N and any other character, in
+     * upper or lower case.  It is not kept, so a StringBuilder can be used to read the sequence.
+     * @param startCoordinate <b>Mandatory</b> start coordinate of the sequence.
+     * @param version <b>Mandatory</b> version of the sequence.
+     * @param label The label attribute (optional).
+     * @throws DataSourceException if the sequence is null or empty.
+     */
+    public PackedDasSequence(String segmentId, CharSequence sequence, int startCoordinate, String version, String label)
+            throws DataSourceException {
+        super(segmentId, (sequence == null) ? 0 : sequence.length(), startCoordinate, version, label);
+        this.length = sequence.length();
+        this.packed = new byte[(length + 3) / 4];
+
+        RunTable others = new RunTable();
+        RunTable masks = new RunTable();
+        for (int i = 0; i < length; i++) {
+            char c = sequence.charAt(i);
+            char upper = Character.toUpperCase(c);
+            int code = code(upper);
+            if (code < 0) {
+                others.add(i, upper);
+            } else {
+                packed[i >> 2] |= code << (6 - 2 * (i & 3));
+            }
+            if (c != upper) {
+                masks.add(i, ' ');
+            }
+        }
+        this.otherStarts = others.getStarts();
+        this.otherLengths = others.getLengths();
+        this.otherChars = others.getChars();
+        this.maskStarts = masks.getStarts();
+        this.maskLengths = masks.getLengths();
+    }
+
+    /**
+     * @param sequence a sequence.
+     * @return true if the sequence only holds A, C, G, T and N, in upper or lower case, so that packing it is worthwhile.
+     */
+    public static boolean isNucleotide(CharSequence sequence) {
+        for (int i = 0; i < sequence.length(); i++) {
+            switch (sequence.charAt(i)) {
+                case 'A': case 'C': case 'G': case 'T': case 'N':
+                case 'a': case 'c': case 'g': case 't': case 'n':
+                    break;
+                default:
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decodes the whole sequence.  Prefer getChars to write a long sequence.
+     * @return the sequence.
+     */
+    @Override
+    public String getSequenceString() {
+        char[] chars = new char[length];
+        decode(0, length, chars, 0);
+        return new String(chars);
+    }
+
+    /**
+     * @param requestedStart requested start coordinate on the segment.
+     * @param requestedStop  requested stop coordinate on the segment.
+     * @return the sequence between the two coordinates, inclusive.
+     * @throws CoordinateErrorException if the coordinates are out of the segment.
+     */
+    @Override
+    public String getRestrictedSequenceString(int requestedStart, int requestedStop)
+            throws CoordinateErrorException {
+        char[] chars = new char[Math.max(0, requestedStop - requestedStart + 1)];
+        getChars(requestedStart, requestedStop, chars, 0);
+        return new String(chars);
+    }
+
+    /**
+     * Decodes the sequence between the two coordinates, inclusive, into a char array.
+     * @param requestedStart requested start coordinate on the segment.
+     * @param requestedStop  requested stop coordinate on the segment.
+     * @param destination the array to copy the sequence into.
+     * @param destinationBegin the offset in the array.
+     * @throws CoordinateErrorException if the coordinates are out of the segment.
+     */
+    @Override
+    public void getChars(int requestedStart, int requestedStop, char[] destination, int destinationBegin)
+            throws CoordinateErrorException {
+        if (requestedStart < startCoordinate || requestedStop > stopCoordinate || requestedStart > requestedStop + 1) {
+            throw new CoordinateErrorException(segmentId, requestedStart, requestedStop);
+        }
+        decode(requestedStart - startCoordinate, requestedStop - startCoordinate + 1, destination, destinationBegin);
+    }
+
+    /**
+     * @return the length of the sequence.
+     */
+    public int getLength() {
+        return length;
+    }
+
+    private void decode(int from, int to, char[] destination, int destinationBegin) {
+        int offset = destinationBegin - from;
+        int i = from;
+        // Leading bases up to a byte boundary, whole bytes, then trailing bases.
+        for (; i < to && (i & 3) != 0; i++) {
+            destination[i + offset] = BASES[(packed[i >> 2] >> (6 - 2 * (i & 3))) & 3];
+        }
+        for (; i + 4 <= to; i += 4) {
+            System.arraycopy(DECODED[packed[i >> 2] & 0xFF], 0, destination, i + offset, 4);
+        }
+        for (; i < to; i++) {
+            destination[i + offset] = BASES[(packed[i >> 2] >> (6 - 2 * (i & 3))) & 3];
+        }
+
+        for (int run = firstRun(otherStarts, otherLengths, from); run < otherStarts.length && otherStarts[run] < to; run++) {
+            int runStop = Math.min(to, otherStarts[run] + otherLengths[run]);
+            Arrays.fill(destination, Math.max(from, otherStarts[run]) + offset, runStop + offset, otherChars[run]);
+        }
+        for (int run = firstRun(maskStarts, maskLengths, from); run < maskStarts.length && maskStarts[run] < to; run++) {
+            int runStop = Math.min(to, maskStarts[run] + maskLengths[run]);
+            for (int j = Math.max(from, maskStarts[run]); j < runStop; j++) {
+                destination[j + offset] = Character.toLowerCase(destination[j + offset]);
+            }
+        }
+    }
+
+    /**
+     * @return the index of the first run ending after the offset.
+     */
+    static int firstRun(int[] starts, int[] lengths, int offset) {
+        int run = Arrays.binarySearch(starts, offset);
+        if (run < 0) {
+            run = -run - 2;
+        }
+        if (run < 0 || starts[run] + lengths[run] <= offset) {
+            run++;
+        }
+        return run;
+    }
+
+    private static int code(char base) {
+        switch (base) {
+            case 'A': return 0;
+            case 'C': return 1;
+            case 'G': return 2;
+            case 'T': return 3;
+            default: return -1;
+        }
+    }
+
+    /**
+     * Collects runs of the same character at consecutive offsets.
+     */
+    private static class RunTable {
+        private int[] starts = new int[8];
+        private int[] lengths = new int[8];
+        private char[] chars = new char[8];
+        private int size = 0;
+
+        void add(int offset, char c) {
+            if (size > 0 && chars[size - 1] == c && starts[size - 1] + lengths[size - 1] == offset) {
+                lengths[size - 1]++;
+                return;
+            }
+            if (size == starts.length) {
+                starts = Arrays.copyOf(starts, size * 2);
+                lengths = Arrays.copyOf(lengths, size * 2);
+                chars = Arrays.copyOf(chars, size * 2);
+            }
+            starts[size] = offset;
+            lengths[size] = 1;
+            chars[size] = c;
+            size++;
+        }
+
+        int[] getStarts() {
+            return Arrays.copyOf(starts, size);
+        }
+
+        int[] getLengths() {
+            return Arrays.copyOf(lengths, size);
+        }
+
+        char[] getChars() {
+            return Arrays.copyOf(chars, size);
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package uk.ac.ebi.mydas.search;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+import uk.ac.ebi.mydas.exceptions.DataSourceException;
+import uk.ac.ebi.mydas.exceptions.SearcherException;
+import uk.ac.ebi.mydas.model.DasAnnotatedSegment;
+import uk.ac.ebi.mydas.model.DasFeature;
+import uk.ac.ebi.mydas.model.DasFeatureOrientation;
+import uk.ac.ebi.mydas.model.DasMethod;
+import uk.ac.ebi.mydas.model.DasPhase;
+import uk.ac.ebi.mydas.model.DasTarget;
+import uk.ac.ebi.mydas.model.DasType;
+
+/**
+ * Binary record of a feature and of its segment, stored by the {@link Indexer} as the only stored field of each
+ * document, so the {@link Searcher} rebuilds a hit from a single field without parsing any text.
+ *
+ * Strings are written as their UTF-8 length followed by the bytes, so they may contain anything; a length of 0
+ * stands for null, any other length is one more than the number of bytes. Collections are written the same way,
+ * with their size. Integers are variable length, zig-zag encoded for the coordinates, which may be negative.
+ */
+final class FeatureRecord {
+	private static final Logger logger = Logger.getLogger(FeatureRecord.class);
+
+	/**
+	 * The stored field holding the record.
+	 */
+	static final String FIELD = "record";
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final DasFeatureOrientation[] ORIENTATIONS = DasFeatureOrientation.values();
+	private static final DasPhase[] PHASES = DasPhase.values();
+
+	private byte[] bytes;
+	private int position;
+	private final int end;
+
+	private FeatureRecord(byte[] bytes, int position, int end) {
+		this.bytes = bytes;
+		this.position = position;
+		this.end = end;
+	}
+
+	/**
+	 * @return the record of a feature of a segment.
+	 */
+	static byte[] encode(DasAnnotatedSegment segment, DasFeature feature) {
+		FeatureRecord out = new FeatureRecord(new byte[256], 0, 0);
+		out.writeString(segment.getSegmentId());
+		out.writeString(segment.getSegmentLabel());
+		out.writeString(segment.getVersion());
+		out.writeInteger(segment.getStartCoordinate());
+		out.writeInteger(segment.getStopCoordinate());
+
+		out.writeString(feature.getFeatureId());
+		out.writeString(feature.getFeatureLabel());
+		DasType type = feature.getType();
+		out.writeBoolean(type != null);
+		if (type != null) {
+			out.writeString(type.getId());
+			out.writeString(type.getCategory());
+			out.writeString(type.getCvId());
+			out.writeString(type.getLabel());
+		}
+		DasMethod method = feature.getMethod();
+		out.writeBoolean(method != null);
+		if (method != null) {
+			out.writeString(method.getId());
+			out.writeString(method.getLabel());
+			out.writeString(method.getCvId());
+		}
+		out.writeVInt(zigZag(feature.getStartCoordinate()));
+		out.writeVInt(zigZag(feature.getStopCoordinate()));
+		out.writeBoolean(feature.getScore() != null);
+		if (feature.getScore() != null) {
+			out.writeLong(Double.doubleToLongBits(feature.getScore()));
+		}
+		out.writeVInt(feature.getOrientation() == null ? 0 : feature.getOrientation().ordinal() + 1);
+		out.writeVInt(feature.getPhase() == null ? 0 : feature.getPhase().ordinal() + 1);
+		out.writeStrings(feature.getNotes());
+		Map<URL, String> links = feature.getLinks();
+		out.writeVInt(links == null ? 0 : links.size() + 1);
+		if (links != null) {
+			for (Map.Entry<URL, String> link : links.entrySet()) {
+				out.writeString(link.getKey().toString());
+				out.writeString(link.getValue());
+			}
+		}
+		Collection<DasTarget> targets = feature.getTargets();
+		out.writeVInt(targets == null ? 0 : targets.size() + 1);
+		if (targets != null) {
+			for (DasTarget target : targets) {
+				out.writeString(target.getTargetId());
+				out.writeVInt(zigZag(target.getStartCoordinate()));
+				out.writeVInt(zigZag(target.getStopCoordinate()));
+				out.writeString(target.getTargetName());
+			}
+		}
+		out.writeStrings(feature.getParents());
+		out.writeStrings(feature.getParts());
+
+		byte[] record = new byte[out.position];
+		System.arraycopy(out.bytes, 0, record, 0, out.position);
+		return record;
+	}
+
+	/**
+	 * @return the segment of the record, holding its feature.
+	 * @throws SearcherException if the record is corrupt.
+	 */
+	static DasAnnotatedSegment decode(byte[] bytes, int offset, int length) throws SearcherException {
+		try {
+			return new FeatureRecord(bytes, offset, offset + length).readSegment();
+		} catch (DataSourceException e) {
+			throw new SearcherException("Error creating the feature from the lucene document.", e);
+		} catch (IndexOutOfBoundsException e) {
+			throw new SearcherException("The feature record of a lucene document is truncated.", e);
+		} catch (IllegalArgumentException e) {
+			throw new SearcherException("The feature record of a lucene document is not valid.", e);
+		}
+	}
+
+	private DasAnnotatedSegment readSegment() throws DataSourceException {
+		String segmentId = readString();
+		String segmentLabel = readString();
+		String segmentVersion = readString();
+		Integer segmentStart = readInteger();
+		Integer segmentStop = readInteger();
+
+		String featureId = readString();
+		String featureLabel = readString();
+		DasType type = null;
+		if (readBoolean()) {
+			type = new DasType(readString(), readString(), readString(), readString());
+		}
+		DasMethod method = null;
+		if (readBoolean()) {
+			String id = readString();
+			String label = readString();
+			String cvId = readString();
+			try {
+				method = new DasMethod(id, label, cvId);
+			} catch (DataSourceException e) {
+				method = null;
+			}
+		}
+		int start = unZigZag(readVInt());
+		int stop = unZigZag(readVInt());
+		Double score = readBoolean() ? Double.longBitsToDouble(readLong()) : null;
+		int orientation = readVInt();
+		int phase = readVInt();
+		List<String> notes = readStrings();
+		Map<URL, String> links = null;
+		int linkCount = readVInt();
+		if (linkCount > 0) {
+			links = new LinkedHashMap<URL, String>();
+			for (int i = 1; i < linkCount; i++) {
+				String url = readString();
+				String text = readString();
+				try {
+					links.put(new URL(url), text);
+				} catch (MalformedURLException e) {
+					logger.error("The url " + url + " is malformed");
+				}
+			}
+		}
+		List<DasTarget> targets = null;
+		int targetCount = readVInt();
+		if (targetCount > 0) {
+			targets = new ArrayList<DasTarget>(targetCount - 1);
+			for (int i = 1; i < targetCount; i++) {
+				targets.add(new DasTarget(readString(), unZigZag(readVInt()), unZigZag(readVInt()), readString()));
+			}
+		}
+		List<String> parents = readStrings();
+		List<String> parts = readStrings();
+
+		DasFeature feature = new DasFeature(featureId, featureLabel, type, method, start, stop, score,
+				orientation == 0 ? null : ORIENTATIONS[orientation - 1], phase == 0 ? null : PHASES[phase - 1],
+				notes, links, targets, parents, parts);
+		Collection<DasFeature> features = new ArrayList<DasFeature>(1);
+		features.add(feature);
+		return new DasAnnotatedSegment(segmentId, segmentStart, segmentStop, segmentVersion, segmentLabel, features);
+	}
+
+	private static int zigZag(int value) {
+		return (value << 1) ^ (value >> 31);
+	}
+
+	private static int unZigZag(int value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	private void ensureCapacity(int extra) {
+		if (position + extra > bytes.length) {
+			byte[] larger = new byte[Math.max(bytes.length * 2, position + extra)];
+			System.arraycopy(bytes, 0, larger, 0, position);
+			bytes = larger;
+		}
+	}
+
+	private void writeVInt(int value) {
+		ensureCapacity(5);
+		while ((value & ~0x7F) != 0) {
+			bytes[position++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		bytes[position++] = (byte) value;
+	}
+
+	private void writeLong(long value) {
+		ensureCapacity(8);
+		for (int shift = 56; shift >= 0; shift -= 8) {
+			bytes[position++] = (byte) (value >>> shift);
+		}
+	}
+
+	private void writeBoolean(boolean value) {
+		ensureCapacity(1);
+		bytes[position++] = (byte) (value ? 1 : 0);
+	}
+
+	private void writeInteger(Integer value) {
+		writeBoolean(value != null);
+		if (value != null) {
+			writeVInt(zigZag(value));
+		}
+	}
+
+	private void writeString(String value) {
+		if (value == null) {
+			writeVInt(0);
+			return;
+		}
+		byte[] utf8 = value.getBytes(UTF8);
+		writeVInt(utf8.length + 1);
+		ensureCapacity(utf8.length);
+		System.arraycopy(utf8, 0, bytes, position, utf8.length);
+		position += utf8.length;
+	}
+
+	private void writeStrings(Collection<String> values) {
+		writeVInt(values == null ? 0 : values.size() + 1);
+		if (values != null) {
+			for (String value : values) {
+				writeString(value);
+			}
+		}
+	}
+
+	private int readVInt() {
+		int value = 0;
+		for (int shift = 0; ; shift += 7) {
+			byte b = read();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+	}
+
+	private long readLong() {
+		long value = 0;
+		for (int i = 0; i < 8; i++) {
+			value = (value << 8) | (read() & 0xFF);
+		}
+		return value;
+	}
+
+	private boolean readBoolean() {
+		return read() != 0;
+	}
+
+	private Integer readInteger() {
+		return readBoolean() ? unZigZag(readVInt()) : null;
+	}
+
+	private String readString() {
+		int length = readVInt();
+		if (length == 0) {
+			return null;
+		}
+		length--;
+		if (position + length > end) {
+			throw new IndexOutOfBoundsException("String of " + length + " bytes at " + position);
+		}
+		String value = new String(bytes, position, length, UTF8);
+		position += length;
+		return value;
+	}
+
+	private List<String> readStrings() {
+		int count = readVInt();
+		if (count == 0) {
+			return null;
+		}
+		List<String> values = new ArrayList<String>(count - 1);
+		for (int i = 1; i < count; i++) {
+			values.add(readString());
+		}
+		return values;
+	}
+
+	private byte read() {
+		if (position >= end) {
+			throw new IndexOutOfBoundsException("End of the record at " + position);
+		}
+		return bytes[position++];
+	}
+}
@@ -0,0 +1,144 @@
+package uk.ac.ebi.mydas.search;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.log4j.Logger;
+import org.apache.lucene.index.CorruptIndexException;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+
+import uk.ac.ebi.mydas.exceptions.SearcherException;
+
+/**
+ * Keeps the index of a data source open between advanced-search requests, instead of opening it for each query.
+ * There is one manager per index folder, shared by all the request threads.
+ *
+ * A searcher obtained with {@link #acquire()} must always be given back with {@link #release(IndexSearcher)}.
+ * After the {@link Indexer} has written a new index the manager is marked as stale, and the next acquire reopens
+ * the reader; the searchers still in use keep working on the previous index until they are released.
+ */
+public class IndexSearcherManager {
+	private static final Logger logger = Logger.getLogger(IndexSearcherManager.class);
+
+	private static final ConcurrentMap<String, IndexSearcherManager> MANAGERS = new ConcurrentHashMap<String, IndexSearcherManager>();
+
+	private final File indexFolder;
+	private Directory directory = null;
+	private IndexSearcher current = null;
+	private volatile boolean stale = true;
+
+	private IndexSearcherManager(File indexFolder) {
+		this.indexFolder = indexFolder;
+	}
+
+	/**
+	 * @param dirPath the folder holding the indexes of all the data sources.
+	 * @param dataSourceName the data source, whose index is in a subfolder of dirPath with the same name.
+	 * @return the manager of the index of the data source.
+	 */
+	public static IndexSearcherManager getInstance(String dirPath, String dataSourceName) {
+		String key = getIndexFolder(dirPath, dataSourceName).getAbsolutePath();
+		IndexSearcherManager manager = MANAGERS.get(key);
+		if (manager == null) {
+			IndexSearcherManager created = new IndexSearcherManager(new File(key));
+			manager = MANAGERS.putIfAbsent(key, created);
+			if (manager == null) {
+				manager = created;
+			}
+		}
+		return manager;
+	}
+
+	static File getIndexFolder(String dirPath, String dataSourceName) {
+		return new File(dirPath + "/" + dataSourceName);
+	}
+
+	/**
+	 * Called once a new index of a data source has been committed, so the following searches use it.
+	 * @param dirPath the folder holding the indexes of all the data sources.
+	 * @param dataSourceName the data source that has been indexed.
+	 */
+	static void indexChanged(String dirPath, String dataSourceName) {
+		IndexSearcherManager manager = MANAGERS.get(getIndexFolder(dirPath, dataSourceName).getAbsolutePath());
+		if (manager != null) {
+			manager.stale = true;
+		}
+	}
+
+	/**
+	 * Closes all the open indexes, e.g. when the server is shut down.
+	 */
+	public static void closeAll() {
+		for (IndexSearcherManager manager : MANAGERS.values()) {
+			manager.close();
+		}
+		MANAGERS.clear();
+	}
+
+	/**
+	 * @return a searcher over the latest index of the data source, to be released after use.
+	 * @throws SearcherException if the index cannot be opened.
+	 */
+	public synchronized IndexSearcher acquire() throws SearcherException {
+		if (current == null || stale) {
+			// Cleared before reopening, so a new index committed meanwhile marks it stale again.
+			stale = false;
+			try {
+				if (current == null) {
+					directory = FSDirectory.open(indexFolder);
+					current = new IndexSearcher(IndexReader.open(directory, true));
+				} else {
+					IndexReader reader = current.getIndexReader();
+					IndexReader reopened = reader.reopen();
+					if (reopened != reader) {
+						current = new IndexSearcher(reopened);
+						// The searches still using the old reader keep their own reference to it.
+						reader.decRef();
+					}
+				}
+			} catch (CorruptIndexException e) {
+				stale = true;
+				throw new SearcherException("The index file is corrupt", e);
+			} catch (IOException e) {
+				stale = true;
+				throw new SearcherException("Error trying to open the index file.", e);
+			}
+		}
+		current.getIndexReader().incRef();
+		return current;
+	}
+
+	/**
+	 * Gives back a searcher obtained with {@link #acquire()}.
+	 * @param searcher the searcher, which must not be used afterwards.
+	 * @throws SearcherException if the index of a replaced searcher cannot be closed.
+	 */
+	public void release(IndexSearcher searcher) throws SearcherException {
+		try {
+			searcher.getIndexReader().decRef();
+		} catch (IOException e) {
+			throw new SearcherException("Error closing the searcher.", e);
+		}
+	}
+
+	private synchronized void close() {
+		try {
+			if (current != null) {
+				current.getIndexReader().decRef();
+			}
+			if (directory != null) {
+				directory.close();
+			}
+		} catch (IOException e) {
+			logger.error("Error closing the index " + indexFolder, e);
+		}
+		current = null;
+		directory = null;
+		stale = true;
+	}
+}
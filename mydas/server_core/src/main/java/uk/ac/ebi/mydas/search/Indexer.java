@@ -5,14 +5,36 @@ import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.log4j.Logger;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldSelector;
+import org.apache.lucene.document.MapFieldSelector;
+import org.apache.lucene.document.NumericField;
 import org.apache.lucene.index.CorruptIndexException;
+import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+import org.apache.lucene.index.TermEnum;
+import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
 import org.apache.lucene.util.Version;
 
@@ -32,13 +54,67 @@ public class Indexer {
 	private String dirPath;
 	private ServerConfiguration config;
 	private static final Logger logger = Logger.getLogger(Indexer.class);
+	/**
+	 * Untokenized copy of the segment id, used to count the hits of each segment without loading the documents.
+	 */
+	public static final String SEGMENT_KEY_FIELD = "segmentKey";
+	/**
+	 * Untokenized copy of the segment id with its case folded, see {@link #foldSegmentKey(String)}, used to
+	 * restrict a search to the requested segments ignoring case, as the tokenized segmentId field did.
+	 */
+	public static final String FOLDED_SEGMENT_KEY_FIELD = "segmentKeyFolded";
+	/**
+	 * Version of the entry point a document was indexed from, used to decide whether its segment has changed.
+	 */
+	private static final String VERSION_FIELD = "entryPointVersion";
+	private static final FieldSelector VERSION_SELECTOR = new MapFieldSelector(new String[]{VERSION_FIELD});
+	/**
+	 * Format of the documents, recorded with each commit: an index in another format is rebuilt rather than updated.
+	 * 2: coordinates and scores indexed as numeric fields.
+	 * 3: features stored as a single {@link FeatureRecord}.
+	 * 4: segments also keyed by their case folded id.
+	 */
+	private static final String INDEX_FORMAT_KEY = "mydas.format";
+	private static final String INDEX_FORMAT = "4";
+	private static final Map<String,String> FORMAT_COMMIT_DATA = Collections.singletonMap(INDEX_FORMAT_KEY, INDEX_FORMAT);
+
+	private static final ConcurrentMap<String, Set<String>> MODIFIED_SEGMENTS = new ConcurrentHashMap<String, Set<String>>();
+	private static final Set<String> MODIFIED_DATA_SOURCES = Collections.synchronizedSet(new HashSet<String>());
+
+	private volatile String currentDataSource = null;
+	private final AtomicInteger segmentsTotal = new AtomicInteger();
+	private final AtomicInteger segmentsIndexed = new AtomicInteger();
+	private final AtomicInteger segmentsSkipped = new AtomicInteger();
+	private final AtomicInteger segmentsRemoved = new AtomicInteger();
+	private final AtomicInteger segmentsIgnored = new AtomicInteger();
 
 	public Indexer(String dirPath, ServerConfiguration config){
 		this.dirPath = dirPath;
 		this.config=config;
 	}
 
+	/**
+	 * Updates the index of every data source with the advanced-search capability, as
+	 * {@link #generateIndexes(boolean)} without forcing a rebuild.
+	 * @throws SearcherException if a data source cannot be queried or its index cannot be written.
+	 */
 	public void generateIndexes() throws SearcherException{
+		generateIndexes(false);
+	}
+
+	/**
+	 * Indexes every data source with the advanced-search capability.
+	 * Unless a rebuild is requested, only the segments whose entry point reports a different version, or that have
+	 * been modified through writeback (see {@link #segmentModified(String, String)}), are indexed again, and the
+	 * segments that are not entry points anymore are removed. An index written by a previous version of MyDas
+	 * is always rebuilt.
+	 *
+	 * The changes to the index of a data source are committed at once when all its segments have been processed,
+	 * so the searches keep using the previous index until then; on error they are rolled back.
+	 * @param rebuild true to index all the segments again.
+	 * @throws SearcherException if a data source cannot be queried or its index cannot be written.
+	 */
+	public void generateIndexes(boolean rebuild) throws SearcherException{
 		List<String> dsns = config.getDsnNames();
 		if (dsns == null || dsns.size() == 0){
 			logger.error("No DSNs");
@@ -50,49 +126,14 @@ public class Indexer {
 				String capabilities =dsnConfig.getCapabilities();
 				if(capabilities.contains("advanced-search")){
 					if(capabilities.contains("entry_points") && capabilities.contains("feature-by-id")){
+						AnnotationDataSource refDsn;
 						try {
-							if (dsnConfig.getDataSource() instanceof AnnotationDataSource){
-								
-								// Fine - process command.
-								AnnotationDataSource refDsn = dsnConfig.getDataSource();
-								FSDirectory dir = FSDirectory.open(new File(dirPath+"/"+dsn));
-								IndexWriter writer = new IndexWriter(dir, new StandardAnalyzer(Version.LUCENE_30),true, IndexWriter.MaxFieldLength.LIMITED);
-								
-								Integer max =dsnConfig.getMaxEntryPoints();
-								int total = refDsn.getTotalEntryPoints();
-								if (max ==null)
-									max=total;
-								for (int i=0;i<=total;i+=max){
-									Collection<DasEntryPoint> entryPoints = refDsn.getEntryPoints(i+1, i+max);
-									if (entryPoints==null)
-										throw  new SearcherException("Entry points is null,The entry-point capability is not well implemented.");
-									Collection <DasEntryPoint> ignored = new ArrayList<DasEntryPoint>();
-									for (DasEntryPoint entryPoint:entryPoints){
-										try {
-											this.processEntryPoint(entryPoint,refDsn,writer);
-										} catch (BadReferenceObjectException e) {
-											ignored.add(entryPoint);
-										}
-									}
-									for (DasEntryPoint entryPoint:ignored){
-										try {
-											this.processEntryPoint(entryPoint,refDsn,writer);
-										} catch (BadReferenceObjectException e) {
-											logger.error("The entry point was ignored:"+entryPoint.getSegmentId());
-										}
-									}
-								}
-								writer.optimize();
-								writer.close();
-							}
+							refDsn = dsnConfig.getDataSource();
 						} catch (DataSourceException e) {
 							throw new SearcherException("Error trying to query information of a data source",e);
-						} catch (UnimplementedFeatureException e) {
-							throw new SearcherException("The Entry-Point capability is a requirenment for the searching functions",e);
-						} catch (IOException e) {
-							throw new SearcherException("Error trying to write the index file ",e);
-//						} catch (BadReferenceObjectException e) {
-//							throw new SearcherException("A reported entry point can't be recovered",e);
+						}
+						if (refDsn != null){
+							indexDataSource(dsn, refDsn, dsnConfig.getMaxEntryPoints(), dsnConfig.getSegmentThreads(), rebuild);
 						}
 					}else{
 						throw new SearcherException("The capabilities 'entry-points' and 'feature-by-id' are required to be able to index");
@@ -100,121 +141,464 @@ public class Indexer {
 				}
 			}
 		}
+		currentDataSource = null;
 	}
 
-	private void processEntryPoint(DasEntryPoint entryPoint, AnnotationDataSource refDsn, IndexWriter writer) throws BadReferenceObjectException, DataSourceException, CorruptIndexException, IOException {
+	/**
+	 * Indexes a data source, committing its changes at once or rolling them back.
+	 * @param maxEntryPoints the number of entry points to request at a time, null for all of them.
+	 * @param segmentThreads the number of segments to retrieve concurrently.
+	 * @param rebuild true to index all the segments again.
+	 */
+	void indexDataSource(String dsn, AnnotationDataSource refDsn, Integer maxEntryPoints, int segmentThreads, boolean rebuild) throws SearcherException {
+		currentDataSource = dsn;
+		Set<String> modified = takeModifiedSegments(dsn);
+		IndexWriter writer = null;
+		ExecutorService executor = null;
+		boolean committed = false;
+		try {
+			FSDirectory dir = FSDirectory.open(IndexSearcherManager.getIndexFolder(dirPath, dsn));
+			Map<String,String> indexedVersions = (rebuild || modified == null) ? null : getIndexedVersions(dir);
+			boolean create = indexedVersions == null;
+			writer = new IndexWriter(dir, new StandardAnalyzer(Version.LUCENE_30), create, IndexWriter.MaxFieldLength.LIMITED);
+			if (segmentThreads > 1) {
+				executor = createExecutor(dsn, segmentThreads);
+			}
 
-		DasAnnotatedSegment segment;
-			segment = refDsn.getFeatures(entryPoint.getSegmentId(), null);
-		for (DasFeature feature:segment.getFeatures()){
-			Document doc = new Document();
-			String type="",method="",notes="",links="",targets="",parents="",parts="",segmentS="";
-
-			doc.add(new Field("segmentId", segment.getSegmentId(),																Field.Store.YES,	Field.Index.ANALYZED));
-			segmentS +=segment.getSegmentId();
-			if (segment.getSegmentLabel()!=null) {
-				doc.add(new Field("segmentLabel", segment.getSegmentLabel(),																Field.Store.YES,	Field.Index.ANALYZED));
-				segmentS += " "+segment.getSegmentLabel();
-			}
-			if (segment.getVersion()!=null) {
-				doc.add(new Field("segmentVersion", segment.getVersion(),																Field.Store.YES,	Field.Index.ANALYZED));
-				segmentS += " "+segment.getVersion();
-			}
-			if (segment.getStartCoordinate()!=null) {
-				doc.add(new Field("segmentStart", ""+segment.getStartCoordinate(),																Field.Store.YES,	Field.Index.ANALYZED));
-				segmentS += " "+segment.getStartCoordinate();
-			}
-			if (segment.getStopCoordinate()!=null) {
-				doc.add(new Field("segmentStop", ""+segment.getStopCoordinate(),																Field.Store.YES,	Field.Index.ANALYZED));
-				segmentS += " "+segment.getStopCoordinate();
-			}
-
-			
-			doc.add(new Field("featureId", feature.getFeatureId(),		Field.Store.YES,	Field.Index.ANALYZED));
-			if (feature.getFeatureLabel()!=null) doc.add(new Field("featureLabel", feature.getFeatureLabel(), Field.Store.YES, Field.Index.ANALYZED));
-			if (feature.getType()!=null){
-				if (feature.getType().getId()!=null){ 
-					doc.add(new Field("typeId", feature.getType().getId(), Field.Store.YES, Field.Index.ANALYZED));
-					type +=feature.getType().getId()+" ";
-				}
-				if (feature.getType().getCvId()!=null){
-					doc.add(new Field("typeCvId", feature.getType().getCvId(), Field.Store.YES, Field.Index.ANALYZED));
-					type +=feature.getType().getCvId()+" ";
+			int total = refDsn.getTotalEntryPoints();
+			segmentsTotal.addAndGet(total);
+			Integer max =maxEntryPoints;
+			if (max ==null || max < 1)
+				max=Math.max(total, 1);
+			Set<String> entryPointIds = new HashSet<String>();
+			Set<String> indexedKeys = Collections.synchronizedSet(new HashSet<String>());
+			for (int i=0;i<=total;i+=max){
+				if (Thread.interrupted()) {
+					throw new SearcherException("The indexing of " + dsn + " has been interrupted");
 				}
-				if (feature.getType().getLabel()!=null){ 
-					doc.add(new Field("typeLabel", feature.getType().getLabel(), Field.Store.YES, Field.Index.ANALYZED));
-					type +=feature.getType().getLabel()+" ";
-				}
-				if (feature.getType().getCategory()!=null){
-					doc.add(new Field("typeCategory", feature.getType().getCategory(), Field.Store.YES, Field.Index.ANALYZED));
-					type +=feature.getType().getCategory()+" ";
+				Collection<DasEntryPoint> entryPoints = refDsn.getEntryPoints(i+1, i+max);
+				if (entryPoints==null)
+					throw  new SearcherException("Entry points is null,The entry-point capability is not well implemented.");
+				List<DasEntryPoint> pending = new ArrayList<DasEntryPoint>(entryPoints.size());
+				for (DasEntryPoint entryPoint:entryPoints){
+					entryPointIds.add(entryPoint.getSegmentId());
+					if (!create && !modified.contains(entryPoint.getSegmentId()) && entryPoint.getVersion() != null
+							&& entryPoint.getVersion().equals(indexedVersions.get(entryPoint.getSegmentId()))) {
+						segmentsSkipped.incrementAndGet();
+					} else {
+						pending.add(entryPoint);
+					}
 				}
-				doc.add(new Field("type",type, Field.Store.NO, Field.Index.ANALYZED));
-			}
-			if (feature.getMethod()!=null){
-				method+=feature.getMethod().getId()+" ";
-				doc.add(new Field("methodId", feature.getMethod().getId(), Field.Store.YES, Field.Index.ANALYZED));
-				if (feature.getMethod().getCvId()!=null){
-					method+=feature.getMethod().getCvId()+" ";
-					doc.add(new Field("methodCvId", feature.getMethod().getCvId(), Field.Store.YES, Field.Index.ANALYZED));
+				Collection <DasEntryPoint> ignored = processEntryPoints(pending, refDsn, writer, !create, indexedKeys, executor);
+				for (DasEntryPoint entryPoint:ignored){
+					try {
+						this.processEntryPoint(entryPoint,refDsn,writer,!create,indexedKeys);
+					} catch (BadReferenceObjectException e) {
+						segmentsIgnored.incrementAndGet();
+						logger.error("The entry point was ignored:"+entryPoint.getSegmentId());
+					}
 				}
-				if (feature.getMethod().getLabel()!=null){
-					method+=feature.getMethod().getLabel()+" ";
-					doc.add(new Field("methodLabel", feature.getMethod().getLabel(), Field.Store.YES, Field.Index.ANALYZED));
+			}
+			if (!create) {
+				for (String segmentKey : indexedVersions.keySet()) {
+					if (!entryPointIds.contains(segmentKey) && !indexedKeys.contains(segmentKey)) {
+						writer.deleteDocuments(new Term(SEGMENT_KEY_FIELD, segmentKey));
+						segmentsRemoved.incrementAndGet();
+					}
 				}
-				doc.add(new Field("method",method, Field.Store.NO, Field.Index.ANALYZED));
-			}
-			doc.add(new Field("start",""+feature.getStartCoordinate(), Field.Store.YES, Field.Index.ANALYZED));
-			doc.add(new Field("stop",""+feature.getStopCoordinate(), Field.Store.YES, Field.Index.ANALYZED));
-
-			if (feature.getScore()!=null) doc.add(new Field("score",""+feature.getScore(), Field.Store.YES, Field.Index.ANALYZED));
-			if (feature.getOrientation()!=null) doc.add(new Field("orientation",""+feature.getOrientation(), Field.Store.YES, Field.Index.ANALYZED));
-			if (feature.getPhase()!=null) doc.add(new Field("phase",""+feature.getPhase(), Field.Store.YES, Field.Index.ANALYZED));
-			if (feature.getNotes()!=null) {
-				String sep ="";
-				for (String note:feature.getNotes()){
-					notes+=sep+note;
-					sep =" ==NOTE== ";
+			} else {
+				writer.optimize();
+			}
+			// Until this commit the searches keep using the previous index.
+			writer.commit(FORMAT_COMMIT_DATA);
+			committed = true;
+			writer.close();
+			// The searchers pick up the new index on their next query.
+			IndexSearcherManager.indexChanged(dirPath, dsn);
+		} catch (DataSourceException e) {
+			throw new SearcherException("Error trying to query information of a data source",e);
+		} catch (UnimplementedFeatureException e) {
+			throw new SearcherException("The Entry-Point capability is a requirenment for the searching functions",e);
+		} catch (IOException e) {
+			throw new SearcherException("Error trying to write the index file ",e);
+		} finally {
+			if (executor != null) {
+				executor.shutdownNow();
+			}
+			if (!committed) {
+				rollback(writer, dsn);
+				restoreModifiedSegments(dsn, modified);
+			}
+		}
+	}
+
+	/**
+	 * Indexes a page of entry points, concurrently if an executor is given.
+	 * @return the entry points whose segment could not be retrieved, to be tried again.
+	 */
+	private Collection<DasEntryPoint> processEntryPoints(List<DasEntryPoint> entryPoints, final AnnotationDataSource refDsn, final IndexWriter writer,
+			final boolean replace, final Set<String> indexedKeys, ExecutorService executor) throws DataSourceException, IOException, SearcherException {
+		Collection <DasEntryPoint> ignored = new ArrayList<DasEntryPoint>();
+		if (executor == null) {
+			for (DasEntryPoint entryPoint:entryPoints){
+				try {
+					this.processEntryPoint(entryPoint,refDsn,writer,replace,indexedKeys);
+				} catch (BadReferenceObjectException e) {
+					ignored.add(entryPoint);
 				}
-				doc.add(new Field("notes",notes, Field.Store.YES, Field.Index.ANALYZED));
 			}
-			if (feature.getLinks()!=null) {
-				String sep ="";
-				for (URL key:feature.getLinks().keySet()){
-					links+=sep+feature.getLinks().get(key) +" _-_ "+ key;
-					sep =" ==LINK== ";
+			return ignored;
+		}
+		List<Future<Void>> futures = new ArrayList<Future<Void>>(entryPoints.size());
+		for (final DasEntryPoint entryPoint:entryPoints){
+			futures.add(executor.submit(new Callable<Void>() {
+				public Void call() throws Exception {
+					processEntryPoint(entryPoint,refDsn,writer,replace,indexedKeys);
+					return null;
 				}
-				doc.add(new Field("links",links, Field.Store.YES, Field.Index.ANALYZED));
-			}
-			if (feature.getTargets()!=null) {
-				String sep="";
-				for (DasTarget target:feature.getTargets()){
-					targets += sep+target.getTargetId();
-					targets += " _-_ "+target.getStartCoordinate();
-					targets += " _-_ "+target.getStopCoordinate();
-					if (target.getTargetName()!=null )targets += " _-_ "+target.getTargetName();
-					sep=" ==TARGET== ";
+			}));
+		}
+		try {
+			for (int i=0;i<futures.size();i++){
+				try {
+					futures.get(i).get();
+				} catch (ExecutionException ee) {
+					Throwable cause = ee.getCause();
+					if (cause instanceof BadReferenceObjectException) {
+						ignored.add(entryPoints.get(i));
+					} else if (cause instanceof DataSourceException) {
+						throw (DataSourceException) cause;
+					} else if (cause instanceof IOException) {
+						throw (IOException) cause;
+					} else if (cause instanceof RuntimeException) {
+						throw (RuntimeException) cause;
+					} else if (cause instanceof Error) {
+						throw (Error) cause;
+					} else {
+						throw new SearcherException("Unexpected exception indexing the segment " + entryPoints.get(i).getSegmentId(), cause);
+					}
 				}
-				doc.add(new Field("targets",targets, Field.Store.YES, Field.Index.ANALYZED));
 			}
-			if (feature.getParents()!=null) {
-				String sep="";
-				for(String parent:feature.getParents()){
-					parents+=sep+parent;
-					sep=" ==PARENT== ";
-				}
-				doc.add(new Field("parents",parents, Field.Store.YES, Field.Index.ANALYZED));
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			throw new SearcherException("Interrupted while indexing the segments", ie);
+		} finally {
+			// Only has an effect if a segment has failed. The running ones are not interrupted, as an interrupt
+			// could close the files of the index writer.
+			for (Future<Void> future : futures) {
+				future.cancel(false);
 			}
-			if (feature.getParts()!=null) {
-				String sep="";
-				for(String part:feature.getParts()){
-					parts+=sep+part;
-					sep=" ==PART== ";
-				}
-				doc.add(new Field("parts",parts, Field.Store.YES, Field.Index.ANALYZED));
+		}
+		return ignored;
+	}
+
+	private static ExecutorService createExecutor(final String dsn, int threads) {
+		return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "mydas-indexer-" + dsn + "-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Reads the version of the entry point each segment of an existing index was built from.
+	 * @return the version (null if unknown) per segment id, or null if there is no index or it was written
+	 * in a previous format, so it has to be rebuilt.
+	 */
+	private static Map<String,String> getIndexedVersions(Directory dir) throws IOException {
+		if (!IndexReader.indexExists(dir) || !INDEX_FORMAT.equals(IndexReader.getCommitUserData(dir).get(INDEX_FORMAT_KEY))) {
+			return null;
+		}
+		IndexReader reader = IndexReader.open(dir, true);
+		try {
+			Map<String,String> versions = new HashMap<String,String>();
+			TermEnum terms = reader.terms(new Term(SEGMENT_KEY_FIELD, ""));
+			TermDocs docs = reader.termDocs();
+			try {
+				do {
+					Term term = terms.term();
+					if (term == null || !SEGMENT_KEY_FIELD.equals(term.field())) {
+						break;
+					}
+					docs.seek(term);
+					if (docs.next()) {
+						versions.put(term.text(), reader.document(docs.doc(), VERSION_SELECTOR).get(VERSION_FIELD));
+					}
+				} while (terms.next());
+			} finally {
+				docs.close();
+				terms.close();
+			}
+			return versions;
+		} finally {
+			reader.close();
+		}
+	}
+
+	private static void rollback(IndexWriter writer, String dsn) {
+		if (writer != null) {
+			try {
+				writer.rollback();
+			} catch (IOException e) {
+				logger.error("Unable to roll back the changes to the index of " + dsn, e);
+			}
+		}
+	}
+
+	/**
+	 * Records that a segment of a data source has been modified, e.g. through writeback, so it is indexed again
+	 * the next time the indexes are generated.
+	 * @param dsn the id of the data source.
+	 * @param segmentId the id of the segment, or null if it is unknown, in which case the whole data source is
+	 * indexed again.
+	 */
+	public static void segmentModified(String dsn, String segmentId) {
+		if (segmentId == null) {
+			MODIFIED_DATA_SOURCES.add(dsn);
+			return;
+		}
+		Set<String> segments = MODIFIED_SEGMENTS.get(dsn);
+		if (segments == null) {
+			Set<String> created = Collections.synchronizedSet(new HashSet<String>());
+			segments = MODIFIED_SEGMENTS.putIfAbsent(dsn, created);
+			if (segments == null) {
+				segments = created;
+			}
+		}
+		segments.add(segmentId);
+	}
+
+	/**
+	 * @return the segments of the data source modified since the previous indexing, which are forgotten,
+	 * or null if the whole data source has to be indexed again.
+	 */
+	private static Set<String> takeModifiedSegments(String dsn) {
+		Set<String> taken = new HashSet<String>();
+		Set<String> segments = MODIFIED_SEGMENTS.get(dsn);
+		if (segments != null) {
+			synchronized (segments) {
+				taken.addAll(segments);
+				segments.clear();
+			}
+		}
+		return MODIFIED_DATA_SOURCES.remove(dsn) ? null : taken;
+	}
+
+	/**
+	 * Records again the modified segments taken by an indexing that has failed.
+	 */
+	private static void restoreModifiedSegments(String dsn, Set<String> modified) {
+		if (modified == null) {
+			segmentModified(dsn, null);
+		} else {
+			for (String segmentId : modified) {
+				segmentModified(dsn, segmentId);
 			}
-			doc.add(new Field("all",segmentS+" "+feature.getFeatureId()+" "+type+" "+method+" "+notes+" "+links+" "+targets+" "+parents+" "+parts, Field.Store.NO, Field.Index.ANALYZED));
-			writer.addDocument(doc);
+		}
+	}
+
+	/**
+	 * @return the id of the data source being indexed, or null if none is.
+	 */
+	public String getCurrentDataSource() {
+		return currentDataSource;
+	}
+
+	/**
+	 * @return the number of entry points of the data sources processed so far.
+	 */
+	public int getSegmentsTotal() {
+		return segmentsTotal.get();
+	}
+
+	/**
+	 * @return the number of segments that have been indexed.
+	 */
+	public int getSegmentsIndexed() {
+		return segmentsIndexed.get();
+	}
+
+	/**
+	 * @return the number of segments left as they were, being up to date.
+	 */
+	public int getSegmentsSkipped() {
+		return segmentsSkipped.get();
+	}
+
+	/**
+	 * @return the number of segments removed from the indexes, not being entry points anymore.
+	 */
+	public int getSegmentsRemoved() {
+		return segmentsRemoved.get();
+	}
+
+	/**
+	 * @return the number of entry points whose segment could not be retrieved.
+	 */
+	public int getSegmentsIgnored() {
+		return segmentsIgnored.get();
+	}
+
+	/**
+	 * Indexes the features of the segment of an entry point.
+	 * @param replace true to remove first the documents of the segment already in the index.
+	 * @param indexedKeys collects the keys of the indexed segments.
+	 */
+	private void processEntryPoint(DasEntryPoint entryPoint, AnnotationDataSource refDsn, IndexWriter writer, boolean replace, Set<String> indexedKeys) throws BadReferenceObjectException, DataSourceException, CorruptIndexException, IOException {
+
+		DasAnnotatedSegment segment;
+			segment = refDsn.getFeatures(entryPoint.getSegmentId(), null);
+		if (replace) {
+			// Deletions only apply to the documents added before them, so not to the ones added below.
+			writer.deleteDocuments(new Term(SEGMENT_KEY_FIELD, entryPoint.getSegmentId()));
+			if (!entryPoint.getSegmentId().equals(segment.getSegmentId()))
+				writer.deleteDocuments(new Term(SEGMENT_KEY_FIELD, segment.getSegmentId()));
+		}
+		indexedKeys.add(segment.getSegmentId());
+		for (DasFeature feature:segment.getFeatures()){
+			writer.addDocument(createDocument(segment, feature, entryPoint.getVersion()));
 		}		
+		segmentsIndexed.incrementAndGet();
+	}
+
+	/**
+	 * Folds the case of a segment id the way String.equalsIgnoreCase compares characters, so that two ids
+	 * are equal ignoring case if and only if their folded ids are equal.
+	 * @param segmentId the segment id.
+	 * @return the folded id.
+	 */
+	public static String foldSegmentKey(String segmentId) {
+		char[] folded = new char[segmentId.length()];
+		for (int i = 0; i < folded.length; i++)
+			folded[i] = Character.toLowerCase(Character.toUpperCase(segmentId.charAt(i)));
+		return new String(folded);
+	}
+
+	/**
+	 * Creates the document indexing a feature.
+	 * @param segment the segment of the feature.
+	 * @param feature the feature.
+	 * @param entryPointVersion the version of the entry point of the segment, null if unknown.
+	 * @return the document, whose only stored field is the {@link FeatureRecord} besides the version.
+	 */
+	public static Document createDocument(DasAnnotatedSegment segment, DasFeature feature, String entryPointVersion) {
+		Document doc = new Document();
+		String type="",method="",notes="",links="",targets="",parents="",parts="",segmentS="";
+
+		doc.add(new Field("segmentId", segment.getSegmentId(),																Field.Store.NO,	Field.Index.ANALYZED));
+		doc.add(new Field(SEGMENT_KEY_FIELD, segment.getSegmentId(), Field.Store.NO, Field.Index.NOT_ANALYZED));
+		doc.add(new Field(FOLDED_SEGMENT_KEY_FIELD, foldSegmentKey(segment.getSegmentId()), Field.Store.NO, Field.Index.NOT_ANALYZED));
+		if (entryPointVersion!=null)
+			doc.add(new Field(VERSION_FIELD, entryPointVersion, Field.Store.YES, Field.Index.NO));
+		segmentS +=segment.getSegmentId();
+		if (segment.getSegmentLabel()!=null) {
+			doc.add(new Field("segmentLabel", segment.getSegmentLabel(),																Field.Store.NO,	Field.Index.ANALYZED));
+			segmentS += " "+segment.getSegmentLabel();
+		}
+		if (segment.getVersion()!=null) {
+			doc.add(new Field("segmentVersion", segment.getVersion(),																Field.Store.NO,	Field.Index.ANALYZED));
+			segmentS += " "+segment.getVersion();
+		}
+		if (segment.getStartCoordinate()!=null) {
+			doc.add(new NumericField("segmentStart", Field.Store.NO, true).setIntValue(segment.getStartCoordinate()));
+			segmentS += " "+segment.getStartCoordinate();
+		}
+		if (segment.getStopCoordinate()!=null) {
+			doc.add(new NumericField("segmentStop", Field.Store.NO, true).setIntValue(segment.getStopCoordinate()));
+			segmentS += " "+segment.getStopCoordinate();
+		}
+
+		
+		doc.add(new Field("featureId", feature.getFeatureId(),		Field.Store.NO,	Field.Index.ANALYZED));
+		if (feature.getFeatureLabel()!=null) doc.add(new Field("featureLabel", feature.getFeatureLabel(), Field.Store.NO, Field.Index.ANALYZED));
+		if (feature.getType()!=null){
+			if (feature.getType().getId()!=null){ 
+				doc.add(new Field("typeId", feature.getType().getId(), Field.Store.NO, Field.Index.ANALYZED));
+				type +=feature.getType().getId()+" ";
+			}
+			if (feature.getType().getCvId()!=null){
+				doc.add(new Field("typeCvId", feature.getType().getCvId(), Field.Store.NO, Field.Index.ANALYZED));
+				type +=feature.getType().getCvId()+" ";
+			}
+			if (feature.getType().getLabel()!=null){ 
+				doc.add(new Field("typeLabel", feature.getType().getLabel(), Field.Store.NO, Field.Index.ANALYZED));
+				type +=feature.getType().getLabel()+" ";
+			}
+			if (feature.getType().getCategory()!=null){
+				doc.add(new Field("typeCategory", feature.getType().getCategory(), Field.Store.NO, Field.Index.ANALYZED));
+				type +=feature.getType().getCategory()+" ";
+			}
+			doc.add(new Field("type",type, Field.Store.NO, Field.Index.ANALYZED));
+		}
+		if (feature.getMethod()!=null){
+			method+=feature.getMethod().getId()+" ";
+			doc.add(new Field("methodId", feature.getMethod().getId(), Field.Store.NO, Field.Index.ANALYZED));
+			if (feature.getMethod().getCvId()!=null){
+				method+=feature.getMethod().getCvId()+" ";
+				doc.add(new Field("methodCvId", feature.getMethod().getCvId(), Field.Store.NO, Field.Index.ANALYZED));
+			}
+			if (feature.getMethod().getLabel()!=null){
+				method+=feature.getMethod().getLabel()+" ";
+				doc.add(new Field("methodLabel", feature.getMethod().getLabel(), Field.Store.NO, Field.Index.ANALYZED));
+			}
+			doc.add(new Field("method",method, Field.Store.NO, Field.Index.ANALYZED));
+		}
+		doc.add(new NumericField("start", Field.Store.NO, true).setIntValue(feature.getStartCoordinate()));
+		doc.add(new NumericField("stop", Field.Store.NO, true).setIntValue(feature.getStopCoordinate()));
+
+		if (feature.getScore()!=null) doc.add(new NumericField("score", Field.Store.NO, true).setDoubleValue(feature.getScore()));
+		if (feature.getOrientation()!=null) doc.add(new Field("orientation",""+feature.getOrientation(), Field.Store.NO, Field.Index.ANALYZED));
+		if (feature.getPhase()!=null) doc.add(new Field("phase",""+feature.getPhase(), Field.Store.NO, Field.Index.ANALYZED));
+		if (feature.getNotes()!=null) {
+			String sep ="";
+			for (String note:feature.getNotes()){
+				notes+=sep+note;
+				sep =" ";
+			}
+			doc.add(new Field("notes",notes, Field.Store.NO, Field.Index.ANALYZED));
+		}
+		if (feature.getLinks()!=null) {
+			String sep ="";
+			for (URL key:feature.getLinks().keySet()){
+				links+=sep+feature.getLinks().get(key) +" "+ key;
+				sep =" ";
+			}
+			doc.add(new Field("links",links, Field.Store.NO, Field.Index.ANALYZED));
+		}
+		if (feature.getTargets()!=null) {
+			String sep="";
+			for (DasTarget target:feature.getTargets()){
+				targets += sep+target.getTargetId();
+				targets += " "+target.getStartCoordinate();
+				targets += " "+target.getStopCoordinate();
+				if (target.getTargetName()!=null )targets += " "+target.getTargetName();
+				sep=" ";
+			}
+			doc.add(new Field("targets",targets, Field.Store.NO, Field.Index.ANALYZED));
+		}
+		if (feature.getParents()!=null) {
+			String sep="";
+			for(String parent:feature.getParents()){
+				parents+=sep+parent;
+				sep=" ";
+			}
+			doc.add(new Field("parents",parents, Field.Store.NO, Field.Index.ANALYZED));
+		}
+		if (feature.getParts()!=null) {
+			String sep="";
+			for(String part:feature.getParts()){
+				parts+=sep+part;
+				sep=" ";
+			}
+			doc.add(new Field("parts",parts, Field.Store.NO, Field.Index.ANALYZED));
+		}
+		// The only stored field, besides the version, from which the searcher rebuilds the feature.
+		doc.add(new Field(FeatureRecord.FIELD, FeatureRecord.encode(segment, feature), Field.Store.YES));
+		doc.add(new Field("all",segmentS+" "+feature.getFeatureId()+" "+type+" "+method+" "+notes+" "+links+" "+targets+" "+parents+" "+parts, Field.Store.NO, Field.Index.ANALYZED));
+		return doc;
 	}
-}
+}
\ No newline at end of file
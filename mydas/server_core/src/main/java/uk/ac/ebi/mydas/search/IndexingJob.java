@@ -0,0 +1,97 @@
+package uk.ac.ebi.mydas.search;
+
+import org.apache.log4j.Logger;
+
+import uk.ac.ebi.mydas.exceptions.SearcherException;
+
+/**
+ * Runs an {@link Indexer} in a background thread, so the request asking for the indexes to be generated does not
+ * wait for them, and exposes its progress to the later requests.
+ */
+public class IndexingJob implements Runnable {
+	private static final Logger logger = Logger.getLogger(IndexingJob.class);
+
+	public enum State { QUEUED, RUNNING, FINISHED, FAILED }
+
+	private final Indexer indexer;
+	private final boolean rebuild;
+	private volatile State state = State.QUEUED;
+	private volatile long startTime = 0;
+	private volatile long endTime = 0;
+	private volatile String error = null;
+
+	/**
+	 * @param indexer the indexer to run.
+	 * @param rebuild true to index all the segments again, see {@link Indexer#generateIndexes(boolean)}.
+	 */
+	public IndexingJob(Indexer indexer, boolean rebuild) {
+		this.indexer = indexer;
+		this.rebuild = rebuild;
+	}
+
+	public void run() {
+		startTime = System.currentTimeMillis();
+		state = State.RUNNING;
+		try {
+			indexer.generateIndexes(rebuild);
+			endTime = System.currentTimeMillis();
+			state = State.FINISHED;
+			logger.info("Indexes generated in " + (endTime - startTime) + "ms: " + indexer.getSegmentsIndexed() + " segments indexed, "
+					+ indexer.getSegmentsSkipped() + " up to date, " + indexer.getSegmentsRemoved() + " removed");
+		} catch (SearcherException e) {
+			fail(e);
+		} catch (RuntimeException e) {
+			fail(e);
+		}
+	}
+
+	private void fail(Exception e) {
+		logger.error("The generation of the indexes has failed", e);
+		error = e.getMessage();
+		endTime = System.currentTimeMillis();
+		state = State.FAILED;
+	}
+
+	/**
+	 * @return true if the job has finished, successfully or not.
+	 */
+	public boolean isDone() {
+		return state == State.FINISHED || state == State.FAILED;
+	}
+
+	public State getState() {
+		return state;
+	}
+
+	/**
+	 * @return the indexer run by the job, which reports the progress.
+	 */
+	public Indexer getIndexer() {
+		return indexer;
+	}
+
+	public boolean isRebuild() {
+		return rebuild;
+	}
+
+	/**
+	 * @return the time the job started running, 0 if it is still queued.
+	 */
+	public long getStartTime() {
+		return startTime;
+	}
+
+	/**
+	 * @return the time the job finished, 0 if it has not.
+	 */
+	public long getEndTime() {
+		return endTime;
+	}
+
+	/**
+	 * @return the message of the error that made the job fail, if it has.
+	 */
+	public String getError() {
+		return error;
+	}
+}
@@ -1,9 +1,10 @@
 package uk.ac.ebi.mydas.search;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
 
+import org.apache.lucene.document.FieldSelector;
+import org.apache.lucene.document.MapFieldSelector;
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.FieldCache;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Scorer;
 import org.apache.lucene.search.TopDocs;
@@ -22,11 +23,20 @@ import org.apache.lucene.search.ScoreDoc;
  * {Float#NEGATIVE_INFINITY} are not valid scores.  This
  * collector will not properly collect hits with such
  * scores.
+ *
+ * <p>Besides the top hits, every hit is counted in the total of its segment.
+ * All this state belongs to the instance, so a collector must be created for
+ * each search, and concurrent searches do not share anything.
  */
 public abstract class MyDasCollector extends TopDocsCollector<ScoreDoc> {
 
-	private static Map<String,Integer> hitsPerSegment;
-	private static IndexSearcher searcher;
+	/**
+	 * Selects the only stored field needed to count the hits of an index written before the segment key was indexed.
+	 */
+	private static final FieldSelector SEGMENT_ID_SELECTOR = new MapFieldSelector(new String[]{"segmentId"});
+
+	private final SegmentHitCounts hitsPerSegment = new SegmentHitCounts();
+
 	// Assumes docs are scored in order.
 	private static class InOrderTopScoreDocCollector extends MyDasCollector {
 		private InOrderTopScoreDocCollector(int numHits) {
@@ -42,6 +52,7 @@ public abstract class MyDasCollector extends TopDocsCollector<ScoreDoc> {
 			assert !Float.isNaN(score);
 
 			totalHits++;
+			countSegment(doc);
 			if (score <= pqTop.score) {
 				// Since docs are returned in-order (i.e., increasing doc Id), a document
 				// with equal score to pqTop.score cannot compete since HitQueue favors
@@ -51,12 +62,6 @@ public abstract class MyDasCollector extends TopDocsCollector<ScoreDoc> {
 			pqTop.doc = doc + docBase;
 			pqTop.score = score;
 			pqTop = pq.updateTop();
-			String segmentId=searcher.doc(doc).get("segmentId");
-			Integer current=hitsPerSegment.get(segmentId);
-			if(null==current)
-				hitsPerSegment.put(segmentId, 1);
-			else
-				hitsPerSegment.put(segmentId, current+1);
 		}
 
 		@Override
@@ -79,6 +84,7 @@ public abstract class MyDasCollector extends TopDocsCollector<ScoreDoc> {
 			assert !Float.isNaN(score);
 
 			totalHits++;
+			countSegment(doc);
 			doc += docBase;
 			if (score < pqTop.score || (score == pqTop.score && doc > pqTop.doc)) {
 				return;
@@ -86,12 +92,6 @@ public abstract class MyDasCollector extends TopDocsCollector<ScoreDoc> {
 			pqTop.doc = doc;
 			pqTop.score = score;
 			pqTop = pq.updateTop();
-			String segmentId=searcher.doc(doc).get("segmentId");
-			Integer current=hitsPerSegment.get(segmentId);
-			if(null==current)
-				hitsPerSegment.put(segmentId, 1);
-			else
-				hitsPerSegment.put(segmentId, current+1);
 		}
 
 		@Override
@@ -109,11 +109,9 @@ public abstract class MyDasCollector extends TopDocsCollector<ScoreDoc> {
 	 * pre-allocate a full array of length
 	 * <code>numHits</code>, and fill the array with sentinel
 	 * objects.
-	 * @param searcher 
+	 * All the hits are counted per segment, including those that are not among the top numHits.
 	 */
-	public static MyDasCollector create(int numHits, boolean docsScoredInOrder, IndexSearcher indexSearcher) {
-		hitsPerSegment = new HashMap<String,Integer>();
-		searcher=indexSearcher;
+	public static MyDasCollector create(int numHits, boolean docsScoredInOrder) {
 		if (docsScoredInOrder) {
 			return new InOrderTopScoreDocCollector(numHits);
 		} else {
@@ -125,6 +123,10 @@ public abstract class MyDasCollector extends TopDocsCollector<ScoreDoc> {
 	ScoreDoc pqTop;
 	int docBase = 0;
 	Scorer scorer;
+	IndexReader reader;
+	private int[] segmentOrds;
+	private String[] segmentKeys;
+	private int[] segmentCounts;
 
 	// prevents instantiation
 	private MyDasCollector(int numHits) {
@@ -156,8 +158,48 @@ public abstract class MyDasCollector extends TopDocsCollector<ScoreDoc> {
 	}
 
 	@Override
-	public void setNextReader(IndexReader reader, int base) {
+	public void setNextReader(IndexReader reader, int base) throws IOException {
+		addSegmentCounts();
 		docBase = base;
+		this.reader = reader;
+		FieldCache.StringIndex index = FieldCache.DEFAULT.getStringIndex(reader, Indexer.SEGMENT_KEY_FIELD);
+		if (index.lookup.length > 1) {
+			segmentOrds = index.order;
+			segmentKeys = index.lookup;
+			segmentCounts = new int[segmentKeys.length];
+		} else {
+			// No segment keys: the index was written by a previous version.
+			segmentOrds = null;
+			segmentKeys = null;
+			segmentCounts = null;
+		}
+	}
+
+	/**
+	 * Counts a hit of the current reader in the total of its segment.
+	 * @param doc the id of the document in the current reader.
+	 */
+	void countSegment(int doc) throws IOException {
+		if (segmentOrds != null) {
+			segmentCounts[segmentOrds[doc]]++;
+		} else {
+			hitsPerSegment.add(reader.document(doc, SEGMENT_ID_SELECTOR).get("segmentId"), 1);
+		}
+	}
+
+	/**
+	 * Adds the hits counted per ordinal of the current reader to the totals of their segments.
+	 * Called on every change of reader, and by {@link #finish()} for the last one.
+	 */
+	private void addSegmentCounts() {
+		if (segmentCounts != null) {
+			for (int ord = 1; ord < segmentCounts.length; ord++) {
+				if (segmentCounts[ord] > 0) {
+					hitsPerSegment.add(segmentKeys[ord], segmentCounts[ord]);
+					segmentCounts[ord] = 0;
+				}
+			}
+		}
 	}
 
 	@Override
@@ -165,7 +207,18 @@ public abstract class MyDasCollector extends TopDocsCollector<ScoreDoc> {
 		this.scorer = scorer;
 	}
 	
-	public Integer getSizePerSegment(String segmentId){
+	/**
+	 * Adds the hits of the last reader to the totals of their segments.
+	 * Must be called once the search is over, before {@link #getSizePerSegment(String)}.
+	 */
+	public void finish() {
+		addSegmentCounts();
+		segmentOrds = null;
+		segmentKeys = null;
+		segmentCounts = null;
+	}
+
+	public int getSizePerSegment(String segmentId){
 		return hitsPerSegment.get(segmentId);
 	}
 	
@@ -0,0 +1,72 @@
+package uk.ac.ebi.mydas.search;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.queryParser.ParseException;
+import org.apache.lucene.queryParser.QueryParser;
+import org.apache.lucene.search.NumericRangeQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.util.Version;
+
+/**
+ * Query parser aware of the fields the {@link Indexer} writes as numbers, so that <code>start:[100 TO 200]</code>
+ * or <code>score:[0.5 TO *]</code> are numeric ranges instead of lexicographic ones, and <code>stop:300</code>
+ * matches the number. An asterisk leaves a bound of a range open.
+ */
+class NumericQueryParser extends QueryParser {
+	static final Set<String> INT_FIELDS = new HashSet<String>(Arrays.asList("start", "stop", "segmentStart", "segmentStop"));
+	static final Set<String> DOUBLE_FIELDS = new HashSet<String>(Arrays.asList("score"));
+
+	NumericQueryParser(Version matchVersion, String field, Analyzer analyzer) {
+		super(matchVersion, field, analyzer);
+	}
+
+	@Override
+	protected Query getRangeQuery(String field, String part1, String part2, boolean inclusive) throws ParseException {
+		if (INT_FIELDS.contains(field)) {
+			return NumericRangeQuery.newIntRange(field, parseInt(field, part1), parseInt(field, part2), inclusive, inclusive);
+		}
+		if (DOUBLE_FIELDS.contains(field)) {
+			return NumericRangeQuery.newDoubleRange(field, parseDouble(field, part1), parseDouble(field, part2), inclusive, inclusive);
+		}
+		return super.getRangeQuery(field, part1, part2, inclusive);
+	}
+
+	@Override
+	protected Query getFieldQuery(String field, String queryText) throws ParseException {
+		if (INT_FIELDS.contains(field)) {
+			Integer value = parseInt(field, queryText);
+			return NumericRangeQuery.newIntRange(field, value, value, true, true);
+		}
+		if (DOUBLE_FIELDS.contains(field)) {
+			Double value = parseDouble(field, queryText);
+			return NumericRangeQuery.newDoubleRange(field, value, value, true, true);
+		}
+		return super.getFieldQuery(field, queryText);
+	}
+
+	private static Integer parseInt(String field, String text) throws ParseException {
+		if ("*".equals(text)) {
+			return null;
+		}
+		try {
+			return Integer.valueOf(text.trim());
+		} catch (NumberFormatException e) {
+			throw new ParseException("The field " + field + " only accepts integers: " + text);
+		}
+	}
+
+	private static Double parseDouble(String field, String text) throws ParseException {
+		if ("*".equals(text)) {
+			return null;
+		}
+		try {
+			return Double.valueOf(text.trim());
+		} catch (NumberFormatException e) {
+			throw new ParseException("The field " + field + " only accepts numbers: " + text);
+		}
+	}
+}
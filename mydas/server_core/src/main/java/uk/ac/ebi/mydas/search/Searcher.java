@@ -1,29 +1,32 @@
 package uk.ac.ebi.mydas.search;
 
-import java.io.File;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
-import java.net.MalformedURLException;
-import java.net.URL;
 import java.net.URLDecoder;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
 
 import org.apache.log4j.Logger;
 
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.FieldSelector;
+import org.apache.lucene.document.Fieldable;
+import org.apache.lucene.document.MapFieldSelector;
 import org.apache.lucene.index.CorruptIndexException;
+import org.apache.lucene.index.Term;
 import org.apache.lucene.queryParser.ParseException;
-import org.apache.lucene.queryParser.QueryParser;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.Filter;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.NumericRangeQuery;
 import org.apache.lucene.search.Query;
+import org.apache.lucene.search.QueryWrapperFilter;
 import org.apache.lucene.search.ScoreDoc;
-import org.apache.lucene.search.TopScoreDocCollector;
-import org.apache.lucene.store.Directory;
-import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.util.Version;
 
 import uk.ac.ebi.mydas.controller.DasFeatureRequestFilter;
@@ -32,16 +35,16 @@ import uk.ac.ebi.mydas.exceptions.DataSourceException;
 import uk.ac.ebi.mydas.exceptions.SearcherException;
 import uk.ac.ebi.mydas.extendedmodel.DasUnknownFeatureSegment;
 import uk.ac.ebi.mydas.model.DasAnnotatedSegment;
-import uk.ac.ebi.mydas.model.DasFeature;
-import uk.ac.ebi.mydas.model.DasFeatureOrientation;
-import uk.ac.ebi.mydas.model.DasMethod;
-import uk.ac.ebi.mydas.model.DasPhase;
-import uk.ac.ebi.mydas.model.DasTarget;
-import uk.ac.ebi.mydas.model.DasType;
 
 
 public class Searcher {
 	private static final Logger logger = Logger.getLogger(Searcher.class);
+	private static final StandardAnalyzer ANALYZER = new StandardAnalyzer(Version.LUCENE_30);
+	private static final int MAX_HITS = 100000;
+	/**
+	 * Loads the only stored field the features are read back from.
+	 */
+	private static final FieldSelector RECORD_FIELD = new MapFieldSelector(new String[]{FeatureRecord.FIELD});
 	private String dirPath, dataSourceName;
 	private DasFeatureRequestFilter filter=null;
 	
@@ -53,74 +56,72 @@ public class Searcher {
 	public Collection<DasAnnotatedSegment> search(DasFeatureRequestFilter filter) throws SearcherException{
 		this.filter=filter;
 		String query = this.getMergedQuery(filter);
+		Filter segmentFilter = this.getSegmentFilter(filter);
 		if (filter.getRows()==null)
-			return this.search(query, null,null);
-		return this.search(query, filter.getRows().getFrom(), filter.getRows().getTo());
+			return this.search(query, segmentFilter, null,null);
+		return this.search(query, segmentFilter, filter.getRows().getFrom(), filter.getRows().getTo());
 	}
 	public Collection<DasAnnotatedSegment> search(String query, Integer from, Integer to) throws SearcherException{
+		return search(query, null, from, to);
+	}
+
+	private Collection<DasAnnotatedSegment> search(String query, Filter segmentFilter, Integer from, Integer to) throws SearcherException{
 		try {
 			query = URLDecoder.decode(query,"UTF-8");
 		} catch (UnsupportedEncodingException e) {
 			throw new SearcherException("Error trying to URLdecode the query",e);
 		}
 		
-		StandardAnalyzer analyzer = new StandardAnalyzer(Version.LUCENE_30);
-
-		Directory fsDir=null;
+		IndexSearcherManager manager = IndexSearcherManager.getInstance(dirPath, dataSourceName);
+		IndexSearcher searcher = manager.acquire();
 		try {
-			fsDir = FSDirectory.open(new File(dirPath+"/"+dataSourceName));
-		} catch (IOException e) {
-			throw new SearcherException("Error trying to open the index file",e);
+			return search(searcher, query, segmentFilter, from, to);
+		} finally {
+			manager.release(searcher);
 		}
-		IndexSearcher searcher=null;
-		try {
-			searcher = new IndexSearcher(fsDir);
-		} catch (CorruptIndexException e) {
-			throw new SearcherException("The index file is corrupt",e);
-		} catch (IOException e) {
-			throw new SearcherException("Error trying to open the index file.",e);
-		}
-
+	}
 
+	private Collection<DasAnnotatedSegment> search(IndexSearcher searcher, String query, Filter segmentFilter, Integer from, Integer to) throws SearcherException{
 		Query q=null;
-		try {
-			q = new QueryParser(Version.LUCENE_30, "title", analyzer).parse(query);
-		} catch (ParseException e) {
-			throw new SearcherException("Error parsing the query.",e);
+		if (query.trim().length()==0) {
+			// Only segments have been requested.
+			q = new MatchAllDocsQuery();
+		} else {
+			try {
+				q = new NumericQueryParser(Version.LUCENE_30, "title", ANALYZER).parse(query);
+			} catch (ParseException e) {
+				throw new SearcherException("Error parsing the query.",e);
+			}
 		}
 
-		int hitsPerPage = 100000;
-		MyDasCollector collector = MyDasCollector.create(hitsPerPage, true,searcher);
+		// Only the hits up to the last requested row are kept; all of them are still counted.
+		int hitsPerPage = Math.min(MAX_HITS, Math.max(1, searcher.getIndexReader().maxDoc()));
+		if (to!=null && to>0 && to<hitsPerPage)
+			hitsPerPage=to;
+		MyDasCollector collector = MyDasCollector.create(hitsPerPage, true);
 		try {
-			searcher.search(q, collector);
+			searcher.search(q, segmentFilter, collector);
+			collector.finish();
 		} catch (IOException e) {
 			throw new SearcherException("Error in I/O operations while searching.",e);
 		}
-		ScoreDoc[] hits;
-//		if (from==null)
-			hits= collector.topDocs().scoreDocs;
-//		else
-//			hits= collector.topDocs(from,to-from).scoreDocs;
+		if ((from==null)||(from<1))  
+			from=1;
+		ScoreDoc[] hits= collector.topDocs(from-1, hitsPerPage-from+1).scoreDocs;
 		filter.setPaginated(true);
 		filter.setTotalFeatures(collector.getTotalHits());
 		Collection<DasAnnotatedSegment> segments= new ArrayList<DasAnnotatedSegment>();
-		if (hits.length==0)
+		if (collector.getTotalHits()==0)
 			try {
 				segments.add(new DasUnknownFeatureSegment(query));
 			} catch (DataSourceException e1) {
 				throw new SearcherException("The resultset was empty but was impossible to generete the XML",e1);
 			}
-			
 
-		if ((to==null)||(to>hits.length)) 
-			to=hits.length;
-		if ((from==null)||(from<1))  
-			from=1;
-		for(int i=from;i<=to;++i) {
-			int docId = hits[i-1].doc;
+		for(ScoreDoc hit:hits) {
 			try {
-				DasAnnotatedSegment segment = getSegmentFromDoc(searcher.doc(docId));
-				segment.setTotalFeatures(collector.getSizePerSegment(searcher.doc(docId).get("segmentId")));
+				DasAnnotatedSegment segment = getSegmentFromDoc(searcher.doc(hit.doc, RECORD_FIELD));
+				segment.setTotalFeatures(collector.getSizePerSegment(segment.getSegmentId()));
 				addSegment2Collection(segments,segment);
 			} catch (CorruptIndexException e) {
 				throw new SearcherException("Error recovering one of the result docs.",e);
@@ -129,12 +130,6 @@ public class Searcher {
 			}
 		}
 
-		try {
-			searcher.close();
-		} catch (IOException e) {
-			throw new SearcherException("Error closing the searcher.",e);
-		}
-
 		return segments;
 	}
 
@@ -149,173 +144,23 @@ public class Searcher {
 	}
 
 	private DasAnnotatedSegment getSegmentFromDoc(Document document) throws SearcherException {
-		
-			try {
-				if (document.get("segmentStart")!=null && document.get("segmentStop")!=null)
-					return new DasAnnotatedSegment(document.get("segmentId"), new Integer(document.get("segmentStart")), new Integer(document.get("segmentStop")), document.get("segmentVersion"), document.get("segmentLabel"), getFeaturesFromDoc(document));
-				else
-					return new DasAnnotatedSegment(document.get("segmentId"), null,null, document.get("segmentVersion"), document.get("segmentLabel"), getFeaturesFromDoc(document));
-			} catch (NumberFormatException e) {
-				throw new SearcherException("Number Format Error creating the segment from the lucene document.",e);
-			} catch (DataSourceException e) {
-				throw new SearcherException("Error creating the segment from the lucene document.",e);
-			}
-	}
-
-	private Collection<DasFeature> getFeaturesFromDoc(Document document) throws SearcherException {
-		int start=0,stop=0;
-		Double score=null;
-		if (document.get("start")!=null) 	start = new Integer(document.get("start"));
-		if (document.get("stop")!=null) 	stop = new Integer(document.get("stop"));
-		if (document.get("score")!=null) 	score = new Double(document.get("score"));
-		DasFeatureOrientation orientation =null;
-		if (document.get("orientation")!=null){
-			String aux =document.get("orientation");
-			if (aux.equals("+")) 	orientation=DasFeatureOrientation.ORIENTATION_SENSE_STRAND;
-			if (aux.equals("-")) 	orientation=DasFeatureOrientation.ORIENTATION_ANTISENSE_STRAND;
-			if (aux.equals("0")) 	orientation=DasFeatureOrientation.ORIENTATION_NOT_APPLICABLE;
-		}
-		DasPhase phase =null;
-		if (document.get("phase")!=null){
-			String aux =document.get("phase");
-			if (aux.equals("0")) 	phase=DasPhase.PHASE_READING_FRAME_0;
-			if (aux.equals("1")) 	phase=DasPhase.PHASE_READING_FRAME_1;
-			if (aux.equals("2")) 	phase=DasPhase.PHASE_READING_FRAME_2;
-			if (aux.equals("-")) 	phase=DasPhase.PHASE_NOT_APPLICABLE;
-		}
-		DasFeature feature=null;
-		try {
-			feature = new DasFeature(	document.get("featureId"), 
-												document.get("featureLabel"), 
-												getTypeFromDoc(document), 
-												getMethodFromDoc(document), 
-												start, 
-												stop, 
-												score, 
-												orientation, 
-												phase, 
-												getNotesFromDoc(document), 
-												getLinksFromDoc(document), 
-												getTargetsFromDoc(document), 
-												getParentsFromDoc(document), 
-												getPartsFromDoc(document));
-		} catch (DataSourceException e) {
-			throw new SearcherException("Error creating the feature from the lucene document.",e);
-		}
-		Collection<DasFeature> features= new ArrayList<DasFeature>();
-		features.add(feature);
-		return features;
-	}
-
-	private Collection<DasTarget> getTargetsFromDoc(Document document) throws SearcherException {
-		if (document.get("targets")!=null){
-			Collection<DasTarget> targetsF= new ArrayList<DasTarget>();
-			String[] targets=document.get("targets").split(" ==TARGET== ");
-			for(String target:targets){
-				String[] targetIn=target.split(" _-_ ");
-				
-				try {
-					if (targetIn.length==3)
-						targetsF.add(new DasTarget(targetIn[0], new Integer(targetIn[1]), new Integer(targetIn[2]), null));
-					else if (targetIn.length==4)
-						targetsF.add(new DasTarget(targetIn[0], new Integer(targetIn[1]), new Integer(targetIn[2]), targetIn[3]));
-				} catch (NumberFormatException e) {
-					throw new SearcherException("Number Format Error creating the target from the lucene document.",e);
-				} catch (DataSourceException e) {
-					throw new SearcherException("Error creating the target from the lucene document.",e);
-				}
-			}
-			return targetsF;
-		}
-
-		return null;
-	}
-
-	private Collection<String> getNotesFromDoc(Document document) {
-		if (document.get("notes")!=null){
-			Collection<String> notesF= new ArrayList<String>();
-			String[] notes=document.get("notes").split(" ==NOTE== ");
-			for(String note:notes)
-				notesF.add(note);
-			return notesF;
-		}
-		return null;
-	}
-
-	private DasMethod getMethodFromDoc(Document document) {
-		try {
-			return new DasMethod(document.get("methodId"), document.get("methodLabel"), document.get("methodCvId"));
-		} catch (DataSourceException e) {
-			return null;
-		}
-	}
-
-	private DasType getTypeFromDoc(Document document) {
-		return new DasType(document.get("typeId"), document.get("typeCategory"), document.get("typeCvId"), document.get("typeLabel"));
-	}
-
-	private Collection<String> getParentsFromDoc(Document document) {
-		if (document.get("parents")!=null){
-			Collection<String> parentsF= new ArrayList<String>();
-			String[] parents=document.get("parents").split(" ==PARENT== ");
-			for(String parent:parents)
-				parentsF.add(parent);
-			return parentsF;
-		}
-		return null;
-	}
-
-	private Map<URL, String> getLinksFromDoc(Document document) {
-		if (document.get("links")!=null){
-			Map<URL, String> linksF= new HashMap<URL, String>();
-			String[] links=document.get("links").split(" ==LINK== ");
-			for(String link:links){
-				String[] linkIn=link.split(" _-_ ");
-				if (linkIn.length==2)
-					try {
-						linksF.put(new URL(linkIn[1]), linkIn[0]);
-					} catch (MalformedURLException e) {
-						logger.error("The url "+linkIn[0]+" is malformed");
-					}
-			}
-			return linksF;
-		}
-
-		return null;
-	}
-
-	private Collection<String> getPartsFromDoc(Document document) {
-		if (document.get("parts")!=null){
-			Collection<String> partsF= new ArrayList<String>();
-			String[] parts=document.get("parts").split(" ==PART== ");
-			for(String part:parts)
-				partsF.add(part);
-			return partsF;
-		}
-		return null;
+		Fieldable record = document.getFieldable(FeatureRecord.FIELD);
+		if (record == null)
+			throw new SearcherException("The index of " + dataSourceName + " has been written by a previous version, it has to be generated again.");
+		return FeatureRecord.decode(record.getBinaryValue(), record.getBinaryOffset(), record.getBinaryLength());
 	}
 	
+	/**
+	 * @return the query text combining the advanced query with the feature ids, categories and types of the request.
+	 * The requested segments are applied separately, see {@link #getSegmentFilter(DasFeatureRequestFilter)}.
+	 */
 	public String getMergedQuery(DasFeatureRequestFilter filter){
 		String query=filter.getAdvanceQuery();
-		
-		//getting the query for all the segments
-		String querySegment="";
-		String connector="";
-		if (filter.getRequestedSegments()!=null){
-			for (SegmentQuery segmentQuery:filter.getRequestedSegments()){
-				querySegment = connector + "(segmentId:"+segmentQuery.getSegmentId();
-				if (segmentQuery.getStartCoordinate()!=null && segmentQuery.getStopCoordinate()!=null){
-					querySegment +=" AND segmentStart:["+segmentQuery.getStartCoordinate()+" TO *]";
-					querySegment +=" AND segmentStop:[* TO "+segmentQuery.getStopCoordinate()+"]";
-				}
-				querySegment +=")";
-				connector=" OR ";
-			}
-			query=mergeAND(query,querySegment);
-		}
+		if (query==null)
+			query="";
 		
 		String queryFeatureIds="";
-		connector="";
+		String connector="";
 		if (filter.getFeatureIds()!=null){
 			for (String featureId:filter.getFeatureIds()){
 				queryFeatureIds += connector + "featureId:"+featureId;
@@ -345,6 +190,55 @@ public class Searcher {
 		}
 		return query;
 	}
+	/**
+	 * Restricts the search to the requested segments, ignoring the case of their ids, and, for those requested
+	 * with coordinates, to the features overlapping them plus the non-positional ones, by numeric ranges on the
+	 * feature coordinates.
+	 * @return the filter, or null if no segment has been requested.
+	 */
+	private Filter getSegmentFilter(DasFeatureRequestFilter filter){
+		if (filter.getRequestedSegments()==null || filter.getRequestedSegments().isEmpty())
+			return null;
+		List<Query> segments = new ArrayList<Query>(filter.getRequestedSegments().size());
+		for (SegmentQuery segmentQuery:filter.getRequestedSegments()){
+			BooleanQuery segment = new BooleanQuery();
+			segment.add(new TermQuery(new Term(Indexer.FOLDED_SEGMENT_KEY_FIELD, Indexer.foldSegmentKey(segmentQuery.getSegmentId()))), Occur.MUST);
+			if (segmentQuery.getStartCoordinate()!=null && segmentQuery.getStopCoordinate()!=null){
+				BooleanQuery overlapping = new BooleanQuery();
+				overlapping.add(NumericRangeQuery.newIntRange("stop", segmentQuery.getStartCoordinate(), null, true, true), Occur.MUST);
+				overlapping.add(NumericRangeQuery.newIntRange("start", null, segmentQuery.getStopCoordinate(), true, true), Occur.MUST);
+				BooleanQuery nonPositional = new BooleanQuery();
+				nonPositional.add(NumericRangeQuery.newIntRange("start", 0, 0, true, true), Occur.MUST);
+				nonPositional.add(NumericRangeQuery.newIntRange("stop", 0, 0, true, true), Occur.MUST);
+				BooleanQuery coordinates = new BooleanQuery();
+				coordinates.add(overlapping, Occur.SHOULD);
+				coordinates.add(nonPositional, Occur.SHOULD);
+				segment.add(coordinates, Occur.MUST);
+			}
+			segments.add(segment);
+		}
+		return new QueryWrapperFilter(or(segments));
+	}
+
+	/**
+	 * Combines the queries with OR, nesting them so that no BooleanQuery holds more clauses than
+	 * {@link BooleanQuery#getMaxClauseCount()}, however many segments are requested.
+	 */
+	private static Query or(List<Query> queries){
+		int maxClauses = BooleanQuery.getMaxClauseCount();
+		while (queries.size() > 1){
+			List<Query> groups = new ArrayList<Query>((queries.size() + maxClauses - 1) / maxClauses);
+			for (int from = 0; from < queries.size(); from += maxClauses){
+				BooleanQuery group = new BooleanQuery();
+				for (Query query : queries.subList(from, Math.min(from + maxClauses, queries.size())))
+					group.add(query, Occur.SHOULD);
+				groups.add(group);
+			}
+			queries = groups;
+		}
+		return queries.get(0);
+	}
+
 	private String mergeAND(String q1,String q2){
 		if (q1==null || q1.trim().equals("")) return q2;
 		if (q2==null || q2.trim().equals("")) return q1;
@@ -0,0 +1,78 @@
+package uk.ac.ebi.mydas.search;
+
+/**
+ * Number of hits of each segment found by a search, kept as primitive ints in an open addressing table
+ * so that counting does not box an Integer for every hit.
+ *
+ * Owned by a single {@link MyDasCollector}, hence by a single request; it is not thread safe.
+ */
+class SegmentHitCounts {
+	private String[] keys;
+	private int[] counts;
+	private int size = 0;
+
+	SegmentHitCounts() {
+		keys = new String[16];
+		counts = new int[16];
+	}
+
+	/**
+	 * Adds hits to the total of a segment.
+	 * @param segmentId the id of the segment.
+	 * @param hits the number of hits to add.
+	 */
+	void add(String segmentId, int hits) {
+		int slot = slot(keys, segmentId);
+		if (keys[slot] == null) {
+			keys[slot] = segmentId;
+			if (++size * 2 > keys.length) {
+				grow();
+				slot = slot(keys, segmentId);
+			}
+		}
+		counts[slot] += hits;
+	}
+
+	/**
+	 * @param segmentId the id of the segment.
+	 * @return the number of hits of the segment, 0 if it has none.
+	 */
+	int get(String segmentId) {
+		int slot = slot(keys, segmentId);
+		return (keys[slot] == null) ? 0 : counts[slot];
+	}
+
+	/**
+	 * @return the number of segments having at least one hit.
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @return the slot holding the key, or the empty slot where it would be added.
+	 */
+	private static int slot(String[] keys, String segmentId) {
+		int mask = keys.length - 1;
+		int hash = segmentId.hashCode();
+		int slot = (hash ^ (hash >>> 16)) & mask;
+		while (keys[slot] != null && !keys[slot].equals(segmentId)) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private void grow() {
+		String[] oldKeys = keys;
+		int[] oldCounts = counts;
+		keys = new String[oldKeys.length * 2];
+		counts = new int[oldKeys.length * 2];
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != null) {
+				int slot = slot(keys, oldKeys[i]);
+				keys[slot] = oldKeys[i];
+				counts[slot] = oldCounts[i];
+			}
+		}
+	}
+}
@@ -0,0 +1,129 @@
+package uk.ac.ebi.mydas.cache;
+
+import junit.framework.TestCase;
+import uk.ac.ebi.mydas.datasource.ReferenceDataSource;
+import uk.ac.ebi.mydas.exceptions.BadReferenceObjectException;
+import uk.ac.ebi.mydas.exceptions.CoordinateErrorException;
+import uk.ac.ebi.mydas.exceptions.DataSourceException;
+import uk.ac.ebi.mydas.model.DasSequence;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+public class CachingReferenceDataSourceTest extends TestCase {
+
+    private static final String SEQUENCE = "ACGTACGTAAccggttNNNNacgtA";
+
+    private int reads;
+
+    private CachingReferenceDataSource cache;
+
+    /**
+     * A reference data source holding the sequence chr1, starting at 1, and counting its reads.  It returns
+     * no sequence for the id "null".
+     */
+    private ReferenceDataSource dataSource() {
+        return (ReferenceDataSource) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{ReferenceDataSource.class},
+                new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if (!method.getName().equals("getSequence")) {
+                            throw new UnsupportedOperationException(method.getName());
+                        }
+                        reads++;
+                        if ("null".equals(args[0])) {
+                            return null;
+                        }
+                        if (!"chr1".equals(args[0])) {
+                            throw new BadReferenceObjectException((String) args[0], "Unknown sequence");
+                        }
+                        return new DasSequence("chr1", SEQUENCE, 1, "1", null);
+                    }
+                });
+    }
+
+    @Override
+    protected void setUp() {
+        reads = 0;
+        cache = new CachingReferenceDataSource(dataSource(), 4, 1000);
+    }
+
+    private String get(int start, int stop) throws DataSourceException, CoordinateErrorException, BadReferenceObjectException {
+        return cache.getSequence("chr1", start, stop).getSequenceString();
+    }
+
+    /**
+     * Ranges starting and ending on each position of the blocks are assembled from the cached blocks.
+     */
+    public void testBlocksAreAssembledAcrossBoundaries() throws DataSourceException, CoordinateErrorException, BadReferenceObjectException {
+        assertEquals(SEQUENCE, get(1, SEQUENCE.length()));
+        assertEquals(1, reads);
+        assertEquals(SEQUENCE.length(), cache.getCurrentBytes());
+        for (int start = 1; start <= SEQUENCE.length(); start++) {
+            for (int stop = start; stop <= SEQUENCE.length(); stop++) {
+                assertEquals(start + "-" + stop, SEQUENCE.substring(start - 1, stop), get(start, stop));
+            }
+        }
+        assertEquals("All the ranges are read from the cache", 1, reads);
+    }
+
+    public void testMissingBlockReadsTheSequence() throws DataSourceException, CoordinateErrorException, BadReferenceObjectException {
+        assertEquals("ACGT", get(1, 4));
+        assertEquals(4, cache.getCurrentBytes());
+        assertEquals("ACG", get(1, 3));
+        assertEquals(1, reads);
+        assertEquals("TACGTA", get(4, 9));
+        assertEquals("The second block is not cached", 2, reads);
+        assertEquals(12, cache.getCurrentBytes());
+    }
+
+    public void testLeastRecentlyUsedBlocksAreEvicted() throws DataSourceException, CoordinateErrorException, BadReferenceObjectException {
+        cache = new CachingReferenceDataSource(dataSource(), 4, 8);
+        assertEquals("ACGT", get(1, 4));
+        assertEquals("ACGT", get(5, 8));
+        assertEquals(8, cache.getCurrentBytes());
+        assertEquals("ACGT", get(1, 4));
+        assertEquals(2, reads);
+        assertEquals("AAcc", get(9, 12));
+        assertEquals("The cache is bounded", 8, cache.getCurrentBytes());
+        assertEquals("ACGT", get(1, 4));
+        assertEquals("The recently used block is kept", 3, reads);
+        assertEquals("ACGT", get(5, 8));
+        assertEquals("The least recently used block is evicted", 4, reads);
+
+        cache.clear();
+        assertEquals(0, cache.getCurrentBytes());
+    }
+
+    public void testStopPastTheEndIsMovedToTheEnd() throws DataSourceException, CoordinateErrorException, BadReferenceObjectException {
+        assertEquals("gtA", get(23, 100));
+        assertEquals(1, reads);
+        assertEquals("Served from the cache", "tA", get(24, 1000));
+        assertEquals(1, reads);
+    }
+
+    public void testOutOfBoundsRangesAreBadReferences() throws DataSourceException, CoordinateErrorException {
+        assertBadReference("chr1", 26, 30);
+        assertBadReference("chr1", 0, 3);
+        assertBadReference("chr1", 5, 4);
+        // Once the segment is known, the cached path rejects the same ranges.
+        try {
+            get(1, 2);
+        } catch (BadReferenceObjectException e) {
+            fail(e.getMessage());
+        }
+        assertBadReference("chr1", 26, 30);
+        assertBadReference("chr1", 5, 4);
+        assertBadReference("chr2", 1, 3);
+        assertBadReference("null", 1, 3);
+    }
+
+    private void assertBadReference(String segmentId, int start, int stop) throws DataSourceException, CoordinateErrorException {
+        try {
+            cache.getSequence(segmentId, start, stop);
+            fail(segmentId + ":" + start + "," + stop + " should be out of the segment");
+        } catch (BadReferenceObjectException e) {
+            assertEquals(segmentId, e.getSegment());
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package uk.ac.ebi.mydas.cache;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+public class LRUResponseCacheTest extends TestCase {
+
+    private LRUResponseCache cache;
+
+    @Override
+    protected void setUp() {
+        cache = new LRUResponseCache();
+        cache.init(null);
+        cache.setMaxBytes(400);
+    }
+
+    public void testGetReturnsWhatWasPut() {
+        byte[] body = new byte[10];
+        cache.put("ds", "segment=A;", body, 60000);
+        assertSame(body, cache.get("ds", "segment=A;"));
+        assertNull("The data source is part of the key", cache.get("other", "segment=A;"));
+        assertNull(cache.get("ds", "segment=B;"));
+        assertEquals(10, cache.getCurrentBytes());
+    }
+
+    public void testExpiredResponsesAreDropped() throws InterruptedException {
+        cache.put("ds", "segment=A;", new byte[10], 1);
+        Thread.sleep(20);
+        assertNull(cache.get("ds", "segment=A;"));
+        assertEquals(0, cache.getCurrentBytes());
+        cache.put("ds", "segment=A;", new byte[10], 0);
+        assertNull("A response without a time to live is not kept", cache.get("ds", "segment=A;"));
+    }
+
+    public void testLargeBodiesAreNotKept() {
+        assertEquals(100, cache.getMaxBodySize());
+        cache.put("ds", "large", new byte[101], 60000);
+        assertNull(cache.get("ds", "large"));
+        cache.put("ds", "largest", new byte[100], 60000);
+        assertNotNull(cache.get("ds", "largest"));
+    }
+
+    public void testLeastRecentlyUsedIsEvicted() {
+        for (int i = 0; i < 4; i++) {
+            cache.put("ds", "q" + i, new byte[100], 60000);
+        }
+        assertNotNull(cache.get("ds", "q0"));
+        cache.put("ds", "q4", new byte[100], 60000);
+        assertEquals(400, cache.getCurrentBytes());
+        assertNull("q1 is the least recently used", cache.get("ds", "q1"));
+        assertNotNull(cache.get("ds", "q0"));
+        assertNotNull(cache.get("ds", "q4"));
+    }
+
+    public void testReplacingAResponseKeepsTheSizeRight() {
+        cache.put("ds", "q", new byte[50], 60000);
+        cache.put("ds", "q", new byte[30], 60000);
+        assertEquals(30, cache.getCurrentBytes());
+    }
+
+    public void testInvalidateOnlyDropsTheDataSource() {
+        cache.put("ds", "q", new byte[10], 60000);
+        cache.put("ds", "r", new byte[10], 60000);
+        cache.put("other", "q", new byte[10], 60000);
+        cache.invalidate("ds");
+        assertNull(cache.get("ds", "q"));
+        assertNull(cache.get("ds", "r"));
+        assertNotNull(cache.get("other", "q"));
+        assertEquals(10, cache.getCurrentBytes());
+        cache.clear();
+        assertNull(cache.get("other", "q"));
+        assertEquals(0, cache.getCurrentBytes());
+    }
+
+    public void testCopyIsDroppedPastTheLimit() throws IOException {
+        ByteArrayOutputStream client = new ByteArrayOutputStream();
+        CopyingOutputStream copy = new CopyingOutputStream(client, 5);
+        copy.write(new byte[]{1, 2, 3}, 0, 3);
+        copy.write(4);
+        copy.write(5);
+        assertEquals(5, copy.getCopy().length);
+        copy.write(6);
+        assertNull(copy.getCopy());
+        copy.write(new byte[]{7, 8}, 0, 2);
+        assertNull(copy.getCopy());
+        assertEquals("Everything is written through", 8, client.size());
+    }
+}
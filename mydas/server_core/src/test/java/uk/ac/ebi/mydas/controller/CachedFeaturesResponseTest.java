@@ -0,0 +1,51 @@
+package uk.ac.ebi.mydas.controller;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+public class CachedFeaturesResponseTest extends TestCase {
+
+    public void testFiltersAreSorted() {
+        assertEquals(CachedFeaturesResponse.normalizeQuery("segment=A;type=exon;category=c"),
+                CachedFeaturesResponse.normalizeQuery("category=c;segment=A;type=exon"));
+        assertEquals(CachedFeaturesResponse.normalizeQuery("segment=A;type=exon;type=CDS"),
+                CachedFeaturesResponse.normalizeQuery("type=CDS;segment=A;type=exon"));
+    }
+
+    public void testSegmentsAndFeatureIdsKeepTheirOrder() {
+        assertFalse("The segments are reported in the order requested",
+                CachedFeaturesResponse.normalizeQuery("segment=B;segment=A").equals(
+                        CachedFeaturesResponse.normalizeQuery("segment=A;segment=B")));
+        assertFalse(CachedFeaturesResponse.normalizeQuery("feature_id=2;feature_id=1").equals(
+                CachedFeaturesResponse.normalizeQuery("feature_id=1;feature_id=2")));
+        assertEquals("segment=B:1,10;segment=A;type=exon;",
+                CachedFeaturesResponse.normalizeQuery("type=exon;segment=B:1,10;segment=A"));
+    }
+
+    public void testPartsAreDecoded() {
+        assertEquals(CachedFeaturesResponse.normalizeQuery("segment=A%3A1%2C10"),
+                CachedFeaturesResponse.normalizeQuery("segment=A:1,10"));
+        assertFalse("A decoded separator is not a separator",
+                CachedFeaturesResponse.normalizeQuery("segment=A%3Bsegment=B").equals(
+                        CachedFeaturesResponse.normalizeQuery("segment=A;segment=B")));
+        assertEquals("segment=A;", CachedFeaturesResponse.normalizeQuery("segment=A;;"));
+    }
+
+    public void testHrefIsReplaced() throws IOException {
+        String cached = "<?xml-stylesheet href=\"/xslt/features.xsl\"?>\n<DASGFF>\n  <GFF href=\"http://server/das/ds/features?segment=A;type=x\" total=\"3\">\n"
+                + "    <SEGMENT id=\"A\" href=\"unchanged\"/>\n  </GFF>\n</DASGFF>\n";
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CachedFeaturesResponse.write(out, cached.getBytes("UTF-8"), "http://server/das/ds/features?type=x&segment=A", "UTF-8");
+        assertEquals("<?xml-stylesheet href=\"/xslt/features.xsl\"?>\n<DASGFF>\n  <GFF href=\"http://server/das/ds/features?type=x&amp;segment=A\" total=\"3\">\n"
+                + "    <SEGMENT id=\"A\" href=\"unchanged\"/>\n  </GFF>\n</DASGFF>\n", out.toString("UTF-8"));
+    }
+
+    public void testBodyWithoutHrefIsWrittenAsItIs() throws IOException {
+        String cached = "<DASGFF><GFF></GFF></DASGFF>";
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CachedFeaturesResponse.write(out, cached.getBytes("UTF-8"), "http://server/das/ds/features?segment=A", "UTF-8");
+        assertEquals(cached, out.toString("UTF-8"));
+    }
+}
@@ -0,0 +1,171 @@
+package uk.ac.ebi.mydas.controller;
+
+import junit.framework.TestCase;
+import uk.ac.ebi.mydas.exceptions.DataSourceException;
+import uk.ac.ebi.mydas.model.DasAnnotatedSegment;
+import uk.ac.ebi.mydas.model.DasFeature;
+import uk.ac.ebi.mydas.model.DasMethod;
+import uk.ac.ebi.mydas.model.DasType;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks the AND and OR merges of the segments found by segment and by feature id against a plain
+ * comparison of every segment and feature with every other one.
+ */
+public class DasCommandManagerMergeTest extends TestCase {
+
+    private static DasAnnotatedSegment segment(String id, Integer start, Integer stop, String... featureIds) throws DataSourceException {
+        List<DasFeature> features = new ArrayList<DasFeature>();
+        for (String featureId : featureIds) {
+            features.add(feature(featureId));
+        }
+        return new DasAnnotatedSegment(id, start, stop, "1", null, features);
+    }
+
+    private static DasFeature feature(String id) throws DataSourceException {
+        return new DasFeature(id, null, new DasType("exon", null, null, null), new DasMethod("method", null, null),
+                1, 10, null, null, null, null, null, null, null, null);
+    }
+
+    /**
+     * @return the id and coordinates of each segment, followed by the ids of its features.
+     */
+    private static List<String> describe(Collection<DasAnnotatedSegment> segments) {
+        List<String> described = new ArrayList<String>();
+        for (DasAnnotatedSegment segment : segments) {
+            StringBuilder builder = new StringBuilder(segment.getSegmentId())
+                    .append(':').append(segment.getStartCoordinate()).append(',').append(segment.getStopCoordinate());
+            for (DasFeature feature : segment.getFeatures()) {
+                builder.append(' ').append(feature.getFeatureId());
+            }
+            described.add(builder.toString());
+        }
+        return described;
+    }
+
+    /**
+     * The merge as it was written before the hash indexes, comparing every pair of segments and features.
+     */
+    private static List<String> reference(Collection<DasAnnotatedSegment> a, Collection<DasAnnotatedSegment> b, int type) {
+        List<String> merged = new ArrayList<String>();
+        List<String> idsAdded = new ArrayList<String>();
+        for (DasAnnotatedSegment segA : a) {
+            boolean added = false;
+            for (DasAnnotatedSegment segB : b) {
+                if (segA.getSegmentId().equals(segB.getSegmentId())) {
+                    merged.add(reference(segA, segB, type));
+                    idsAdded.add(segA.getSegmentId());
+                    added = true;
+                }
+            }
+            if (!added && type == DasCommandManager.MERGE_TYPE_OR) {
+                merged.addAll(describe(Collections.singleton(segA)));
+            }
+        }
+        if (type == DasCommandManager.MERGE_TYPE_OR) {
+            for (DasAnnotatedSegment segB : b) {
+                if (!idsAdded.contains(segB.getSegmentId())) {
+                    merged.addAll(describe(Collections.singleton(segB)));
+                }
+            }
+        }
+        return merged;
+    }
+
+    private static String reference(DasAnnotatedSegment a, DasAnnotatedSegment b, int type) {
+        StringBuilder builder = new StringBuilder(a.getSegmentId()).append(':');
+        if (a.getStartCoordinate() != null && b.getStartCoordinate() != null && a.getStopCoordinate() != null && b.getStopCoordinate() != null) {
+            builder.append(Math.min(a.getStartCoordinate(), b.getStartCoordinate())).append(',')
+                    .append(Math.max(a.getStopCoordinate(), b.getStopCoordinate()));
+        } else {
+            builder.append("null,null");
+        }
+        for (DasFeature fa : a.getFeatures()) {
+            if (type == DasCommandManager.MERGE_TYPE_OR) {
+                builder.append(' ').append(fa.getFeatureId());
+            } else {
+                for (DasFeature fb : b.getFeatures()) {
+                    if (fa.getFeatureId().equals(fb.getFeatureId())) {
+                        builder.append(' ').append(fa.getFeatureId());
+                    }
+                }
+            }
+        }
+        if (type == DasCommandManager.MERGE_TYPE_OR) {
+            for (DasFeature fb : b.getFeatures()) {
+                boolean inA = false;
+                for (DasFeature fa : a.getFeatures()) {
+                    inA |= fa.getFeatureId().equals(fb.getFeatureId());
+                }
+                if (!inA) {
+                    builder.append(' ').append(fb.getFeatureId());
+                }
+            }
+        }
+        return builder.toString();
+    }
+
+    public void testAndKeepsAFeatureOncePerMatchingFeature() throws DataSourceException {
+        List<DasAnnotatedSegment> a = new ArrayList<DasAnnotatedSegment>();
+        a.add(segment("A", 10, 20, "f1", "f2", "f3"));
+        a.add(segment("B", 1, 5, "f4"));
+        List<DasAnnotatedSegment> b = new ArrayList<DasAnnotatedSegment>();
+        b.add(segment("C", 1, 5, "f5"));
+        b.add(segment("A", 5, 15, "f2", "f1", "f2"));
+        List<String> expected = new ArrayList<String>();
+        expected.add("A:5,20 f1 f2 f2");
+        assertEquals(expected, describe(DasCommandManager.merge(a, b, DasCommandManager.MERGE_TYPE_AND)));
+    }
+
+    public void testOrKeepsEveryFeatureOnce() throws DataSourceException {
+        List<DasAnnotatedSegment> a = new ArrayList<DasAnnotatedSegment>();
+        a.add(segment("A", 10, 20, "f1", "f2"));
+        a.add(segment("B", null, null, "f4"));
+        List<DasAnnotatedSegment> b = new ArrayList<DasAnnotatedSegment>();
+        b.add(segment("C", 1, 5, "f5"));
+        b.add(segment("A", 15, 30, "f3", "f1", "f3"));
+        List<String> expected = new ArrayList<String>();
+        expected.add("A:10,30 f1 f2 f3 f3");
+        expected.add("B:null,null f4");
+        expected.add("C:1,5 f5");
+        assertEquals(expected, describe(DasCommandManager.merge(a, b, DasCommandManager.MERGE_TYPE_OR)));
+    }
+
+    public void testMergesMatchTheNestedLoops() throws DataSourceException {
+        Random random = new Random(5);
+        for (int round = 0; round < 200; round++) {
+            List<DasAnnotatedSegment> a = randomSegments(random);
+            List<DasAnnotatedSegment> b = randomSegments(random);
+            for (int type : new int[]{DasCommandManager.MERGE_TYPE_AND, DasCommandManager.MERGE_TYPE_OR}) {
+                assertEquals("Round " + round + ", merge type " + type, reference(a, b, type),
+                        describe(DasCommandManager.merge(a, b, type)));
+            }
+        }
+    }
+
+    /**
+     * @return a few segments, some of them sharing their id, with features sharing their ids too.
+     */
+    private static List<DasAnnotatedSegment> randomSegments(Random random) throws DataSourceException {
+        List<DasAnnotatedSegment> segments = new ArrayList<DasAnnotatedSegment>();
+        int count = random.nextInt(6);
+        for (int i = 0; i < count; i++) {
+            String[] featureIds = new String[random.nextInt(5)];
+            for (int j = 0; j < featureIds.length; j++) {
+                featureIds[j] = "f" + random.nextInt(6);
+            }
+            if (random.nextInt(4) == 0) {
+                segments.add(segment("S" + random.nextInt(4), null, null, featureIds));
+            } else {
+                int start = 1 + random.nextInt(1000);
+                segments.add(segment("S" + random.nextInt(4), start, start + random.nextInt(1000), featureIds));
+            }
+        }
+        return segments;
+    }
+}
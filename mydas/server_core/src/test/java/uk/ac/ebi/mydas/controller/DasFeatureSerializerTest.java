@@ -0,0 +1,142 @@
+package uk.ac.ebi.mydas.controller;
+
+import junit.framework.TestCase;
+import org.xmlpull.v1.XmlSerializer;
+import uk.ac.ebi.mydas.extendedmodel.DasFeatureE;
+import uk.ac.ebi.mydas.extendedmodel.DasFeatureSerializer;
+import uk.ac.ebi.mydas.model.DasFeature;
+import uk.ac.ebi.mydas.model.DasFeatureOrientation;
+import uk.ac.ebi.mydas.model.DasMethod;
+import uk.ac.ebi.mydas.model.DasPhase;
+import uk.ac.ebi.mydas.model.DasTarget;
+import uk.ac.ebi.mydas.model.DasType;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes features with {@link DasFeatureSerializer} and with {@link DasFeatureE}, checking that both make the same
+ * calls to the XML serializer.
+ */
+public class DasFeatureSerializerTest extends TestCase {
+
+    private static final String NAMESPACE = "";
+
+    /**
+     * @return a serializer recording its tags, attributes and texts, the texts written from a character array
+     * being recorded as those written from a String.
+     */
+    private static XmlSerializer recorder(final List<String> written) {
+        return (XmlSerializer) Proxy.newProxyInstance(XmlSerializer.class.getClassLoader(),
+                new Class[]{XmlSerializer.class}, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (method.getName().equals("startTag")) {
+                            written.add("<" + args[1]);
+                        } else if (method.getName().equals("endTag")) {
+                            written.add("</" + args[1]);
+                        } else if (method.getName().equals("attribute")) {
+                            written.add(args[1] + "=" + args[2]);
+                        } else if (method.getName().equals("text") && args.length == 3) {
+                            written.add("text " + new String((char[]) args[0], (Integer) args[1], (Integer) args[2]));
+                        } else if (method.getName().equals("text")) {
+                            written.add("text " + args[0]);
+                        } else {
+                            written.add(method.getName());
+                        }
+                        return (method.getReturnType() == XmlSerializer.class) ? proxy : null;
+                    }
+                });
+    }
+
+    private static DasFeature feature(String label, int start, int stop, Double score) throws Exception {
+        Map<URL, String> links = new LinkedHashMap<URL, String>();
+        links.put(new URL("http://example.org/feature"), "the feature");
+        links.put(new URL("http://example.org/empty"), "");
+        links.put(new URL("http://example.org/none"), null);
+        List<DasTarget> targets = new ArrayList<DasTarget>();
+        targets.add(new DasTarget("target1", -20, 300, "the target"));
+        targets.add(new DasTarget("target2", 1, 2, null));
+        return new DasFeature("feature1", label, new DasType("exon", "transcription", "SO:0000147", "Exon"),
+                new DasMethod("method1", "the method", "ECO:0000001"), start, stop, score,
+                DasFeatureOrientation.ORIENTATION_ANTISENSE_STRAND, DasPhase.PHASE_READING_FRAME_2,
+                Arrays.asList("a note", "a <note> & more"), links, targets, Arrays.asList("parent1", "parent2"),
+                Arrays.asList("part1"));
+    }
+
+    private static void assertSameXml(DasFeature feature, boolean useIdForLabel, boolean hasReferences,
+                                      boolean hasSuperParts, boolean hasSubParts) throws Exception {
+        List<String> expected = new ArrayList<String>();
+        new DasFeatureE(feature).serialize(NAMESPACE, recorder(expected), new DasFeatureRequestFilter(), false,
+                useIdForLabel, hasReferences, hasSuperParts, hasSubParts);
+        List<String> written = new ArrayList<String>();
+        DasFeatureSerializer.serialize(NAMESPACE, recorder(written), feature, new DasFeatureRequestFilter(), false,
+                useIdForLabel, hasReferences, hasSuperParts, hasSubParts);
+        assertEquals(expected, written);
+    }
+
+    public void testFullFeature() throws Exception {
+        DasFeature feature = feature("label1", 100, 2000, 12.5);
+        assertSameXml(feature, false, false, false, false);
+        assertSameXml(feature, true, false, false, false);
+    }
+
+    public void testReferences() throws Exception {
+        DasFeature feature = feature(null, 100, 2000, null);
+        assertSameXml(feature, false, true, false, false);
+        assertSameXml(feature, false, true, true, false);
+        assertSameXml(feature, false, true, false, true);
+        assertSameXml(feature, true, true, true, true);
+    }
+
+    public void testNonPositionalFeature() throws Exception {
+        assertSameXml(feature(null, 0, 0, null), true, false, false, false);
+        assertSameXml(feature("", 0, 50, null), false, false, false, false);
+    }
+
+    /**
+     * The coordinates and integral scores are formatted without Integer.toString and Double.toString.
+     */
+    public void testNumbers() throws Exception {
+        int[] coordinates = {1, 9, 10, -1, -10, 123456789, Integer.MAX_VALUE, Integer.MIN_VALUE};
+        double[] scores = {0.0, -0.0, 1.0, -1.0, 12.0, 9999999.0, 1.0E7, -1.0E7, 0.5, 1.0E-5, Double.NaN,
+                Double.POSITIVE_INFINITY};
+        for (int i = 0; i < coordinates.length; i++) {
+            double score = scores[i % scores.length];
+            assertSameXml(feature("label1", coordinates[i], coordinates[coordinates.length - 1 - i], score), false, false, false, false);
+        }
+        for (double score : scores) {
+            assertSameXml(feature("label1", 1, 2, score), false, false, false, false);
+        }
+    }
+
+    public void testFeatureOutOfTheFilterIsNotWritten() throws Exception {
+        DasFeatureRequestFilter filter = new DasFeatureRequestFilter();
+        filter.addTypeId("gene");
+        List<String> written = new ArrayList<String>();
+        DasFeatureSerializer.serialize(NAMESPACE, recorder(written), feature("label1", 1, 2, null), filter,
+                false, false, false, false, false);
+        assertTrue(written.toString(), written.isEmpty());
+    }
+
+    /**
+     * Checks the recorder itself, as both serializations being recorded the same way would hide a mistake there.
+     */
+    public void testRecorder() throws Exception {
+        List<String> written = new ArrayList<String>();
+        DasFeatureSerializer.serialize(NAMESPACE, recorder(written), feature("label1", 100, 2000, 3.0),
+                new DasFeatureRequestFilter(), false, false, false, false, false);
+        assertEquals("<FEATURE", written.get(0));
+        assertEquals("id=feature1", written.get(1));
+        assertTrue(written.toString(), written.contains("text 100"));
+        assertTrue(written.toString(), written.contains("text 3.0"));
+        assertTrue(written.toString(), written.contains("id=parent2"));
+        assertEquals("</FEATURE", written.get(written.size() - 1));
+    }
+}
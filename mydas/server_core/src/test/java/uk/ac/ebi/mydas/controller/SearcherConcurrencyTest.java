@@ -0,0 +1,155 @@
+package uk.ac.ebi.mydas.controller;
+
+import junit.framework.TestCase;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.Version;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import uk.ac.ebi.mydas.model.DasAnnotatedSegment;
+import uk.ac.ebi.mydas.model.DasFeature;
+import uk.ac.ebi.mydas.model.DasMethod;
+import uk.ac.ebi.mydas.model.DasType;
+import uk.ac.ebi.mydas.model.Range;
+import uk.ac.ebi.mydas.search.IndexSearcherManager;
+import uk.ac.ebi.mydas.search.Indexer;
+import uk.ac.ebi.mydas.search.Searcher;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs many advanced searches in parallel over the same index, checking that the total and per-segment
+ * counts reported to each request are those of its own query.
+ */
+public class SearcherConcurrencyTest extends TestCase {
+
+    private static final String DSN = "concurrency";
+    private static final int SEGMENTS = 20;
+    private static final int THREADS = 16;
+    private static final int SEARCHES = 800;
+
+    private File indexFolder;
+
+    /**
+     * Segment i has 10 + i features, alternately of type typeA and typeB.
+     */
+    @Override
+    protected void setUp() throws Exception {
+        indexFolder = File.createTempFile("mydas-search", "");
+        if (!indexFolder.delete() || !indexFolder.mkdir()) {
+            throw new IOException("Unable to create the folder " + indexFolder);
+        }
+        IndexWriter writer = new IndexWriter(FSDirectory.open(new File(indexFolder, DSN)),
+                new StandardAnalyzer(Version.LUCENE_30), true, IndexWriter.MaxFieldLength.UNLIMITED);
+        for (int segment = 0; segment < SEGMENTS; segment++) {
+            List<DasFeature> features = new ArrayList<DasFeature>();
+            for (int feature = 0; feature < featureCount(segment); feature++) {
+                DasType type = new DasType((feature % 2 == 0) ? "typeA" : "typeB", null, null, null);
+                features.add(new DasFeature("feature" + segment + "_" + feature, null, type, new DasMethod("method", null, null),
+                        feature * 10 + 1, feature * 10 + 5, null, null, null, null, null, null, null, null));
+            }
+            DasAnnotatedSegment annotatedSegment = new DasAnnotatedSegment("seg" + segment, 1, 1000, "1", null, features);
+            for (DasFeature feature : features) {
+                writer.addDocument(Indexer.createDocument(annotatedSegment, feature, "1"));
+            }
+            // Several index segments, so the collector moves across readers.
+            writer.commit();
+        }
+        writer.close();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        IndexSearcherManager.closeAll();
+        delete(indexFolder);
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static int featureCount(int segment) {
+        return 10 + segment;
+    }
+
+    private static int typeACount(int segment) {
+        return (featureCount(segment) + 1) / 2;
+    }
+
+    public void testParallelSearches() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<String>> results = new ArrayList<Future<String>>();
+            for (int i = 0; i < SEARCHES; i++) {
+                final int search = i;
+                results.add(executor.submit(new Callable<String>() {
+                    public String call() throws Exception {
+                        return check(search);
+                    }
+                }));
+            }
+            for (Future<String> result : results) {
+                String error = result.get();
+                assertNull(error, error);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Runs one search, alternating between queries on one segment and queries on a type, paged or not.
+     * @return a description of the first wrong count, or null if all of them are right.
+     */
+    private String check(int search) throws Exception {
+        int segment = search % SEGMENTS;
+        boolean byType = (search / SEGMENTS) % 2 == 1;
+        boolean paged = (search / (2 * SEGMENTS)) % 2 == 1;
+        DasFeatureRequestFilter filter = new DasFeatureRequestFilter();
+        filter.setAdvanceQuery(byType ? "typeId:typeA" : "segmentId:seg" + segment);
+        if (paged) {
+            filter.setRows(new Range(1 + segment, 5 + segment));
+        }
+        int expectedTotal = 0;
+        if (!byType) {
+            expectedTotal = featureCount(segment);
+        } else {
+            for (int i = 0; i < SEGMENTS; i++) {
+                expectedTotal += typeACount(i);
+            }
+        }
+        int features = 0;
+        for (DasAnnotatedSegment found : new Searcher(indexFolder.getPath(), DSN).search(filter)) {
+            int index = Integer.parseInt(found.getSegmentId().substring(3));
+            if (!byType && index != segment) {
+                return filter.getAdvanceQuery() + " returned the segment " + found.getSegmentId();
+            }
+            int expected = byType ? typeACount(index) : featureCount(index);
+            if (found.getTotalFeatures() != expected) {
+                return filter.getAdvanceQuery() + " counted " + found.getTotalFeatures() + " features in "
+                        + found.getSegmentId() + " instead of " + expected;
+            }
+            features += found.getFeatures().size();
+        }
+        if (filter.getTotalFeatures() != expectedTotal) {
+            return filter.getAdvanceQuery() + " counted " + filter.getTotalFeatures() + " hits instead of " + expectedTotal;
+        }
+        int expectedFeatures = paged ? Math.min(5, expectedTotal - segment) : expectedTotal;
+        if (features != expectedFeatures) {
+            return filter.getAdvanceQuery() + " returned " + features + " features instead of " + expectedFeatures;
+        }
+        return null;
+    }
+}
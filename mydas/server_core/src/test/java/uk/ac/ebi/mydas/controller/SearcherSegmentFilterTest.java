@@ -0,0 +1,184 @@
+package uk.ac.ebi.mydas.controller;
+
+import junit.framework.TestCase;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.Version;
+import uk.ac.ebi.mydas.exceptions.DataSourceException;
+import uk.ac.ebi.mydas.model.DasAnnotatedSegment;
+import uk.ac.ebi.mydas.model.DasFeature;
+import uk.ac.ebi.mydas.model.DasMethod;
+import uk.ac.ebi.mydas.model.DasType;
+import uk.ac.ebi.mydas.search.IndexSearcherManager;
+import uk.ac.ebi.mydas.search.Indexer;
+import uk.ac.ebi.mydas.search.Searcher;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Restricts searches to the requested segments and ranges, checking the features found against the
+ * coordinates they were indexed with.
+ */
+public class SearcherSegmentFilterTest extends TestCase {
+
+    private static final Pattern SEGMENT_RANGE_PATTERN = Pattern.compile("^segment=([^:\\s]*)(:([-]?(\\d+)),([-]?(\\d+)))?$");
+
+    private static final String DSN = "search";
+
+    private static final int MANY_SEGMENTS = 10;
+
+    private File indexFolder;
+
+    private int maxClauseCount;
+
+    /**
+     * chr1 has features around the range 100-300, chr2 one in that range, and m0 to m9 one feature in
+     * 1-10 and another in 500-600 each.
+     */
+    @Override
+    protected void setUp() throws Exception {
+        maxClauseCount = BooleanQuery.getMaxClauseCount();
+        indexFolder = File.createTempFile("mydas-search", "");
+        if (!indexFolder.delete() || !indexFolder.mkdir()) {
+            throw new IOException("Unable to create the folder " + indexFolder);
+        }
+        IndexWriter writer = new IndexWriter(FSDirectory.open(new File(indexFolder, DSN)),
+                new StandardAnalyzer(Version.LUCENE_30), true, IndexWriter.MaxFieldLength.UNLIMITED);
+        add(writer, "chr1", feature("before", 10, 99), feature("touchesStart", 50, 100), feature("inside", 150, 200),
+                feature("touchesStop", 300, 400), feature("after", 301, 500), feature("spanning", 1, 1000),
+                feature("nonPositional", 0, 0));
+        add(writer, "chr2", feature("otherSegment", 150, 160));
+        for (int i = 0; i < MANY_SEGMENTS; i++) {
+            add(writer, "m" + i, feature("m" + i + "_start", 1, 10), feature("m" + i + "_far", 500, 600));
+        }
+        writer.close();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        BooleanQuery.setMaxClauseCount(maxClauseCount);
+        IndexSearcherManager.closeAll();
+        delete(indexFolder);
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static DasFeature feature(String id, int start, int stop) throws DataSourceException {
+        return new DasFeature(id, null, new DasType("exon", null, null, null), new DasMethod("method", null, null),
+                start, stop, null, null, null, null, null, null, null, null);
+    }
+
+    private static void add(IndexWriter writer, String segmentId, DasFeature... features) throws DataSourceException, IOException {
+        List<DasFeature> list = new ArrayList<DasFeature>();
+        for (DasFeature feature : features) {
+            list.add(feature);
+        }
+        DasAnnotatedSegment segment = new DasAnnotatedSegment(segmentId, 1, 1000, "1", null, list);
+        for (DasFeature feature : features) {
+            writer.addDocument(Indexer.createDocument(segment, feature, "1"));
+        }
+    }
+
+    private static SegmentQuery segment(String segment) {
+        Matcher matcher = SEGMENT_RANGE_PATTERN.matcher("segment=" + segment);
+        assertTrue(matcher.find());
+        return new SegmentQuery(matcher);
+    }
+
+    /**
+     * @return the ids of the features found, sorted, per segment.
+     */
+    private Map<String, TreeSet<String>> search(DasFeatureRequestFilter filter, String... segments) throws Exception {
+        List<SegmentQuery> requested = new ArrayList<SegmentQuery>();
+        for (String segment : segments) {
+            requested.add(segment(segment));
+        }
+        filter.setRequestedSegments(requested);
+        Collection<DasAnnotatedSegment> found = new Searcher(indexFolder.getPath(), DSN).search(filter);
+        Map<String, TreeSet<String>> features = new TreeMap<String, TreeSet<String>>();
+        for (DasAnnotatedSegment segment : found) {
+            TreeSet<String> ids = new TreeSet<String>();
+            for (DasFeature feature : segment.getFeatures()) {
+                ids.add(feature.getFeatureId());
+            }
+            assertEquals("The total of " + segment.getSegmentId() + " counts its hits", ids.size(), (int) segment.getTotalFeatures());
+            features.put(segment.getSegmentId(), ids);
+        }
+        return features;
+    }
+
+    private static TreeSet<String> set(String... ids) {
+        TreeSet<String> set = new TreeSet<String>();
+        for (String id : ids) {
+            set.add(id);
+        }
+        return set;
+    }
+
+    public void testRangeKeepsOverlappingAndNonPositionalFeatures() throws Exception {
+        DasFeatureRequestFilter filter = new DasFeatureRequestFilter();
+        Map<String, TreeSet<String>> found = search(filter, "chr1:100,300");
+        assertEquals(1, found.size());
+        assertEquals(set("touchesStart", "inside", "touchesStop", "spanning", "nonPositional"), found.get("chr1"));
+        assertEquals(5, (int) filter.getTotalFeatures());
+    }
+
+    public void testSegmentWithoutRangeKeepsAllItsFeatures() throws Exception {
+        Map<String, TreeSet<String>> found = search(new DasFeatureRequestFilter(), "CHR1");
+        assertEquals("The case of the segment id is ignored", 1, found.size());
+        assertEquals(7, found.get("chr1").size());
+    }
+
+    public void testRangeOfEachSegmentIsAppliedToItsOwnFeatures() throws Exception {
+        Map<String, TreeSet<String>> found = search(new DasFeatureRequestFilter(), "chr1:1,20", "chr2:100,300");
+        assertEquals(set("before", "spanning", "nonPositional"), found.get("chr1"));
+        assertEquals(set("otherSegment"), found.get("chr2"));
+        assertEquals(2, found.size());
+    }
+
+    public void testQueryIsCombinedWithTheSegments() throws Exception {
+        DasFeatureRequestFilter filter = new DasFeatureRequestFilter();
+        filter.setAdvanceQuery("featureId:inside OR featureId:before OR featureId:otherSegment");
+        Map<String, TreeSet<String>> found = search(filter, "chr1:100,300");
+        assertEquals(1, found.size());
+        assertEquals(set("inside"), found.get("chr1"));
+    }
+
+    /**
+     * More segments than clauses allowed in a query are nested in several levels of queries.
+     */
+    public void testMoreSegmentsThanClauses() throws Exception {
+        BooleanQuery.setMaxClauseCount(3);
+        String[] segments = new String[MANY_SEGMENTS - 1];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = "m" + i + ":1,100";
+        }
+        DasFeatureRequestFilter filter = new DasFeatureRequestFilter();
+        Map<String, TreeSet<String>> found = search(filter, segments);
+        assertEquals(MANY_SEGMENTS - 1, found.size());
+        for (int i = 0; i < segments.length; i++) {
+            assertEquals(set("m" + i + "_start"), found.get("m" + i));
+        }
+        assertFalse("m" + (MANY_SEGMENTS - 1) + " has not been requested", found.containsKey("m" + (MANY_SEGMENTS - 1)));
+        assertEquals(MANY_SEGMENTS - 1, (int) filter.getTotalFeatures());
+    }
+}
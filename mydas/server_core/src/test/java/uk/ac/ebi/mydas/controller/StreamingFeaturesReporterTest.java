@@ -0,0 +1,119 @@
+package uk.ac.ebi.mydas.controller;
+
+import junit.framework.TestCase;
+import org.xmlpull.v1.XmlSerializer;
+import uk.ac.ebi.mydas.datasource.FeatureSink;
+import uk.ac.ebi.mydas.exceptions.DataSourceException;
+import uk.ac.ebi.mydas.model.DasAnnotatedSegment;
+import uk.ac.ebi.mydas.model.DasFeature;
+import uk.ac.ebi.mydas.model.DasMethod;
+import uk.ac.ebi.mydas.model.DasType;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Pushes segments and features to the sink used by the features command for streaming data sources,
+ * recording the elements written.
+ */
+public class StreamingFeaturesReporterTest extends TestCase {
+
+    private static final Pattern SEGMENT_RANGE_PATTERN = Pattern.compile("^segment=([^:\\s]*)(:([-]?(\\d+)),([-]?(\\d+)))?$");
+
+    private final List<String> written = new ArrayList<String>();
+
+    /**
+     * Records the start tags, with their id attribute, and the end tags.
+     */
+    private final XmlSerializer serializer = (XmlSerializer) Proxy.newProxyInstance(XmlSerializer.class.getClassLoader(),
+            new Class[]{XmlSerializer.class}, new InvocationHandler() {
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    if (method.getName().equals("startTag")) {
+                        written.add("<" + args[1]);
+                    } else if (method.getName().equals("endTag")) {
+                        written.add("</" + args[1]);
+                    } else if (method.getName().equals("attribute") && "id".equals(args[1])) {
+                        written.add("id=" + args[2]);
+                    }
+                    return (method.getReturnType() == XmlSerializer.class) ? proxy : null;
+                }
+            });
+
+    private static SegmentQuery query(String segment) {
+        Matcher matcher = SEGMENT_RANGE_PATTERN.matcher("segment=" + segment);
+        assertTrue(matcher.find());
+        return new SegmentQuery(matcher);
+    }
+
+    private StreamingFeaturesReporter reporter(String segment) {
+        return new StreamingFeaturesReporter("", serializer, query(segment), new DasFeatureRequestFilter(), false, false);
+    }
+
+    private static DasAnnotatedSegment segment(int start, int stop) throws DataSourceException {
+        return new DasAnnotatedSegment("A", start, stop, "1", null, new ArrayList<DasFeature>());
+    }
+
+    private static DasFeature feature(String id, int start, int stop) throws DataSourceException {
+        return new DasFeature(id, null, new DasType("exon", null, null, null), new DasMethod("method", null, null),
+                start, stop, null, null, null, null, null, null, null, null);
+    }
+
+    /**
+     * Writes the SEGMENT element and every FEATURE element while they are pushed, before the segment ends.
+     */
+    public void testFeaturesAreWrittenAsTheyArePushed() throws DataSourceException, IOException {
+        StreamingFeaturesReporter sink = reporter("A:10,20");
+        assertTrue(sink.startSegment(segment(10, 20)));
+        assertEquals("<SEGMENT", written.get(0));
+        assertEquals("id=A", written.get(1));
+        sink.addFeature(feature("f1", 12, 15));
+        assertTrue(written.contains("id=f1"));
+        assertFalse("The segment is still open", written.contains("</SEGMENT"));
+        sink.addFeature(feature("f2", 18, 30));
+        assertTrue(written.contains("id=f2"));
+        sink.endSegment();
+        assertEquals("</SEGMENT", written.get(written.size() - 1));
+        assertTrue(sink.isStarted());
+        assertFalse(sink.isOutOfBounds());
+    }
+
+    /**
+     * A segment out of the bounds of the request is refused, so the features command reports an error segment.
+     */
+    public void testSegmentOutOfBoundsIsRefused() throws DataSourceException, IOException {
+        StreamingFeaturesReporter sink = reporter("A:500,600");
+        assertFalse(sink.startSegment(segment(1, 100)));
+        sink.addFeature(feature("ignored", 1, 10));
+        sink.endSegment();
+        assertTrue(written.isEmpty());
+        assertFalse(sink.isStarted());
+        assertTrue(sink.isOutOfBounds());
+    }
+
+    public void testFeatureBeforeSegmentIsRejected() throws DataSourceException {
+        FeatureSink sink = reporter("A");
+        try {
+            sink.addFeature(feature("f1", 1, 10));
+            fail("The segment has not been described");
+        } catch (DataSourceException e) {
+            // expected
+        }
+    }
+
+    public void testSegmentIsOnlyStartedOnce() throws DataSourceException {
+        FeatureSink sink = reporter("A");
+        assertTrue(sink.startSegment(segment(1, 100)));
+        try {
+            sink.startSegment(segment(1, 100));
+            fail("A segment is started once");
+        } catch (DataSourceException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package uk.ac.ebi.mydas.model;
+
+import junit.framework.TestCase;
+import uk.ac.ebi.mydas.exceptions.DataSourceException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks the overlap index of the segment features against a scan of the features.
+ */
+public class FeatureIntervalIndexTest extends TestCase {
+
+    private static DasFeature feature(String id, int start, int stop) throws DataSourceException {
+        return new DasFeature(id, null, new DasType("type", null, null, null), new DasMethod("method", null, null),
+                start, stop, null, null, null, null, null, null, null, null);
+    }
+
+    private static List<String> ids(Collection<DasFeature> features) {
+        List<String> ids = new ArrayList<String>();
+        for (DasFeature feature : features) {
+            ids.add(feature.getFeatureId());
+        }
+        return ids;
+    }
+
+    private static List<String> scan(Collection<DasFeature> features, int start, int stop) {
+        List<String> ids = new ArrayList<String>();
+        for (DasFeature feature : features) {
+            if (FeatureIntervalIndex.matches(feature, start, stop)) {
+                ids.add(feature.getFeatureId());
+            }
+        }
+        return ids;
+    }
+
+    public void testOverlapEdges() throws DataSourceException {
+        List<DasFeature> features = new ArrayList<DasFeature>();
+        features.add(feature("a", 10, 20));
+        FeatureIntervalIndex index = new FeatureIntervalIndex(features);
+        assertEquals("A feature ending at the requested start overlaps", 1, index.overlapping(20, 30).size());
+        assertEquals("A feature starting at the requested stop overlaps", 1, index.overlapping(1, 10).size());
+        assertEquals("A feature enclosing the request overlaps", 1, index.overlapping(12, 15).size());
+        assertEquals("A feature ending before the request does not overlap", 0, index.overlapping(21, 30).size());
+        assertEquals("A feature starting after the request does not overlap", 0, index.overlapping(1, 9).size());
+    }
+
+    public void testNonPositionalFeaturesAreAlwaysReturnedOnce() throws DataSourceException {
+        List<DasFeature> features = new ArrayList<DasFeature>();
+        features.add(feature("a", 10, 20));
+        features.add(feature("np", 0, 0));
+        FeatureIntervalIndex index = new FeatureIntervalIndex(features);
+        assertEquals(1, index.overlapping(100, 200).size());
+        assertEquals("np", index.overlapping(100, 200).iterator().next().getFeatureId());
+        List<String> both = ids(index.overlapping(-5, 15));
+        assertEquals("[a, np]", both.toString());
+    }
+
+    /**
+     * A feature starting after its stop is matched as it always was: the requested start must not be after
+     * its start, nor the requested stop before its stop.
+     */
+    public void testStartAfterStopFeatures() throws DataSourceException {
+        List<DasFeature> features = new ArrayList<DasFeature>();
+        features.add(feature("reversed", 20, 10));
+        FeatureIntervalIndex index = new FeatureIntervalIndex(features);
+        assertEquals(1, index.overlapping(15, 30).size());
+        assertEquals(1, index.overlapping(20, 10).size());
+        assertEquals(0, index.overlapping(21, 30).size());
+        assertEquals(0, index.overlapping(1, 9).size());
+    }
+
+    public void testEmpty() {
+        FeatureIntervalIndex index = new FeatureIntervalIndex(new ArrayList<DasFeature>());
+        assertEquals(0, index.overlapping(1, 100).size());
+    }
+
+    /**
+     * Random features, with shared starts and negative coordinates, are returned as a scan finds them,
+     * in the order of the segment.
+     */
+    public void testMatchesScanInOriginalOrder() throws DataSourceException {
+        Random random = new Random(42);
+        List<DasFeature> features = new ArrayList<DasFeature>();
+        for (int i = 0; i < 2000; i++) {
+            int start = random.nextInt(10000) - 100;
+            int length = (random.nextInt(20) == 0) ? random.nextInt(5000) : random.nextInt(100);
+            if (random.nextInt(50) == 0) {
+                features.add(feature("f" + i, 0, 0));
+            } else if (random.nextInt(50) == 0) {
+                features.add(feature("f" + i, start + length + 1, start));
+            } else {
+                features.add(feature("f" + i, start - start % 50, start + length));
+            }
+        }
+        FeatureIntervalIndex index = new FeatureIntervalIndex(features);
+        for (int query = 0; query < 500; query++) {
+            int start = random.nextInt(11000) - 500;
+            int stop = start + random.nextInt(query % 10 == 0 ? 5000 : 200);
+            assertEquals("Query " + start + "," + stop, scan(features, start, stop), ids(index.overlapping(start, stop)));
+        }
+    }
+
+    public void testSegmentIsOnlyIndexedOnRequest() throws DataSourceException {
+        List<DasFeature> features = new ArrayList<DasFeature>();
+        features.add(feature("a", 10, 20));
+        DasAnnotatedSegment segment = new DasAnnotatedSegment("seg", 1, 100, "1", null, features);
+        assertSame("A segment that is not indexed hands out its own collection", features, segment.getFeatures());
+        assertEquals(1, segment.getFeatures(15, 15).size());
+        segment.indexFeatures();
+        assertNotSame(features, segment.getFeatures());
+        assertEquals(1, segment.getFeatures(15, 15).size());
+    }
+
+    /**
+     * Changes that leave the number of features unchanged must also reach the range queries.
+     */
+    public void testIndexIsDroppedWhenTheFeaturesChange() throws DataSourceException {
+        List<DasFeature> features = new ArrayList<DasFeature>();
+        features.add(feature("a", 10, 20));
+        DasAnnotatedSegment segment = new DasAnnotatedSegment("seg", 1, 100, "1", null, features);
+        segment.indexFeatures();
+        assertEquals("[a]", ids(segment.getFeatures(15, 15)).toString());
+
+        Iterator<DasFeature> iterator = segment.getFeatures().iterator();
+        iterator.next();
+        iterator.remove();
+        segment.getFeatures().add(feature("b", 50, 60));
+        assertEquals("[]", ids(segment.getFeatures(15, 15)).toString());
+        assertEquals("[b]", ids(segment.getFeatures(55, 55)).toString());
+
+        segment.getFeatures().clear();
+        assertEquals("[]", ids(segment.getFeatures(55, 55)).toString());
+    }
+}
@@ -0,0 +1,105 @@
+package uk.ac.ebi.mydas.model;
+
+import junit.framework.TestCase;
+import uk.ac.ebi.mydas.exceptions.CoordinateErrorException;
+import uk.ac.ebi.mydas.exceptions.DataSourceException;
+
+import java.util.Random;
+
+/**
+ * Checks the packed sequence decodes as the sequence it was built from, whatever the range.
+ */
+public class PackedDasSequenceTest extends TestCase {
+
+    private static void assertAllRanges(String sequence, int startCoordinate) throws DataSourceException, CoordinateErrorException {
+        PackedDasSequence packed = new PackedDasSequence("chr1", sequence, startCoordinate, "1", null);
+        assertEquals(sequence, packed.getSequenceString());
+        assertEquals(sequence.length(), packed.getLength());
+        for (int from = 0; from <= sequence.length(); from++) {
+            for (int to = from; to <= sequence.length(); to++) {
+                assertEquals("Range " + from + "-" + to + " of " + sequence, sequence.substring(from, to),
+                        packed.getRestrictedSequenceString(startCoordinate + from, startCoordinate + to - 1));
+            }
+        }
+    }
+
+    /**
+     * Ranges starting and ending on each position of a byte.
+     */
+    public void testByteBoundaries() throws DataSourceException, CoordinateErrorException {
+        assertAllRanges("ACGTTGCAAC", 1);
+        assertAllRanges("G", 1);
+        assertAllRanges("ACGTACGT", 100);
+    }
+
+    public void testRunsOfN() throws DataSourceException, CoordinateErrorException {
+        assertAllRanges("NNNNACGTNNACGNNNNN", 1);
+        assertAllRanges("ACNRYNNTTA", 1);
+    }
+
+    public void testSoftMaskedRuns() throws DataSourceException, CoordinateErrorException {
+        assertAllRanges("acgtACGTacgnnNNtT", 1);
+        assertAllRanges("ggggg", 1);
+    }
+
+    public void testRandomSequence() throws DataSourceException, CoordinateErrorException {
+        Random random = new Random(7);
+        String alphabet = "ACGTNacgtn";
+        StringBuilder sequence = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            char c = alphabet.charAt(random.nextInt(alphabet.length()));
+            int run = (random.nextInt(10) == 0) ? random.nextInt(20) : 1;
+            for (int j = 0; j < run; j++) {
+                sequence.append(c);
+            }
+        }
+        PackedDasSequence packed = new PackedDasSequence("chr1", sequence, 1, "1", null);
+        assertEquals(sequence.toString(), packed.getSequenceString());
+        for (int i = 0; i < 500; i++) {
+            int from = random.nextInt(sequence.length());
+            int to = from + random.nextInt(sequence.length() - from + 1);
+            assertEquals(sequence.substring(from, to), packed.getRestrictedSequenceString(from + 1, to));
+        }
+    }
+
+    public void testGetCharsAtAnOffset() throws DataSourceException, CoordinateErrorException {
+        PackedDasSequence packed = new PackedDasSequence("chr1", "ACGtnNAC", 1, "1", null);
+        char[] destination = "xxxxxxxx".toCharArray();
+        packed.getChars(3, 7, destination, 2);
+        assertEquals("xxGtnNAx", new String(destination));
+    }
+
+    public void testCoordinatesOutOfTheSegment() throws DataSourceException {
+        PackedDasSequence packed = new PackedDasSequence("chr1", "ACGT", 10, "1", null);
+        try {
+            packed.getRestrictedSequenceString(9, 11);
+            fail("The start is before the segment");
+        } catch (CoordinateErrorException e) {
+            // expected
+        }
+        try {
+            packed.getRestrictedSequenceString(12, 14);
+            fail("The stop is after the segment");
+        } catch (CoordinateErrorException e) {
+            // expected
+        }
+    }
+
+    public void testFirstRun() {
+        assertEquals("An empty table has no run", 0, PackedDasSequence.firstRun(new int[0], new int[0], 0));
+        assertEquals(0, PackedDasSequence.firstRun(new int[0], new int[0], 100));
+        int[] starts = {5, 20};
+        int[] lengths = {5, 1};
+        assertEquals(0, PackedDasSequence.firstRun(starts, lengths, 0));
+        assertEquals(0, PackedDasSequence.firstRun(starts, lengths, 9));
+        assertEquals("A run ending at the offset is skipped", 1, PackedDasSequence.firstRun(starts, lengths, 10));
+        assertEquals(1, PackedDasSequence.firstRun(starts, lengths, 20));
+        assertEquals(2, PackedDasSequence.firstRun(starts, lengths, 21));
+    }
+
+    public void testIsNucleotide() {
+        assertTrue(PackedDasSequence.isNucleotide("ACGTNacgtn"));
+        assertFalse(PackedDasSequence.isNucleotide("ACGR"));
+        assertFalse(PackedDasSequence.isNucleotide("MKV"));
+    }
+}
@@ -0,0 +1,91 @@
+package uk.ac.ebi.mydas.search;
+
+import junit.framework.TestCase;
+import uk.ac.ebi.mydas.exceptions.DataSourceException;
+import uk.ac.ebi.mydas.exceptions.SearcherException;
+import uk.ac.ebi.mydas.model.DasAnnotatedSegment;
+import uk.ac.ebi.mydas.model.DasFeature;
+import uk.ac.ebi.mydas.model.DasFeatureOrientation;
+import uk.ac.ebi.mydas.model.DasMethod;
+import uk.ac.ebi.mydas.model.DasPhase;
+import uk.ac.ebi.mydas.model.DasTarget;
+import uk.ac.ebi.mydas.model.DasType;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class FeatureRecordTest extends TestCase {
+
+	private static DasAnnotatedSegment segment(DasFeature feature) throws DataSourceException {
+		return new DasAnnotatedSegment("s", 1, 50, "1", null, Collections.singletonList(feature));
+	}
+
+	public void testRoundTrip() throws Exception {
+		Map<URL, String> links = new LinkedHashMap<URL, String>();
+		links.put(new URL("http://example.org/f"), "the feature");
+		DasFeature feature = new DasFeature("f", "label", new DasType("exon", "category", "SO:0000147", "Exon"),
+				new DasMethod("m", null, null), -5, 300, 0.25, DasFeatureOrientation.ORIENTATION_ANTISENSE_STRAND,
+				DasPhase.PHASE_READING_FRAME_1, Arrays.asList("a note", "été"), links,
+				Collections.singletonList(new DasTarget("t", 10, 20, "target")), Arrays.asList("p"), null);
+		DasAnnotatedSegment segment = new DasAnnotatedSegment("s", 1, 500, "1", "segment", Collections.singletonList(feature));
+		byte[] record = FeatureRecord.encode(segment, feature);
+		byte[] padded = new byte[record.length + 4];
+		System.arraycopy(record, 0, padded, 2, record.length);
+
+		DasAnnotatedSegment decoded = FeatureRecord.decode(padded, 2, record.length);
+		assertEquals("s", decoded.getSegmentId());
+		assertEquals("segment", decoded.getSegmentLabel());
+		assertEquals(500, (int) decoded.getStopCoordinate());
+		DasFeature copy = decoded.getFeatures().iterator().next();
+		assertEquals("label", copy.getFeatureLabel());
+		assertEquals("exon", copy.getType().getId());
+		assertEquals("SO:0000147", copy.getType().getCvId());
+		assertEquals(-5, copy.getStartCoordinate());
+		assertEquals(0.25, copy.getScore());
+		assertEquals(DasFeatureOrientation.ORIENTATION_ANTISENSE_STRAND, copy.getOrientation());
+		assertEquals(DasPhase.PHASE_READING_FRAME_1, copy.getPhase());
+		assertEquals(new ArrayList<String>(feature.getNotes()), new ArrayList<String>(copy.getNotes()));
+		assertEquals(links, copy.getLinks());
+		assertEquals("target", copy.getTargets().iterator().next().getTargetName());
+		assertEquals("[p]", copy.getParents().toString());
+	}
+
+	/**
+	 * A record without a type is rejected as corrupt, rather than failing with an unchecked exception.
+	 */
+	public void testRecordWithoutTypeIsRejected() throws DataSourceException {
+		DasFeature feature = new DasFeature("f", null, new DasType("exon", null, null, null), new DasMethod("m", null, null),
+				1, 10, null, null, null, null, null, null, null, null);
+		byte[] record = FeatureRecord.encode(segment(feature), feature);
+		// Segment id, label, version, start and stop, then the feature id and label: the type follows.
+		int typeFlag = 2 + 1 + 2 + 2 + 2 + 2 + 1;
+		// The flag, then the id of the type and its null category, cv id and label.
+		int typeLength = 1 + 5 + 3;
+		assertEquals(1, record[typeFlag]);
+		byte[] untyped = new byte[record.length - typeLength + 1];
+		System.arraycopy(record, 0, untyped, 0, typeFlag);
+		System.arraycopy(record, typeFlag + typeLength, untyped, typeFlag + 1, record.length - typeFlag - typeLength);
+		try {
+			FeatureRecord.decode(untyped, 0, untyped.length);
+			fail("A feature needs a type");
+		} catch (SearcherException e) {
+			// expected
+		}
+	}
+
+	public void testTruncatedRecordIsRejected() throws DataSourceException {
+		DasFeature feature = new DasFeature("f", null, new DasType("exon", null, null, null), new DasMethod("m", null, null),
+				1, 10, null, null, null, null, null, null, null, null);
+		byte[] record = FeatureRecord.encode(segment(feature), feature);
+		try {
+			FeatureRecord.decode(record, 0, record.length - 1);
+			fail("The record is truncated");
+		} catch (SearcherException e) {
+			// expected
+		}
+	}
+}
@@ -0,0 +1,297 @@
+package uk.ac.ebi.mydas.search;
+
+import junit.framework.TestCase;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.Version;
+import uk.ac.ebi.mydas.datasource.AnnotationDataSource;
+import uk.ac.ebi.mydas.exceptions.BadReferenceObjectException;
+import uk.ac.ebi.mydas.exceptions.DataSourceException;
+import uk.ac.ebi.mydas.exceptions.SearcherException;
+import uk.ac.ebi.mydas.model.DasAnnotatedSegment;
+import uk.ac.ebi.mydas.model.DasEntryPoint;
+import uk.ac.ebi.mydas.model.DasFeature;
+import uk.ac.ebi.mydas.model.DasMethod;
+import uk.ac.ebi.mydas.model.DasType;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Indexes a data source whose entry points change between runs, checking which segments are fetched again
+ * and which documents the committed index holds.
+ */
+public class IndexerTest extends TestCase {
+
+	private File indexFolder;
+
+	private String dsn;
+
+	private Indexer indexer;
+
+	/**
+	 * The version and number of features of each entry point, in order.
+	 */
+	private final Map<String, String> versions = new LinkedHashMap<String, String>();
+	private final Map<String, Integer> featureCounts = new LinkedHashMap<String, Integer>();
+
+	/**
+	 * The segments whose features cannot be fetched.
+	 */
+	private final Set<String> failing = new HashSet<String>();
+
+	/**
+	 * The segments whose features have been fetched, in order.
+	 */
+	private final List<String> fetched = new ArrayList<String>();
+
+	/**
+	 * Serves the entry points and the features of the segments described above.
+	 */
+	private final AnnotationDataSource dataSource = (AnnotationDataSource) Proxy.newProxyInstance(AnnotationDataSource.class.getClassLoader(),
+			new Class[]{AnnotationDataSource.class}, new InvocationHandler() {
+				public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+					if (method.getName().equals("getTotalEntryPoints")) {
+						return versions.size();
+					} else if (method.getName().equals("getEntryPoints")) {
+						List<DasEntryPoint> entryPoints = new ArrayList<DasEntryPoint>();
+						int position = 1;
+						for (Map.Entry<String, String> entry : versions.entrySet()) {
+							if (position >= (Integer) args[0] && position <= (Integer) args[1]) {
+								entryPoints.add(new DasEntryPoint(entry.getKey(), 1, 1000, null, entry.getValue(), null, null, false));
+							}
+							position++;
+						}
+						return entryPoints;
+					} else if (method.getName().equals("getFeatures") && args.length == 2 && args[0] instanceof String) {
+						return segment((String) args[0]);
+					}
+					throw new UnsupportedOperationException(method.getName());
+				}
+			});
+
+	@Override
+	protected void setUp() throws Exception {
+		indexFolder = File.createTempFile("mydas-index", "");
+		if (!indexFolder.delete() || !indexFolder.mkdir()) {
+			throw new IOException("Unable to create the folder " + indexFolder);
+		}
+		// The modified segments are recorded per data source for the whole class loader.
+		dsn = getName();
+		indexer = new Indexer(indexFolder.getPath(), null);
+		entryPoint("A", "1", 3);
+		entryPoint("B", "1", 2);
+		entryPoint("C", "1", 4);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		IndexSearcherManager.closeAll();
+		delete(indexFolder);
+	}
+
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+	private void entryPoint(String segmentId, String version, int features) {
+		versions.put(segmentId, version);
+		featureCounts.put(segmentId, features);
+	}
+
+	private DasAnnotatedSegment segment(String segmentId) throws DataSourceException, BadReferenceObjectException {
+		fetched.add(segmentId);
+		if (failing.contains(segmentId)) {
+			throw new DataSourceException("The segment " + segmentId + " cannot be read");
+		}
+		if (!featureCounts.containsKey(segmentId)) {
+			throw new BadReferenceObjectException(segmentId, "Unknown segment");
+		}
+		List<DasFeature> features = new ArrayList<DasFeature>();
+		for (int i = 0; i < featureCounts.get(segmentId); i++) {
+			features.add(new DasFeature(segmentId + "_" + i, null, new DasType("exon", null, null, null), new DasMethod("method", null, null),
+					i * 10 + 1, i * 10 + 5, null, null, null, null, null, null, null, null));
+		}
+		return new DasAnnotatedSegment(segmentId, 1, 1000, versions.get(segmentId), null, features);
+	}
+
+	private void index() throws SearcherException {
+		fetched.clear();
+		indexer.indexDataSource(dsn, dataSource, null, 1, false);
+	}
+
+	private Directory directory() throws IOException {
+		return FSDirectory.open(IndexSearcherManager.getIndexFolder(indexFolder.getPath(), dsn));
+	}
+
+	/**
+	 * @return the number of documents of the segment in the committed index, skipping the deleted ones.
+	 */
+	private int documents(String segmentId) throws IOException {
+		IndexReader reader = IndexReader.open(directory(), true);
+		try {
+			TermDocs docs = reader.termDocs(new Term(Indexer.SEGMENT_KEY_FIELD, segmentId));
+			int count = 0;
+			while (docs.next()) {
+				count++;
+			}
+			docs.close();
+			return count;
+		} finally {
+			reader.close();
+		}
+	}
+
+	private static List<String> list(String... segmentIds) {
+		List<String> list = new ArrayList<String>();
+		for (String segmentId : segmentIds) {
+			list.add(segmentId);
+		}
+		return list;
+	}
+
+	public void testUnchangedEntryPointsAreSkipped() throws Exception {
+		index();
+		assertEquals(list("A", "B", "C"), fetched);
+		assertEquals(3, indexer.getSegmentsIndexed());
+
+		index();
+		assertTrue("Nothing has changed, nothing is fetched: " + fetched, fetched.isEmpty());
+		assertEquals(3, indexer.getSegmentsSkipped());
+		assertEquals(3, documents("A"));
+		assertEquals(2, documents("B"));
+		assertEquals(4, documents("C"));
+	}
+
+	public void testChangedEntryPointsAreReplaced() throws Exception {
+		index();
+		entryPoint("B", "2", 5);
+		index();
+		assertEquals(list("B"), fetched);
+		assertEquals("The previous documents of B are deleted", 5, documents("B"));
+		assertEquals(3, documents("A"));
+	}
+
+	public void testEntryPointsWithoutVersionAreAlwaysIndexed() throws Exception {
+		entryPoint("B", null, 2);
+		index();
+		index();
+		assertEquals(list("B"), fetched);
+		assertEquals(2, documents("B"));
+	}
+
+	public void testDisappearedSegmentsAreRemoved() throws Exception {
+		index();
+		versions.remove("C");
+		featureCounts.remove("C");
+		entryPoint("D", "1", 1);
+		index();
+		assertEquals(list("D"), fetched);
+		assertEquals(0, documents("C"));
+		assertEquals(1, documents("D"));
+		assertEquals(3, documents("A"));
+		assertEquals(1, indexer.getSegmentsRemoved());
+	}
+
+	public void testModifiedSegmentsAreIndexedAgain() throws Exception {
+		index();
+		// Written back without changing the version of its entry point.
+		featureCounts.put("A", 6);
+		Indexer.segmentModified(dsn, "A");
+		index();
+		assertEquals(list("A"), fetched);
+		assertEquals(6, documents("A"));
+
+		index();
+		assertTrue("The modified segments are forgotten once indexed: " + fetched, fetched.isEmpty());
+
+		Indexer.segmentModified(dsn, null);
+		index();
+		assertEquals("An unknown segment modifies the whole data source", list("A", "B", "C"), fetched);
+		assertEquals(6, documents("A"));
+	}
+
+	public void testFailuresAreRolledBack() throws Exception {
+		index();
+		featureCounts.put("A", 6);
+		Indexer.segmentModified(dsn, "A");
+		entryPoint("B", "2", 5);
+		versions.remove("C");
+		failing.add("B");
+		try {
+			index();
+			fail("The failure to fetch B must be reported");
+		} catch (SearcherException e) {
+			assertTrue(e.getCause() instanceof DataSourceException);
+		}
+		assertEquals(list("A", "B"), fetched);
+		assertEquals("The index is left as it was committed", 3, documents("A"));
+		assertEquals(2, documents("B"));
+		assertEquals(4, documents("C"));
+
+		failing.clear();
+		index();
+		assertEquals("The modified segments are kept for the next run", list("A", "B"), fetched);
+		assertEquals(6, documents("A"));
+		assertEquals(5, documents("B"));
+		assertEquals(0, documents("C"));
+	}
+
+	public void testIndexesOfAPreviousFormatAreRebuilt() throws Exception {
+		IndexWriter writer = new IndexWriter(directory(), new StandardAnalyzer(Version.LUCENE_30), true, IndexWriter.MaxFieldLength.UNLIMITED);
+		for (String segmentId : list("A", "old")) {
+			DasAnnotatedSegment segment = new DasAnnotatedSegment(segmentId, 1, 1000, "1", null, new ArrayList<DasFeature>());
+			DasFeature feature = new DasFeature(segmentId + "_stale", null, new DasType("exon", null, null, null), new DasMethod("method", null, null),
+					1, 5, null, null, null, null, null, null, null, null);
+			for (int i = 0; i < 7; i++) {
+				writer.addDocument(Indexer.createDocument(segment, feature, "1"));
+			}
+		}
+		// Committed without the format of the documents.
+		writer.commit();
+		writer.close();
+
+		index();
+		assertEquals("The versions of an index in another format are not trusted", list("A", "B", "C"), fetched);
+		assertEquals(3, documents("A"));
+		assertEquals(0, documents("old"));
+		assertEquals("4", IndexReader.getCommitUserData(directory()).get("mydas.format"));
+
+		index();
+		assertTrue("The rebuilt index is updated from then on: " + fetched, fetched.isEmpty());
+	}
+
+	/**
+	 * Runs the proxy data source on its own, as a mistake there would make every other test meaningless.
+	 */
+	public void testDataSource() throws Exception {
+		assertEquals(3, dataSource.getTotalEntryPoints());
+		assertEquals(2, dataSource.getEntryPoints(2, 5).size());
+		try {
+			dataSource.getFeatures("Z", null);
+			fail("Z is not a segment");
+		} catch (BadReferenceObjectException e) {
+			assertEquals("Z", e.getSegment());
+		}
+	}
+}